@@ -3,24 +3,40 @@ package es.csic.iiia.nsm;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+import javax.swing.SwingUtilities;
 
 import es.csic.iiia.nsm.agent.language.PredicatesDomains;
+import es.csic.iiia.nsm.config.CachedDomainFunctions;
+import es.csic.iiia.nsm.config.DefaultExtendedNormSynthesisSettings;
 import es.csic.iiia.nsm.config.Dimension;
 import es.csic.iiia.nsm.config.DomainFunctions;
+import es.csic.iiia.nsm.config.ExtendedNormSynthesisSettings;
 import es.csic.iiia.nsm.config.NormSynthesisSettings;
 import es.csic.iiia.nsm.metrics.DefaultNormSynthesisMetrics;
 import es.csic.iiia.nsm.metrics.NormSynthesisMetrics;
+import es.csic.iiia.nsm.metrics.NormSynthesisPhase;
+import es.csic.iiia.nsm.metrics.PhaseTimer;
 import es.csic.iiia.nsm.net.norm.DefaultOmegaFunction;
 import es.csic.iiia.nsm.net.norm.NetworkNodeState;
 import es.csic.iiia.nsm.net.norm.NormativeNetwork;
 import es.csic.iiia.nsm.net.norm.OmegaFunction;
 import es.csic.iiia.nsm.norm.Norm;
 import es.csic.iiia.nsm.norm.NormativeSystem;
+import es.csic.iiia.nsm.norm.evaluation.UtilityIndex;
 import es.csic.iiia.nsm.norm.group.net.NormGroupNetwork;
 import es.csic.iiia.nsm.norm.reasoning.NormReasoner;
 import es.csic.iiia.nsm.perception.Monitor;
 import es.csic.iiia.nsm.perception.Sensor;
 import es.csic.iiia.nsm.strategy.NormSynthesisStrategy;
+import es.csic.iiia.nsm.strategy.SensorPipeline;
 import es.csic.iiia.nsm.strategy.iron.IRONStrategy;
 import es.csic.iiia.nsm.strategy.lion.LIONStrategy;
 import es.csic.iiia.nsm.strategy.simon.SIMONStrategy;
@@ -68,15 +84,18 @@ public class NormSynthesisMachine {
 
 	private Random randomizer;								// Randomiser
 	private List<Dimension> normEvDims;				// Norm evaluation dimensions
-	private NormSynthesisSettings settings;		// Norm synthesis settings
+	private UtilityIndex utilityIndex;				// Dense indices of dimensions/goals
+	private ExtendedNormSynthesisSettings settings;		// Norm synthesis settings
 	private Monitor monitor;									// Monitor to perceive the scenario
 	private NormativeNetwork nNetwork;				// The normative network
 	private NormGroupNetwork nGroupNetwork; 	// The network of norm groups
 	private OmegaFunction omegaFunction;			// Function to compute the NS
 	private NormSynthesisStrategy strategy;		// The norm synthesis strategy
 	private PredicatesDomains predDomains;		// Predicates and their domains
-	private DomainFunctions dmFunctions;			// Domain functions 
+	private CachedDomainFunctions dmFunctions; // Domain functions (memoised)
+	private SensorPipeline sensorPipeline;		// Processes sensors' perceptions
 	private NormSynthesisMetrics metrics;			// Norm synthesis metrics
+	private PhaseTimer phaseTimer;						// Times each norm synthesis phase
 	private NormSynthesisInspector tracer; 		// GUI
 	
 	private NormReasoner normReasoner; // The norms reasoner
@@ -84,6 +103,10 @@ public class NormSynthesisMachine {
 
 	private boolean gui;											// Use GUI?
 	private boolean firstExecution;						// First execution of the strategy?
+	
+	private ExecutorService strategyExecutor;	// Executes the strategy asynchronously
+	private Semaphore ticksInFlight;					// Bounds the ticks in flight
+	private int maxNumTicksInFlight;					// Max number of ticks in flight
 
 	//---------------------------------------------------------------------------
 	// Constructors 
@@ -105,9 +128,13 @@ public class NormSynthesisMachine {
 			PredicatesDomains predDomains, DomainFunctions dmFunctions, 
 			boolean gui, long randomSeed) {
 
-		this.settings = settings;
+		/* Use default extended settings if not available */
+		this.settings = DefaultExtendedNormSynthesisSettings.getExtended(settings);
 		this.predDomains = predDomains;
-		this.dmFunctions = dmFunctions;
+		this.dmFunctions = new CachedDomainFunctions(dmFunctions,
+				settings.getSystemGoals());
+		this.sensorPipeline = new SensorPipeline(this.dmFunctions,
+				this.settings.getNumSensorPipelineThreads());
 		this.gui = gui;
 		this.firstExecution = true;
 
@@ -117,6 +144,10 @@ public class NormSynthesisMachine {
 		this.normEvDims = new ArrayList<Dimension>();
 		this.normEvDims.add(Dimension.Effectiveness);
 		this.normEvDims.add(Dimension.Necessity);
+		
+		/* Index dimensions and goals to store norms' utilities in flat arrays */
+		this.utilityIndex = new UtilityIndex(this.normEvDims,
+				settings.getSystemGoals());
 
 		/* Create the normative network (norms and relationships between norms) */
 		this.nNetwork = new NormativeNetwork(this);
@@ -127,6 +158,7 @@ public class NormSynthesisMachine {
 		
 		/* Create the monitor to perform system sensing */
 		this.monitor = new Monitor();
+		this.phaseTimer = new PhaseTimer(this);
 	}
 
 	//---------------------------------------------------------------------------
@@ -199,7 +231,7 @@ public class NormSynthesisMachine {
 			this.metrics = nsMetrics;
 		}
 		else {
-			new DefaultNormSynthesisMetrics(this);
+			this.metrics = new DefaultNormSynthesisMetrics(this);
 		}
 		
 		/* Create omega function to retrieve the normative system
@@ -250,6 +282,110 @@ public class NormSynthesisMachine {
 			throws IncorrectSetupException {
 
 		/* First, check that the NSM has been correctly setup */
+		this.prepareExecution();
+		
+		/* Finish the ticks that are being executed asynchronously */
+		this.awaitTicksInFlight();
+		
+		return this.executeCycle(timeStep);
+	}
+	
+	/**
+	 * Performs the norm synthesis cycle asynchronously. The perceptions
+	 * of the sensors are captured before returning, and the cycle is executed
+	 * in a background thread, so that the simulator may compute the next
+	 * time step meanwhile. Cycles are executed one after another, in the
+	 * same order they were requested, and hence the norm synthesis evolves
+	 * exactly as with {@link #executeStrategy(double)}. If the maximum
+	 * number of ticks in flight is reached, this method blocks until the
+	 * oldest one is finished
+	 * <p>
+	 * Note that the domain functions are invoked from the background
+	 * thread, concurrently with the simulator. Hence, they must only
+	 * consume the views and view transitions they receive, which are built
+	 * from the captured perceptions, and not the current state of the
+	 * scenario
+	 * 
+	 * @param timeStep the current time step
+	 * @return a {@code Future} of the {@code NormativeSystem} resulting
+	 * 					from the norm synthesis cycle. The normative system is a
+	 * 					copy, which is not modified by subsequent cycles
+	 * @throws IncorrectSetupException if the NSM has not been correctly setup
+	 * @see ExtendedNormSynthesisSettings#getMaxNumTicksInFlight()
+	 * @see Monitor#capturePerceptions()
+	 * @see DomainFunctions
+	 */
+	public Future<NormativeSystem> executeStrategyAsync(final double timeStep) 
+			throws IncorrectSetupException {
+		
+		/* First, check that the NSM has been correctly setup */
+		this.prepareExecution();
+		
+		if(this.strategyExecutor == null) {
+			this.maxNumTicksInFlight = 
+					Math.max(1, this.settings.getMaxNumTicksInFlight());
+			this.ticksInFlight = new Semaphore(this.maxNumTicksInFlight);
+			this.strategyExecutor = Executors.newSingleThreadExecutor(
+					new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "nsm-strategy");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		
+		/* Wait for a free slot, and capture the perceptions
+		 * of the current tick before the scenario changes */
+		this.ticksInFlight.acquireUninterruptibly();
+		this.monitor.capturePerceptions();
+		
+		try {
+			return this.strategyExecutor.submit(new Callable<NormativeSystem>() {
+				@Override
+				public NormativeSystem call() {
+					try {
+						return (NormativeSystem) executeCycle(timeStep).clone();
+					}
+					finally {
+						ticksInFlight.release();
+					}
+				}
+			});
+		}
+		catch(RejectedExecutionException e) {
+			this.ticksInFlight.release();
+			throw e;
+		}
+	}
+	
+	/**
+	 * Waits until all the asynchronous executions of the strategy are
+	 * finished, and stops the threads of the norm synthesis machine
+	 */
+	public void shutdown() {
+		this.awaitTicksInFlight();
+		
+		if(this.strategyExecutor != null) {
+			this.strategyExecutor.shutdown();
+			this.strategyExecutor = null;
+			this.ticksInFlight = null;
+		}
+		this.sensorPipeline.shutdown();
+	}
+
+	//---------------------------------------------------------------------------
+	// Private methods
+	//---------------------------------------------------------------------------
+
+	/**
+	 * Checks the setup of the norm synthesis machine and creates
+	 * the GUI (if required) before the first execution of the strategy
+	 * 
+	 * @throws IncorrectSetupException if the NSM has not been correctly setup
+	 */
+	private void prepareExecution() throws IncorrectSetupException {
 		if(this.firstExecution) {
 			this.firstExecution= false;
 			this.checkSetup();
@@ -260,20 +396,51 @@ public class NormSynthesisMachine {
 				tracer.show();	
 			}
 		}
+	}
+	
+	/**
+	 * Executes the norm synthesis cycle of a time step
+	 * 
+	 * @param timeStep the time step
+	 * @return the {@code NormativeSystem} resulting from the cycle
+	 */
+	private NormativeSystem executeCycle(double timeStep) {
 
+		/* Domain functions' results are only valid during a time step */
+		this.dmFunctions.clear();
+		
 		/* Executes the strategy and get the resulting normative system */
 		NormativeSystem ns = this.strategy.execute();
+		
+		this.phaseTimer.start();
 		this.metrics.update(timeStep);
+		this.phaseTimer.stop(NormSynthesisPhase.MetricsUpdate);
 
+		/* Refresh the GUI in the event dispatch thread with a snapshot
+		 * of this cycle, since the next cycle may have started by then */
 		if(this.gui) {
-			tracer.refresh();
+			final NormativeSystem snapshot = (NormativeSystem)ns.clone();
+			tracer.capture();
+			SwingUtilities.invokeLater(new Runnable() {
+				@Override
+				public void run() {
+					tracer.refresh(snapshot);
+				}
+			});
 		}
 		return ns;
 	}
-
-	//---------------------------------------------------------------------------
-	// Private methods
-	//---------------------------------------------------------------------------
+	
+	/**
+	 * Waits until all the asynchronous executions of the strategy 
+	 * are finished
+	 */
+	private void awaitTicksInFlight() {
+		if(this.ticksInFlight != null) {
+			this.ticksInFlight.acquireUninterruptibly(this.maxNumTicksInFlight);
+			this.ticksInFlight.release(this.maxNumTicksInFlight);
+		}
+	}
 
 	/**
 	 * Checks the initial setup of the norm synthesis machine, ensuring
@@ -318,12 +485,14 @@ public class NormSynthesisMachine {
 	//---------------------------------------------------------------------------
 
 	/**
-	 * Returns the norm synthesis settings
+	 * Returns the norm synthesis settings, extended with the default
+	 * extended settings if the domain does not provide them
 	 * 
 	 * @return the norm synthesis settings
 	 * @see NormSynthesisSettings
+	 * @see ExtendedNormSynthesisSettings
 	 */
-	public NormSynthesisSettings getNormSynthesisSettings() {
+	public ExtendedNormSynthesisSettings getNormSynthesisSettings() {
 		return this.settings;
 	}
 
@@ -345,15 +514,28 @@ public class NormSynthesisMachine {
 
 	/**
 	 * Returns the domain functions that allow to perform
-	 * norm synthesis for a specific domain
+	 * norm synthesis for a specific domain. Domain functions are
+	 * memoised during each time step
 	 * 
 	 * @return the domain functions
 	 * @see DomainFunctions
+	 * @see CachedDomainFunctions
 	 */
 	public DomainFunctions getDomainFunctions() {
 		return this.dmFunctions;
 	}
 
+	/**
+	 * Returns the pipeline that strategies employ to process the
+	 * perceptions of the sensors, either sequentially or in parallel
+	 * 
+	 * @return the sensor pipeline
+	 * @see SensorPipeline
+	 */
+	public SensorPipeline getSensorPipeline() {
+		return this.sensorPipeline;
+	}
+
 	/**
 	 * Returns the norm synthesis metrics
 	 * 
@@ -364,6 +546,17 @@ public class NormSynthesisMachine {
 		return this.metrics;
 	}
 
+	/**
+	 * Returns the timer that strategies employ to measure the time
+	 * spent in each phase of the norm synthesis cycle
+	 * 
+	 * @return the phase timer
+	 * @see PhaseTimer
+	 */
+	public PhaseTimer getPhaseTimer() {
+		return this.phaseTimer;
+	}
+
 	/**
 	 * Returns the monitor that perceives the environment
 	 * 
@@ -425,6 +618,17 @@ public class NormSynthesisMachine {
 		return this.normEvDims;
 	}
 
+	/**
+	 * Returns the dense indices of the norm evaluation dimensions and
+	 * the system goals, shared by the utilities of all norms
+	 * 
+	 * @return the dense indices of the dimensions and goals
+	 * @see UtilityIndex
+	 */
+	public UtilityIndex getUtilityIndex() {
+		return this.utilityIndex;
+	}
+
 	/**
 	 * Returns the norm reasoner
 	 * 
@@ -1,6 +1,9 @@
 package es.csic.iiia.nsm.agent.language;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 
 /**
  * A set of predicates with terms. It consists in a set of {@code predicates},
@@ -179,6 +182,41 @@ public class SetOfPredicatesWithTerms extends HashMap<String, SetOfStrings> {
 		return true;
 	}
 	
+	/**
+	 * Returns a canonical description of this set of predicates with terms,
+	 * with the same form than {@code toString}, but with the predicates and
+	 * the terms of each predicate sorted alphabetically. Hence, two sets
+	 * have the same canonical description if and only if they are equal,
+	 * no matter the order of their predicates and terms
+	 * 
+	 * @return a {@code String} describing this set in canonical form
+	 * @see #equals(SetOfPredicatesWithTerms)
+	 */
+	public String getCanonicalDescription() {
+		StringBuilder sb = new StringBuilder();
+		List<String> predicates = new ArrayList<String>(this.getPredicates());
+		Collections.sort(predicates);
+		
+		for(int i=0; i<predicates.size(); i++) {
+			String p = predicates.get(i);
+			List<String> terms = new ArrayList<String>(this.getTerms(p));
+			Collections.sort(terms);
+			
+			if(i>0) {
+				sb.append("&");
+			}
+			sb.append(p).append("(");
+			for(int j=0; j<terms.size(); j++) {
+				if(j>0) {
+					sb.append("|");
+				}
+				sb.append(terms.get(j));
+			}
+			sb.append(")");
+		}
+		return sb.toString();
+	}
+	
 	/**
 	 * Returns a description of this set of predicates with terms.
 	 * The {@code String} has the form p_1(t_1, ..., t_n), ..., 
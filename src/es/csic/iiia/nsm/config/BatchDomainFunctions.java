@@ -0,0 +1,71 @@
+package es.csic.iiia.nsm.config;
+
+import java.util.List;
+import java.util.Map;
+
+import es.csic.iiia.nsm.agent.AgentAction;
+import es.csic.iiia.nsm.agent.AgentContext;
+import es.csic.iiia.nsm.perception.View;
+import es.csic.iiia.nsm.perception.ViewTransition;
+
+/**
+ * Domain functions that, in addition to the per-agent functions of
+ * {@code DomainFunctions}, are able to compute the contexts, actions
+ * and conflicts of all the agents in a view at once. Domains whose
+ * simulator computes these values more efficiently for a whole view
+ * than for each agent separately should implement this interface
+ * instead of {@code DomainFunctions}. The Norm Synthesis Machine detects
+ * it when it is created, and then employs the bulk functions to reason
+ * about norms and to evaluate them.
+ *
+ * @author "Javier Morales (jmorales@iiia.csic.es)"
+ * @see DomainFunctions
+ */
+public interface BatchDomainFunctions extends DomainFunctions {
+
+	//---------------------------------------------------------------------------
+	// Agents' language functions
+	//---------------------------------------------------------------------------
+
+	/**
+	 * Returns the local context of each agent in a given {@code view}
+	 *
+	 * @param view the view in which agents perceive their local contexts
+	 * @return a {@code Map} containing, for the id of each agent in the view,
+	 * 					the agent's local context
+	 * @see DomainFunctions#agentContextFunction(long, View)
+	 */
+	public Map<Long, AgentContext> agentContextFunction(View view);
+
+	/**
+	 * Returns the actions that each agent performed in the transition
+	 * of views {@code viewTransition}
+	 *
+	 * @param 	viewTransition the transition of views in which
+	 * 					the agents performed the actions
+	 * @return a {@code Map} containing, for the id of each agent, the
+	 * 					{@code List} of actions that the agent performed
+	 * @see DomainFunctions#agentActionFunction(long, ViewTransition)
+	 */
+	public Map<Long, List<AgentAction>> agentActionFunction(
+			ViewTransition viewTransition);
+
+	//---------------------------------------------------------------------------
+	// Conflict detection functions
+	//---------------------------------------------------------------------------
+
+	/**
+	 * Returns, for each agent in {@code agentIds} and each goal in
+	 * {@code goals}, whether the agent is in conflict in a {@code view}
+	 * with respect to the goal. Position <tt>[i][j]</tt> of the returned
+	 * array corresponds to the <tt>i</tt>-th agent and the <tt>j</tt>-th goal
+	 *
+	 * @param view the view in which to check if agents are in conflict
+	 * @param agentIds the ids of the reference agents
+	 * @param goals the goals
+	 * @return an array of agent conflicts, indexed by agent and by goal
+	 * @see DomainFunctions#hasConflict(View, long, Goal)
+	 */
+	public boolean[][] hasConflicts(View view, List<Long> agentIds,
+			List<Goal> goals);
+}
@@ -0,0 +1,476 @@
+package es.csic.iiia.nsm.config;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.swing.JPanel;
+
+import es.csic.iiia.nsm.agent.AgentAction;
+import es.csic.iiia.nsm.agent.AgentContext;
+import es.csic.iiia.nsm.agent.language.SetOfPredicatesWithTerms;
+import es.csic.iiia.nsm.norm.Norm;
+import es.csic.iiia.nsm.norm.generation.Conflict;
+import es.csic.iiia.nsm.perception.View;
+import es.csic.iiia.nsm.perception.ViewTransition;
+
+/**
+ * Domain functions that memoise the results of the domain functions
+ * they decorate during a time step. Agent contexts, agent actions and
+ * agent conflicts are computed at most once for each agent in each view
+ * (or view transition), and then retrieved from cache until the cache
+ * is cleared. The Norm Synthesis Machine clears the cache at the
+ * beginning of each execution of the norm synthesis strategy.
+ * <p>
+ * Views and view transitions are indexed by identity, since sensors
+ * may reuse the same objects in different time steps. Hence, the
+ * cache must be cleared every time step.
+ * <p>
+ * If the decorated domain functions implement {@code BatchDomainFunctions},
+ * the contexts, actions and conflicts of all the agents of a view are
+ * computed at once the first time that any of them is requested. Otherwise,
+ * bulk functions are answered by computing each agent separately.
+ * <p>
+ * The cache may be accessed concurrently (e.g., by a parallel
+ * {@code SensorPipeline}). Cached values are accessed under the lock of
+ * the cache of their view, but the decorated domain functions are called
+ * out of any lock. Hence, two threads may compute the same value, which
+ * is harmless as long as the domain functions are thread-safe.
+ *
+ * @author "Javier Morales (jmorales@iiia.csic.es)"
+ * @see DomainFunctions
+ * @see BatchDomainFunctions
+ */
+public class CachedDomainFunctions implements BatchDomainFunctions {
+
+	//---------------------------------------------------------------------------
+	// Attributes
+	//---------------------------------------------------------------------------
+
+	private DomainFunctions dmFunctions;	// The decorated domain functions
+	private BatchDomainFunctions batchDmFunctions; // Bulk domain functions
+	private List<Goal> goals;							// Goals to check conflicts for
+
+	private Map<View, Map<Long, AgentContext>> agentContexts;
+	private Map<ViewTransition, Map<Long, List<AgentAction>>> agentActions;
+	private Map<View, Map<Goal, Map<Long, Boolean>>> agentConflicts;
+
+	private long numHits;			// Number of calls answered from cache
+	private long numMisses;		// Number of calls to the decorated functions
+
+	//---------------------------------------------------------------------------
+	// Methods
+	//---------------------------------------------------------------------------
+
+	/**
+	 * Constructor
+	 *
+	 * @param dmFunctions the domain functions to decorate
+	 * @param goals the goals in terms of which agent conflicts are checked
+	 */
+	public CachedDomainFunctions(DomainFunctions dmFunctions, List<Goal> goals) {
+		this.dmFunctions = dmFunctions;
+		this.goals = goals;
+		
+		/* Use bulk domain functions if available */
+		if(dmFunctions instanceof BatchDomainFunctions) {
+			this.batchDmFunctions = (BatchDomainFunctions)dmFunctions;
+		}
+
+		this.agentContexts = new IdentityHashMap<View, Map<Long, AgentContext>>();
+		this.agentActions = new IdentityHashMap<ViewTransition,
+				Map<Long, List<AgentAction>>>();
+		this.agentConflicts = new IdentityHashMap<View,
+				Map<Goal, Map<Long, Boolean>>>();
+	}
+
+	/**
+	 * Clears the cached agent contexts, actions and conflicts. It does
+	 * not reset the hit and miss counters
+	 */
+	public synchronized void clear() {
+		this.agentContexts.clear();
+		this.agentActions.clear();
+		this.agentConflicts.clear();
+	}
+
+	/**
+	 * Returns <tt>true</tt> if the {@code agentContext} is consistent
+	 * for the decorated domain functions. The call is not memoised
+	 */
+	@Override
+	public boolean isConsistent(SetOfPredicatesWithTerms agentContext) {
+		return this.dmFunctions.isConsistent(agentContext);
+	}
+
+	/**
+	 * Returns the local context of the agent with id {@code agentId} in
+	 * the {@code view}, computing it only the first time it is requested
+	 */
+	@Override
+	public AgentContext agentContextFunction(long agentId, View view) {
+		Map<Long, AgentContext> contexts = this.getCachedContexts(view);
+
+		synchronized(contexts) {
+			if(contexts.containsKey(agentId)) {
+				this.hit();
+				return contexts.get(agentId);
+			}
+		}
+		this.miss();
+
+		AgentContext context = this.dmFunctions.agentContextFunction(agentId, view);
+		synchronized(contexts) {
+			contexts.put(agentId, context);
+		}
+		return context;
+	}
+
+	/**
+	 * Returns the actions that the agent with id {@code agentId} performed
+	 * in the {@code viewTransition}, computing them only the first time
+	 * they are requested
+	 */
+	@Override
+	public List<AgentAction> agentActionFunction(long agentId,
+			ViewTransition viewTransition) {
+
+		Map<Long, List<AgentAction>> actions = 
+				this.getCachedActions(viewTransition);
+
+		synchronized(actions) {
+			if(actions.containsKey(agentId)) {
+				this.hit();
+				return actions.get(agentId);
+			}
+		}
+		this.miss();
+
+		List<AgentAction> agActions = this.dmFunctions.
+				agentActionFunction(agentId, viewTransition);
+		synchronized(actions) {
+			actions.put(agentId, agActions);
+		}
+		return agActions;
+	}
+
+	/**
+	 * Returns the new conflicts in the {@code viewTransition}.
+	 * The call is not memoised, since it is performed once
+	 * per goal and view transition
+	 */
+	@Override
+	public List<Conflict> getConflicts(Goal goal, ViewTransition viewTransition) {
+		return this.dmFunctions.getConflicts(goal, viewTransition);
+	}
+
+	/**
+	 * Returns <tt>true</tt> if the agent with id {@code agentId} is in
+	 * conflict in the {@code view} with respect to the {@code goal},
+	 * computing it only the first time it is requested
+	 */
+	@Override
+	public boolean hasConflict(View view, long agentId, Goal goal) {
+		Map<Goal, Map<Long, Boolean>> goalConflicts = 
+				this.getCachedConflicts(view);
+
+		Map<Long, Boolean> conflicts;
+		synchronized(goalConflicts) {
+			conflicts = goalConflicts.get(goal);
+			if(conflicts == null) {
+				conflicts = new HashMap<Long, Boolean>();
+				goalConflicts.put(goal, conflicts);
+			}
+			
+			Boolean conflict = conflicts.get(agentId);
+			if(conflict != null) {
+				this.hit();
+				return conflict;
+			}
+		}
+		this.miss();
+
+		boolean conflict = this.dmFunctions.hasConflict(view, agentId, goal);
+		synchronized(goalConflicts) {
+			conflicts.put(agentId, conflict);
+		}
+		return conflict;
+	}
+
+	/**
+	 * Returns the description panel of a {@code norm}
+	 */
+	@Override
+	public JPanel getNormDescriptionPanel(Norm norm) {
+		return this.dmFunctions.getNormDescriptionPanel(norm);
+	}
+
+	/**
+	 * Returns the local context of each agent in the {@code view}
+	 */
+	@Override
+	public Map<Long, AgentContext> agentContextFunction(View view) {
+		Map<Long, AgentContext> contexts = new HashMap<Long, AgentContext>();
+		
+		for(Long agentId : view.getAgentIds()) {
+			contexts.put(agentId, this.agentContextFunction(agentId, view));
+		}
+		return contexts;
+	}
+
+	/**
+	 * Returns the actions that each agent performed in the
+	 * {@code viewTransition}. Agents are those that exist in
+	 * the views of the transition
+	 */
+	@Override
+	public Map<Long, List<AgentAction>> agentActionFunction(
+			ViewTransition viewTransition) {
+		
+		Map<Long, List<AgentAction>> actions = 
+				new HashMap<Long, List<AgentAction>>();
+		View pView = viewTransition.getView(-1);
+		View view = viewTransition.getView(0);
+		
+		for(Long agentId : pView.getAgentIds()) {
+			if(view.getAgentIds().contains(agentId)) {
+				actions.put(agentId, this.agentActionFunction(agentId, viewTransition));
+			}
+		}
+		return actions;
+	}
+
+	/**
+	 * Returns the conflicts of each agent in {@code agentIds}
+	 * with respect to each goal in {@code goals}
+	 */
+	@Override
+	public boolean[][] hasConflicts(View view, List<Long> agentIds,
+			List<Goal> goals) {
+		
+		boolean[][] conflicts = new boolean[agentIds.size()][goals.size()];
+		
+		for(int i=0; i < agentIds.size(); i++) {
+			for(int j=0; j < goals.size(); j++) {
+				conflicts[i][j] = this.hasConflict(view, agentIds.get(i), goals.get(j));
+			}
+		}
+		return conflicts;
+	}
+	
+	//---------------------------------------------------------------------------
+	// Private methods
+	//---------------------------------------------------------------------------
+
+	/**
+	 * Returns the cached agent contexts of a {@code view}. If bulk
+	 * domain functions are available, the contexts of all the agents
+	 * in the view are computed the first time the view is requested
+	 * 
+	 * @param view the view
+	 * @return the cached agent contexts of the view
+	 */
+	private Map<Long, AgentContext> getCachedContexts(View view) {
+		Map<Long, AgentContext> contexts;
+		
+		synchronized(this) {
+			contexts = this.agentContexts.get(view);
+			if(contexts != null) {
+				return contexts;
+			}
+			contexts = new HashMap<Long, AgentContext>();
+			this.agentContexts.put(view, contexts);
+		}
+		
+		if(this.batchDmFunctions != null) {
+			this.miss();
+			Map<Long, AgentContext> computed = 
+					this.batchDmFunctions.agentContextFunction(view);
+			synchronized(contexts) {
+				contexts.putAll(computed);
+			}
+		}
+		return contexts;
+	}
+	
+	/**
+	 * Returns the cached agent actions of a {@code viewTransition}. If bulk
+	 * domain functions are available, the actions of all the agents
+	 * are computed the first time the view transition is requested
+	 * 
+	 * @param viewTransition the view transition
+	 * @return the cached agent actions of the view transition
+	 */
+	private Map<Long, List<AgentAction>> getCachedActions(
+			ViewTransition viewTransition) {
+		
+		Map<Long, List<AgentAction>> actions;
+		
+		synchronized(this) {
+			actions = this.agentActions.get(viewTransition);
+			if(actions != null) {
+				return actions;
+			}
+			actions = new HashMap<Long, List<AgentAction>>();
+			this.agentActions.put(viewTransition, actions);
+		}
+		
+		if(this.batchDmFunctions != null) {
+			this.miss();
+			Map<Long, List<AgentAction>> computed = 
+					this.batchDmFunctions.agentActionFunction(viewTransition);
+			synchronized(actions) {
+				actions.putAll(computed);
+			}
+		}
+		return actions;
+	}
+	
+	/**
+	 * Returns the cached agent conflicts of a {@code view}. If bulk domain
+	 * functions are available, the conflicts of all the agents in the view
+	 * with respect to all the goals are computed the first time the view
+	 * is requested
+	 * 
+	 * @param view the view
+	 * @return the cached agent conflicts of the view
+	 */
+	private Map<Goal, Map<Long, Boolean>> getCachedConflicts(View view) {
+		Map<Goal, Map<Long, Boolean>> goalConflicts;
+		
+		synchronized(this) {
+			goalConflicts = this.agentConflicts.get(view);
+			if(goalConflicts != null) {
+				return goalConflicts;
+			}
+			goalConflicts = new HashMap<Goal, Map<Long, Boolean>>();
+			this.agentConflicts.put(view, goalConflicts);
+		}
+		
+		if(this.batchDmFunctions != null && this.goals != null) {
+			List<Long> agentIds = new ArrayList<Long>(view.getAgentIds());
+			boolean[][] conflicts = this.batchDmFunctions.
+					hasConflicts(view, agentIds, this.goals);
+			this.miss();
+			
+			synchronized(goalConflicts) {
+				for(int j=0; j < this.goals.size(); j++) {
+					Map<Long, Boolean> gConflicts = new HashMap<Long, Boolean>();
+					for(int i=0; i < agentIds.size(); i++) {
+						gConflicts.put(agentIds.get(i), conflicts[i][j]);
+					}
+					
+					/* Keep the conflicts computed meanwhile by other threads */
+					Map<Long, Boolean> computed = goalConflicts.get(this.goals.get(j));
+					if(computed != null) {
+						gConflicts.putAll(computed);
+					}
+					goalConflicts.put(this.goals.get(j), gConflicts);
+				}
+			}
+		}
+		return goalConflicts;
+	}
+
+	/**
+	 * Counts a call answered from cache
+	 */
+	private synchronized void hit() {
+		this.numHits++;
+	}
+	
+	/**
+	 * Counts a call to the decorated domain functions
+	 */
+	private synchronized void miss() {
+		this.numMisses++;
+	}
+
+	//---------------------------------------------------------------------------
+	// Static methods
+	//---------------------------------------------------------------------------
+
+	/**
+	 * Returns the given domain functions as bulk domain functions, just in
+	 * case they really compute the values of all the agents of a view at
+	 * once. Cached domain functions implement {@code BatchDomainFunctions}
+	 * whatever the domain functions they decorate, but they only compute
+	 * values in bulk if the decorated domain functions do so. Otherwise,
+	 * their bulk functions compute each agent separately, and hence they
+	 * should not be employed to retrieve the values of just a few agents
+	 *
+	 * @param dmFunctions the domain functions
+	 * @return the bulk domain functions, or <tt>null</tt> if the domain
+	 * 					functions do not compute values in bulk
+	 */
+	public static BatchDomainFunctions getBatch(DomainFunctions dmFunctions) {
+		if(dmFunctions instanceof CachedDomainFunctions &&
+				!((CachedDomainFunctions)dmFunctions).isBatch()) {
+			return null;
+		}
+		if(dmFunctions instanceof BatchDomainFunctions) {
+			return (BatchDomainFunctions)dmFunctions;
+		}
+		return null;
+	}
+
+	//---------------------------------------------------------------------------
+	// Getters
+	//---------------------------------------------------------------------------
+
+	/**
+	 * Returns the decorated domain functions
+	 *
+	 * @return the decorated domain functions
+	 */
+	public DomainFunctions getDomainFunctions() {
+		return this.dmFunctions;
+	}
+
+	/**
+	 * Returns <tt>true</tt> if the decorated domain functions
+	 * implement bulk domain functions
+	 *
+	 * @return <tt>true</tt> if the decorated domain functions
+	 * 					implement {@code BatchDomainFunctions}
+	 */
+	public boolean isBatch() {
+		return this.batchDmFunctions != null;
+	}
+
+	/**
+	 * Returns the number of calls that have been answered from cache
+	 *
+	 * @return the number of calls that have been answered from cache
+	 */
+	public long getNumHits() {
+		return this.numHits;
+	}
+
+	/**
+	 * Returns the number of calls that have been delegated
+	 * to the decorated domain functions
+	 *
+	 * @return the number of calls that have been delegated
+	 * 					to the decorated domain functions
+	 */
+	public long getNumMisses() {
+		return this.numMisses;
+	}
+
+	/**
+	 * Returns the ratio of calls that have been answered from cache
+	 *
+	 * @return the ratio of calls that have been answered from cache,
+	 * 					or 0 if no call has been performed yet
+	 */
+	public float getHitRate() {
+		long numCalls = this.numHits + this.numMisses;
+		if(numCalls == 0) {
+			return 0f;
+		}
+		return (float)this.numHits / numCalls;
+	}
+}
@@ -0,0 +1,190 @@
+package es.csic.iiia.nsm.config;
+
+import java.util.List;
+
+import es.csic.iiia.nsm.NormSynthesisMachine.NormGeneralisationMode;
+import es.csic.iiia.nsm.norm.evaluation.PerformanceBoundaryMode;
+import es.csic.iiia.nsm.norm.evaluation.PerformanceEstimator;
+import es.csic.iiia.nsm.norm.evaluation.PerformanceHistoryMode;
+
+/**
+ * Extended settings that decorate the basic settings of a domain that
+ * does not implement {@code ExtendedNormSynthesisSettings}. Basic settings
+ * are retrieved from the decorated settings, and extended settings take
+ * their typical values, under which the Norm Synthesis Machine behaves
+ * as it does without them (sequential perception, no refinement budgets
+ * and sliding window estimation of norms' performances)
+ *
+ * @author "Javier Morales (jmorales@iiia.csic.es)"
+ * @see NormSynthesisSettings
+ * @see ExtendedNormSynthesisSettings
+ */
+public class DefaultExtendedNormSynthesisSettings
+implements ExtendedNormSynthesisSettings {
+
+	//---------------------------------------------------------------------------
+	// Static attributes
+	//---------------------------------------------------------------------------
+
+	public static final PerformanceHistoryMode DEFAULT_HISTORY_MODE =
+			PerformanceHistoryMode.Full;
+	public static final PerformanceEstimator DEFAULT_ESTIMATOR =
+			PerformanceEstimator.SlidingWindow;
+	public static final PerformanceBoundaryMode DEFAULT_BOUNDARY_MODE =
+			PerformanceBoundaryMode.StandardDeviation;
+	public static final float DEFAULT_BOUNDARY_QUANTILE = 0.1f;
+	public static final int DEFAULT_NUM_SENSOR_PIPELINE_THREADS = 1;
+	public static final int DEFAULT_MAX_NUM_TICKS_IN_FLIGHT = 2;
+	public static final long DEFAULT_NORM_REFINEMENT_TIME_BUDGET = 0;
+	public static final int DEFAULT_NORM_REFINEMENT_OPERATIONS_BUDGET = 0;
+	public static final int DEFAULT_NORM_INTERSECTION_CACHE_SIZE = 65536;
+
+	//---------------------------------------------------------------------------
+	// Attributes
+	//---------------------------------------------------------------------------
+
+	private NormSynthesisSettings settings;	// The decorated settings
+
+	//---------------------------------------------------------------------------
+	// Static methods
+	//---------------------------------------------------------------------------
+
+	/**
+	 * Returns the extended settings of some {@code settings}. That is,
+	 * the settings themselves if they implement
+	 * {@code ExtendedNormSynthesisSettings}, and the settings decorated
+	 * with the default extended settings otherwise
+	 *
+	 * @param settings the settings of the norm synthesis machine
+	 * @return the extended settings, or <tt>null</tt> if
+	 * 					{@code settings} is <tt>null</tt>
+	 */
+	public static ExtendedNormSynthesisSettings getExtended(
+			NormSynthesisSettings settings) {
+
+		if(settings == null) {
+			return null;
+		}
+		if(settings instanceof ExtendedNormSynthesisSettings) {
+			return (ExtendedNormSynthesisSettings)settings;
+		}
+		return new DefaultExtendedNormSynthesisSettings(settings);
+	}
+
+	//---------------------------------------------------------------------------
+	// Methods
+	//---------------------------------------------------------------------------
+
+	/**
+	 * Constructor
+	 *
+	 * @param settings the basic settings to decorate
+	 */
+	public DefaultExtendedNormSynthesisSettings(NormSynthesisSettings settings) {
+		this.settings = settings;
+	}
+
+	/* Basic settings */
+
+	@Override
+	public String getNormSynthesisStrategy() {
+		return this.settings.getNormSynthesisStrategy();
+	}
+
+	@Override
+	public List<Goal> getSystemGoals() {
+		return this.settings.getSystemGoals();
+	}
+
+	@Override
+	public float getNormsDefaultUtility() {
+		return this.settings.getNormsDefaultUtility();
+	}
+
+	@Override
+	public float getNormEvaluationLearningRate() {
+		return this.settings.getNormEvaluationLearningRate();
+	}
+
+	@Override
+	public int getNormsPerformanceRangesSize() {
+		return this.settings.getNormsPerformanceRangesSize();
+	}
+
+	@Override
+	public NormGeneralisationMode getNormGeneralisationMode() {
+		return this.settings.getNormGeneralisationMode();
+	}
+
+	@Override
+	public int getNormGeneralisationStep() {
+		return this.settings.getNormGeneralisationStep();
+	}
+
+	@Override
+	public float getGeneralisationBoundary(Dimension dim, Goal goal) {
+		return this.settings.getGeneralisationBoundary(dim, goal);
+	}
+
+	@Override
+	public float getSpecialisationBoundary(Dimension dim, Goal goal) {
+		return this.settings.getSpecialisationBoundary(dim, goal);
+	}
+
+	@Override
+	public float getSpecialisationBoundaryEpsilon(Dimension dim, Goal goal) {
+		return this.settings.getSpecialisationBoundaryEpsilon(dim, goal);
+	}
+
+	@Override
+	public long getNumTicksOfStabilityForConvergence() {
+		return this.settings.getNumTicksOfStabilityForConvergence();
+	}
+
+	/* Extended settings */
+
+	@Override
+	public PerformanceHistoryMode getNormsPerformanceRangesHistoryMode() {
+		return DEFAULT_HISTORY_MODE;
+	}
+
+	@Override
+	public PerformanceEstimator getNormsPerformanceEstimator() {
+		return DEFAULT_ESTIMATOR;
+	}
+
+	@Override
+	public PerformanceBoundaryMode getNormsPerformanceBoundaryMode() {
+		return DEFAULT_BOUNDARY_MODE;
+	}
+
+	@Override
+	public float getNormsPerformanceBoundaryQuantile() {
+		return DEFAULT_BOUNDARY_QUANTILE;
+	}
+
+	@Override
+	public int getNumSensorPipelineThreads() {
+		return DEFAULT_NUM_SENSOR_PIPELINE_THREADS;
+	}
+
+	@Override
+	public int getMaxNumTicksInFlight() {
+		return DEFAULT_MAX_NUM_TICKS_IN_FLIGHT;
+	}
+
+	@Override
+	public long getNormRefinementTimeBudget() {
+		return DEFAULT_NORM_REFINEMENT_TIME_BUDGET;
+	}
+
+	@Override
+	public int getNormRefinementOperationsBudget() {
+		return DEFAULT_NORM_REFINEMENT_OPERATIONS_BUDGET;
+	}
+
+	@Override
+	public int getNormIntersectionCacheSize() {
+		return DEFAULT_NORM_INTERSECTION_CACHE_SIZE;
+	}
+}
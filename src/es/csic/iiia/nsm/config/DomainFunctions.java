@@ -22,6 +22,11 @@ import es.csic.iiia.nsm.perception.ViewTransition;
  * (2) 	conflict detection functions, that allow to define what situations
  * 			represent a conflict in the particular domain. 
  * 
+ * When the norm synthesis cycle is executed asynchronously, these functions
+ * are invoked from a background thread, concurrently with the simulator.
+ * Hence, they should only consume the views and the descriptions they
+ * receive, and not the current state of the scenario
+ * 
  * @author "Javier Morales (jmorales@iiia.csic.es)"
  *
  */
@@ -0,0 +1,131 @@
+package es.csic.iiia.nsm.config;
+
+import es.csic.iiia.nsm.norm.evaluation.PerformanceBoundaryMode;
+import es.csic.iiia.nsm.norm.evaluation.PerformanceEstimator;
+import es.csic.iiia.nsm.norm.evaluation.PerformanceHistoryMode;
+
+/**
+ * Settings of the Norm Synthesis Machine that, in addition to the basic
+ * settings of {@code NormSynthesisSettings}, tune the performance of the
+ * norm synthesis (performance ranges, parallel perception, asynchronous
+ * execution and norm refinement budgets). Implementing this interface
+ * is optional: the Norm Synthesis Machine detects it when it is created,
+ * and employs the defaults of {@code DefaultExtendedNormSynthesisSettings}
+ * for settings that do not implement it.
+ *
+ * @author "Javier Morales (jmorales@iiia.csic.es)"
+ * @see NormSynthesisSettings
+ * @see DefaultExtendedNormSynthesisSettings
+ */
+public interface ExtendedNormSynthesisSettings extends NormSynthesisSettings {
+	
+	/* Norm evaluation settings */
+	
+	/**
+	 * Returns the mode in which norms' performance ranges keep the history
+	 * of their values beyond their sliding window (Full, Downsampled,
+	 * Spilled or Off). Typically, it is set to Full
+	 * 
+	 * @return the history mode of norms' performance ranges
+	 * @see PerformanceHistoryMode
+	 */
+	public PerformanceHistoryMode getNormsPerformanceRangesHistoryMode();
+	
+	/**
+	 * Returns the estimator of the averages and standard deviations of
+	 * norms' performance ranges. Estimator <tt>SlidingWindow</tt> computes
+	 * them over the window of the performance ranges. Estimator 
+	 * <tt>ExponentiallyWeighted</tt> computes an exponentially weighted
+	 * moving average and variance whose learning rate is the norm
+	 * evaluation learning rate. Typically, it is set to SlidingWindow
+	 * 
+	 * @return the estimator of norms' performance ranges
+	 * @see PerformanceEstimator
+	 */
+	public PerformanceEstimator getNormsPerformanceEstimator();
+	
+	/**
+	 * Returns the mode in which norms' performance ranges compute their
+	 * top and bottom boundaries. Mode <tt>StandardDeviation</tt> computes
+	 * them as the average plus/minus the standard deviation. Mode 
+	 * <tt>Quantiles</tt> computes them as quantiles of the norms' scores,
+	 * estimated with bounded memory. Typically, it is set to StandardDeviation
+	 * 
+	 * @return the boundary mode of norms' performance ranges
+	 * @see PerformanceBoundaryMode
+	 */
+	public PerformanceBoundaryMode getNormsPerformanceBoundaryMode();
+	
+	/**
+	 * Returns the quantile of the bottom boundary of norms' performance
+	 * ranges when they are computed in mode <tt>Quantiles</tt>. The top
+	 * boundary is the quantile <tt>1 - q</tt>. Typically, it is set to 0.1 
+	 * (that is, boundaries are the p10 and the p90 of norms' scores)
+	 * 
+	 * @return the quantile of the bottom boundary
+	 */
+	public float getNormsPerformanceBoundaryQuantile();
+	
+	
+	/* Norm synthesis execution settings */
+	
+	/**
+	 * Returns the number of threads that norm synthesis strategies employ
+	 * to process the perceptions of the sensors in parallel (conflict
+	 * detection, agent contexts and norm compliance). Results are merged
+	 * in the order of the sensors, so that the norm synthesis evolves as in
+	 * sequential mode. Parallel mode requires thread-safe domain functions.
+	 * Typically, it is set to 1 (sequential mode)
+	 * 
+	 * @return the number of threads to process the perceptions of the sensors
+	 * @see es.csic.iiia.nsm.strategy.SensorPipeline
+	 */
+	public int getNumSensorPipelineThreads();
+	
+	/**
+	 * Returns the maximum number of time steps that may be pending in
+	 * the norm synthesis machine when the strategy is executed
+	 * asynchronously. If the simulator runs ahead of the norm synthesis
+	 * machine by this number of ticks, asynchronous executions block until
+	 * the oldest tick is finished. Typically, it is set to 2
+	 * 
+	 * @return the maximum number of ticks in flight
+	 * @see es.csic.iiia.nsm.NormSynthesisMachine#executeStrategyAsync(double)
+	 */
+	public int getMaxNumTicksInFlight();
+	
+	/**
+	 * Returns the time (in nanoseconds) that norm synthesis strategies 
+	 * may spend in norm refinement operations (specialisations and 
+	 * generalisations) during each tick. The pending operations that do
+	 * not fit in the budget are carried over to the next tick. A value of
+	 * 0 stands for no budget. Typically, it is set to 0
+	 * 
+	 * @return the time budget of norm refinement per tick, in nanoseconds
+	 * @see es.csic.iiia.nsm.strategy.RefinementScheduler
+	 */
+	public long getNormRefinementTimeBudget();
+	
+	/**
+	 * Returns the maximum number of norm refinement operations 
+	 * (specialisations and generalisations) that norm synthesis strategies
+	 * may perform during each tick. The pending operations that do not fit
+	 * in the budget are carried over to the next tick. A value of 0 stands
+	 * for no budget. Typically, it is set to 0
+	 * 
+	 * @return the maximum number of norm refinement operations per tick
+	 * @see es.csic.iiia.nsm.strategy.RefinementScheduler
+	 */
+	public int getNormRefinementOperationsBudget();
+	
+	/**
+	 * Returns the maximum number of norm intersections that norm synthesis
+	 * strategies keep in cache to detect generalisable norms. Once the cache
+	 * is full, the intersections that have not been used recently are evicted
+	 * (and computed again if required). Typically, it is set to 65536
+	 * 
+	 * @return the maximum number of norm intersections in cache
+	 * @see es.csic.iiia.nsm.norm.refinement.simon.NormIntersectionCache
+	 */
+	public int getNormIntersectionCacheSize();
+}
@@ -1,18 +1,22 @@
 package es.csic.iiia.nsm.metrics;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.BitSet;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 
 import es.csic.iiia.nsm.NormSynthesisMachine;
 import es.csic.iiia.nsm.config.Dimension;
-import es.csic.iiia.nsm.config.Goal;
 import es.csic.iiia.nsm.config.NormSynthesisSettings;
+import es.csic.iiia.nsm.net.norm.NormEventBuffer;
 import es.csic.iiia.nsm.net.norm.NormativeNetwork;
 import es.csic.iiia.nsm.norm.Norm;
-import es.csic.iiia.nsm.norm.NormativeSystem;
 import es.csic.iiia.nsm.norm.evaluation.Utility;
+import es.csic.iiia.nsm.norm.evaluation.UtilityColumns;
 import es.csic.iiia.nsm.norm.refinement.iron.GeneralisationReasoner;
+import es.csic.iiia.nsm.utilities.LatencyHistogram;
+import es.csic.iiia.nsm.utilities.OrderStatisticTree;
 import es.csic.iiia.nsm.utilities.SlidingWindowMetric;
 
 /**
@@ -21,7 +25,7 @@ import es.csic.iiia.nsm.utilities.SlidingWindowMetric;
  * @author "Javier Morales (jmorales@iiia.csic.es)"
  *
  */
-public class DefaultNormSynthesisMetrics implements NormSynthesisMetrics {
+public class DefaultNormSynthesisMetrics implements ExtendedNormSynthesisMetrics {
 
 	//---------------------------------------------------------------------------
 	// Attributes
@@ -34,14 +38,18 @@ public class DefaultNormSynthesisMetrics implements NormSynthesisMetrics {
 	protected GeneralisationReasoner 	genReasoner;			// to reason about norms
 	protected Utility nsUtility;
 	
+	/* Averages of the norms in the normative system, by dimension/goal slot */
+	private OrderStatisticTree[] nsScores;
+	private BitSet nsScoreChanges;		// norms whose averages have changed
+	private BitSet nsIds;							// ids of the norms in the normative system
+	
 	protected long numTicksWithoutNormChanges;
 	protected long numTicksWithoutNonRegulatedConflicts;
 	
 	protected List<Dimension> dimensions;
 	protected List<Norm> addedNorms;
 	protected List<Norm> removedNorms;
-	protected List<Norm> normsInNormativeNetwork;
-	protected List<Norm> normsInNormativeSystem;
+	protected NormEventBuffer normEvents;
 	protected List<Norm> normsAddedToNNThisCycle;
 	protected List<Norm> normsAddedToNSThisCycle;
 	protected List<Norm> normsRemovedFromNSThisCycle;
@@ -55,9 +63,16 @@ public class DefaultNormSynthesisMetrics implements NormSynthesisMetrics {
 	private double 	maxComputationTime;								// max strategy computation time
 	private double 	medianComputationTime;						// median computation time
 	private double 	totalComputationTime;							// overall computation time
+	private int			refinementBacklogSize;						// last refinement backlog
+	private int			maxRefinementBacklogSize;					// max refinement backlog
+	private long		numRefinementsExecuted;						// overall #refinements
+	private long		numRefinementsDeferred;						// overall #deferrals
+	private long		numNormIntersectionCacheHits;			// overall #cache hits
+	private long		numNormIntersectionCacheMisses;		// overall #cache misses
 	
 	private SlidingWindowMetric allComputationTimes;
 	private SlidingWindowMetric nonRegulatedConflictsWindow;
+	private Map<NormSynthesisPhase, LatencyHistogram> phaseTimes;
 
 	private boolean hasNonRegulatedConflictsThisTick;
 	
@@ -88,18 +103,30 @@ public class DefaultNormSynthesisMetrics implements NormSynthesisMetrics {
 		this.numNodesSynthesised = 0;
 		this.numNodesInMemory = 0;
 		this.numNodesVisited = 0;
+		this.refinementBacklogSize = 0;
+		this.maxRefinementBacklogSize = 0;
+		this.numRefinementsExecuted = 0;
+		this.numRefinementsDeferred = 0;
+		this.numNormIntersectionCacheHits = 0;
+		this.numNormIntersectionCacheMisses = 0;
 		
 		this.addedNorms = new ArrayList<Norm>();
 		this.removedNorms = new ArrayList<Norm>();
-		this.normsInNormativeNetwork = new ArrayList<Norm>();
-		this.normsInNormativeSystem  = new ArrayList<Norm>();
+		this.normEvents = new NormEventBuffer();
+		this.normativeNetwork.addListener(this.normEvents);
 		this.normsAddedToNNThisCycle = new ArrayList<Norm>();
 		this.normsAddedToNSThisCycle = new ArrayList<Norm>();
 		this.normsRemovedFromNSThisCycle = new ArrayList<Norm>();
 
-		int pSize = this.nsmSettings.getNormsPerformanceRangesSize();
-		this.nsUtility = new Utility(0, pSize, nsm.getNormEvaluationDimensions(),
-				nsmSettings.getSystemGoals());
+		this.nsUtility = new Utility(0, nsmSettings, nsm.getUtilityIndex());
+		this.nsScores = new OrderStatisticTree[
+		    nsm.getUtilityIndex().getNumSlots()];
+		for(int slot=0; slot<this.nsScores.length; slot++) {
+			this.nsScores[slot] = new OrderStatisticTree();
+		}
+		this.nsScoreChanges = this.normativeNetwork.getUtilityColumns().
+				trackChanges();
+		this.nsIds = new BitSet();
 		
 		this.genReasoner = new GeneralisationReasoner(nsm.getPredicatesDomains(),
 				nsm.getDomainFunctions());
@@ -107,6 +134,12 @@ public class DefaultNormSynthesisMetrics implements NormSynthesisMetrics {
 		this.allComputationTimes = new SlidingWindowMetric(50000);
 		this.nonRegulatedConflictsWindow = new SlidingWindowMetric(
 				nsmSettings.getNumTicksOfStabilityForConvergence());
+		
+		this.phaseTimes = new EnumMap<NormSynthesisPhase, LatencyHistogram>(
+				NormSynthesisPhase.class);
+		for(NormSynthesisPhase phase : NormSynthesisPhase.values()) {
+			this.phaseTimes.put(phase, new LatencyHistogram());
+		}
 	}
 	
 	/**
@@ -117,33 +150,15 @@ public class DefaultNormSynthesisMetrics implements NormSynthesisMetrics {
 		this.normsAddedToNSThisCycle.clear();
 		this.normsRemovedFromNSThisCycle.clear();
 				
-		/* Check norm additions to the normative network */
-		for(Norm norm : this.normativeNetwork.getNorms()) {
-			if(!this.normsInNormativeNetwork.contains(norm)) {
-				this.normsInNormativeNetwork.add(norm);
-				this.normsAddedToNNThisCycle.add(norm);
-			}
-		}
-		
-		/* Check norm additions to the normative system */
-		for(Norm norm : this.normativeNetwork.getNormativeSystem()) {
-			if(!this.normsInNormativeSystem.contains(norm)) {
-				this.normsInNormativeSystem.add(norm);
-				this.normsAddedToNSThisCycle.add(norm);
-			}
-		}
-		
-		/* Check norm removals from the normative system */
-		List<Norm> toRemove = new ArrayList<Norm>();
-		for(Norm norm : this.normsInNormativeSystem) {
-			if(!this.normativeNetwork.getNormativeSystem().contains(norm)) {
-				this.normsRemovedFromNSThisCycle.add(norm);
-				toRemove.add(norm);
-			}
-		}
-		for(Norm norm : toRemove) {
-			this.normsInNormativeSystem.remove(norm);
-		}
+		/* Collect the changes in the normative network
+		 * and the normative system since the last update */
+		this.normsAddedToNNThisCycle.addAll(
+				this.normEvents.getNormsAddedToNormativeNetwork());
+		this.normsAddedToNSThisCycle.addAll(
+				this.normEvents.getNormsAddedToNormativeSystem());
+		this.normsRemovedFromNSThisCycle.addAll(
+				this.normEvents.getNormsRemovedFromNormativeSystem());
+		this.normEvents.clear();
 		
 		
 		/* Metrics variables management */
@@ -178,28 +193,53 @@ public class DefaultNormSynthesisMetrics implements NormSynthesisMetrics {
 	}
 
 	/**
-	 * Updates the normative system metrics
+	 * Updates the normative system metrics. The utility of the normative
+	 * system is the median of the average scores of its norms. The averages
+	 * are kept in an order statistics tree for each dimension/goal, which
+	 * is only updated for the norms that have entered or left the normative
+	 * system this tick, and for the norms whose averages have changed
 	 */
 	private void updateNormativeSystemMetrics() {
-		NormativeSystem ns = this.normativeNetwork.getNormativeSystem();
+		UtilityColumns<Norm> columns = this.normativeNetwork.getUtilityColumns();
 		
-		for(Dimension dim : this.dimensions) {
-			for(Goal goal : this.nsmSettings.getSystemGoals()) {
-				List<Float> scores = new ArrayList<Float>();
-				for(Norm norm : ns) {
-					float score = (float) this.normativeNetwork.
-							getUtility(norm).getPerformanceRange(dim, goal).
-							getCurrentAverage();
-					
-					scores.add(score);
+		for(Norm norm : this.normsRemovedFromNSThisCycle) {
+			this.nsIds.clear(norm.getId());
+			for(OrderStatisticTree scores : this.nsScores) {
+				scores.remove(norm.getId());
+			}
+		}
+		for(Norm norm : this.normsAddedToNSThisCycle) {
+			this.nsIds.set(norm.getId());
+			this.nsScoreChanges.set(norm.getId());
+		}
+		
+		/* Update the averages of the norms in the normative system */
+		BitSet changes = this.nsScoreChanges;
+		for(int id = changes.nextSetBit(0); id >= 0; id = changes.nextSetBit(id+1)) {
+			if(!this.nsIds.get(id)) {
+				continue;
+			}
+			for(int slot=0; slot<this.nsScores.length; slot++) {
+				if(columns.contains(id)) {
+					this.nsScores[slot].put(id, 
+							columns.get(UtilityColumns.Series.Average, slot, id));
 				}
-				Collections.sort(scores);
-				if(!scores.isEmpty()) {
-					float medianSc = scores.get(scores.size()/2);
-					this.nsUtility.setScore(dim, goal, medianSc);
+				else {
+					this.nsScores[slot].remove(id);
 				}
 			}
 		}
+		changes.clear();
+		
+		/* Compute the median score of each dimension/goal */
+		for(int slot=0; slot<this.nsScores.length; slot++) {
+			OrderStatisticTree scores = this.nsScores[slot];
+			int numScores = scores.size();
+			if(numScores > 0) {
+				float medianSc = scores.getKthSmallest(numScores/2);
+				this.nsUtility.setScore(slot, medianSc);
+			}
+		}
 	}
 	
 	/**
@@ -440,6 +480,171 @@ public class DefaultNormSynthesisMetrics implements NormSynthesisMetrics {
 	public long getNumTicksOfStability() {
 		return this.numTicksWithoutNormChanges;
 	}
+	
+	/**
+	 * Adds the time (in nanoseconds) that the NSM has spent
+	 * in a {@code phase} of the norm synthesis cycle
+	 * 
+	 * @param phase the phase of the norm synthesis cycle
+	 * @param nanoTime the time spent in the phase, in nanoseconds
+	 */
+	@Override
+	public void addNewPhaseTime(NormSynthesisPhase phase, long nanoTime) {
+		this.phaseTimes.get(phase).addValue(nanoTime);
+	}
+	
+	/**
+	 * Returns the histogram of the times (in nanoseconds) that the NSM
+	 * has spent in a {@code phase} of the norm synthesis cycle
+	 * 
+	 * @param phase the phase of the norm synthesis cycle
+	 * @return the histogram of the times spent in the phase
+	 */
+	@Override
+	public LatencyHistogram getPhaseTimes(NormSynthesisPhase phase) {
+		return this.phaseTimes.get(phase);
+	}
+	
+	/**
+	 * Returns the time (in nanoseconds) at a given {@code percentile}
+	 * of the times spent in a {@code phase}
+	 * 
+	 * @param phase the phase of the norm synthesis cycle
+	 * @param percentile the percentile, between 0 and 100
+	 * @return the time at the given percentile, in nanoseconds
+	 */
+	@Override
+	public long getPhaseTimePercentile(NormSynthesisPhase phase,
+			double percentile) {
+		return this.phaseTimes.get(phase).getValueAtPercentile(percentile);
+	}
+	
+	/**
+	 * Returns the maximum time (in nanoseconds) spent in a {@code phase}
+	 * 
+	 * @param phase the phase of the norm synthesis cycle
+	 * @return the maximum time spent in the phase, in nanoseconds
+	 */
+	@Override
+	public long getMaxPhaseTime(NormSynthesisPhase phase) {
+		return this.phaseTimes.get(phase).getMax();
+	}
+
+	/**
+	 * Adds the outcome of the norm refinement operations scheduled
+	 * during the current tick
+	 * 
+	 * @param backlogSize the number of pending operations at the 
+	 * 					beginning of the refinement (including deferred ones)
+	 * @param numExecuted the number of operations executed
+	 * @param numDeferred the number of operations carried 
+	 * 					over to the next tick
+	 */
+	@Override
+	public void addRefinementSchedule(int backlogSize, int numExecuted,
+			int numDeferred) {
+		this.refinementBacklogSize = backlogSize;
+		this.maxRefinementBacklogSize = 
+				Math.max(this.maxRefinementBacklogSize, backlogSize);
+		this.numRefinementsExecuted += numExecuted;
+		this.numRefinementsDeferred += numDeferred;
+	}
+	
+	/**
+	 * Returns the number of norm refinement operations that
+	 * were pending at the beginning of the last refinement
+	 * 
+	 * @return the last size of the refinement backlog
+	 */
+	@Override
+	public int getRefinementBacklogSize() {
+		return this.refinementBacklogSize;
+	}
+	
+	/**
+	 * Returns the maximum number of norm refinement operations that have
+	 * been pending at the beginning of a refinement
+	 * 
+	 * @return the maximum size of the refinement backlog
+	 */
+	@Override
+	public int getMaxRefinementBacklogSize() {
+		return this.maxRefinementBacklogSize;
+	}
+	
+	/**
+	 * Returns the overall number of norm refinement operations
+	 * that have been executed
+	 * 
+	 * @return the overall number of refinement operations executed
+	 */
+	@Override
+	public long getNumRefinementsExecuted() {
+		return this.numRefinementsExecuted;
+	}
+	
+	/**
+	 * Returns the overall number of times that a norm refinement
+	 * operation has been carried over to the next tick
+	 * 
+	 * @return the overall number of deferred refinement operations
+	 */
+	@Override
+	public long getNumRefinementsDeferred() {
+		return this.numRefinementsDeferred;
+	}
+
+	/**
+	 * Sets the overall number of lookups of norm intersections
+	 * that have been answered from cache, and that have not
+	 * 
+	 * @param numHits the overall number of lookups answered from cache
+	 * @param numMisses the overall number of lookups not answered from cache
+	 */
+	@Override
+	public void setNormIntersectionCacheLookups(long numHits, long numMisses) {
+		this.numNormIntersectionCacheHits = numHits;
+		this.numNormIntersectionCacheMisses = numMisses;
+	}
+	
+	/**
+	 * Returns the overall number of lookups of norm
+	 * intersections that have been answered from cache
+	 * 
+	 * @return the overall number of norm intersection cache hits
+	 */
+	@Override
+	public long getNumNormIntersectionCacheHits() {
+		return this.numNormIntersectionCacheHits;
+	}
+	
+	/**
+	 * Returns the overall number of lookups of norm
+	 * intersections that have not been answered from cache
+	 * 
+	 * @return the overall number of norm intersection cache misses
+	 */
+	@Override
+	public long getNumNormIntersectionCacheMisses() {
+		return this.numNormIntersectionCacheMisses;
+	}
+	
+	/**
+	 * Returns the ratio of lookups of norm intersections
+	 * that have been answered from cache
+	 * 
+	 * @return the hit rate of the norm intersection cache, or 0
+	 * 					if no lookup has been performed yet
+	 */
+	@Override
+	public float getNormIntersectionCacheHitRate() {
+		long numLookups = this.numNormIntersectionCacheHits + 
+				this.numNormIntersectionCacheMisses;
+		if(numLookups == 0) {
+			return 0f;
+		}
+		return (float)this.numNormIntersectionCacheHits / numLookups;
+	}
 
 	/* (non-Javadoc)
 	 * @see es.csic.iiia.nsm.metrics.NormSynthesisMetrics#getNormativeSystemUtility()
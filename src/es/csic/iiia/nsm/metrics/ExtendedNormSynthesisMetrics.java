@@ -0,0 +1,139 @@
+package es.csic.iiia.nsm.metrics;
+
+import es.csic.iiia.nsm.utilities.LatencyHistogram;
+
+/**
+ * Metrics of the norm synthesis machine that, in addition to the metrics
+ * of {@code NormSynthesisMetrics}, measure the performance of the norm
+ * synthesis cycle, of norm refinement and of the caches of norm synthesis
+ * strategies. Implementing this interface is
+ * optional: the norm synthesis machine detects it when recording the times
+ * spent in each phase and the outcomes of refinement schedules, and does
+ * not record them for metrics that do not implement it
+ * 
+ * @author "Javier Morales (jmorales@iiia.csic.es)"
+ * @see NormSynthesisMetrics
+ * @see DefaultNormSynthesisMetrics
+ */
+public interface ExtendedNormSynthesisMetrics extends NormSynthesisMetrics {
+
+	/**
+	 * Adds the time (in nanoseconds) that the NSM has spent
+	 * in a {@code phase} of the norm synthesis cycle
+	 * 
+	 * @param phase the phase of the norm synthesis cycle
+	 * @param nanoTime the time spent in the phase, in nanoseconds
+	 * @see NormSynthesisPhase
+	 */
+	public void addNewPhaseTime(NormSynthesisPhase phase, long nanoTime);
+	
+	/**
+	 * Returns the histogram of the times (in nanoseconds) that the NSM
+	 * has spent in a {@code phase} of the norm synthesis cycle
+	 * 
+	 * @param phase the phase of the norm synthesis cycle
+	 * @return the histogram of the times spent in the phase
+	 * @see LatencyHistogram
+	 */
+	public LatencyHistogram getPhaseTimes(NormSynthesisPhase phase);
+	
+	/**
+	 * Returns the time (in nanoseconds) at a given {@code percentile}
+	 * (e.g., 50, 90, 99) of the times spent in a {@code phase}
+	 * 
+	 * @param phase the phase of the norm synthesis cycle
+	 * @param percentile the percentile, between 0 and 100
+	 * @return the time at the given percentile, in nanoseconds
+	 */
+	public long getPhaseTimePercentile(NormSynthesisPhase phase, 
+			double percentile);
+	
+	/**
+	 * Returns the maximum time (in nanoseconds) spent in a {@code phase}
+	 * 
+	 * @param phase the phase of the norm synthesis cycle
+	 * @return the maximum time spent in the phase, in nanoseconds
+	 */
+	public long getMaxPhaseTime(NormSynthesisPhase phase);
+	
+	/**
+	 * Adds the outcome of the norm refinement operations scheduled
+	 * during the current tick
+	 * 
+	 * @param backlogSize the number of pending operations at the 
+	 * 					beginning of the refinement (including deferred ones)
+	 * @param numExecuted the number of operations executed
+	 * @param numDeferred the number of operations carried 
+	 * 					over to the next tick
+	 * @see es.csic.iiia.nsm.strategy.RefinementScheduler
+	 */
+	public void addRefinementSchedule(int backlogSize, int numExecuted,
+			int numDeferred);
+	
+	/**
+	 * Returns the number of norm refinement operations that
+	 * were pending at the beginning of the last refinement
+	 * 
+	 * @return the last size of the refinement backlog
+	 */
+	public int getRefinementBacklogSize();
+	
+	/**
+	 * Returns the maximum number of norm refinement operations that have
+	 * been pending at the beginning of a refinement
+	 * 
+	 * @return the maximum size of the refinement backlog
+	 */
+	public int getMaxRefinementBacklogSize();
+	
+	/**
+	 * Returns the overall number of norm refinement operations
+	 * that have been executed
+	 * 
+	 * @return the overall number of refinement operations executed
+	 */
+	public long getNumRefinementsExecuted();
+	
+	/**
+	 * Returns the overall number of times that a norm refinement
+	 * operation has been carried over to the next tick
+	 * 
+	 * @return the overall number of deferred refinement operations
+	 */
+	public long getNumRefinementsDeferred();
+	
+	/**
+	 * Sets the overall number of lookups of norm intersections
+	 * that have been answered from cache, and that have not
+	 * 
+	 * @param numHits the overall number of lookups answered from cache
+	 * @param numMisses the overall number of lookups not answered from cache
+	 * @see es.csic.iiia.nsm.norm.refinement.simon.NormIntersectionCache
+	 */
+	public void setNormIntersectionCacheLookups(long numHits, long numMisses);
+	
+	/**
+	 * Returns the overall number of lookups of norm
+	 * intersections that have been answered from cache
+	 * 
+	 * @return the overall number of norm intersection cache hits
+	 */
+	public long getNumNormIntersectionCacheHits();
+	
+	/**
+	 * Returns the overall number of lookups of norm
+	 * intersections that have not been answered from cache
+	 * 
+	 * @return the overall number of norm intersection cache misses
+	 */
+	public long getNumNormIntersectionCacheMisses();
+	
+	/**
+	 * Returns the ratio of lookups of norm intersections
+	 * that have been answered from cache
+	 * 
+	 * @return the hit rate of the norm intersection cache, or 0
+	 * 					if no lookup has been performed yet
+	 */
+	public float getNormIntersectionCacheHitRate();
+}
@@ -0,0 +1,15 @@
+package es.csic.iiia.nsm.metrics;
+
+/**
+ * Phases of a norm synthesis cycle (a tick). The Norm Synthesis Machine
+ * measures the time that each norm synthesis strategy spends in each
+ * phase, as well as the time spent updating the metrics
+ * 
+ * @author "Javier Morales (jmorales@iiia.csic.es)"
+ * @see NormSynthesisMetrics
+ */
+public enum NormSynthesisPhase {
+	Perception, ConflictDetection, NormGeneration, NormApplicability,
+	NormCompliance, UtilityUpdate, NormRefinement, ControlListManagement,
+	MetricsUpdate;
+}
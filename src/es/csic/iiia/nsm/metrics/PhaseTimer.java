@@ -0,0 +1,64 @@
+package es.csic.iiia.nsm.metrics;
+
+import es.csic.iiia.nsm.NormSynthesisMachine;
+
+/**
+ * Measures the time that the norm synthesis machine spends in each phase
+ * of the norm synthesis cycle, and records it into the norm synthesis
+ * metrics. Phases are measured consecutively: each call to
+ * {@code stop(phase)} records the time elapsed since the previous call
+ * to {@code start()} or {@code stop(phase)}
+ * 
+ * @author "Javier Morales (jmorales@iiia.csic.es)"
+ * @see NormSynthesisPhase
+ * @see ExtendedNormSynthesisMetrics
+ */
+public class PhaseTimer {
+
+	//---------------------------------------------------------------------------
+	// Attributes
+	//---------------------------------------------------------------------------
+
+	private NormSynthesisMachine nsm;		// the norm synthesis machine
+	private long startTime;							// start time of the current phase
+
+	//---------------------------------------------------------------------------
+	// Methods
+	//---------------------------------------------------------------------------
+
+	/**
+	 * Constructor
+	 * 
+	 * @param nsm the norm synthesis machine
+	 */
+	public PhaseTimer(NormSynthesisMachine nsm) {
+		this.nsm = nsm;
+		this.startTime = System.nanoTime();
+	}
+
+	/**
+	 * Starts measuring a new phase
+	 */
+	public void start() {
+		this.startTime = System.nanoTime();
+	}
+
+	/**
+	 * Records the time elapsed in a {@code phase} since the last call to
+	 * {@code start()} or {@code stop()}, and starts measuring the next phase
+	 * 
+	 * @param phase the phase that has just finished
+	 */
+	public void stop(NormSynthesisPhase phase) {
+		long now = System.nanoTime();
+		NormSynthesisMetrics metrics = this.nsm.getNormSynthesisMetrics();
+
+		/* Metrics are not available before the NSM is setup, and
+		 * only extended metrics record phase times */
+		if(metrics instanceof ExtendedNormSynthesisMetrics) {
+			((ExtendedNormSynthesisMetrics)metrics).addNewPhaseTime(phase,
+					now - this.startTime);
+		}
+		this.startTime = now;
+	}
+}
@@ -1,9 +1,13 @@
 package es.csic.iiia.nsm.net.norm;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import es.csic.iiia.nsm.NormSynthesisMachine;
 
@@ -97,21 +101,38 @@ public class GeneralisationNetwork<T> extends NormSynthesisNetwork<T>{
 	 */
 	public List<T> getParents(T node) {
 		List<T> parents = new ArrayList<T>();
+		this.addParents(node, parents);
+		return parents;
+	}
+	
+	/**
+	 * Appends the parents of the given {@code node} to a {@code List}, so
+	 * that traversals of the network may reuse the same list (e.g., as an
+	 * explicit work stack) instead of creating a new list for each node
+	 * 
+	 * @param node the node
+	 * @param parents the list to which the parents are appended
+	 * @return the number of parents appended to the list
+	 */
+	public int addParents(T node, List<T> parents) {
+		Collection<NetworkEdge> outEdges = this.graph.getOutEdges(node);
+		int numParents = 0;
 
 		/* The node has no parents (no outgoing generalisation relationships) */
-		if(this.graph.getOutEdges(node) == null) {
-			return parents;
+		if(outEdges == null) {
+			return numParents;
 		}
 		/* Check relationships with other nodes */
-		for(NetworkEdge edge : this.graph.getOutEdges(node)) {
+		for(NetworkEdge edge : outEdges) {
 			
 			/* If it is a generalisation relationship, retrieve
 			 * its destination (the parent, general node) */ 
 			if(edge.getRelationship() == NetworkEdgeType.GENERALISATION) {
 				parents.add(this.graph.getDest(edge));
+				numParents++;
 			}
 		}
-		return parents;
+		return numParents;
 	}
 
 	/**
@@ -128,22 +149,39 @@ public class GeneralisationNetwork<T> extends NormSynthesisNetwork<T>{
 	 */
 	public List<T> getChildren(T node) {
 		List<T> children = new ArrayList<T>();
+		this.addChildren(node, children);
+		return children;
+	}
+	
+	/**
+	 * Appends the children of the given {@code node} to a {@code List}, so
+	 * that traversals of the network may reuse the same list (e.g., as an
+	 * explicit work stack) instead of creating a new list for each node
+	 * 
+	 * @param node the node
+	 * @param children the list to which the children are appended
+	 * @return the number of children appended to the list
+	 */
+	public int addChildren(T node, List<T> children) {
+		Collection<NetworkEdge> inEdges = this.graph.getInEdges(node);
+		int numChildren = 0;
 
 		/* The node has no children (no incoming generalisation relationships) */
-		if(this.graph.getInEdges(node) == null) {
-			return children;
+		if(inEdges == null) {
+			return numChildren;
 		}
 
 		/* Check relationships with other nodes */
-		for(NetworkEdge edge : this.graph.getInEdges(node))	 {
+		for(NetworkEdge edge : inEdges)	 {
 			
 			/* If it is a generalisation relationship, retrieve
 			 * its source (the child, specific node) */ 
 			if(edge.getRelationship() == NetworkEdgeType.GENERALISATION) {
 				children.add(this.graph.getSource(edge));
+				numChildren++;
 			}
 		}
-		return children;
+		return numChildren;
 	}
 	
 
@@ -160,14 +198,24 @@ public class GeneralisationNetwork<T> extends NormSynthesisNetwork<T>{
 	public List<T> getBrothers(T node) {
 		List<T> brothers = new ArrayList<T>();
 		List<T> parents = this.getParents(node);
+		if(parents.isEmpty()) {
+			return brothers;
+		}
+		
+		/* Brothers are deduplicated by means of a set, since 
+		 * they may be children of more than one parent */
+		Set<T> added = Collections.newSetFromMap(new IdentityHashMap<T, Boolean>());
+		int genLevel = this.getGeneralisationLevel(node);
+		List<T> children = new ArrayList<T>();
 
 		for(T parent : parents) {
-			List<T> children = this.getChildren(parent);
+			children.clear();
+			this.addChildren(parent, children);
 			
 			for(T child : children) {
-				if(!child.equals(node) && !brothers.contains(child)
-						&& this.getGeneralisationLevel(node) == 
-						this.getGeneralisationLevel(child)) {
+				if(!child.equals(node) && 
+						this.getGeneralisationLevel(child) == genLevel &&
+						added.add(child)) {
 					
 					brothers.add(child);
 				}
@@ -189,11 +237,13 @@ public class GeneralisationNetwork<T> extends NormSynthesisNetwork<T>{
 	public List<T> getBrothers(T node, T parent) {
 		List<T> brothers = new ArrayList<T>();
 		List<T> children = this.getChildren(parent);
+		Set<T> added = Collections.newSetFromMap(new IdentityHashMap<T, Boolean>());
+		int genLevel = this.getGeneralisationLevel(node);
 		
 		for(T child : children) {
-			if(!child.equals(node) && !brothers.contains(child)
-					&& this.getGeneralisationLevel(node) == 
-					this.getGeneralisationLevel(child)) {
+			if(!child.equals(node) && 
+					this.getGeneralisationLevel(child) == genLevel &&
+					added.add(child)) {
 				
 				brothers.add(child);
 			}
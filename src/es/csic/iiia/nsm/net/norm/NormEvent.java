@@ -0,0 +1,119 @@
+package es.csic.iiia.nsm.net.norm;
+
+import es.csic.iiia.nsm.norm.Norm;
+
+/**
+ * A lifecycle event of a norm in the normative network. The normative
+ * network notifies its {@code NormEventListener}s each time a norm is
+ * created, enters or leaves the normative system, starts or stops being
+ * represented, is generalised, specialised, substituted or discarded,
+ * or is removed
+ * 
+ * @author "Javier Morales (jmorales@iiia.csic.es)"
+ * @see NormEventListener
+ * @see NormEventBuffer
+ */
+public class NormEvent {
+
+	/**
+	 * Types of lifecycle events. Type <tt>Created</tt> stands for a norm
+	 * added to the normative network. Types <tt>Activated</tt> and 
+	 * <tt>Deactivated</tt> stand for a norm entering and leaving the normative
+	 * system, respectively. Types <tt>Represented</tt> and 
+	 * <tt>Unrepresented</tt> stand for a norm that starts and stops being 
+	 * represented in the network (namely, being active or having a
+	 * represented parent), respectively. Type <tt>Generalised</tt> stands 
+	 * for a norm that has been generalised into a parent norm. Types 
+	 * <tt>Specialised</tt>, <tt>Substituted</tt> and <tt>Discarded</tt> stand
+	 * for a norm whose state has been set to {@code SPECIALISED}, 
+	 * {@code SUBSTITUTED} or {@code DISCARDED}. Type <tt>Removed</tt> stands
+	 * for a norm removed from the normative network. An active norm
+	 * is deactivated before being removed
+	 * 
+	 * @author "Javier Morales (jmorales@iiia.csic.es)"
+	 */
+	public enum Type {
+		Created, Activated, Deactivated, Represented, Unrepresented, 
+		Generalised, Specialised, Substituted, Discarded, Removed;
+	}
+	
+	//---------------------------------------------------------------------------
+	// Attributes
+	//---------------------------------------------------------------------------
+	
+	private Type type;							// the type of the event
+	private Norm norm;							// the norm 
+	private Norm relatedNorm;				// the parent of a generalised norm
+	private NetworkNodeState state;	// the state of the norm after the event
+	
+	//---------------------------------------------------------------------------
+	// Methods
+	//---------------------------------------------------------------------------
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param type the type of the event
+	 * @param norm the norm
+	 * @param relatedNorm the norm related to the event (e.g., the parent
+	 * 					of a generalised norm), or <tt>null</tt>
+	 * @param state the state of the norm after the event. In events of type
+	 * 					<tt>Deactivated</tt>, it stands for the reason of the 
+	 * 					deactivation
+	 */
+	public NormEvent(Type type, Norm norm, Norm relatedNorm,
+			NetworkNodeState state) {
+		this.type = type;
+		this.norm = norm;
+		this.relatedNorm = relatedNorm;
+		this.state = state;
+	}
+	
+	/**
+	 * Returns the type of the event
+	 * 
+	 * @return the type of the event
+	 */
+	public Type getType() {
+		return this.type;
+	}
+	
+	/**
+	 * Returns the norm of the event
+	 * 
+	 * @return the norm of the event
+	 */
+	public Norm getNorm() {
+		return this.norm;
+	}
+	
+	/**
+	 * Returns the norm related to the event (e.g., the parent
+	 * of a generalised norm)
+	 * 
+	 * @return the related norm, or <tt>null</tt> if there is none
+	 */
+	public Norm getRelatedNorm() {
+		return this.relatedNorm;
+	}
+	
+	/**
+	 * Returns the state of the norm after the event. In events of 
+	 * type <tt>Deactivated</tt>, it stands for the reason of the 
+	 * deactivation (e.g., <tt>SPECIALISED</tt>)
+	 * 
+	 * @return the state of the norm after the event
+	 */
+	public NetworkNodeState getState() {
+		return this.state;
+	}
+	
+	/**
+	 * Returns a description of the event
+	 * 
+	 * @return a description of the event
+	 */
+	public String toString() {
+		return this.type + "(" + this.norm + ")";
+	}
+}
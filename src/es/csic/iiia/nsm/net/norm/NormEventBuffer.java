@@ -0,0 +1,223 @@
+package es.csic.iiia.nsm.net.norm;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import es.csic.iiia.nsm.norm.Norm;
+
+/**
+ * A buffer of the lifecycle events of the norms in a normative network
+ * during a period of time (typically, a tick). Besides the events, the
+ * buffer keeps the net changes of the normative system and of the
+ * represented norms during the period, so that a norm that enters and
+ * leaves the normative system (or starts and stops being represented,
+ * or vice versa) in the same period is not considered a change.
+ * Consumers (strategies, metrics, etc.) subscribe a buffer to the normative
+ * network, read it once per tick and then clear it, so that they process
+ * the changes of the tick instead of re-diffing the whole network
+ * 
+ * @author "Javier Morales (jmorales@iiia.csic.es)"
+ * @see NormativeNetwork#addListener(NormEventListener)
+ */
+public class NormEventBuffer implements NormEventListener {
+
+	//---------------------------------------------------------------------------
+	// Attributes
+	//---------------------------------------------------------------------------
+	
+	private List<NormEvent> events;								// events in the buffer
+	private List<Norm> normsAddedToNN;						// norms created
+	private Map<Norm, Boolean> normsChangedInNS;	// true if added, false if removed
+	private Map<Norm, Boolean> normsChangedInRepr;	// true if now represented
+	
+	//---------------------------------------------------------------------------
+	// Methods
+	//---------------------------------------------------------------------------
+	
+	/**
+	 * Constructor
+	 */
+	public NormEventBuffer() {
+		this.events = new ArrayList<NormEvent>();
+		this.normsAddedToNN = new ArrayList<Norm>();
+		this.normsChangedInNS = new LinkedHashMap<Norm, Boolean>();
+		this.normsChangedInRepr = new LinkedHashMap<Norm, Boolean>();
+	}
+	
+	/**
+	 * Adds an event to the buffer
+	 * 
+	 * @param event the event
+	 */
+	@Override
+	public void normEvent(NormEvent event) {
+		Norm norm = event.getNorm();
+		this.events.add(event);
+		
+		switch(event.getType()) {
+		case Created:
+			this.normsAddedToNN.add(norm);
+			break;
+			
+		case Activated:
+			this.change(this.normsChangedInNS, norm, true);
+			break;
+			
+		case Deactivated:
+			this.change(this.normsChangedInNS, norm, false);
+			break;
+			
+		case Represented:
+			this.change(this.normsChangedInRepr, norm, true);
+			break;
+			
+		case Unrepresented:
+		case Removed:
+			this.change(this.normsChangedInRepr, norm, false);
+			break;
+			
+		default:
+			break;
+		}
+	}
+	
+	/**
+	 * Returns the events in the buffer, in the order they were notified
+	 * 
+	 * @return the events in the buffer
+	 */
+	public List<NormEvent> getEvents() {
+		return this.events;
+	}
+	
+	/**
+	 * Returns the norms of the events of a given {@code type}
+	 * 
+	 * @param type the type of the events
+	 * @return a {@code List} with the norms of the events
+	 */
+	public List<Norm> getNorms(NormEvent.Type type) {
+		List<Norm> norms = new ArrayList<Norm>();
+		for(NormEvent event : this.events) {
+			if(event.getType() == type) {
+				norms.add(event.getNorm());
+			}
+		}
+		return norms;
+	}
+	
+	/**
+	 * Returns the norms that have been added to the normative network
+	 * 
+	 * @return the norms added to the normative network
+	 */
+	public List<Norm> getNormsAddedToNormativeNetwork() {
+		return this.normsAddedToNN;
+	}
+	
+	/**
+	 * Returns the norms that have entered the normative system (and
+	 * have not left it afterwards)
+	 * 
+	 * @return the norms added to the normative system
+	 */
+	public List<Norm> getNormsAddedToNormativeSystem() {
+		return this.getChanged(this.normsChangedInNS, true);
+	}
+	
+	/**
+	 * Returns the norms that have left the normative system (and
+	 * have not entered it again afterwards)
+	 * 
+	 * @return the norms removed from the normative system
+	 */
+	public List<Norm> getNormsRemovedFromNormativeSystem() {
+		return this.getChanged(this.normsChangedInNS, false);
+	}
+	
+	/**
+	 * Returns the norms that have started being represented in the
+	 * normative network (and have not stopped afterwards)
+	 * 
+	 * @return the norms that are now represented
+	 * @see NormativeNetwork#isRepresented(Norm)
+	 */
+	public List<Norm> getNormsNowRepresented() {
+		return this.getChanged(this.normsChangedInRepr, true);
+	}
+	
+	/**
+	 * Returns the norms that have stopped being represented in the
+	 * normative network, or have been removed from it (and have not
+	 * started being represented again afterwards)
+	 * 
+	 * @return the norms that are no longer represented
+	 * @see NormativeNetwork#isRepresented(Norm)
+	 */
+	public List<Norm> getNormsNoLongerRepresented() {
+		return this.getChanged(this.normsChangedInRepr, false);
+	}
+	
+	/**
+	 * Returns <tt>true</tt> if the buffer contains no events
+	 * 
+	 * @return <tt>true</tt> if the buffer contains no events
+	 */
+	public boolean isEmpty() {
+		return this.events.isEmpty();
+	}
+	
+	/**
+	 * Removes all the events from the buffer
+	 */
+	public void clear() {
+		this.events.clear();
+		this.normsAddedToNN.clear();
+		this.normsChangedInNS.clear();
+		this.normsChangedInRepr.clear();
+	}
+	
+	//---------------------------------------------------------------------------
+	// Private methods
+	//---------------------------------------------------------------------------
+	
+	/**
+	 * Registers a norm that enters or leaves a set of norms (the normative
+	 * system or the represented norms). If the norm did the opposite change
+	 * before, both changes cancel out 
+	 * 
+	 * @param changes the changes of the set of norms
+	 * @param norm the norm
+	 * @param added <tt>true</tt> if the norm enters the set
+	 */
+	private void change(Map<Norm, Boolean> changes, Norm norm, boolean added) {
+		Boolean previous = changes.get(norm);
+		if(previous != null && previous != added) {
+			changes.remove(norm);
+		}
+		else {
+			changes.put(norm, added);
+		}
+	}
+	
+	/**
+	 * Returns the norms that have entered or left a set of norms
+	 * 
+	 * @param changes the changes of the set of norms
+	 * @param added <tt>true</tt> to retrieve the norms that have entered 
+	 * 					the set, <tt>false</tt> to retrieve the norms that
+	 * 					have left it
+	 * @return a {@code List} with the norms
+	 */
+	private List<Norm> getChanged(Map<Norm, Boolean> changes, boolean added) {
+		List<Norm> norms = new ArrayList<Norm>();
+		for(Map.Entry<Norm, Boolean> entry : changes.entrySet()) {
+			if(entry.getValue() == added) {
+				norms.add(entry.getKey());
+			}
+		}
+		return norms;
+	}
+}
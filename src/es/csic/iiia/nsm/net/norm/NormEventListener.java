@@ -0,0 +1,17 @@
+package es.csic.iiia.nsm.net.norm;
+
+/**
+ * A listener of the lifecycle events of the norms in a normative network
+ * 
+ * @author "Javier Morales (jmorales@iiia.csic.es)"
+ * @see NormativeNetwork#addListener(NormEventListener)
+ */
+public interface NormEventListener {
+
+	/**
+	 * Notifies a lifecycle event of a norm
+	 * 
+	 * @param event the event
+	 */
+	public void normEvent(NormEvent event);
+}
@@ -12,6 +12,7 @@ import es.csic.iiia.nsm.config.Dimension;
 import es.csic.iiia.nsm.config.Goal;
 import es.csic.iiia.nsm.config.NormSynthesisSettings;
 import es.csic.iiia.nsm.norm.evaluation.Utility;
+import es.csic.iiia.nsm.norm.evaluation.UtilityIndex;
 
 /**
  * A network is a directed graph whose nodes stand for nodes
@@ -43,6 +44,7 @@ public class NormSynthesisNetwork<T> {
 	protected Map<T, T> index;											// index of nodes
 	protected Map<T, NetworkNodeState> states;			// state of each node
 	protected Map<T, Utility> utilities;						// utilities of each node
+	protected Utility defaultUtility;								// utility of unevaluated nodes
 	
 	//---------------------------------------------------------------------------
 	// Methods
@@ -59,6 +61,11 @@ public class NormSynthesisNetwork<T> {
 		this.graph = new DirectedSparseMultigraph<T,NetworkEdge>();
 		this.states = new HashMap<T, NetworkNodeState>();
 		this.utilities = new HashMap<T, Utility>();
+		
+		/* Nodes share an immutable default utility until they are evaluated */
+		this.defaultUtility = Utility.createImmutable(
+				nsmSettings.getNormsDefaultUtility(), nsmSettings,
+				nsm.getUtilityIndex());
 	}
 
 	/**
@@ -70,27 +77,27 @@ public class NormSynthesisNetwork<T> {
 		if(!this.graph.containsVertex(node)) {
 			this.graph.addVertex(node);
 			
-			/* Add node to the set of nodes (no repetitions) */
+			/* Add node to the set of nodes (no repetitions). Its utility is
+			 * created the first time that its scores change */
 			this.index.put(node, node);
-			
-			/* Set node utility */
-			float normsDefUtility = nsmSettings.getNormsDefaultUtility();
-			int perfRangeSz = nsmSettings.getNormsPerformanceRangesSize();
-			List<Dimension> dims = this.nsm.getNormEvaluationDimensions();
-			List<Goal> goals = this.nsmSettings.getSystemGoals();
-			Utility utility = new Utility(normsDefUtility, perfRangeSz, dims, goals);
-			this.utilities.put(node, utility);
 		}
 	}
 
 	/**
-	 * Removes a given {@code node} from the network if it exists yet
+	 * Removes a given {@code node} from the network if it exists yet,
+	 * and releases the resources held by its utility
 	 * 
 	 * @param node the node to remove
+	 * @see Utility#dispose()
 	 */
 	public void remove(T node) {
 		if(this.graph.containsVertex(node)) {
 			this.graph.removeVertex(node);
+			
+			Utility utility = this.utilities.get(node);
+			if(utility != null) {
+				utility.dispose();
+			}
 		}
 	}	
 
@@ -166,14 +173,32 @@ public class NormSynthesisNetwork<T> {
 	}
 	
 	/**
-	 * Returns the utility of a given {@code node} in the network
+	 * Returns the utility of a given {@code node} in the network. If the
+	 * node has not been evaluated yet, it returns the immutable default
+	 * utility shared by all the unevaluated nodes
 	 * 
 	 * @param node the node
-	 * @return an object {@code Utility}, the utility of the node
+	 * @return an object {@code Utility}, the utility of the node, or
+	 * 					<tt>null</tt> if the node has never been added to the network
 	 * @see Utility
 	 */
 	public Utility getUtility(T node) {
-		return this.utilities.get(node);
+		Utility utility = this.utilities.get(node);
+		if(utility == null && this.index.containsKey(node)) {
+			return this.defaultUtility;
+		}
+		return utility;
+	}
+
+	/**
+	 * Returns the dense indices of the dimensions and goals of
+	 * the utilities of the nodes in the network
+	 * 
+	 * @return the dense indices of the dimensions and goals
+	 * @see UtilityIndex
+	 */
+	public UtilityIndex getUtilityIndex() {
+		return this.nsm.getUtilityIndex();
 	}
 
 	/**
@@ -207,7 +232,34 @@ public class NormSynthesisNetwork<T> {
 	 * @param score the new score
 	 */
 	public void setScore(T node, Dimension dim, Goal goal, float score) {
-		this.utilities.get(node).setScore(dim, goal, score);
+		this.getMutableUtility(node).setScore(dim, goal, score);
+	}
+
+	/**
+	 * Resets the utility of a given {@code node}, setting all its
+	 * scores to the default utility
+	 * 
+	 * @param node the node
+	 * @see Utility#reset()
+	 */
+	public void resetUtility(T node) {
+		Utility utility = this.utilities.get(node);
+		if(utility != null) {
+			utility.reset();
+		}
+	}
+
+	/**
+	 * Sets the new score in the utility of a given {@code node} for a given
+	 * dimension/goal slot
+	 * 
+	 * @param node the node
+	 * @param slot the slot of the dimension/goal of the score
+	 * @param score the new score
+	 * @see UtilityIndex
+	 */
+	public void setScore(T node, int slot, float score) {
+		this.getMutableUtility(node).setScore(slot, score);
 	}
 
 	/**
@@ -230,5 +282,27 @@ public class NormSynthesisNetwork<T> {
 	public boolean contains(T n)	{
 		return this.graph.containsVertex(n);
 	}
+
+	//---------------------------------------------------------------------------
+	// Private methods
+	//---------------------------------------------------------------------------
+
+	/**
+	 * Returns the utility of a given {@code node}, creating it if
+	 * the node has not been evaluated yet
+	 * 
+	 * @param node the node
+	 * @return the utility of the node, or <tt>null</tt> if the node
+	 * 					has never been added to the network
+	 */
+	private Utility getMutableUtility(T node) {
+		Utility utility = this.utilities.get(node);
+		if(utility == null && this.index.containsKey(node)) {
+			utility = new Utility(nsmSettings.getNormsDefaultUtility(), 
+					nsmSettings, nsm.getUtilityIndex());
+			this.utilities.put(node, utility);
+		}
+		return utility;
+	}
 	
 }
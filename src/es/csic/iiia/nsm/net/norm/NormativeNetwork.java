@@ -5,18 +5,26 @@
 package es.csic.iiia.nsm.net.norm;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import es.csic.iiia.nsm.NormSynthesisMachine;
 import es.csic.iiia.nsm.agent.AgentAction;
+import es.csic.iiia.nsm.agent.language.PredicatesDomains;
 import es.csic.iiia.nsm.agent.language.SetOfPredicatesWithTerms;
+import es.csic.iiia.nsm.config.Dimension;
+import es.csic.iiia.nsm.config.Goal;
 import es.csic.iiia.nsm.norm.Norm;
+import es.csic.iiia.nsm.norm.NormKey;
 import es.csic.iiia.nsm.norm.NormModality;
 import es.csic.iiia.nsm.norm.NormativeSystem;
 import es.csic.iiia.nsm.norm.evaluation.Utility;
+import es.csic.iiia.nsm.norm.evaluation.UtilityColumns;
 import es.csic.iiia.nsm.norm.refinement.lion.NormAttribute;
 
 /**
@@ -40,6 +48,34 @@ import es.csic.iiia.nsm.norm.refinement.lion.NormAttribute;
  */
 public class NormativeNetwork extends GeneralisationNetwork<Norm> {
 
+	/**
+	 * Visits the ancestors of a norm during a traversal of the
+	 * normative network
+	 * 
+	 * @author "Javier Morales (jmorales@iiia.csic.es)"
+	 * @see NormativeNetwork#visitAncestors(Norm, BitSet, AncestorVisitor)
+	 */
+	public interface AncestorVisitor {
+		
+		/**
+		 * Enters a norm, before its parents are visited
+		 * 
+		 * @param norm the norm
+		 * @param distance the number of generalisation relationships
+		 * 				between the norm and the norm the traversal started from
+		 * @return <tt>true</tt> if the parents of the norm must be visited
+		 */
+		public boolean enter(Norm norm, int distance);
+		
+		/**
+		 * Leaves a norm, once all its parents have been visited. It is
+		 * only called for those norms whose parents have been visited
+		 * 
+		 * @param norm the norm
+		 */
+		public void leave(Norm norm);
+	}
+	
 	//---------------------------------------------------------------------------
 	// Static attributes
 	//---------------------------------------------------------------------------
@@ -53,6 +89,10 @@ public class NormativeNetwork extends GeneralisationNetwork<Norm> {
 	private OmegaFunction omegaFunction;								// the omega function
 //	private Map<Integer, Norm> ids;											// nodes identifiers	
 	private Map<Norm, List<NormAttribute>> attributes; 	// norm attributes
+	private List<NormEventListener> listeners;					// norm event listeners
+	private UtilityColumns<Norm> utilityColumns;				// norms' performances by id
+	private SubsumptionIndex subsumptionIndex;					// norms' satisfaction index
+	private Map<NormKey, Norm> contents;								// norms, by content
 	
 	//---------------------------------------------------------------------------
 	// Methods
@@ -66,6 +106,12 @@ public class NormativeNetwork extends GeneralisationNetwork<Norm> {
 		
 //		this.ids = new HashMap<Integer, Norm>();
 		this.attributes = new HashMap<Norm, List<NormAttribute>>();
+		this.listeners = new ArrayList<NormEventListener>();
+		this.utilityColumns = new UtilityColumns<Norm>(
+				nsm.getUtilityIndex().getNumSlots());
+		this.subsumptionIndex = new SubsumptionIndex(this,
+				nsm.getPredicatesDomains());
+		this.contents = new HashMap<NormKey, Norm>();
 	}
 
 	/**
@@ -80,11 +126,79 @@ public class NormativeNetwork extends GeneralisationNetwork<Norm> {
 		if(!this.contains(norm)) {
 			norm.setId(++NORM_COUNT);
 			super.add(norm);
+			this.contents.put(new NormKey(norm), norm);
 
 			/* Index norm for fast access */
 //			this.ids.put(norm.getId(), norm);
 			this.attributes.put(norm, new ArrayList<NormAttribute>());
+			this.utilityColumns.add(norm, this.getUtility(norm));
+			this.subsumptionIndex.add(norm);
+			this.fireEvent(NormEvent.Type.Created, norm, null);
+		}
+	}
+
+	/**
+	 * Removes a given {@code norm} from the normative network
+	 * if it exists yet. If the norm is active, it leaves the
+	 * normative system before being removed
+	 * 
+	 * @param norm the norm to remove
+	 */
+	@Override
+	public void remove(Norm norm) {
+		if(!this.graph.containsVertex(norm)) {
+			return;
+		}
+		if(!this.listeners.isEmpty() && 
+				this.getNormativeSystem().contains(norm)) {
+			this.fireEvent(NormEvent.Type.Deactivated, norm, null);
+		}
+		this.fireEvent(NormEvent.Type.Removed, norm, null);
+		
+		/* The children of the norm may not be represented anymore */
+		List<Norm> children = this.getChildren(norm);
+		super.remove(norm);
+		NormKey key = new NormKey(norm);
+		if(this.contents.get(key) == norm) {
+			this.contents.remove(key);
+		}
+		this.utilityColumns.remove(norm);
+		this.subsumptionIndex.remove(norm);
+		for(Norm child : children) {
+			this.subsumptionIndex.update(child);
 		}
+		this.omegaFunction.update(norm, this);
+	}
+
+	/**
+	 * Sets the new score in the utility of a given {@code norm} for a given
+	 * {@code Dimension} and {@code Goal}, and updates the columnar store
+	 * of norms' performances
+	 * 
+	 * @param norm the norm
+	 * @param dim the dimension of the score (effectiveness/necessity)
+	 * @param goal the goal of the score
+	 * @param score the new score
+	 */
+	@Override
+	public void setScore(Norm norm, Dimension dim, Goal goal, float score) {
+		this.setScore(norm, this.getUtilityIndex().getSlot(dim, goal), score);
+	}
+
+	/**
+	 * Sets the new score in the utility of a given {@code norm} for a given
+	 * dimension/goal slot, and updates the columnar store of norms'
+	 * performances
+	 * 
+	 * @param norm the norm
+	 * @param slot the slot of the dimension/goal of the score
+	 * @param score the new score
+	 */
+	@Override
+	public void setScore(Norm norm, int slot, float score) {
+		super.setScore(norm, slot, score);
+		this.utilityColumns.update(norm, slot,
+				this.getUtility(norm).getPerformanceRange(slot));
 	}
 	
 	/**
@@ -213,10 +327,110 @@ public class NormativeNetwork extends GeneralisationNetwork<Norm> {
 	 */
 	@Override
 	public void setState(Norm norm, NetworkNodeState state) {
+		if(this.listeners.isEmpty()) {
+			super.setState(norm, state);
+			this.subsumptionIndex.update(norm);
+			this.omegaFunction.update(norm, this);
+			return;
+		}
+		
+		boolean wasInNS = this.getNormativeSystem().contains(norm);
 		super.setState(norm, state);
+		this.subsumptionIndex.update(norm);
 		this.omegaFunction.update(norm, this);
+		boolean isInNS = this.getNormativeSystem().contains(norm);
+		
+		/* Notify the lifecycle events of the norm */
+		if(!wasInNS && isInNS) {
+			this.fireEvent(NormEvent.Type.Activated, norm, null);
+		}
+		else if(wasInNS && !isInNS) {
+			this.fireEvent(NormEvent.Type.Deactivated, norm, null);
+		}
+		if(state == NetworkNodeState.SPECIALISED) {
+			this.fireEvent(NormEvent.Type.Specialised, norm, null);
+		}
+		else if(state == NetworkNodeState.SUBSTITUTED) {
+			this.fireEvent(NormEvent.Type.Substituted, norm, null);
+		}
+		else if(state == NetworkNodeState.DISCARDED) {
+			this.fireEvent(NormEvent.Type.Discarded, norm, null);
+		}
+	}
+	
+	/**
+	 * Adds a generalisation relationship between a {@code child} norm
+	 * and a {@code parent} norm, and notifies that the child norm 
+	 * has been generalised
+	 * 
+	 * @param child the child norm
+	 * @param parent the parent norm
+	 */
+	@Override
+	public void addGeneralisation(Norm child, Norm parent) {
+		super.addGeneralisation(child, parent);
+		this.subsumptionIndex.update(child);
+		this.fireEvent(NormEvent.Type.Generalised, child, parent);
 	}
 	
+	/**
+	 * Removes the generalisation relationship between a {@code child} norm
+	 * and a {@code parent} norm
+	 * 
+	 * @param child the child norm
+	 * @param parent the parent norm
+	 */
+	@Override
+	public void removeGeneralisation(Norm child, Norm parent) {
+		super.removeGeneralisation(child, parent);
+		this.subsumptionIndex.update(child);
+	}
+	
+	/**
+	 * Subscribes a listener to the lifecycle events of the norms 
+	 * in the normative network
+	 * 
+	 * @param listener the listener
+	 * @see NormEvent
+	 * @see NormEventBuffer
+	 */
+	public void addListener(NormEventListener listener) {
+		this.listeners.add(listener);
+	}
+	
+	/**
+	 * Unsubscribes a listener from the lifecycle events of the norms
+	 * in the normative network
+	 * 
+	 * @param listener the listener
+	 */
+	public void removeListener(NormEventListener listener) {
+		this.listeners.remove(listener);
+	}
+	
+	/**
+	 * Resets the utility of a given {@code norm}, and updates the
+	 * columnar store of norms' performances
+	 * 
+	 * @param norm the norm
+	 */
+	@Override
+	public void resetUtility(Norm norm) {
+		super.resetUtility(norm);
+		this.utilityColumns.update(norm, this.getUtility(norm));
+	}
+
+	/**
+	 * Returns the columnar store of the current performances of the
+	 * norms in the network, indexed by norm id
+	 * 
+	 * @return the columnar store of norms' performances
+	 * @see UtilityColumns
+	 */
+	public UtilityColumns<Norm> getUtilityColumns() {
+		return this.utilityColumns;
+	}
+
 	/**
 	 * Returns the {@code List} of all the norms in the network
 	 * 
@@ -306,6 +520,147 @@ public class NormativeNetwork extends GeneralisationNetwork<Norm> {
 		return ret;
 	}
 
+	/**
+	 * Returns <tt>true</tt> if some norm that is not represented in the
+	 * normative network (other than the given {@code norm}) satisfies the
+	 * given {@code norm}. That is, if the norm would cover (and hence
+	 * represent) some inactive norm that is not represented yet. The
+	 * check is answered from an index of the norms by modality, action and
+	 * term ancestry, and hence it does not scan the normative network
+	 * 
+	 * @param norm the norm
+	 * @return <tt>true</tt> if some norm that is not represented
+	 * 					satisfies the given norm
+	 * @see SubsumptionIndex
+	 */
+	public boolean subsumesNotRepresentedNorm(Norm norm) {
+		return this.subsumptionIndex.subsumesNotRepresented(norm);
+	}
+	
+	/**
+	 * Returns the norms in the network that are satisfied by the given
+	 * {@code norm} (that is, its potential ancestors), sorted by id. These
+	 * are searched for by content: each combination of the terms of the
+	 * norm and their parent terms in the taxonomies of their predicates
+	 * is looked up in the network, and hence the search does not depend
+	 * on the size of the network
+	 * 
+	 * @param norm the norm
+	 * @return the norms in the network satisfied by the norm
+	 * @see es.csic.iiia.nsm.norm.reasoning.NormReasoner#satisfies(Norm, Norm)
+	 */
+	public List<Norm> getSatisfiedNorms(Norm norm) {
+		PredicatesDomains predDomains = this.nsm.getPredicatesDomains();
+		SetOfPredicatesWithTerms precondition = norm.getPrecondition();
+		List<String> predicates = new ArrayList<String>(precondition.getPredicates());
+		
+		/* The term of each predicate, followed by its parent terms */
+		List<List<String>> terms = new ArrayList<List<String>>();
+		for(String predicate : predicates) {
+			List<String> predTerms = new ArrayList<String>();
+			String term = precondition.getTerms(predicate).get(0);
+			predTerms.add(term);
+			for(String parentTerm : predDomains.getParentTerms(predicate, term)) {
+				if(!predTerms.contains(parentTerm)) {
+					predTerms.add(parentTerm);
+				}
+			}
+			terms.add(predTerms);
+		}
+		
+		/* Look up each combination of terms but the one of the norm itself */
+		List<Norm> satisfied = new ArrayList<Norm>();
+		int[] combination = new int[predicates.size()];
+		while(this.nextCombination(combination, terms)) {
+			SetOfPredicatesWithTerms ancestorPrecond = new SetOfPredicatesWithTerms();
+			for(int i=0; i<predicates.size(); i++) {
+				ancestorPrecond.add(predicates.get(i), 
+						terms.get(i).get(combination[i]));
+			}
+			Norm ancestor = this.getNorm(ancestorPrecond, 
+					norm.getModality(), norm.getAction());
+			if(ancestor != null) {
+				satisfied.add(ancestor);
+			}
+		}
+		Collections.sort(satisfied);
+		return satisfied;
+	}
+	
+	/**
+	 * Returns the norms in the network that satisfy the given {@code norm}
+	 * (that is, its potential descendants), sorted by id. These are 
+	 * retrieved from the subsumption index, and hence the search does
+	 * not scan the normative network
+	 * 
+	 * @param norm the norm
+	 * @return the norms in the network that satisfy the norm
+	 * @see SubsumptionIndex#getSatisfyingNorms(Norm)
+	 */
+	public List<Norm> getSatisfyingNorms(Norm norm) {
+		return this.subsumptionIndex.getSatisfyingNorms(norm);
+	}
+	
+	/**
+	 * Traverses a norm and its ancestors depth first, in the same order as
+	 * a recursive traversal that visits the parents of each norm in order.
+	 * Each norm is entered before its parents are visited, and left after
+	 * them. A norm is skipped if its id is already set in {@code visited},
+	 * and it is set once the norm has been entered and its parents are to
+	 * be visited. The traversal uses an explicit stack instead of recursion,
+	 * and hence it does not overflow the call stack on deep networks
+	 * 
+	 * @param norm the norm the traversal starts from
+	 * @param visited the ids of the norms already visited
+	 * @param visitor the visitor of the norms
+	 */
+	public void visitAncestors(Norm norm, BitSet visited,
+			AncestorVisitor visitor) {
+		
+		/* Parents pending to be visited, and the range of the
+		 * parents of each norm in the path within them */
+		List<Norm> pending = new ArrayList<Norm>();
+		List<Norm> path = new ArrayList<Norm>();
+		int[] starts = new int[16];
+		int[] cursors = new int[16];
+		
+		Norm next = norm;
+		while(true) {
+			if(!visited.get(next.getId()) && visitor.enter(next, path.size())) {
+				visited.set(next.getId());
+				
+				int depth = path.size();
+				if(depth == starts.length) {
+					starts = Arrays.copyOf(starts, depth * 2);
+					cursors = Arrays.copyOf(cursors, depth * 2);
+				}
+				path.add(next);
+				starts[depth] = pending.size();
+				cursors[depth] = pending.size();
+				this.addParents(next, pending);
+			}
+			
+			/* Retrieve the next parent of the deepest norm in the path,
+			 * leaving those norms whose parents have all been visited */
+			next = null;
+			while(next == null && !path.isEmpty()) {
+				int depth = path.size() - 1;
+				if(cursors[depth] < pending.size()) {
+					next = pending.get(cursors[depth]++);
+				}
+				else {
+					while(pending.size() > starts[depth]) {
+						pending.remove(pending.size() - 1);
+					}
+					visitor.leave(path.remove(depth));
+				}
+			}
+			if(next == null) {
+				return;
+			}
+		}
+	}
+
 	/**
 	 * 
 	 * @param norm
@@ -343,13 +698,7 @@ public class NormativeNetwork extends GeneralisationNetwork<Norm> {
 	public Norm getNorm(SetOfPredicatesWithTerms precondition,
 			NormModality modality, AgentAction action) {
 		
-		Norm n = new Norm(precondition, modality, action);
-		for(Norm norm : this.getNodes()) {
-			if(n.equals(norm)) {
-				return norm;
-			}
-		}
-		return null;
+		return this.contents.get(new NormKey(precondition, modality, action));
 	}
 
 	/**
@@ -361,12 +710,10 @@ public class NormativeNetwork extends GeneralisationNetwork<Norm> {
 	 * @return the norm with the given elements
 	 */
 	public Norm getNorm(Norm n) {
-		for(Norm norm : this.getNodes()) {
-			if(n.equals(norm)) {
-				return norm;
-			}
+		if(this.graph.containsVertex(n)) {
+			return n;
 		}
-		return null;
+		return this.contents.get(new NormKey(n));
 	}
 	
 //	/**
@@ -424,6 +771,9 @@ public class NormativeNetwork extends GeneralisationNetwork<Norm> {
 	 */
 	@Override
 	public NetworkNodeState getState(Norm norm) {
+		if(this.graph.containsVertex(norm)) {
+			return this.states.get(norm);
+		}
 		if(!this.contains(norm)) {
 			return null;
 		}
@@ -445,6 +795,12 @@ public class NormativeNetwork extends GeneralisationNetwork<Norm> {
 	 * or it is inactive but some of its ancestors are active in the network
 	 */
 	public boolean isRepresented(Norm norm) {
+		
+		/* The representation of the norms in the network is kept 
+		 * up to date by the subsumption index */
+		if(this.graph.containsVertex(norm)) {
+			return this.subsumptionIndex.isRepresented(norm.getId());
+		}
 		if(!this.contains(norm)) {
 			return false;
 		}
@@ -654,13 +1010,7 @@ public class NormativeNetwork extends GeneralisationNetwork<Norm> {
 	public boolean contains(SetOfPredicatesWithTerms precondition, 
 			NormModality modality, AgentAction action) {
 		
-		Norm n = new Norm(precondition, modality, action);
-		for(Norm norm : this.getNodes()) {
-			if(n.equals(norm)) {
-				return true;
-			}
-		}
-		return false;
+		return this.getNorm(precondition, modality, action) != null;
 	}
 	
 	/**
@@ -670,11 +1020,46 @@ public class NormativeNetwork extends GeneralisationNetwork<Norm> {
 	 * @return <tt>true</tt> if the normative network contains the norm
 	 */
 	public boolean contains(Norm n)	{
-		for(Norm norm : this.getNodes()) {
-			if(n.equals(norm)) {
+		return this.getNorm(n) != null;
+	}
+
+	//---------------------------------------------------------------------------
+	// Private methods
+	//---------------------------------------------------------------------------
+	
+	/**
+	 * Advances a combination of terms (the position of the term chosen
+	 * for each predicate) to the next one, in mixed radix order
+	 * 
+	 * @param combination the position of the term of each predicate
+	 * @param terms the terms of each predicate
+	 * @return <tt>false</tt> if there are no more combinations
+	 */
+	private boolean nextCombination(int[] combination, List<List<String>> terms) {
+		for(int i=0; i<combination.length; i++) {
+			if(++combination[i] < terms.get(i).size()) {
 				return true;
 			}
+			combination[i] = 0;
 		}
 		return false;
 	}
+	
+	/**
+	 * Notifies a lifecycle event of a norm to all the listeners
+	 * 
+	 * @param type the type of the event
+	 * @param norm the norm
+	 * @param relatedNorm the norm related to the event, or <tt>null</tt>
+	 */
+	void fireEvent(NormEvent.Type type, Norm norm, Norm relatedNorm) {
+		if(this.listeners.isEmpty()) {
+			return;
+		}
+		NormEvent event = new NormEvent(type, norm, relatedNorm, 
+				this.states.get(norm));
+		for(int i=0; i<this.listeners.size(); i++) {
+			this.listeners.get(i).normEvent(event);
+		}
+	}
 }
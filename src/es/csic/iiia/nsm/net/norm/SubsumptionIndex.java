@@ -0,0 +1,392 @@
+package es.csic.iiia.nsm.net.norm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import es.csic.iiia.nsm.agent.language.PredicatesDomains;
+import es.csic.iiia.nsm.agent.language.SetOfPredicatesWithTerms;
+import es.csic.iiia.nsm.agent.language.SetOfStrings;
+import es.csic.iiia.nsm.agent.language.Taxonomy;
+import es.csic.iiia.nsm.norm.Norm;
+import es.csic.iiia.nsm.norm.NormKey;
+
+/**
+ * An index of the norms of a normative network that allows to check
+ * whether a norm subsumes (is satisfied by) some norm that is not
+ * represented in the network, without scanning all the norms in the
+ * network. A norm A satisfies a norm B if both have the same modality
+ * and action, and the term of each predicate in the precondition of A
+ * is equal to or more specific than the term of the same predicate in
+ * the precondition of B.
+ * <p>
+ * Norms are partitioned by their modality and action. For each predicate
+ * and term, the index keeps the ids of the norms whose term for that
+ * predicate is equal to or more specific than the term (that is, the norm
+ * is indexed under its term and all its parent terms). Hence, the norms that
+ * satisfy a given norm are retrieved by intersecting, for each predicate of
+ * the norm, the ids of the norms indexed under its term. The index also keeps
+ * which norms are represented in the network, namely those that are active
+ * or have some represented parent. Since the representation of a norm only
+ * depends on its ancestors, it is updated incrementally each time the state
+ * or the parents of a norm change, by propagating the change downwards
+ *
+ * @author "Javier Morales (jmorales@iiia.csic.es)"
+ * @see NormativeNetwork#subsumesNotRepresentedNorm(Norm)
+ * @see es.csic.iiia.nsm.norm.reasoning.NormReasoner#satisfies(Norm, Norm)
+ */
+public class SubsumptionIndex {
+
+	//---------------------------------------------------------------------------
+	// Static attributes
+	//---------------------------------------------------------------------------
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	//---------------------------------------------------------------------------
+	// Attributes
+	//---------------------------------------------------------------------------
+
+	private NormativeNetwork normativeNetwork;
+	private PredicatesDomains predDomains;
+
+	private Norm[] norms;														// norms, indexed by id
+	private BitSet ids;															// ids of the norms in the index
+	private BitSet represented;											// ids of the represented norms
+
+	private Map<NormKey, BitSet> partitions;		// ids, by modality/action
+	private Map<String, BitSet> predicates;					// ids, by predicate
+	private Map<String, Map<String, BitSet>> terms;	// ids, by predicate and term
+
+	//---------------------------------------------------------------------------
+	// Methods
+	//---------------------------------------------------------------------------
+
+	/**
+	 * Constructor
+	 *
+	 * @param normativeNetwork the normative network
+	 * @param predDomains the predicates and their domains
+	 */
+	public SubsumptionIndex(NormativeNetwork normativeNetwork,
+			PredicatesDomains predDomains) {
+
+		this.normativeNetwork = normativeNetwork;
+		this.predDomains = predDomains;
+
+		this.norms = new Norm[INITIAL_CAPACITY];
+		this.ids = new BitSet();
+		this.represented = new BitSet();
+
+		this.partitions = new HashMap<NormKey, BitSet>();
+		this.predicates = new HashMap<String, BitSet>();
+		this.terms = new HashMap<String, Map<String, BitSet>>();
+	}
+
+	/**
+	 * Adds a norm of the normative network to the index
+	 *
+	 * @param norm the norm
+	 */
+	public void add(Norm norm) {
+		int id = norm.getId();
+		if(id < 0 || this.ids.get(id)) {
+			return;
+		}
+		this.ensureCapacity(id);
+		this.norms[id] = norm;
+		this.ids.set(id);
+
+		this.getIds(this.partitions, new NormKey(norm.getModality(),
+				norm.getAction())).set(id);
+
+		SetOfPredicatesWithTerms precondition = norm.getPrecondition();
+		for(String predicate : precondition.getPredicates()) {
+			this.getIds(this.predicates, predicate).set(id);
+
+			for(String term : this.getCoveringTerms(precondition, predicate)) {
+				this.getIds(this.getTerms(predicate), term).set(id);
+			}
+		}
+		this.update(norm);
+	}
+
+	/**
+	 * Removes a norm from the index
+	 *
+	 * @param norm the norm
+	 */
+	public void remove(Norm norm) {
+		int id = norm.getId();
+		if(id < 0 || !this.ids.get(id)) {
+			return;
+		}
+		this.norms[id] = null;
+		this.ids.clear(id);
+		this.represented.clear(id);
+
+		this.partitions.get(new NormKey(norm.getModality(),
+				norm.getAction())).clear(id);
+
+		SetOfPredicatesWithTerms precondition = norm.getPrecondition();
+		for(String predicate : precondition.getPredicates()) {
+			this.predicates.get(predicate).clear(id);
+
+			for(String term : this.getCoveringTerms(precondition, predicate)) {
+				this.terms.get(predicate).get(term).clear(id);
+			}
+		}
+	}
+
+	/**
+	 * Updates the representation of a norm after its state or its
+	 * parents have changed, and propagates the change to its descendants.
+	 * The normative network notifies each norm whose representation changes
+	 *
+	 * @param norm the norm
+	 */
+	public void update(Norm norm) {
+		LinkedList<Norm> pending = new LinkedList<Norm>();
+		pending.add(norm);
+
+		while(!pending.isEmpty()) {
+			Norm next = pending.poll();
+			int id = next.getId();
+			if(id < 0 || !this.ids.get(id)) {
+				continue;
+			}
+
+			boolean isRepresented = this.computeRepresented(next);
+			if(isRepresented != this.represented.get(id)) {
+				this.represented.set(id, isRepresented);
+				pending.addAll(this.normativeNetwork.getChildren(next));
+				this.normativeNetwork.fireEvent(isRepresented ? 
+						NormEvent.Type.Represented : NormEvent.Type.Unrepresented,
+						next, null);
+			}
+		}
+	}
+
+	/**
+	 * Returns <tt>true</tt> if the norm with a given id
+	 * is represented in the normative network
+	 *
+	 * @param id the id of the norm
+	 * @return <tt>true</tt> if the norm is represented
+	 */
+	public boolean isRepresented(int id) {
+		return id >= 0 && this.represented.get(id);
+	}
+
+	/**
+	 * Returns <tt>true</tt> if some norm of the index that is not represented
+	 * in the normative network satisfies a given norm (other than the norm
+	 * itself, or a norm equal to it)
+	 *
+	 * @param norm the norm
+	 * @return <tt>true</tt> if some not represented norm satisfies the norm
+	 */
+	public boolean subsumesNotRepresented(Norm norm) {
+		BitSet candidates = this.getCandidates(norm);
+		if(candidates == null) {
+			return false;
+		}
+		candidates.andNot(this.represented);
+		return this.nextSatisfying(norm, candidates, 0) >= 0;
+	}
+
+	/**
+	 * Returns the norms of the index that satisfy a given norm (other than
+	 * the norm itself, or a norm equal to it), sorted by id. That is, the
+	 * descendants of the norm in terms of the satisfaction relationship
+	 *
+	 * @param norm the norm
+	 * @return the norms that satisfy the norm, sorted by id
+	 */
+	public List<Norm> getSatisfyingNorms(Norm norm) {
+		List<Norm> satisfying = new ArrayList<Norm>();
+		BitSet candidates = this.getCandidates(norm);
+		if(candidates == null) {
+			return satisfying;
+		}
+		for(int id = this.nextSatisfying(norm, candidates, 0); id >= 0;
+				id = this.nextSatisfying(norm, candidates, id+1)) {
+			satisfying.add(this.norms[id]);
+		}
+		return satisfying;
+	}
+
+	/**
+	 * Returns the number of norms in the index
+	 *
+	 * @return the number of norms in the index
+	 */
+	public int size() {
+		return this.ids.cardinality();
+	}
+
+	//---------------------------------------------------------------------------
+	// Private methods
+	//---------------------------------------------------------------------------
+
+	/**
+	 * Returns the ids of the norms with the same modality and action than
+	 * a given norm, whose terms are covered by the terms of the norm for
+	 * all the predicates of the norm
+	 *
+	 * @param norm the norm
+	 * @return the ids of the candidates to satisfy the norm, or
+	 * 					<tt>null</tt> if there are no candidates
+	 */
+	private BitSet getCandidates(Norm norm) {
+		BitSet partition = this.partitions.get(new NormKey(norm.getModality(),
+				norm.getAction()));
+		if(partition == null) {
+			return null;
+		}
+		BitSet candidates = (BitSet) partition.clone();
+
+		/* Discard the candidates that have the predicate but
+		 * whose term is not covered by the term of the norm */
+		SetOfPredicatesWithTerms precondition = norm.getPrecondition();
+		for(String predicate : precondition.getPredicates()) {
+			if(candidates.isEmpty()) {
+				return null;
+			}
+			BitSet withPredicate = this.predicates.get(predicate);
+			if(withPredicate == null) {
+				continue;
+			}
+			BitSet uncovered = (BitSet) withPredicate.clone();
+			BitSet covered = this.getTerms(predicate).get(
+					precondition.getTerms(predicate).get(0));
+			if(covered != null) {
+				uncovered.andNot(covered);
+			}
+			candidates.andNot(uncovered);
+		}
+		return candidates;
+	}
+
+	/**
+	 * Returns the id of the next candidate that satisfies a norm, namely
+	 * the next candidate that is not equal to the norm and does not have
+	 * predicates that the norm does not have
+	 *
+	 * @param norm the norm
+	 * @param candidates the ids of the candidates
+	 * @param fromId the id to start the search from
+	 * @return the id of the next candidate that satisfies
+	 * 					the norm, or -1 if there is no such candidate
+	 */
+	private int nextSatisfying(Norm norm, BitSet candidates, int fromId) {
+		SetOfStrings normPredicates = norm.getPrecondition().getPredicates();
+		for(int id = candidates.nextSetBit(fromId); id >= 0;
+				id = candidates.nextSetBit(id+1)) {
+			Norm candidate = this.norms[id];
+			if(!candidate.equals(norm) && normPredicates.containsAll(
+					candidate.getPrecondition().getPredicates())) {
+				return id;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns <tt>true</tt> if a norm is active, or some of its
+	 * parents is represented in the normative network
+	 *
+	 * @param norm the norm
+	 * @return <tt>true</tt> if the norm is represented
+	 */
+	private boolean computeRepresented(Norm norm) {
+		if(this.normativeNetwork.states.get(norm) == NetworkNodeState.ACTIVE) {
+			return true;
+		}
+		for(Norm parent : this.normativeNetwork.getParents(norm)) {
+			if(this.isRepresented(parent.getId())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the terms under which a norm is indexed for a predicate,
+	 * namely the term of the predicate and all its parent terms
+	 *
+	 * @param precondition the precondition of the norm
+	 * @param predicate the predicate
+	 * @return the term of the predicate and its parent terms
+	 */
+	private SetOfStrings getCoveringTerms(SetOfPredicatesWithTerms precondition,
+			String predicate) {
+
+		String term = precondition.getTerms(predicate).get(0);
+		SetOfStrings covering = new SetOfStrings();
+		covering.add(term);
+
+		Taxonomy taxonomy = this.predDomains.getDomain(predicate);
+		if(taxonomy != null) {
+			for(String parentTerm : taxonomy.getParentTerms(term)) {
+				if(!covering.contains(parentTerm)) {
+					covering.add(parentTerm);
+				}
+			}
+		}
+		return covering;
+	}
+
+	/**
+	 * Returns the ids of the norms indexed by each term of a predicate
+	 *
+	 * @param predicate the predicate
+	 * @return the ids of the norms, by term
+	 */
+	private Map<String, BitSet> getTerms(String predicate) {
+		Map<String, BitSet> predicateTerms = this.terms.get(predicate);
+		if(predicateTerms == null) {
+			predicateTerms = new HashMap<String, BitSet>();
+			this.terms.put(predicate, predicateTerms);
+		}
+		return predicateTerms;
+	}
+
+	/**
+	 * Returns the ids stored in a map under a given key,
+	 * creating them if they do not exist yet
+	 *
+	 * @param map the map
+	 * @param key the key
+	 * @return the ids stored under the key
+	 */
+	private <K> BitSet getIds(Map<K, BitSet> map, K key) {
+		BitSet keyIds = map.get(key);
+		if(keyIds == null) {
+			keyIds = new BitSet();
+			map.put(key, keyIds);
+		}
+		return keyIds;
+	}
+
+	/**
+	 * Grows the array of norms so that it is able
+	 * to store the norm with a given id
+	 *
+	 * @param id the id of the norm
+	 */
+	private void ensureCapacity(int id) {
+		int capacity = this.norms.length;
+		if(id < capacity) {
+			return;
+		}
+		while(capacity <= id) {
+			capacity *= 2;
+		}
+		this.norms = Arrays.copyOf(this.norms, capacity);
+	}
+}
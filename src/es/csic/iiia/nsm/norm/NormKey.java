@@ -0,0 +1,112 @@
+package es.csic.iiia.nsm.norm;
+
+import java.io.Serializable;
+
+import es.csic.iiia.nsm.agent.AgentAction;
+import es.csic.iiia.nsm.agent.language.SetOfPredicatesWithTerms;
+
+/**
+ * The canonical identity of a norm, namely its precondition (in
+ * canonical form), its modality and its action. Two keys are equal
+ * if and only if their norms are equal. Hence, norms may be stored
+ * in hash-based collections by means of their keys, and searched
+ * for by content in constant time. Keys may also describe a group
+ * of norms, such as the norms with some modality and action, or the
+ * norms whose preconditions share a partial description
+ *
+ * @author "Javier Morales (jmorales@iiia.csic.es)"
+ * @see Norm#equals(Norm)
+ * @see SetOfPredicatesWithTerms#getCanonicalDescription()
+ */
+public class NormKey implements Serializable {
+
+	//---------------------------------------------------------------------------
+	// Static attributes
+	//---------------------------------------------------------------------------
+
+	private static final long serialVersionUID = 5871354092716553185L; // Id
+
+	//---------------------------------------------------------------------------
+	// Attributes
+	//---------------------------------------------------------------------------
+
+	private String precondition;
+	private NormModality modality;
+	private AgentAction action;
+	private int hash;
+
+	//---------------------------------------------------------------------------
+	// Methods
+	//---------------------------------------------------------------------------
+
+	/**
+	 * Constructor
+	 *
+	 * @param norm the norm
+	 */
+	public NormKey(Norm norm) {
+		this(norm.getPrecondition(), norm.getModality(), norm.getAction());
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param precondition the norm precondition
+	 * @param modality the norm modality
+	 * @param action the regulated action
+	 */
+	public NormKey(SetOfPredicatesWithTerms precondition,
+			NormModality modality, AgentAction action) {
+
+		this(precondition.getCanonicalDescription(), modality, action);
+	}
+
+	/**
+	 * Constructor of the key of the norms with a given modality and
+	 * action, regardless of their preconditions
+	 *
+	 * @param modality the norm modality
+	 * @param action the regulated action
+	 */
+	public NormKey(NormModality modality, AgentAction action) {
+		this("", modality, action);
+	}
+
+	/**
+	 * Constructor of the key of the norms with a given modality and
+	 * action, and whose preconditions have a given description
+	 *
+	 * @param precondition the description of the norm precondition
+	 * @param modality the norm modality
+	 * @param action the regulated action
+	 */
+	public NormKey(String precondition, NormModality modality,
+			AgentAction action) {
+
+		this.precondition = precondition;
+		this.modality = modality;
+		this.action = action;
+
+		/* Actions are hashed by their description, since they
+		 * are only required to implement equals */
+		this.hash = 31 * (31 * this.precondition.hashCode() +
+				this.modality.hashCode()) + String.valueOf(this.action).hashCode();
+	}
+
+	@Override
+	public int hashCode() {
+		return this.hash;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if(!(o instanceof NormKey)) {
+			return false;
+		}
+		NormKey other = (NormKey)o;
+		return this.hash == other.hash &&
+				this.modality.equals(other.modality) &&
+				this.action.equals(other.action) &&
+				this.precondition.equals(other.precondition);
+	}
+}
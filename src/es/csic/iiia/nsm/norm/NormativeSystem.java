@@ -1,113 +1,266 @@
 package es.csic.iiia.nsm.norm;
 
-import java.util.ArrayList;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
- * A normative system is a set of norms, implemented by means
- * of an {@code ArrayList} of norms
- * 
+ * A normative system is a set of norms. It is implemented by means of a
+ * linked hash map of norms, keyed by their canonical identity (precondition,
+ * modality and action), plus an index of norms by id. Hence, adding,
+ * removing and searching for a norm, and retrieving a norm by its id,
+ * take constant time. The normative system may still be employed as a
+ * {@code List} of norms, sorted by order of insertion. Positions are
+ * computed again the first time a norm is accessed by its position after
+ * the normative system changes, and hence accessing consecutive positions
+ * takes amortised constant time
+ * <p>
+ * As in a {@code List}, methods {@code contains(Object)} and
+ * {@code remove(Object)} look for the very same norm object, while
+ * {@code contains(Norm)} looks for a norm equal to the given one
+ *
  * @author Javier Morales (jmorales@iiia.csic.es)
  */
-public class NormativeSystem extends ArrayList<Norm>{
+public class NormativeSystem extends AbstractList<Norm>
+implements Cloneable, Serializable {
 
 	//---------------------------------------------------------------------------
-  // Static attributes 
+  // Static attributes
   //---------------------------------------------------------------------------
-	
-	private static final long serialVersionUID = 8245680654641852211L; // Id
-  
+
+	private static final long serialVersionUID = -3317862520731064208L; // Id
+	private static final int INITIAL_CAPACITY = 64;
+
 	//---------------------------------------------------------------------------
-  // Attributes 
+  // Attributes
   //---------------------------------------------------------------------------
+
 	private int id;
-	
+	private Map<NormKey, Norm> norms;		// norms, by canonical identity
+	private Norm[] ids;									// norms, indexed by id
+	private transient Norm[] positions;	// norms, by order of insertion
+	private transient int positionsModCount;
+
   //---------------------------------------------------------------------------
-  // Methods 
+  // Methods
   //---------------------------------------------------------------------------
-	
+
 	/**
-	 * 
+	 *
 	 */
-	public NormativeSystem() {}
-	
+	public NormativeSystem() {
+		this.norms = new LinkedHashMap<NormKey, Norm>();
+		this.ids = new Norm[INITIAL_CAPACITY];
+	}
+
 	/**
-	 * 
+	 *
 	 * @param id
 	 */
 	public NormativeSystem(int id) {
+		this();
 		this.id = id;
 	}
-	
+
 	/**
 	 * Adds a norm to the set
-	 * 
+	 *
 	 * @param norm the norm to add
 	 */
 	@Override
 	public boolean add(Norm norm) {
-		if(!this.contains(norm)) {
-			return super.add(norm);
+		NormKey key = new NormKey(norm);
+		if(this.norms.containsKey(key)) {
+			return false;
 		}
-		return false;
+		this.norms.put(key, norm);
+		this.index(norm);
+		this.modCount++;
+		return true;
 	}
-	
+
 	/**
 	 * Adds a {@code List} of norms to the set
-	 * 
+	 *
 	 * @param norms the list of norms
 	 */
 	public void addAll(List<Norm> norms) {
 		for(Norm norm : norms) {
-			if(!this.contains(norm)) {
-				this.add(norm);
-			}
+			this.add(norm);
 		}
 	}
 
+	/**
+	 * Removes a norm from the set. It removes the norm only if
+	 * the set contains that very norm (and not another equal norm)
+	 *
+	 * @param o the norm to remove
+	 * @return <tt>true</tt> if the set contained the norm
+	 */
+	@Override
+	public boolean remove(Object o) {
+		if(!(o instanceof Norm)) {
+			return false;
+		}
+		NormKey key = new NormKey((Norm)o);
+		if(this.norms.get(key) != o) {
+			return false;
+		}
+		this.norms.remove(key);
+		this.unindex((Norm)o);
+		this.modCount++;
+		return true;
+	}
+
+	/**
+	 * Removes the norm at a given position of the set
+	 *
+	 * @param i the position of the norm
+	 * @return the removed norm
+	 */
+	@Override
+	public Norm remove(int i) {
+		Norm norm = this.get(i);
+		this.remove(norm);
+		return norm;
+	}
+
+	/**
+	 * Removes all the norms from the set
+	 */
+	@Override
+	public void clear() {
+		this.norms.clear();
+		Arrays.fill(this.ids, null);
+		this.modCount++;
+	}
+
 	/**
 	 * Returns <tt>true</tt> if the norm set contains the given norm.
-	 * It performs the search by comparing norm id's.
-	 * 
+	 * It performs the search by comparing norms' preconditions,
+	 * modalities and actions.
+	 *
 	 * @param norm the norm to search
 	 * @return <tt>true</tt> if the norm set contains the given norm
 	 */
 	public boolean contains(Norm norm) {
-		for(Norm n : this) {
-			if(n.equals(norm))
-				return true;
-		}
-		return false;
+		return this.norms.containsKey(new NormKey(norm));
+	}
+
+	/**
+	 * Returns <tt>true</tt> if the norm set contains the given norm
+	 * (that very norm, and not another equal norm)
+	 *
+	 * @param o the norm to search
+	 * @return <tt>true</tt> if the norm set contains the given norm
+	 * @see #contains(Norm)
+	 */
+	@Override
+	public boolean contains(Object o) {
+		return (o instanceof Norm) &&
+				this.norms.get(new NormKey((Norm)o)) == o;
 	}
 
 	/**
 	 * Returns the norm with the given {@code id}, if the normative system
-	 * contains the norm. In case the normative system does not contain the 
-	 * norm, it returns {@code null} 
-	 * 
+	 * contains the norm. In case the normative system does not contain the
+	 * norm, it returns {@code null}
+	 *
 	 * @param id the id of the norm
 	 * @return the norm with the given {@code id}, if the normative system
 	 * 					contains the norm. In case the normative system does not
-	 * 					contain the norm, it returns {@code null} 
+	 * 					contain the norm, it returns {@code null}
 	 */
 	public Norm getNormWithId(int id) {
-		Norm norm = null;
-		for(Norm n : this) {
-			if(n.getId() == id) {
-				norm = n;
-				break;
+		
+		/* Norms without an id yet are not indexed */
+		if(id <= 0) {
+			for(Norm norm : this) {
+				if(norm.getId() == id) {
+					return norm;
+				}
 			}
+			return null;
 		}
-		return norm;
+		if(id >= this.ids.length) {
+			return null;
+		}
+		return this.ids[id];
+	}
+
+	/**
+	 * Returns the norm at a given position of the set, being
+	 * 0 the first norm added to the set
+	 *
+	 * @param i the position of the norm
+	 * @return the norm at the given position
+	 */
+	@Override
+	public Norm get(int i) {
+		if(i < 0 || i >= this.size()) {
+			throw new IndexOutOfBoundsException("Index: " + i +
+					", Size: " + this.size());
+		}
+		if(this.positions == null || this.positionsModCount != this.modCount) {
+			this.positions = this.norms.values().toArray(new Norm[this.size()]);
+			this.positionsModCount = this.modCount;
+		}
+		return this.positions[i];
 	}
-	
+
 	/**
-	 * 
+	 * Returns an iterator over the norms, sorted by order of insertion
+	 *
+	 * @return an iterator over the norms
+	 */
+	@Override
+	public Iterator<Norm> iterator() {
+		final Iterator<Norm> it = this.norms.values().iterator();
+
+		return new Iterator<Norm>() {
+			private Norm last;
+
+			@Override
+			public boolean hasNext() {
+				return it.hasNext();
+			}
+
+			@Override
+			public Norm next() {
+				this.last = it.next();
+				return this.last;
+			}
+
+			@Override
+			public void remove() {
+				it.remove();
+				unindex(this.last);
+				modCount++;
+			}
+		};
+	}
+
+	/**
+	 * Returns the number of norms in the set
+	 *
+	 * @return the number of norms in the set
+	 */
+	@Override
+	public int size() {
+		return this.norms.size();
+	}
+
+	/**
+	 *
 	 * @param otherNS
 	 * @return
 	 */
 	public boolean isSubsetOf(NormativeSystem otherNS) {
-		
+
 		/* Do all the norms in this NS exist in the other NS? */
 		for(Norm norm : this) {
 			if(!otherNS.contains(norm)) {
@@ -116,14 +269,71 @@ public class NormativeSystem extends ArrayList<Norm>{
 		}
 		return true;
 	}
-	
+
+	/**
+	 * Returns a shallow copy of the normative system, which contains
+	 * the same norms (but not copies of them)
+	 *
+	 * @return a copy of the normative system
+	 */
+	@Override
+	public Object clone() {
+		NormativeSystem copy;
+		try {
+			copy = (NormativeSystem)super.clone();
+		}
+		catch(CloneNotSupportedException e) {
+			throw new InternalError(e.toString());
+		}
+		copy.norms = new LinkedHashMap<NormKey, Norm>(this.norms);
+		copy.ids = this.ids.clone();
+		copy.positions = null;
+		return copy;
+	}
+
 	/**
 	 * Returns the id of the normative system
-	 * 
+	 *
 	 * @return the id of the normative system
 	 * @return
 	 */
 	public int getId() {
 		return this.id;
 	}
+
+	//---------------------------------------------------------------------------
+	// Private methods
+	//---------------------------------------------------------------------------
+
+	/**
+	 * Indexes a norm by its id
+	 *
+	 * @param norm the norm
+	 */
+	private void index(Norm norm) {
+		int id = norm.getId();
+		if(id <= 0) {
+			return;
+		}
+		if(id >= this.ids.length) {
+			int capacity = this.ids.length;
+			while(capacity <= id) {
+				capacity *= 2;
+			}
+			this.ids = Arrays.copyOf(this.ids, capacity);
+		}
+		this.ids[id] = norm;
+	}
+
+	/**
+	 * Removes a norm from the index of norms by id
+	 *
+	 * @param norm the norm
+	 */
+	private void unindex(Norm norm) {
+		int id = norm.getId();
+		if(id > 0 && id < this.ids.length && this.ids[id] == norm) {
+			this.ids[id] = null;
+		}
+	}
 }
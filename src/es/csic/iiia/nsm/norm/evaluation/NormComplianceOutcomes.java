@@ -1,9 +1,12 @@
 package es.csic.iiia.nsm.norm.evaluation;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import es.csic.iiia.nsm.agent.language.SetOfPredicatesWithTerms;
 import es.csic.iiia.nsm.norm.Norm;
@@ -12,7 +15,15 @@ import es.csic.iiia.nsm.norm.Norm;
  * Class containing information about the norms that each agent has 
  * fulfilled/infringed, and the agent contexts in which those norms
  * are applicable. Furthermore, the class has information about the number
- * of conflicts that arose after agents fulfilled/infringed the norms
+ * of conflicts that arose after agents fulfilled/infringed the norms.
+ * <p>
+ * The outcomes of each norm are kept in a record with primitive counters,
+ * which is reset (not discarded) when the outcomes are cleared. Hence, an 
+ * object that is cleared and reused each tick accumulates norm compliances
+ * without allocating new objects once it has seen all the norms. The
+ * records of the norms that have not been fulfilled nor infringed since
+ * the previous clear are discarded, so that the object only keeps the
+ * records of the norms that are still being evaluated
  * 
  * @author "Javier Morales (jmorales@iiia.csic.es)"
  */
@@ -26,15 +37,7 @@ public class NormComplianceOutcomes {
 	private List<Norm> fulfilledNorms;		// all the fulfilled norms
 	private List<Norm> infringedNorms;		// all the infringed norms
 	
-	private Map<Norm, Integer> numFulfilmentsWithConflict;
-	private Map<Norm, Integer> numFulfilmentsWithNoConflict;	
-	private Map<Norm, Integer> numInfringementsWithConflict;		
-	private Map<Norm, Integer> numInfringementsWithNoConflict;	
-	
-	private Map<Norm, List<SetOfPredicatesWithTerms>> 
-		normsApplicableToAgentContexts; 	/* agent contexts in which each
-																				fulfilled and infringed norm 
-																				was applicable */ 
+	private Map<Norm, NormOutcomes> outcomes;	// outcomes of each norm
 	
 	//---------------------------------------------------------------------------
 	// Methods
@@ -47,12 +50,7 @@ public class NormComplianceOutcomes {
 		this.allNorms = new ArrayList<Norm>();
 		this.fulfilledNorms = new ArrayList<Norm>();
 		this.infringedNorms = new ArrayList<Norm>();
-		this.numFulfilmentsWithConflict = new HashMap<Norm, Integer>();
-		this.numFulfilmentsWithNoConflict = new HashMap<Norm, Integer>();
-		this.numInfringementsWithConflict = new HashMap<Norm, Integer>();
-		this.numInfringementsWithNoConflict = new HashMap<Norm, Integer>();
-		this.normsApplicableToAgentContexts = 
-				new HashMap<Norm, List<SetOfPredicatesWithTerms>>();
+		this.outcomes = new IdentityHashMap<Norm, NormOutcomes>();
 	}
 
 	/**
@@ -63,7 +61,7 @@ public class NormComplianceOutcomes {
 	 */
 	public void addFulfilmentWithConflict(SetOfPredicatesWithTerms agContext,
 			Norm norm) {
-		this.add(numFulfilmentsWithConflict, fulfilledNorms, agContext, norm);
+		this.add(agContext, norm, true).numFulfilmentsWithConflict++;
 	}
 	
 	/**
@@ -74,7 +72,7 @@ public class NormComplianceOutcomes {
 	 */
 	public void addFulfilmentWithNoConflict(SetOfPredicatesWithTerms agContext, 
 			Norm norm) {
-		this.add(numFulfilmentsWithNoConflict, fulfilledNorms, agContext, norm);
+		this.add(agContext, norm, true).numFulfilmentsWithNoConflict++;
 	}
 
 	/**
@@ -85,7 +83,7 @@ public class NormComplianceOutcomes {
 	 */
 	public void addInfringementWithConflict(SetOfPredicatesWithTerms agContext, 
 			Norm norm) {
-		this.add(numInfringementsWithConflict, infringedNorms, agContext, norm);
+		this.add(agContext, norm, false).numInfringementsWithConflict++;
 	}
 
 	/**
@@ -96,7 +94,7 @@ public class NormComplianceOutcomes {
 	 */
 	public void addInfringementWithNoConflict(SetOfPredicatesWithTerms agContext,
 			Norm norm) {
-		this.add(numInfringementsWithNoConflict, infringedNorms, agContext, norm);
+		this.add(agContext, norm, false).numInfringementsWithNoConflict++;
 	}
 
 	/**
@@ -134,10 +132,11 @@ public class NormComplianceOutcomes {
 	 * @return the number of norm compliances that lead to conflicts
 	 */
 	public int getNumFulfilmentsWithConflict(Norm norm) {
-		if(!this.numFulfilmentsWithConflict.containsKey(norm)) {
+		NormOutcomes normOutcomes = this.outcomes.get(norm);
+		if(normOutcomes == null) {
 			return 0;
 		}
-		return this.numFulfilmentsWithConflict.get(norm);
+		return normOutcomes.numFulfilmentsWithConflict;
 	}
 
 	/**
@@ -146,10 +145,11 @@ public class NormComplianceOutcomes {
 	 * @return the number of norm compliances that did not end up with conflicts
 	 */
 	public int getNumFulfilmentsWithNoConflict(Norm norm) {
-		if(!this.numFulfilmentsWithNoConflict.containsKey(norm)) {
+		NormOutcomes normOutcomes = this.outcomes.get(norm);
+		if(normOutcomes == null) {
 			return 0;
 		}
-		return this.numFulfilmentsWithNoConflict.get(norm);
+		return normOutcomes.numFulfilmentsWithNoConflict;
 	}
 
 	/**
@@ -158,10 +158,11 @@ public class NormComplianceOutcomes {
 	 * @return the number of norm infringements that lead to conflicts
 	 */
 	public int getNumInfringementsWithConflict(Norm norm) {
-		if(!this.numInfringementsWithConflict.containsKey(norm)) {
+		NormOutcomes normOutcomes = this.outcomes.get(norm);
+		if(normOutcomes == null) {
 			return 0;
 		}
-		return this.numInfringementsWithConflict.get(norm);
+		return normOutcomes.numInfringementsWithConflict;
 	}
 
 	/**
@@ -172,10 +173,11 @@ public class NormComplianceOutcomes {
 	 * 					did not end up with conflicts
 	 */
 	public int getNumInfrsWithNoConflict(Norm norm) {
-		if(!this.numInfringementsWithNoConflict.containsKey(norm)) {
+		NormOutcomes normOutcomes = this.outcomes.get(norm);
+		if(normOutcomes == null) {
 			return 0;
 		}
-		return this.numInfringementsWithNoConflict.get(norm);
+		return normOutcomes.numInfringementsWithNoConflict;
 	}	
 
 	/**
@@ -219,7 +221,11 @@ public class NormComplianceOutcomes {
 	 */
 	public List<SetOfPredicatesWithTerms> getAgentContextsWhereNormApplies(
 			Norm norm) {
-		return this.normsApplicableToAgentContexts.get(norm);
+		NormOutcomes normOutcomes = this.outcomes.get(norm);
+		if(normOutcomes == null) {
+			return null;
+		}
+		return normOutcomes.agContexts;
 	}
 	
 	/**
@@ -235,38 +241,36 @@ public class NormComplianceOutcomes {
 	 */
 	public List<NormCompliance> getCompliance(Norm norm) {
 		List<NormCompliance> complAcs = new ArrayList<NormCompliance>();
+		NormOutcomes normOutcomes = this.outcomes.get(norm);
 		
-		if(this.fulfilledNorms.contains(norm)) {
+		if(normOutcomes != null && normOutcomes.fulfilled) {
 			complAcs.add(NormCompliance.FULFILMENT);
 		}
-		if(this.infringedNorms.contains(norm)) {
+		if(normOutcomes != null && normOutcomes.infringed) {
 			complAcs.add(NormCompliance.INFRINGEMENT);
 		}
 		return complAcs;
 	}
 	
 	/**
-	 * Clears the goal norm compliance
+	 * Clears the goal norm compliance. The records of the norms fulfilled
+	 * or infringed since the previous clear are reset in order to be reused,
+	 * and the rest of records are discarded
 	 */
 	public void clear() {
+		this.allNorms.clear();
 		this.fulfilledNorms.clear();
 		this.infringedNorms.clear();
 
-		for(Norm norm : this.numFulfilmentsWithConflict.keySet()) {
-			this.numFulfilmentsWithConflict.put(norm, 0);
-		}
-		for(Norm norm : this.numFulfilmentsWithNoConflict.keySet()) {
-			this.numFulfilmentsWithNoConflict.put(norm, 0);
-		}
-		for(Norm norm : this.numInfringementsWithConflict.keySet()) {
-			this.numInfringementsWithConflict.put(norm, 0);
-		}
-		for(Norm norm : this.numInfringementsWithNoConflict.keySet()) {
-			this.numInfringementsWithNoConflict.put(norm, 0);
-		}		
-		for(List<SetOfPredicatesWithTerms> list :
-			this.normsApplicableToAgentContexts.values()) {
-			list.clear();
+		Iterator<NormOutcomes> it = this.outcomes.values().iterator();
+		while(it.hasNext()) {
+			NormOutcomes normOutcomes = it.next();
+			if(!normOutcomes.fulfilled && !normOutcomes.infringed) {
+				it.remove();
+			}
+			else {
+				normOutcomes.reset();
+			}
 		}
 	}
 	
@@ -275,41 +279,80 @@ public class NormComplianceOutcomes {
 	//---------------------------------------------------------------------------
 	
 	/**
-	 * Adds a norm that has been applicable to an agent context, to a given 
-	 * list of norm compliances/infringements and to a map that sums up the 
-	 * number of conflicts that arose after the norm compliance/infringement
+	 * Adds a norm that has been applicable to an agent context to the list
+	 * of norm compliances or infringements, and returns the record of the 
+	 * outcomes of the norm, which counts the number of conflicts that arose
+	 * after the norm compliance/infringement
 	 * 
-	 * @param map the map
-	 * @param list the list
 	 * @param agContext the agent context
 	 * @param norm the norm
+	 * @param isFulfilment <tt>true</tt> if the norm has been fulfilled, and 
+	 * 					<tt>false</tt> if the norm has been infringed 
+	 * @return the record of the outcomes of the norm
 	 */
-	private void add(Map<Norm, Integer> map, List<Norm> list,
-			SetOfPredicatesWithTerms agContext, Norm norm) {
+	private NormOutcomes add(SetOfPredicatesWithTerms agContext, Norm norm,
+			boolean isFulfilment) {
 		
-		if(!map.containsKey(norm)) {
-			map.put(norm, 0);
+		NormOutcomes normOutcomes = this.outcomes.get(norm);
+		if(normOutcomes == null) {
+			normOutcomes = new NormOutcomes();
+			this.outcomes.put(norm, normOutcomes);
 		}
-		map.put(norm, map.get(norm)+1);
 		
-		if(!list.contains(norm)) {
-			list.add(norm);
-		}		
-		if(!this.normsApplicableToAgentContexts.containsKey(norm)) {
-			this.normsApplicableToAgentContexts.put(norm,
-					new ArrayList<SetOfPredicatesWithTerms>());
+		/* Add the norm to the list of all norms, if it does not exist yet */
+		if(!normOutcomes.fulfilled && !normOutcomes.infringed) {
+			this.allNorms.add(norm);
+		}
+		if(isFulfilment && !normOutcomes.fulfilled) {
+			normOutcomes.fulfilled = true;
+			this.fulfilledNorms.add(norm);
+		}
+		else if(!isFulfilment && !normOutcomes.infringed) {
+			normOutcomes.infringed = true;
+			this.infringedNorms.add(norm);
 		}
 		
-		List<SetOfPredicatesWithTerms> naac =	
-				this.normsApplicableToAgentContexts.get(norm);
-		
-		if(!naac.contains(agContext)) {
-			naac.add(agContext);
+		if(normOutcomes.agContextsSet.add(agContext)) {
+			normOutcomes.agContexts.add(agContext);
 		}
+		return normOutcomes;
+	}
+	
+	//---------------------------------------------------------------------------
+	// Private classes
+	//---------------------------------------------------------------------------
+	
+	/**
+	 * Outcomes of the compliances and infringements of a norm 
+	 */
+	private static class NormOutcomes {
 		
-		/* Add the norm to the list of all norms, if it does not exist yet */
-		if(!this.allNorms.contains(norm)) {
-			this.allNorms.add(norm);
+		int numFulfilmentsWithConflict;
+		int numFulfilmentsWithNoConflict;	
+		int numInfringementsWithConflict;		
+		int numInfringementsWithNoConflict;
+		
+		boolean fulfilled;		// the norm has been fulfilled
+		boolean infringed;		// the norm has been infringed
+		
+		/* Agent contexts in which the norm was applicable */
+		List<SetOfPredicatesWithTerms> agContexts = 
+				new ArrayList<SetOfPredicatesWithTerms>();
+		Set<SetOfPredicatesWithTerms> agContextsSet = 
+				new HashSet<SetOfPredicatesWithTerms>();
+		
+		/**
+		 * Resets the outcomes of the norm
+		 */
+		void reset() {
+			this.numFulfilmentsWithConflict = 0;
+			this.numFulfilmentsWithNoConflict = 0;
+			this.numInfringementsWithConflict = 0;
+			this.numInfringementsWithNoConflict = 0;
+			this.fulfilled = false;
+			this.infringed = false;
+			this.agContexts.clear();
+			this.agContextsSet.clear();
 		}
 	}
 }
@@ -0,0 +1,20 @@
+package es.csic.iiia.nsm.norm.evaluation;
+
+/**
+ * Modes to compute the top and bottom boundaries of a performance range.
+ * Mode <tt>StandardDeviation</tt> computes them as the average plus/minus
+ * the standard deviation of the punctual values. Mode <tt>Quantiles</tt>
+ * computes them as a high and a low quantile (e.g., p90 and p10) of the
+ * punctual values, estimated by streaming quantile sketches with bounded
+ * memory, which makes the boundaries robust to outliers. In both modes,
+ * the boundaries summarise the same window of punctual values as the 
+ * sliding window average (in mode <tt>Quantiles</tt>, approximately, since
+ * values leave the window of quantiles in blocks)
+ * 
+ * @author "Javier Morales (jmorales@iiia.csic.es)"
+ * @see PerformanceRange
+ * @see es.csic.iiia.nsm.utilities.QuantileSketch
+ */
+public enum PerformanceBoundaryMode {
+	StandardDeviation, Quantiles;
+}
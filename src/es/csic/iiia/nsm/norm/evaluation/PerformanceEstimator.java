@@ -0,0 +1,17 @@
+package es.csic.iiia.nsm.norm.evaluation;
+
+/**
+ * Estimators of the average and the standard deviation of a performance
+ * range. Estimator <tt>SlidingWindow</tt> computes them over the last N
+ * values of the performance range. Estimator <tt>ExponentiallyWeighted</tt>
+ * computes an exponentially weighted moving average and variance driven
+ * by the norm evaluation learning rate, which requires constant memory
+ * and constant time per value. In this case, the sliding series of the
+ * performance range just contain their current value
+ * 
+ * @author "Javier Morales (jmorales@iiia.csic.es)"
+ * @see PerformanceRange
+ */
+public enum PerformanceEstimator {
+	SlidingWindow, ExponentiallyWeighted;
+}
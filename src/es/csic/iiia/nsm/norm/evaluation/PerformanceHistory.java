@@ -0,0 +1,463 @@
+package es.csic.iiia.nsm.norm.evaluation;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * The history of the series of a performance range (punctual values,
+ * average, top boundary and bottom boundary). Values are stored in
+ * primitive arrays, and the amount of history that is kept depends
+ * on the history mode.
+ * <p>
+ * In <tt>Spilled</tt> mode, values are written in chunks to a temporary
+ * file shared by all the histories. Each chunk takes a fixed slot of the
+ * file, which is reused once its history is disposed. The spilled values
+ * of each series are read back the first time the series is requested,
+ * and kept in a soft cache afterwards, so that only the chunks spilled
+ * since the last request are read. If values cannot be spilled, they are
+ * kept in memory
+ * 
+ * @author "Javier Morales (jmorales@iiia.csic.es)"
+ * @see PerformanceRange
+ * @see PerformanceHistoryMode
+ */
+public class PerformanceHistory {
+
+	//---------------------------------------------------------------------------
+	// Static attributes
+	//---------------------------------------------------------------------------
+
+	public static final int PUNCTUAL = 0;
+	public static final int AVERAGE = 1;
+	public static final int TOP_BOUNDARY = 2;
+	public static final int BOTTOM_BOUNDARY = 3;
+	
+	private static final int NUM_SERIES = 4;
+	private static final int INITIAL_CAPACITY = 16;
+	
+	public static final int DEFAULT_MAX_DOWNSAMPLED_VALUES = 1024;
+	public static final int DEFAULT_SPILL_CHUNK_SIZE = 1024;
+	
+	//---------------------------------------------------------------------------
+	// Attributes
+	//---------------------------------------------------------------------------
+	
+	private PerformanceHistoryMode mode;	// the history mode
+	
+	private float[][] series;				// values of each series kept in memory
+	private int numValues;					// number of values kept in memory
+
+	private int maxValues;					// max #values kept in memory (downsampled)
+	private int stride;							// #values averaged in each value
+	private float[] accumulated;		// sum of the values of the current stride
+	private int numAccumulated;			// #values of the current stride
+	
+	private boolean spillEnabled;		// can values be spilled?
+	private int[] spilledChunks;		// slots of the spilled chunks
+	private int numSpilledChunks;		// number of spilled chunks
+	
+	/* Spilled values of each series that have been read back */
+	private SoftReference<float[]>[] spilledCache;
+	private int[] numCached;				// #spilled values cached of each series
+	
+	private static SpillFile spillFile;	// file shared by all histories
+	
+	//---------------------------------------------------------------------------
+	// Methods
+	//---------------------------------------------------------------------------
+
+	/**
+	 * Constructor 
+	 * 
+	 * @param mode the history mode
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public PerformanceHistory(PerformanceHistoryMode mode) {
+		this.mode = mode;
+		this.maxValues = DEFAULT_MAX_DOWNSAMPLED_VALUES;
+		this.stride = 1;
+		this.accumulated = new float[NUM_SERIES];
+		
+		if(mode != PerformanceHistoryMode.Off) {
+			this.series = new float[NUM_SERIES][INITIAL_CAPACITY];
+		}
+		if(mode == PerformanceHistoryMode.Spilled) {
+			this.spillEnabled = true;
+			this.spilledChunks = new int[INITIAL_CAPACITY];
+			this.spilledCache = new SoftReference[NUM_SERIES];
+			this.numCached = new int[NUM_SERIES];
+		}
+	}
+	
+	/**
+	 * Adds a new value to each series
+	 * 
+	 * @param punctual the punctual value
+	 * @param average the average value
+	 * @param topBoundary the top boundary value
+	 * @param bottomBoundary the bottom boundary value
+	 */
+	public void add(float punctual, float average, float topBoundary,
+			float bottomBoundary) {
+		
+		switch(this.mode) {
+		
+		case Full:
+			this.append(punctual, average, topBoundary, bottomBoundary);
+			break;
+			
+		case Downsampled:
+			this.accumulated[PUNCTUAL] += punctual;
+			this.accumulated[AVERAGE] += average;
+			this.accumulated[TOP_BOUNDARY] += topBoundary;
+			this.accumulated[BOTTOM_BOUNDARY] += bottomBoundary;
+			
+			/* Each value in memory averages "stride" consecutive values */
+			if(++this.numAccumulated == this.stride) {
+				this.append(this.accumulated[PUNCTUAL] / this.stride,
+						this.accumulated[AVERAGE] / this.stride,
+						this.accumulated[TOP_BOUNDARY] / this.stride,
+						this.accumulated[BOTTOM_BOUNDARY] / this.stride);
+				
+				Arrays.fill(this.accumulated, 0f);
+				this.numAccumulated = 0;
+				
+				if(this.numValues >= this.maxValues) {
+					this.downsample();
+				}
+			}
+			break;
+			
+		case Spilled:
+			this.append(punctual, average, topBoundary, bottomBoundary);
+			
+			if(this.spillEnabled && this.numValues >= DEFAULT_SPILL_CHUNK_SIZE) {
+				this.spill();
+			}
+			break;
+			
+		case Off:
+			break;
+		}
+	}
+	
+	/**
+	 * Returns a read-only view of all the values of a series. In 
+	 * <tt>Spilled</tt> mode, the spilled values are read back from the
+	 * spill file (just those that are not in cache yet), and the values
+	 * in memory are copied
+	 * 
+	 * @param s the series ({@code PUNCTUAL}, {@code AVERAGE}, 
+	 * 					{@code TOP_BOUNDARY} or {@code BOTTOM_BOUNDARY})
+	 * @return a read-only view of all the values of the series, or
+	 * 					<tt>null</tt> if no history is kept
+	 * @throws IllegalStateException if the spilled values cannot be read
+	 */
+	public List<Float> getSeries(int s) {
+		switch(this.mode) {
+		
+		case Full:
+		case Downsampled:
+			return new FloatArrayList(this.series[s], 0, this.numValues);
+			
+		case Spilled:
+			return new SpilledFloatList(this.getSpilledValues(s),
+					this.getNumSpilled(), 
+					Arrays.copyOf(this.series[s], this.numValues));
+			
+		default:
+			return null;
+		}
+	}
+	
+	/**
+	 * Returns the history mode
+	 * 
+	 * @return the history mode
+	 */
+	public PerformanceHistoryMode getMode() {
+		return this.mode;
+	}
+	
+	/**
+	 * Releases the slots of the spill file taken by the history, which
+	 * may be reused by other histories. The spilled values are discarded,
+	 * and hence the history just keeps the values in memory
+	 */
+	public void dispose() {
+		if(this.numSpilledChunks == 0) {
+			return;
+		}
+		for(int c=0; c<this.numSpilledChunks; c++) {
+			spillFile.free(this.spilledChunks[c]);
+		}
+		this.numSpilledChunks = 0;
+		Arrays.fill(this.spilledCache, null);
+		Arrays.fill(this.numCached, 0);
+	}
+	
+	//---------------------------------------------------------------------------
+	// Private methods
+	//---------------------------------------------------------------------------
+
+	/**
+	 * Appends a value to each series in memory 
+	 */
+	private void append(float punctual, float average, float topBoundary,
+			float bottomBoundary) {
+		
+		if(this.numValues == this.series[0].length) {
+			for(int s=0; s<NUM_SERIES; s++) {
+				this.series[s] = Arrays.copyOf(this.series[s], 2 * this.numValues);
+			}
+		}
+		this.series[PUNCTUAL][this.numValues] = punctual;
+		this.series[AVERAGE][this.numValues] = average;
+		this.series[TOP_BOUNDARY][this.numValues] = topBoundary;
+		this.series[BOTTOM_BOUNDARY][this.numValues] = bottomBoundary;
+		this.numValues++;
+	}
+	
+	/**
+	 * Halves the number of values in memory by averaging each pair
+	 * of consecutive values, and doubles the stride
+	 */
+	private void downsample() {
+		int n = this.numValues / 2;
+		
+		for(int s=0; s<NUM_SERIES; s++) {
+			float[] values = this.series[s];
+			for(int i=0; i<n; i++) {
+				values[i] = (values[2*i] + values[2*i+1]) / 2;
+			}
+		}
+		this.numValues = n;
+		this.stride *= 2;
+	}
+	
+	/**
+	 * Appends the values in memory to the spill file as a new chunk.
+	 * If the values cannot be spilled, they are kept in memory, and
+	 * the history does not try to spill values anymore
+	 */
+	private void spill() {
+		try {
+			int slot = getSpillFile().write(this.series, this.numValues);
+			
+			if(this.numSpilledChunks == this.spilledChunks.length) {
+				this.spilledChunks = Arrays.copyOf(this.spilledChunks,
+						2 * this.numSpilledChunks);
+			}
+			this.spilledChunks[this.numSpilledChunks++] = slot;
+			this.numValues = 0;
+		}
+		catch(IOException e) {
+			this.spillEnabled = false;
+		}
+	}
+	
+	/**
+	 * Returns the number of spilled values
+	 * 
+	 * @return the number of spilled values
+	 */
+	private int getNumSpilled() {
+		return this.numSpilledChunks * DEFAULT_SPILL_CHUNK_SIZE;
+	}
+	
+	/**
+	 * Returns the spilled values of a series, reading back from the
+	 * spill file those chunks that are not in cache yet
+	 * 
+	 * @param s the series
+	 * @return an array whose first values are the spilled values
+	 * @throws IllegalStateException if the spilled values cannot be read
+	 */
+	private float[] getSpilledValues(int s) {
+		int numSpilled = this.getNumSpilled();
+		float[] values = null;
+		if(this.spilledCache[s] != null) {
+			values = this.spilledCache[s].get();
+		}
+		if(values == null) {
+			this.numCached[s] = 0;
+		}
+		if(this.numCached[s] == numSpilled) {
+			return values;
+		}
+		
+		/* Read the chunks spilled since the last request */
+		float[] newValues = new float[numSpilled];
+		if(values != null) {
+			System.arraycopy(values, 0, newValues, 0, this.numCached[s]);
+		}
+		try {
+			for(int c=this.numCached[s] / DEFAULT_SPILL_CHUNK_SIZE; 
+					c<this.numSpilledChunks; c++) {
+				spillFile.read(this.spilledChunks[c], s, newValues,
+						c * DEFAULT_SPILL_CHUNK_SIZE);
+			}
+		}
+		catch(IOException e) {
+			throw new IllegalStateException(
+					"Cannot read the spilled history of a performance range", e);
+		}
+		this.spilledCache[s] = new SoftReference<float[]>(newValues);
+		this.numCached[s] = numSpilled;
+		return newValues;
+	}
+	
+	/**
+	 * Returns the spill file shared by all histories, creating it
+	 * the first time that a history spills its values
+	 * 
+	 * @return the spill file
+	 * @throws IOException if the spill file cannot be created
+	 */
+	private static synchronized SpillFile getSpillFile() throws IOException {
+		if(spillFile == null) {
+			spillFile = new SpillFile();
+		}
+		return spillFile;
+	}
+	
+	//---------------------------------------------------------------------------
+	// Private classes
+	//---------------------------------------------------------------------------
+
+	/**
+	 * Temporary file that contains the chunks of spilled values of all
+	 * the histories. Each chunk takes a fixed-size slot of the file, and
+	 * contains the values of each series one after the other, so that a
+	 * series can be read without reading the rest. Slots are released
+	 * when their history is disposed, and reused by later chunks
+	 */
+	private static class SpillFile {
+		
+		private static final int SERIES_BYTES = 4 * DEFAULT_SPILL_CHUNK_SIZE;
+		private static final int CHUNK_BYTES = NUM_SERIES * SERIES_BYTES;
+		
+		private RandomAccessFile file;
+		private BitSet usedSlots;
+		private ByteBuffer buffer;
+		
+		SpillFile() throws IOException {
+			File f = File.createTempFile("nsm-perf-ranges", ".bin");
+			f.deleteOnExit();
+			this.file = new RandomAccessFile(f, "rw");
+			this.usedSlots = new BitSet();
+			this.buffer = ByteBuffer.allocate(SERIES_BYTES);
+		}
+		
+		/**
+		 * Writes a chunk of values in a free slot, and returns the slot
+		 */
+		synchronized int write(float[][] series, int numValues)
+				throws IOException {
+			
+			int slot = this.usedSlots.nextClearBit(0);
+			this.file.seek((long)slot * CHUNK_BYTES);
+			for(int s=0; s<NUM_SERIES; s++) {
+				this.buffer.clear();
+				this.buffer.asFloatBuffer().put(series[s], 0, numValues);
+				this.file.write(this.buffer.array(), 0, SERIES_BYTES);
+			}
+			this.usedSlots.set(slot);
+			return slot;
+		}
+		
+		/**
+		 * Reads the values of a series of the chunk in a slot
+		 */
+		synchronized void read(int slot, int s, float[] values, int offset)
+				throws IOException {
+			
+			this.file.seek((long)slot * CHUNK_BYTES + s * SERIES_BYTES);
+			this.file.readFully(this.buffer.array(), 0, SERIES_BYTES);
+			this.buffer.clear();
+			this.buffer.asFloatBuffer().get(values, offset,
+					DEFAULT_SPILL_CHUNK_SIZE);
+		}
+		
+		/**
+		 * Releases a slot, so that it can be reused
+		 */
+		synchronized void free(int slot) {
+			this.usedSlots.clear(slot);
+		}
+	}
+	
+	/**
+	 * Read-only {@code List} view of a range of a float array
+	 */
+	private static class FloatArrayList extends AbstractList<Float>
+	implements RandomAccess {
+
+		private float[] values;
+		private int from;
+		private int size;
+		
+		FloatArrayList(float[] values, int from, int size) {
+			this.values = values;
+			this.from = from;
+			this.size = size;
+		}
+		
+		@Override
+		public Float get(int i) {
+			if(i < 0 || i >= this.size) {
+				throw new IndexOutOfBoundsException("Index: " + i +
+						", Size: " + this.size);
+			}
+			return this.values[this.from + i];
+		}
+
+		@Override
+		public int size() {
+			return this.size;
+		}
+	}
+	
+	/**
+	 * Read-only {@code List} view of the spilled values of a series
+	 * followed by the values in memory
+	 */
+	private static class SpilledFloatList extends AbstractList<Float>
+	implements RandomAccess {
+		
+		private float[] spilled;
+		private int numSpilled;
+		private float[] inMemory;
+		
+		SpilledFloatList(float[] spilled, int numSpilled, float[] inMemory) {
+			this.spilled = spilled;
+			this.numSpilled = numSpilled;
+			this.inMemory = inMemory;
+		}
+		
+		@Override
+		public Float get(int i) {
+			if(i < 0 || i >= this.size()) {
+				throw new IndexOutOfBoundsException("Index: " + i +
+						", Size: " + this.size());
+			}
+			if(i < this.numSpilled) {
+				return this.spilled[i];
+			}
+			return this.inMemory[i - this.numSpilled];
+		}
+		
+		@Override
+		public int size() {
+			return this.numSpilled + this.inMemory.length;
+		}
+	}
+}
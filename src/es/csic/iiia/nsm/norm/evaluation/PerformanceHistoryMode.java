@@ -0,0 +1,18 @@
+package es.csic.iiia.nsm.norm.evaluation;
+
+/**
+ * Modes to keep the whole history of a performance range, beyond its
+ * sliding window. Mode <tt>Full</tt> keeps every value in memory. Mode
+ * <tt>Downsampled</tt> keeps a bounded number of values in memory, each
+ * one averaging a growing number of consecutive values. Mode
+ * <tt>Spilled</tt> keeps every value, but writes old values to a temporary
+ * file. Mode <tt>Off</tt> does not keep any history, and hence the
+ * history of a performance range is just its sliding window
+ * 
+ * @author "Javier Morales (jmorales@iiia.csic.es)"
+ * @see PerformanceRange
+ * @see PerformanceHistory
+ */
+public enum PerformanceHistoryMode {
+	Full, Downsampled, Spilled, Off;
+}
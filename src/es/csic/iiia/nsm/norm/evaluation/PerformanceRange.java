@@ -1,23 +1,36 @@
 package es.csic.iiia.nsm.norm.evaluation;
 
-import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 
+import es.csic.iiia.nsm.utilities.FloatRingBuffer;
+import es.csic.iiia.nsm.utilities.QuantileSketch;
+
 /**
  * The sliding window of a performance range. It consists in several
  * series that contain the last N values of a performance range:
  * <ol>
  * <li> the punctual values;
  * <li> the average of the punctual values;
- * <li> the top boundary of the performance range, which is computed as the 
+ * <li> the top boundary of the performance range, which is computed as the
  * 			average + the standard deviation of the average
- * <li> the bottom boundary of the performance range, which is computed as the 
- * 			average - the standard deviation of the average 
- * </ol> 
- * 
+ * <li> the bottom boundary of the performance range, which is computed as the
+ * 			average - the standard deviation of the average
+ * </ol>
+ * Series are kept in primitive ring buffers, and the average and the
+ * standard deviation of the punctual values are updated incrementally
+ * each time a value enters or leaves the window. Alternatively, they may
+ * be estimated by means of an exponentially weighted moving average and
+ * variance, depending on the {@code PerformanceEstimator} of the
+ * performance range. The boundaries may also be computed as quantiles of
+ * the last N punctual values, depending on its {@code PerformanceBoundaryMode}.
+ * Optionally, the performance range keeps the history of all the values of
+ * each series, depending on its {@code PerformanceHistoryMode}
+ *
  * @author "Javier Morales (jmorales@iiia.csic.es)"
+ * @see PerformanceHistoryMode
+ * @see PerformanceEstimator
+ * @see PerformanceBoundaryMode
  */
 public class PerformanceRange {
 
@@ -25,270 +38,584 @@ public class PerformanceRange {
 	// Atributes
 	//---------------------------------------------------------------------------
 
-	private long maxSlidingValues;
+	/* Number of sketches in which the window of quantiles is split */
+	private static final int NUM_QUANTILE_BLOCKS = 4;
+
+	private int maxSlidingValues;
 	private boolean hasNewValue;
-	
-	private List<Float> punctualValues;
-	private List<Float> average;
-	private List<Float> topBoundary;
-	private List<Float> bottomBoundary;
-	
-	private LinkedList<Float> slidingPunctualValues;
-	private LinkedList<Float> slidingAverage;
-	private LinkedList<Float> slidingTopBoundary;
-	private LinkedList<Float> slidingBottomBoundary;
-	
+
+	private PerformanceEstimator estimator;
+	private float learningRate;
+
+	private PerformanceBoundaryMode boundaryMode;
+	private float boundaryQuantile;			// quantile of the bottom boundary
+
+	/* Quantile sketches of the window of punctual values, which is split
+	 * in consecutive blocks, the oldest one being evicted once the newest
+	 * one is full. Null if boundaries are not quantiles */
+	private QuantileSketch[] quantileBlocks;
+	private int quantileBlockSize;			// number of values of each block
+	private int currentQuantileBlock;		// block that receives new values
+	private QuantileSketch pastQuantiles;	// merge of the rest of blocks
+	private QuantileSketch quantiles;		// merge of all the blocks
+
+	private PerformanceHistory history;
+
+	/* The punctual values window contains one more value than the other
+	 * series, since the average and the boundaries are computed
+	 * before removing the oldest punctual value */
+	private FloatRingBuffer slidingPunctualValues;
+	private FloatRingBuffer slidingAverage;
+	private FloatRingBuffer slidingTopBoundary;
+	private FloatRingBuffer slidingBottomBoundary;
+
+	/* Running statistics of the punctual values window */
+	private double sum;
+	private double mean;
+	private double m2;
+	private int numRemovals;
+
+	/* Exponentially weighted statistics of the punctual values */
+	private double ewMean;
+	private double ewVar;
+	private boolean hasEwValues;
+
 	//---------------------------------------------------------------------------
 	// Methods
 	//---------------------------------------------------------------------------
 
 	/**
-	 * Constructor
-	 * 
+	 * Constructor. The performance range keeps the full history of its series
+	 *
 	 * @param size
 	 */
 	public PerformanceRange(long size){
-		this.punctualValues = new ArrayList<Float>();
-		this.average = new ArrayList<Float>();
-		this.topBoundary = new ArrayList<Float>();
-		this.bottomBoundary = new ArrayList<Float>();
-		this.slidingPunctualValues = new LinkedList<Float>();
-		this.slidingAverage = new LinkedList<Float>();
-		this.slidingTopBoundary = new LinkedList<Float>();
-		this.slidingBottomBoundary = new LinkedList<Float>();
+		this(size, PerformanceHistoryMode.Full);
+	}
+
+	/**
+	 * Constructor with history mode
+	 *
+	 * @param size the size of the sliding window
+	 * @param historyMode the mode to keep the history of the series
+	 */
+	public PerformanceRange(long size, PerformanceHistoryMode historyMode){
+		this(size, historyMode, PerformanceEstimator.SlidingWindow, 0f);
+	}
+
+	/**
+	 * Constructor with history mode and estimator. If the estimator is
+	 * <tt>ExponentiallyWeighted</tt>, the sliding series just keep their
+	 * current value, regardless of the given size
+	 *
+	 * @param size the size of the sliding window
+	 * @param historyMode the mode to keep the history of the series
+	 * @param estimator the estimator of the average and standard deviation
+	 * @param learningRate the weight of each new value in the exponentially
+	 * 					weighted average and variance
+	 * @see PerformanceEstimator
+	 */
+	public PerformanceRange(long size, PerformanceHistoryMode historyMode,
+			PerformanceEstimator estimator, float learningRate){
+		this(size, historyMode, estimator, learningRate, 
+				PerformanceBoundaryMode.StandardDeviation, 0f);
+	}
+
+	/**
+	 * Constructor with history mode, estimator and boundary mode. If the
+	 * boundary mode is <tt>Quantiles</tt>, the bottom boundary is the
+	 * quantile {@code boundaryQuantile} of the last {@code size} punctual
+	 * values (approximately, since values leave the window in blocks of a
+	 * quarter of the window), and the top boundary is the quantile
+	 * <tt>1 - boundaryQuantile</tt>. The window of quantiles has the given
+	 * size regardless of the estimator
+	 *
+	 * @param size the size of the sliding window
+	 * @param historyMode the mode to keep the history of the series
+	 * @param estimator the estimator of the average and standard deviation
+	 * @param learningRate the weight of each new value in the exponentially
+	 * 					weighted average and variance
+	 * @param boundaryMode the mode to compute the boundaries
+	 * @param boundaryQuantile the quantile of the bottom boundary
+	 * @see PerformanceBoundaryMode
+	 */
+	public PerformanceRange(long size, PerformanceHistoryMode historyMode,
+			PerformanceEstimator estimator, float learningRate,
+			PerformanceBoundaryMode boundaryMode, float boundaryQuantile){
+
+		this.boundaryMode = boundaryMode;
+		this.boundaryQuantile = Math.min(boundaryQuantile, 1 - boundaryQuantile);
+		if(boundaryMode == PerformanceBoundaryMode.Quantiles) {
+			int windowSize = (int)Math.min(size, Integer.MAX_VALUE - 1);
+			this.quantileBlockSize = Math.max(1, (windowSize + 
+					NUM_QUANTILE_BLOCKS - 1) / NUM_QUANTILE_BLOCKS);
+			this.quantileBlocks = new QuantileSketch[NUM_QUANTILE_BLOCKS];
+			for(int b=0; b<NUM_QUANTILE_BLOCKS; b++) {
+				this.quantileBlocks[b] = new QuantileSketch();
+			}
+			this.pastQuantiles = new QuantileSketch();
+			this.quantiles = new QuantileSketch();
+		}
 		
-		this.maxSlidingValues = size;
+		if(estimator == PerformanceEstimator.ExponentiallyWeighted) {
+			size = 1;
+		}
+		this.maxSlidingValues = (int)Math.min(size, Integer.MAX_VALUE - 1);
 		this.hasNewValue = false;
+		this.estimator = estimator;
+		this.learningRate = learningRate;
+
+		this.history = new PerformanceHistory(historyMode);
+		this.slidingPunctualValues = new FloatRingBuffer(this.maxSlidingValues + 1);
+		this.slidingAverage = new FloatRingBuffer(this.maxSlidingValues);
+		this.slidingTopBoundary = new FloatRingBuffer(this.maxSlidingValues);
+		this.slidingBottomBoundary = new FloatRingBuffer(this.maxSlidingValues);
 	}
 
 	/**
 	 * Adds a value to the window
-	 * 
+	 *
 	 * @param value
 	 */
 	public void addValue(float value) {
 		this.hasNewValue = true;
-		
-		/* Add new punctual value */
-		this.add(punctualValues, slidingPunctualValues, value);
 
-		/* Compute and add new average value */
-		float avg = this.getAvg();
-		this.add(average, slidingAverage, avg);
-		
-		/* Compute and add new boundaries values */
-		float stdDev = this.getStdDev();
-		float topBnd = avg + stdDev;
-		float btmBnd = avg - stdDev;
-		this.add(topBoundary, slidingTopBoundary, topBnd);
-		this.add(bottomBoundary, slidingBottomBoundary, btmBnd);
-		
-		/* Remove old values */
-		if(this.slidingPunctualValues.size() > this.maxSlidingValues) {
-			this.slidingPunctualValues.remove();
+		/* Add new punctual value */
+		float avg, stdDev;
+		if(this.estimator == PerformanceEstimator.ExponentiallyWeighted) {
+			this.slidingPunctualValues.add(value);
+			this.addExponentiallyWeightedValue(value);
+			avg = (float) this.ewMean;
+			stdDev = (float) Math.sqrt(this.ewVar);
 		}
-		if(this.slidingAverage.size() > this.maxSlidingValues) {
-			this.slidingAverage.remove();
+		else {
+			this.addPunctualValue(value);
+			avg = this.getAvg();
+			stdDev = this.getStdDev();
 		}
-		if(this.slidingTopBoundary.size() > this.maxSlidingValues) {
-			this.slidingTopBoundary.remove();
+
+		/* Add new average value */
+		this.slidingAverage.add(avg);
+
+		/* Compute and add new boundaries values */
+		float topBnd, btmBnd;
+		if(this.quantiles != null) {
+			this.addQuantileValue(value);
+			topBnd = this.quantiles.getQuantile(1 - this.boundaryQuantile);
+			btmBnd = this.quantiles.getQuantile(this.boundaryQuantile);
 		}
-		if(this.slidingBottomBoundary.size() > this.maxSlidingValues) {
-			this.slidingBottomBoundary.remove();
+		else {
+			topBnd = avg + stdDev;
+			btmBnd = avg - stdDev;
 		}
+		this.slidingTopBoundary.add(topBnd);
+		this.slidingBottomBoundary.add(btmBnd);
+
+		this.history.add(value, avg, topBnd, btmBnd);
 	}
 
 	/**
-	 * Returns the list of all values in the punctual values series
-	 * 
+	 * Returns the list of all values in the punctual values series. If the
+	 * history is off, it returns the last N values
+	 *
 	 * @return the list of all values in the punctual values series
 	 */
 	public List<Float> getPunctualValues() {
-		return this.punctualValues;
+		return this.getHistory(PerformanceHistory.PUNCTUAL,
+				this.slidingPunctualValues);
 	}
-	
+
 	/**
-	 * Returns the list of all values in the average series
-	 * 
+	 * Returns the list of all values in the average series. If the
+	 * history is off, it returns the last N values
+	 *
 	 * @return the list of all values in the average series
 	 */
 	public List<Float> getAverage() {
-		return this.average;
+		return this.getHistory(PerformanceHistory.AVERAGE, this.slidingAverage);
 	}
-	
+
 	/**
-	 * Returns the list of all values in the top boundary series
-	 * 
+	 * Returns the list of all values in the top boundary series. If the
+	 * history is off, it returns the last N values
+	 *
 	 * @return the list of all values in the top boundary series
 	 */
 	public List<Float> getTopBoundary() {
-		return this.topBoundary;
+		return this.getHistory(PerformanceHistory.TOP_BOUNDARY,
+				this.slidingTopBoundary);
 	}
-	
+
 	/**
-	 * Returns the list of all values in the bottom boundary series
-	 * 
+	 * Returns the list of all values in the bottom boundary series. If the
+	 * history is off, it returns the last N values
+	 *
 	 * @return the list of all values in the bottom boundary series
 	 */
 	public List<Float> getBottomBoundary() {
-		return this.bottomBoundary;
+		return this.getHistory(PerformanceHistory.BOTTOM_BOUNDARY,
+				this.slidingBottomBoundary);
 	}
-	
+
 	/**
-	 * Returns the list of last N values in the punctual values series
-	 * 
+	 * Returns a copy of the list of last N values in the punctual values series
+	 *
 	 * @return the list of last N values in the punctual values series
+	 * @see #getSlidingPunctualValue(int)
 	 */
 	public LinkedList<Float> getSlidingPunctualValues() {
-		return this.slidingPunctualValues;
+		return this.slidingPunctualValues.toLinkedList(this.maxSlidingValues);
 	}
-	
+
 	/**
-	 * Returns the list of last N values in the average series
-	 * 
+	 * Returns a copy of the list of last N values in the average series
+	 *
 	 * @return the list of last N values in the average series
+	 * @see #getSlidingAverage(int)
 	 */
 	public LinkedList<Float> getSlidingAverage() {
-		return this.slidingAverage;
+		return this.slidingAverage.toLinkedList(this.maxSlidingValues);
 	}
-	
+
 	/**
-	 * Returns the list of last N values in the top boundary series
-	 * 
+	 * Returns a copy of the list of last N values in the top boundary series
+	 *
 	 * @return the list of last N values in the top boundary series
+	 * @see #getSlidingTopBoundary(int)
 	 */
 	public LinkedList<Float> getSlidingTopBoundary() {
-		return this.slidingTopBoundary;
+		return this.slidingTopBoundary.toLinkedList(this.maxSlidingValues);
 	}
-	
+
 	/**
-	 * Returns the list of last N values in the bottom boundary series
-	 * 
+	 * Returns a copy of the list of last N values in the bottom boundary series
+	 *
 	 * @return the list of last N values in the bottom boundary series
+	 * @see #getSlidingBottomBoundary(int)
 	 */
 	public LinkedList<Float> getSlidingBottomBoundary() {
-		return this.slidingBottomBoundary;
+		return this.slidingBottomBoundary.toLinkedList(this.maxSlidingValues);
+	}
+
+	/**
+	 * Returns the {@code i}-th value of the last N values in the punctual
+	 * values series, being 0 the oldest one. Unlike 
+	 * {@code getSlidingPunctualValues()}, it does not copy the series
+	 *
+	 * @param i the index of the value
+	 * @return the {@code i}-th value of the last N punctual values
+	 */
+	public float getSlidingPunctualValue(int i) {
+		return this.getSlidingValue(this.slidingPunctualValues, i);
+	}
+
+	/**
+	 * Returns the {@code i}-th value of the last N values in the average
+	 * series, being 0 the oldest one. Unlike {@code getSlidingAverage()},
+	 * it does not copy the series
+	 *
+	 * @param i the index of the value
+	 * @return the {@code i}-th value of the last N averages
+	 */
+	public float getSlidingAverage(int i) {
+		return this.getSlidingValue(this.slidingAverage, i);
 	}
-	
+
+	/**
+	 * Returns the {@code i}-th value of the last N values in the top
+	 * boundary series, being 0 the oldest one. Unlike 
+	 * {@code getSlidingTopBoundary()}, it does not copy the series
+	 *
+	 * @param i the index of the value
+	 * @return the {@code i}-th value of the last N top boundaries
+	 */
+	public float getSlidingTopBoundary(int i) {
+		return this.getSlidingValue(this.slidingTopBoundary, i);
+	}
+
+	/**
+	 * Returns the {@code i}-th value of the last N values in the bottom
+	 * boundary series, being 0 the oldest one. Unlike 
+	 * {@code getSlidingBottomBoundary()}, it does not copy the series
+	 *
+	 * @param i the index of the value
+	 * @return the {@code i}-th value of the last N bottom boundaries
+	 */
+	public float getSlidingBottomBoundary(int i) {
+		return this.getSlidingValue(this.slidingBottomBoundary, i);
+	}
+
 	/**
 	 * Returns the last value of the punctual values series
-	 * 
+	 *
 	 * @return the last value of the punctual values series
 	 */
 	public float getCurrentPunctualValue() {
 		return this.slidingPunctualValues.getLast();
 	}
-	
+
 	/**
 	 * Returns the last value of the average series
-	 * 
+	 *
 	 * @return the last value of the average series
 	 */
 	public float getCurrentAverage() {
 		return this.slidingAverage.getLast();
 	}
-	
+
 	/**
 	 * Returns the last value of the top boundary series
-	 * 
+	 *
 	 * @return the last value of the top boundary series
 	 */
 	public float getCurrentTopBoundary() {
 		return this.slidingTopBoundary.getLast();
 	}
-	
+
 	/**
 	 * Returns the last value of the bottom boundary series
-	 * 
+	 *
 	 * @return the last value of the bottom boundary series
 	 */
 	public float getCurrentBottomBoundary() {
 		return this.slidingBottomBoundary.getLast();
 	}
-	
+
 	/**
 	 * Returns the number of values in the sliding series
-	 * 
+	 *
 	 * @return the number of values in the sliding series
 	 */
 	public int getNumSlidingValues() {
-		return this.slidingPunctualValues.size();
+		return Math.min(this.slidingPunctualValues.size(), this.maxSlidingValues);
+	}
+
+	/**
+	 * Returns the mode in which the performance range keeps
+	 * the history of its series
+	 *
+	 * @return the history mode
+	 * @see PerformanceHistoryMode
+	 */
+	public PerformanceHistoryMode getHistoryMode() {
+		return this.history.getMode();
+	}
+
+	/**
+	 * Returns the estimator of the average and the standard deviation
+	 * of the performance range
+	 *
+	 * @return the estimator
+	 * @see PerformanceEstimator
+	 */
+	public PerformanceEstimator getEstimator() {
+		return this.estimator;
+	}
+
+	/**
+	 * Returns the mode in which the performance range computes 
+	 * its top and bottom boundaries
+	 *
+	 * @return the boundary mode
+	 * @see PerformanceBoundaryMode
+	 */
+	public PerformanceBoundaryMode getBoundaryMode() {
+		return this.boundaryMode;
+	}
+
+	/**
+	 * Releases the resources held by the history of the performance range.
+	 * In <tt>Spilled</tt> mode, the spilled values are discarded
+	 *
+	 * @see PerformanceHistory#dispose()
+	 */
+	public void dispose() {
+		this.history.dispose();
 	}
 
 	/**
 	 * Returns <tt>true</tt> if the performance range has a new
 	 * value to be plotted
-	 * 
+	 *
 	 * @return <tt>true</tt> if the performance range has a new
 	 * 					value to be plotted
 	 */
 	public boolean hasNewValue() {
 		return this.hasNewValue;
 	}
-	
+
 	/**
-	 * Sets the boolean flag {@code hasNewValue}, which indicates if the 
+	 * Sets the boolean flag {@code hasNewValue}, which indicates if the
 	 * performance range has a new value to be plotted
-	 * 
+	 *
 	 * @param newValue
 	 */
 	public void setNewValue(boolean newValue) {
 		this.hasNewValue = newValue;
 	}
-	
+
 	//---------------------------------------------------------------------------
 	// Private methods to compute series
 	//---------------------------------------------------------------------------
-	
+
 	/**
-	 * Adds a value to the given performance range series
-	 * 
-	 * @param series the series 
+	 * Returns the history of a series, or the sliding window of the
+	 * series if no history is kept
+	 *
+	 * @param s the series
 	 * @param slidingSeries the sliding window series
 	 */
-	private void add(List<Float> series, LinkedList<Float> slidingSeries,
-			float value) {
-		
-		series.add(value);
-		slidingSeries.offer(value);
+	private List<Float> getHistory(int s, FloatRingBuffer slidingSeries) {
+		List<Float> series = this.history.getSeries(s);
+
+		if(series == null) {
+			series = slidingSeries.asList(this.maxSlidingValues);
+		}
+		return series;
 	}
-	
+
 	/**
-	 * Returns the sum of the punctual values series
-	 * 
-	 * @return the sum of the punctual values series
+	 * Returns the {@code i}-th value of the last N values of a sliding
+	 * series. The punctual values series may contain one more value, 
+	 * which is skipped
+	 *
+	 * @param slidingSeries the sliding series
+	 * @param i the index of the value
 	 */
-	private float getSum(){
-		float sum = 0;
+	private float getSlidingValue(FloatRingBuffer slidingSeries, int i) {
+		int offset = Math.max(0, slidingSeries.size() - this.maxSlidingValues);
+		if(i < 0 || offset + i >= slidingSeries.size()) {
+			throw new IndexOutOfBoundsException("Index: " + i +
+					", Size: " + (slidingSeries.size() - offset));
+		}
+		return slidingSeries.get(offset + i);
+	}
 
-		if(this.punctualValues.size() == 0)
-			return 0f;
+	/**
+	 * Adds a value to the punctual values window, and updates the running
+	 * sum and variance (Welford's method) of the window
+	 *
+	 * @param value the value to add
+	 */
+	private void addPunctualValue(float value) {
+
+		/* Remove the oldest value from the statistics */
+		if(this.slidingPunctualValues.isFull()) {
+			float oldest = this.slidingPunctualValues.getFirst();
+			int n = this.slidingPunctualValues.size() - 1;
+
+			this.sum -= oldest;
+			if(n == 0) {
+				this.mean = 0;
+				this.m2 = 0;
+			}
+			else {
+				double delta = oldest - this.mean;
+				this.mean -= delta / n;
+				this.m2 -= delta * (oldest - this.mean);
+			}
+			this.numRemovals++;
+		}
+		this.slidingPunctualValues.add(value);
+
+		/* Add the new value to the statistics */
+		int n = this.slidingPunctualValues.size();
+		double delta = value - this.mean;
+		this.sum += value;
+		this.mean += delta / n;
+		this.m2 += delta * (value - this.mean);
 
-		Iterator<Float> it = slidingPunctualValues.listIterator();
-		while(it.hasNext()){
-			sum+=it.next();
+		/* Recompute statistics once per window to avoid
+		 * accumulating rounding errors */
+		if(this.numRemovals >= this.slidingPunctualValues.getCapacity()) {
+			this.numRemovals = 0;
+			this.recomputeStatistics();
 		}
-		return sum;
 	}
-	
+
+	/**
+	 * Adds a value to the quantile sketches of the window. Once the
+	 * current block is full, the oldest block is evicted and reused as
+	 * the current block
+	 *
+	 * @param value the value to add
+	 */
+	private void addQuantileValue(float value) {
+		QuantileSketch block = this.quantileBlocks[this.currentQuantileBlock];
+
+		if(block.getNumValues() == this.quantileBlockSize) {
+			this.currentQuantileBlock = 
+					(this.currentQuantileBlock + 1) % NUM_QUANTILE_BLOCKS;
+			block = this.quantileBlocks[this.currentQuantileBlock];
+			block.reset();
+
+			this.pastQuantiles.reset();
+			for(QuantileSketch pastBlock : this.quantileBlocks) {
+				if(pastBlock != block) {
+					this.pastQuantiles.merge(pastBlock);
+				}
+			}
+		}
+		block.addValue(value);
+
+		this.quantiles.reset();
+		this.quantiles.merge(this.pastQuantiles);
+		this.quantiles.merge(block);
+	}
+
+	/**
+	 * Updates the exponentially weighted average and variance of the
+	 * punctual values with a new value
+	 *
+	 * @param value the new value
+	 */
+	private void addExponentiallyWeightedValue(float value) {
+		if(!this.hasEwValues) {
+			this.hasEwValues = true;
+			this.ewMean = value;
+			this.ewVar = 0;
+			return;
+		}
+		double delta = value - this.ewMean;
+		double increment = this.learningRate * delta;
+		this.ewMean += increment;
+		this.ewVar = (1 - this.learningRate) * (this.ewVar + delta * increment);
+	}
+
+	/**
+	 * Recomputes the running statistics from the punctual values window
+	 */
+	private void recomputeStatistics() {
+		int n = this.slidingPunctualValues.size();
+		this.sum = 0;
+		this.mean = 0;
+		this.m2 = 0;
+
+		for(int i=0; i<n; i++) {
+			float value = this.slidingPunctualValues.get(i);
+			double delta = value - this.mean;
+			this.sum += value;
+			this.mean += delta / (i+1);
+			this.m2 += delta * (value - this.mean);
+		}
+	}
+
 	/**
 	 * Returns the average of the punctual values series
-	 * 
+	 *
 	 * @return the average of the punctual values series
 	 */
 	private float getAvg(){
 		int numSlidingValues = this.slidingPunctualValues.size();
-		float sum = this.getSum();
 		if(numSlidingValues == 0) {
 			return 0f;
 		}
-		float ret = sum / (float) numSlidingValues;
-		return ret;
+		return (float)(this.sum / numSlidingValues);
 	}
-	
+
 	/**
 	 * Returns the standard deviation of punctual values series
-	 * 
+	 *
 	 * @return
 	 */
 	private float getStdDev() {
@@ -298,17 +625,11 @@ public class PerformanceRange {
 
 	/**
 	 * Returns the variance of the punctual values series
-	 * 
+	 *
 	 * @return the variance of the punctual values series
 	 */
 	private float getVar() {
 		int numSlidingValues = this.slidingPunctualValues.size();
-		float var = 0f;
-
-		for(Float num : this.slidingPunctualValues) {
-			var += Math.pow((num - slidingAverage.getLast()), 2);
-		}
-		var /= numSlidingValues;
-		return var;
+		return (float)Math.max(0, this.m2 / numSlidingValues);
 	}
 }
@@ -0,0 +1,262 @@
+package es.csic.iiia.nsm.norm.evaluation;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Detects the nodes whose performance ranges cross the specialisation or
+ * the generalisation thresholds, at the time their performance ranges are
+ * updated in a {@code UtilityColumns} store. A node is <i>under
+ * performing</i> if the top boundary of any of its performance ranges is
+ * under the specialisation threshold of its dimension/goal slot, and it
+ * has <i>generalisation utility</i> if the bottom boundaries of all its
+ * performance ranges are over (or equal to) the generalisation threshold
+ * of their slots.
+ * <p>
+ * For each node, it keeps the number of slots under each threshold, so
+ * that an update of a slot is checked in constant time. Each time a node
+ * becomes under performing or gains generalisation utility, its id is
+ * pushed onto the corresponding crossing queue, which consumers poll once
+ * per tick. Hence, consumers only revise the nodes that have crossed a
+ * threshold, instead of all the nodes that have been evaluated
+ *
+ * @author "Javier Morales (jmorales@iiia.csic.es)"
+ * @see UtilityColumns#trackCrossings(float[], float[])
+ */
+public class ThresholdCrossings {
+
+	//---------------------------------------------------------------------------
+	// Static attributes
+	//---------------------------------------------------------------------------
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	//---------------------------------------------------------------------------
+	// Attributes
+	//---------------------------------------------------------------------------
+
+	private int numSlots;									// number of dimension/goal slots
+	private float[] specBoundaries;				// specialisation threshold of each slot
+	private float[] genBoundaries;				// generalisation threshold of each slot
+
+	private BitSet[] underSpec;						// ids under the spec. threshold, by slot
+	private BitSet[] underGen;						// ids under the gen. threshold, by slot
+	private int[] numUnderSpec;						// slots under the spec. threshold, by id
+	private int[] numUnderGen;						// slots under the gen. threshold, by id
+
+	private BitSet ids;										// ids of the tracked nodes
+	private BitSet underperforming;				// ids of the under performing nodes
+	private BitSet withGenUtility;				// ids of the nodes with gen. utility
+
+	private BitSet specCrossings;					// ids that became under performing
+	private BitSet genCrossings;						// ids that gained gen. utility
+
+	//---------------------------------------------------------------------------
+	// Methods
+	//---------------------------------------------------------------------------
+
+	/**
+	 * Constructor
+	 *
+	 * @param specBoundaries the specialisation threshold of each slot
+	 * @param genBoundaries the generalisation threshold of each slot
+	 */
+	public ThresholdCrossings(float[] specBoundaries, float[] genBoundaries) {
+		this.numSlots = specBoundaries.length;
+		this.specBoundaries = specBoundaries.clone();
+		this.genBoundaries = genBoundaries.clone();
+
+		this.underSpec = new BitSet[this.numSlots];
+		this.underGen = new BitSet[this.numSlots];
+		for(int slot=0; slot<this.numSlots; slot++) {
+			this.underSpec[slot] = new BitSet();
+			this.underGen[slot] = new BitSet();
+		}
+		this.numUnderSpec = new int[INITIAL_CAPACITY];
+		this.numUnderGen = new int[INITIAL_CAPACITY];
+
+		this.ids = new BitSet();
+		this.underperforming = new BitSet();
+		this.withGenUtility = new BitSet();
+		this.specCrossings = new BitSet();
+		this.genCrossings = new BitSet();
+	}
+
+	/**
+	 * Starts tracking the node with a given id. Until its performance
+	 * ranges are updated, the node is neither under performing nor
+	 * has generalisation utility
+	 *
+	 * @param id the id of the node
+	 */
+	public void add(int id) {
+		this.remove(id);
+		this.ensureCapacity(id);
+		this.ids.set(id);
+
+		for(int slot=0; slot<this.numSlots; slot++) {
+			this.underGen[slot].set(id);
+		}
+		this.numUnderSpec[id] = 0;
+		this.numUnderGen[id] = this.numSlots;
+	}
+
+	/**
+	 * Stops tracking the node with a given id
+	 *
+	 * @param id the id of the node
+	 */
+	public void remove(int id) {
+		if(!this.contains(id)) {
+			return;
+		}
+		this.ids.clear(id);
+		for(int slot=0; slot<this.numSlots; slot++) {
+			this.underSpec[slot].clear(id);
+			this.underGen[slot].clear(id);
+		}
+		this.underperforming.clear(id);
+		this.withGenUtility.clear(id);
+		this.specCrossings.clear(id);
+		this.genCrossings.clear(id);
+	}
+
+	/**
+	 * Updates the performance range of a node for a given dimension/goal
+	 * slot, and pushes the node onto the crossing queues if it has become
+	 * under performing or has gained generalisation utility
+	 *
+	 * @param id the id of the node
+	 * @param slot the slot of the dimension/goal
+	 * @param topBoundary the current top boundary of the performance range
+	 * @param bottomBoundary the current bottom boundary of the performance range
+	 */
+	public void update(int id, int slot, float topBoundary,
+			float bottomBoundary) {
+
+		if(!this.contains(id)) {
+			return;
+		}
+
+		boolean isUnderSpec = topBoundary < this.specBoundaries[slot];
+		if(isUnderSpec != this.underSpec[slot].get(id)) {
+			this.underSpec[slot].set(id, isUnderSpec);
+			this.numUnderSpec[id] += isUnderSpec ? 1 : -1;
+		}
+
+		boolean isUnderGen = !(bottomBoundary >= this.genBoundaries[slot]);
+		if(isUnderGen != this.underGen[slot].get(id)) {
+			this.underGen[slot].set(id, isUnderGen);
+			this.numUnderGen[id] += isUnderGen ? 1 : -1;
+		}
+
+		/* Push the node if it has crossed a threshold. If it crosses back
+		 * before the queue is polled, it is no longer a crossing */
+		boolean isUnderperforming = this.numUnderSpec[id] > 0;
+		if(isUnderperforming != this.underperforming.get(id)) {
+			this.underperforming.set(id, isUnderperforming);
+			this.specCrossings.set(id, isUnderperforming);
+		}
+		boolean hasGenUtility = this.numUnderGen[id] == 0;
+		if(hasGenUtility != this.withGenUtility.get(id)) {
+			this.withGenUtility.set(id, hasGenUtility);
+			this.genCrossings.set(id, hasGenUtility);
+		}
+	}
+
+	/**
+	 * Returns <tt>true</tt> if the node with a given id is tracked
+	 *
+	 * @param id the id of the node
+	 * @return <tt>true</tt> if the node is tracked
+	 */
+	public boolean contains(int id) {
+		return id >= 0 && this.ids.get(id);
+	}
+
+	/**
+	 * Returns <tt>true</tt> if the node with a given id is under performing
+	 *
+	 * @param id the id of the node
+	 * @return <tt>true</tt> if the node is under performing
+	 */
+	public boolean isUnderperforming(int id) {
+		return id >= 0 && this.underperforming.get(id);
+	}
+
+	/**
+	 * Returns <tt>true</tt> if the node with a given id
+	 * has generalisation utility
+	 *
+	 * @param id the id of the node
+	 * @return <tt>true</tt> if the node has generalisation utility
+	 */
+	public boolean hasGeneralisationUtility(int id) {
+		return id >= 0 && this.withGenUtility.get(id);
+	}
+
+	/**
+	 * Returns the ids of the nodes that are under performing
+	 *
+	 * @return a {@code BitSet} with the ids of the under performing nodes
+	 */
+	public BitSet getUnderperforming() {
+		return (BitSet) this.underperforming.clone();
+	}
+
+	/**
+	 * Returns the ids of the nodes that have generalisation utility
+	 *
+	 * @return a {@code BitSet} with the ids of the nodes
+	 * 					with generalisation utility
+	 */
+	public BitSet getWithGeneralisationUtility() {
+		return (BitSet) this.withGenUtility.clone();
+	}
+
+	/**
+	 * Returns the ids of the nodes that have become under performing since
+	 * the last poll, and clears the queue
+	 *
+	 * @return a {@code BitSet} with the ids of the nodes, sorted by id
+	 */
+	public BitSet pollSpecialisationCrossings() {
+		BitSet crossings = this.specCrossings;
+		this.specCrossings = new BitSet();
+		return crossings;
+	}
+
+	/**
+	 * Returns the ids of the nodes that have gained generalisation utility
+	 * since the last poll, and clears the queue
+	 *
+	 * @return a {@code BitSet} with the ids of the nodes, sorted by id
+	 */
+	public BitSet pollGeneralisationCrossings() {
+		BitSet crossings = this.genCrossings;
+		this.genCrossings = new BitSet();
+		return crossings;
+	}
+
+	//---------------------------------------------------------------------------
+	// Private methods
+	//---------------------------------------------------------------------------
+
+	/**
+	 * Grows the counters so that they are able to
+	 * store the node with a given id
+	 *
+	 * @param id the id of the node
+	 */
+	private void ensureCapacity(int id) {
+		int capacity = this.numUnderSpec.length;
+		if(id < capacity) {
+			return;
+		}
+		while(capacity <= id) {
+			capacity *= 2;
+		}
+		this.numUnderSpec = Arrays.copyOf(this.numUnderSpec, capacity);
+		this.numUnderGen = Arrays.copyOf(this.numUnderGen, capacity);
+	}
+}
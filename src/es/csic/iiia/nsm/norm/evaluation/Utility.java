@@ -1,10 +1,12 @@
 package es.csic.iiia.nsm.norm.evaluation;
 
-import java.util.HashMap;
 import java.util.List;
 
+import es.csic.iiia.nsm.config.DefaultExtendedNormSynthesisSettings;
 import es.csic.iiia.nsm.config.Dimension;
+import es.csic.iiia.nsm.config.ExtendedNormSynthesisSettings;
 import es.csic.iiia.nsm.config.Goal;
+import es.csic.iiia.nsm.config.NormSynthesisSettings;
 
 /**
  * The utility of a norm, that may have utility with respect to several
@@ -23,12 +25,15 @@ public class Utility {
 
 	private float defaultUtility;
 	private int perfRangeSize;
+	private PerformanceHistoryMode perfRangeHistoryMode;
+	private ExtendedNormSynthesisSettings settings;	// null if not available
 
-	private List<Dimension> dimensions;
-	private List<Goal> goals;
+	private UtilityIndex index;						// dense indices of dimensions/goals
+	private boolean immutable;						// scores cannot be changed
 
-	private HashMap<Dimension, HashMap<Goal, Float>> scores;
-	private HashMap<Dimension,	HashMap<Goal, PerformanceRange>> perfRanges;
+	/* Scores and performance ranges, indexed by dimension/goal slot */
+	private float[] scores;
+	private PerformanceRange[] perfRanges;
 
 	//---------------------------------------------------------------------------
 	// Methods 
@@ -37,16 +42,16 @@ public class Utility {
 	/**
 	 * Constructor
 	 * 
-	 * @param dimensions the norm evaluation dimensions
-	 * @param goals the system goals
+	 * @param defaultUtility the default utility of the scores
+	 * @param perfRangeSize the size of the performance ranges
 	 */
 	public Utility(float defaultUtility, int perfRangeSize) {
 		this.defaultUtility = defaultUtility;
 		this.perfRangeSize = perfRangeSize;
+		this.perfRangeHistoryMode = PerformanceHistoryMode.Full;
 
-		this.scores = new HashMap<Dimension, HashMap<Goal, Float>>();	
-		this.perfRanges = new HashMap<Dimension,
-				HashMap<Goal, PerformanceRange>>();
+		this.scores = new float[0];
+		this.perfRanges = new PerformanceRange[0];
 	}
 
 	/**
@@ -58,13 +63,116 @@ public class Utility {
 	public Utility(float defaultUtility, int perfRangeSize,
 			List<Dimension> dimensions, List<Goal> goals) {
 
+		this(defaultUtility, perfRangeSize, PerformanceHistoryMode.Full,
+				dimensions, goals);
+	}
+
+	/**
+	 * Constructor with dimensions, goals and the mode in which 
+	 * performance ranges keep their history
+	 * 
+	 * @param perfRangeHistoryMode the performance ranges' history mode
+	 * @param dimensions the norm evaluation dimensions
+	 * @param goals the system goals
+	 * @see PerformanceHistoryMode
+	 */
+	public Utility(float defaultUtility, int perfRangeSize,
+			PerformanceHistoryMode perfRangeHistoryMode,
+			List<Dimension> dimensions, List<Goal> goals) {
+
+		this(defaultUtility, perfRangeSize, perfRangeHistoryMode,
+				new UtilityIndex(dimensions, goals));
+	}
+
+	/**
+	 * Constructor with a shared index of dimensions and goals, and the
+	 * mode in which performance ranges keep their history
+	 * 
+	 * @param perfRangeHistoryMode the performance ranges' history mode
+	 * @param index the dense indices of the dimensions and goals
+	 * @see PerformanceHistoryMode
+	 * @see UtilityIndex
+	 */
+	public Utility(float defaultUtility, int perfRangeSize,
+			PerformanceHistoryMode perfRangeHistoryMode, UtilityIndex index) {
+
+		this(defaultUtility, perfRangeSize, perfRangeHistoryMode, null, index);
+	}
+
+	/**
+	 * Constructor with a shared index of dimensions and goals, that takes
+	 * the configuration of the performance ranges from the norm synthesis
+	 * settings
+	 * 
+	 * @param settings the norm synthesis settings
+	 * @param index the dense indices of the dimensions and goals
+	 * @see ExtendedNormSynthesisSettings#getNormsPerformanceEstimator()
+	 * @see ExtendedNormSynthesisSettings#getNormsPerformanceBoundaryMode()
+	 */
+	public Utility(float defaultUtility, NormSynthesisSettings settings,
+			UtilityIndex index) {
+
+		this(defaultUtility, settings.getNormsPerformanceRangesSize(),
+				DefaultExtendedNormSynthesisSettings.getExtended(settings), index);
+	}
+
+	/**
+	 * Constructor with a shared index of dimensions and goals, that takes
+	 * the configuration of the performance ranges from the extended norm
+	 * synthesis settings
+	 * 
+	 * @param settings the extended norm synthesis settings
+	 * @param index the dense indices of the dimensions and goals
+	 */
+	private Utility(float defaultUtility, int perfRangeSize,
+			ExtendedNormSynthesisSettings settings, UtilityIndex index) {
+
+		this(defaultUtility, perfRangeSize,
+				settings.getNormsPerformanceRangesHistoryMode(), settings, index);
+	}
+
+	/**
+	 * Constructor with a shared index of dimensions and goals, the mode
+	 * in which performance ranges keep their history, and the settings
+	 * that configure the rest of parameters of performance ranges
+	 * 
+	 * @param perfRangeHistoryMode the performance ranges' history mode
+	 * @param settings the norm synthesis settings, or <tt>null</tt> to
+	 * 					employ the default parameters of performance ranges
+	 * @param index the dense indices of the dimensions and goals
+	 */
+	private Utility(float defaultUtility, int perfRangeSize,
+			PerformanceHistoryMode perfRangeHistoryMode,
+			ExtendedNormSynthesisSettings settings, UtilityIndex index) {
+
 		this(defaultUtility, perfRangeSize);
-		this.dimensions = dimensions;
-		this.goals = goals;
+		this.perfRangeHistoryMode = perfRangeHistoryMode;
+		this.settings = settings;
+		this.index = index;
+		this.scores = new float[index.getNumSlots()];
+		this.perfRanges = new PerformanceRange[index.getNumSlots()];
 
 		this.reset();
 	}
 
+	/**
+	 * Returns an immutable utility whose scores are all set to the default
+	 * utility. Networks share a single immutable utility among all the
+	 * nodes that have not been evaluated yet, and create a new utility
+	 * for a node the first time its scores change
+	 * 
+	 * @param settings the norm synthesis settings
+	 * @param index the dense indices of the dimensions and goals
+	 * @return an immutable utility with the default scores
+	 */
+	public static Utility createImmutable(float defaultUtility, 
+			NormSynthesisSettings settings, UtilityIndex index) {
+		
+		Utility utility = new Utility(defaultUtility, settings, index);
+		utility.immutable = true;
+		return utility;
+	}
+
 	/**
 	 * Initialises the utility, setting all the scores
 	 * to the norms' utility default value 
@@ -73,21 +181,27 @@ public class Utility {
 	 * @see Goal
 	 */
 	public void reset() {
-		for(Dimension dim : dimensions) {
-			HashMap<Goal, Float> dimScores = new HashMap<Goal, Float>();
-			HashMap<Goal, PerformanceRange> dimPerformances =
-					new HashMap<Goal, PerformanceRange>();
-
-			this.scores.put(dim, dimScores);
-			this.perfRanges.put(dim, dimPerformances);
+		this.checkMutable();
+		this.dispose();
+		for(int slot=0; slot<this.scores.length; slot++) {
+			PerformanceRange perfRange = this.createPerformanceRange();
+			perfRange.addValue(defaultUtility);
 
-			for(Goal goal : goals) {
-				PerformanceRange perfRange = 
-						new PerformanceRange(perfRangeSize);
-				perfRange.addValue(defaultUtility);
+			this.scores[slot] = defaultUtility;
+			this.perfRanges[slot] = perfRange;
+		}
+	}
 
-				this.scores.get(dim).put(goal, defaultUtility);
-				this.perfRanges.get(dim).put(goal, perfRange);
+	/**
+	 * Releases the resources held by the performance ranges of the
+	 * utility (namely, their spilled histories)
+	 * 
+	 * @see PerformanceRange#dispose()
+	 */
+	public void dispose() {
+		for(PerformanceRange perfRange : this.perfRanges) {
+			if(perfRange != null) {
+				perfRange.dispose();
 			}
 		}
 	}
@@ -102,7 +216,18 @@ public class Utility {
 	 * @see Goal
 	 */
 	public float getScore(Dimension dim, Goal goal) {
-		return this.scores.get(dim).get(goal);
+		return this.scores[this.index.getSlot(dim, goal)];
+	}
+
+	/**
+	 * Returns the score of the utility for a given dimension/goal slot
+	 * 
+	 * @param slot the slot of the dimension/goal
+	 * @return the score for the given dimension/goal
+	 * @see UtilityIndex#getSlot(Dimension, Goal)
+	 */
+	public float getScore(int slot) {
+		return this.scores[slot];
 	}
 
 	/**
@@ -115,8 +240,20 @@ public class Utility {
 	 * @see Goal
 	 */
 	public void setScore(Dimension dim, Goal goal, float score) {
-		this.scores.get(dim).put(goal, score);
-		this.perfRanges.get(dim).get(goal).addValue(score);
+		this.setScore(this.index.getSlot(dim, goal), score);
+	}
+
+	/**
+	 * Sets the score of the utility for a given dimension/goal slot
+	 * 
+	 * @param slot the slot of the dimension/goal
+	 * @param score the new score
+	 * @see UtilityIndex#getSlot(Dimension, Goal)
+	 */
+	public void setScore(int slot, float score) {
+		this.checkMutable();
+		this.scores[slot] = score;
+		this.perfRanges[slot].addValue(score);
 	}
 
 	/**
@@ -130,7 +267,19 @@ public class Utility {
 	 * 					{@code NormSynthesisSettings.getNormsPerformanceRangesSize()}
 	 */
 	public float getScoreAverage(Dimension dim, Goal goal) {
-		return this.perfRanges.get(dim).get(goal).getCurrentAverage();
+		return this.getScoreAverage(this.index.getSlot(dim, goal));
+	}
+
+	/**
+	 * Returns the average score of the utility for a given
+	 * dimension/goal slot for a period of time
+	 * 
+	 * @param slot the slot of the dimension/goal
+	 * @return the average score for the given dimension/goal slot
+	 * @see UtilityIndex#getSlot(Dimension, Goal)
+	 */
+	public float getScoreAverage(int slot) {
+		return this.perfRanges[slot].getCurrentAverage();
 	}
 	
 	/**
@@ -144,6 +293,72 @@ public class Utility {
 	 * @return the score window 
 	 */
 	public PerformanceRange getPerformanceRange(Dimension dim, Goal goal) {
-		return this.perfRanges.get(dim).get(goal);
+		return this.perfRanges[this.index.getSlot(dim, goal)];
+	}
+
+	/**
+	 * Returns the score window used to compute the performance
+	 * range of the norm during a period of time, in terms of a 
+	 * dimension/goal slot
+	 * 
+	 * @param slot the slot of the dimension/goal
+	 * @return the score window 
+	 * @see UtilityIndex#getSlot(Dimension, Goal)
+	 */
+	public PerformanceRange getPerformanceRange(int slot) {
+		return this.perfRanges[slot];
+	}
+
+	/**
+	 * Returns the dense indices of the dimensions and goals
+	 * of the utility
+	 * 
+	 * @return the dense indices of the dimensions and goals
+	 * @see UtilityIndex
+	 */
+	public UtilityIndex getIndex() {
+		return this.index;
+	}
+
+	/**
+	 * Returns <tt>true</tt> if the scores of the utility cannot be changed
+	 * 
+	 * @return <tt>true</tt> if the utility is immutable
+	 * @see #createImmutable(float, NormSynthesisSettings, UtilityIndex)
+	 */
+	public boolean isImmutable() {
+		return this.immutable;
+	}
+
+	//---------------------------------------------------------------------------
+	// Private methods 
+	//---------------------------------------------------------------------------
+
+	/**
+	 * Creates a new performance range, configured by the norm
+	 * synthesis settings if they are available
+	 * 
+	 * @return a new performance range
+	 */
+	private PerformanceRange createPerformanceRange() {
+		if(this.settings == null) {
+			return new PerformanceRange(perfRangeSize, perfRangeHistoryMode);
+		}
+		return new PerformanceRange(perfRangeSize, perfRangeHistoryMode,
+				settings.getNormsPerformanceEstimator(),
+				settings.getNormEvaluationLearningRate(),
+				settings.getNormsPerformanceBoundaryMode(),
+				settings.getNormsPerformanceBoundaryQuantile());
+	}
+
+	/**
+	 * Checks that the scores of the utility can be changed
+	 * 
+	 * @throws UnsupportedOperationException if the utility is immutable
+	 */
+	private void checkMutable() {
+		if(this.immutable) {
+			throw new UnsupportedOperationException("Immutable utility");
+		}
 	}
 }
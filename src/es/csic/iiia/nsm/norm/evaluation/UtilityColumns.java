@@ -0,0 +1,351 @@
+package es.csic.iiia.nsm.norm.evaluation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import es.csic.iiia.nsm.net.norm.NetworkNode;
+
+/**
+ * A columnar store of the current values of the performance ranges of
+ * a set of nodes (norms or norm groups). For each dimension/goal slot
+ * it keeps three contiguous arrays, indexed by node id, with the current
+ * average, top boundary and bottom boundary of the performance range of
+ * each node. The store is updated each time the score of a node changes,
+ * and allows to check the performance ranges of a node without accessing
+ * its {@code Utility}, and to retrieve in a single scan all the nodes
+ * whose current value in a series is below or above a threshold.
+ * Consumers that maintain aggregates of the performances of the nodes may
+ * track which nodes have changed by means of {@code trackChanges}, instead
+ * of scanning all the nodes each time, and consumers that refine the nodes
+ * whose performances cross a threshold may be notified of the crossings by
+ * means of {@code trackCrossings}
+ *
+ * @author "Javier Morales (jmorales@iiia.csic.es)"
+ * @see Utility
+ * @see UtilityIndex
+ * @see ThresholdCrossings
+ */
+public class UtilityColumns<T extends NetworkNode> {
+
+	//---------------------------------------------------------------------------
+	// Static attributes
+	//---------------------------------------------------------------------------
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	/**
+	 * The series of a performance range stored in the columns
+	 *
+	 * @author "Javier Morales (jmorales@iiia.csic.es)"
+	 */
+	public enum Series {
+		Average, TopBoundary, BottomBoundary;
+	}
+
+	//---------------------------------------------------------------------------
+	// Attributes
+	//---------------------------------------------------------------------------
+
+	private int numSlots;					// number of dimension/goal slots
+	private float[][][] columns;	// values, indexed by series, slot and node id
+	private Object[] nodes;				// nodes, indexed by id
+	private BitSet ids;						// ids of the nodes in the store
+	private int maxId;						// maximum id in the store
+	private List<BitSet> changeSets;	// ids changed, for each consumer
+	private List<ThresholdCrossings> crossings;	// crossings, for each consumer
+
+	//---------------------------------------------------------------------------
+	// Methods
+	//---------------------------------------------------------------------------
+
+	/**
+	 * Constructor
+	 *
+	 * @param numSlots the number of dimension/goal slots
+	 * @see UtilityIndex#getNumSlots()
+	 */
+	public UtilityColumns(int numSlots) {
+		this.numSlots = numSlots;
+		this.columns = new float[Series.values().length][numSlots][INITIAL_CAPACITY];
+		this.nodes = new Object[INITIAL_CAPACITY];
+		this.ids = new BitSet();
+		this.maxId = -1;
+		this.changeSets = new ArrayList<BitSet>();
+		this.crossings = new ArrayList<ThresholdCrossings>();
+	}
+
+	/**
+	 * Adds a node to the store, copying the current values of the
+	 * performance ranges of its utility
+	 *
+	 * @param node the node
+	 * @param utility the utility of the node
+	 */
+	public void add(T node, Utility utility) {
+		int id = node.getId();
+		this.ensureCapacity(id);
+
+		this.nodes[id] = node;
+		this.ids.set(id);
+		this.maxId = Math.max(this.maxId, id);
+		for(int i=0; i<this.crossings.size(); i++) {
+			this.crossings.get(i).add(id);
+		}
+		this.update(node, utility);
+	}
+
+	/**
+	 * Removes a node from the store
+	 *
+	 * @param node the node
+	 */
+	public void remove(T node) {
+		int id = node.getId();
+		if(this.contains(id)) {
+			this.nodes[id] = null;
+			this.ids.clear(id);
+			this.markChanged(id);
+			for(int i=0; i<this.crossings.size(); i++) {
+				this.crossings.get(i).remove(id);
+			}
+		}
+	}
+
+	/**
+	 * Updates the values of a node for all the dimension/goal slots
+	 * with the current values of the performance ranges of its utility
+	 *
+	 * @param node the node
+	 * @param utility the utility of the node
+	 */
+	public void update(T node, Utility utility) {
+		for(int slot=0; slot<this.numSlots; slot++) {
+			this.update(node, slot, utility.getPerformanceRange(slot));
+		}
+	}
+
+	/**
+	 * Updates the values of a node for a given dimension/goal slot with
+	 * the current values of a performance range
+	 *
+	 * @param node the node
+	 * @param slot the slot of the dimension/goal
+	 * @param perfRange the performance range of the node for the slot
+	 */
+	public void update(T node, int slot, PerformanceRange perfRange) {
+		int id = node.getId();
+		if(!this.contains(id)) {
+			return;
+		}
+		this.columns[Series.Average.ordinal()][slot][id] =
+				perfRange.getCurrentAverage();
+		this.columns[Series.TopBoundary.ordinal()][slot][id] =
+				perfRange.getCurrentTopBoundary();
+		this.columns[Series.BottomBoundary.ordinal()][slot][id] =
+				perfRange.getCurrentBottomBoundary();
+		this.markChanged(id);
+		
+		for(int i=0; i<this.crossings.size(); i++) {
+			this.crossings.get(i).update(id, slot,
+					perfRange.getCurrentTopBoundary(),
+					perfRange.getCurrentBottomBoundary());
+		}
+	}
+
+	/**
+	 * Returns a new {@code BitSet} in which the store will set the id of
+	 * each node that is added, removed or updated from now on. The consumer
+	 * is responsible of clearing the ids it has already processed
+	 *
+	 * @return a {@code BitSet} with the ids of the changed nodes
+	 */
+	public BitSet trackChanges() {
+		BitSet changes = new BitSet();
+		this.changeSets.add(changes);
+		return changes;
+	}
+
+	/**
+	 * Returns a new {@code ThresholdCrossings} that the store will notify
+	 * each time the performance ranges of a node are updated from now on.
+	 * The nodes that are already in the store are tracked as well
+	 *
+	 * @param specBoundaries the specialisation threshold of each slot
+	 * @param genBoundaries the generalisation threshold of each slot
+	 * @return the threshold crossings of the nodes in the store
+	 */
+	public ThresholdCrossings trackCrossings(float[] specBoundaries,
+			float[] genBoundaries) {
+
+		ThresholdCrossings nodeCrossings = 
+				new ThresholdCrossings(specBoundaries, genBoundaries);
+
+		for(int id = this.ids.nextSetBit(0); id >= 0; id = this.ids.nextSetBit(id+1)) {
+			nodeCrossings.add(id);
+			for(int slot=0; slot<this.numSlots; slot++) {
+				nodeCrossings.update(id, slot,
+						this.get(Series.TopBoundary, slot, id),
+						this.get(Series.BottomBoundary, slot, id));
+			}
+		}
+		this.crossings.add(nodeCrossings);
+		return nodeCrossings;
+	}
+
+	/**
+	 * Returns <tt>true</tt> if the store contains the node with a given id
+	 *
+	 * @param id the id of the node
+	 * @return <tt>true</tt> if the store contains the node
+	 */
+	public boolean contains(int id) {
+		return id >= 0 && this.ids.get(id);
+	}
+
+	/**
+	 * Returns the current value of a series of the performance
+	 * range of a node for a given dimension/goal slot
+	 *
+	 * @param series the series
+	 * @param slot the slot of the dimension/goal
+	 * @param id the id of the node
+	 * @return the current value of the series
+	 */
+	public float get(Series series, int slot, int id) {
+		return this.columns[series.ordinal()][slot][id];
+	}
+
+	/**
+	 * Returns the node with a given id
+	 *
+	 * @param id the id of the node
+	 * @return the node with the given id, or <tt>null</tt> if the
+	 * 					store does not contain it
+	 */
+	@SuppressWarnings("unchecked")
+	public T getNode(int id) {
+		if(!this.contains(id)) {
+			return null;
+		}
+		return (T) this.nodes[id];
+	}
+
+	/**
+	 * Returns the ids of the nodes whose current value in a series
+	 * for a given dimension/goal slot is below a threshold
+	 *
+	 * @param series the series
+	 * @param slot the slot of the dimension/goal
+	 * @param threshold the threshold
+	 * @param inclusive if <tt>true</tt>, values equal to the
+	 * 					threshold are also retrieved
+	 * @return a {@code BitSet} with the ids of the nodes
+	 */
+	public BitSet getBelow(Series series, int slot, float threshold,
+			boolean inclusive) {
+
+		float[] column = this.columns[series.ordinal()][slot];
+		BitSet below = new BitSet(this.maxId + 1);
+
+		for(int id=0; id<=this.maxId; id++) {
+			float value = column[id];
+			if(value < threshold || (inclusive && value == threshold)) {
+				below.set(id);
+			}
+		}
+		below.and(this.ids);
+		return below;
+	}
+
+	/**
+	 * Returns the ids of the nodes whose current value in a series
+	 * for a given dimension/goal slot is above a threshold
+	 *
+	 * @param series the series
+	 * @param slot the slot of the dimension/goal
+	 * @param threshold the threshold
+	 * @param inclusive if <tt>true</tt>, values equal to the
+	 * 					threshold are also retrieved
+	 * @return a {@code BitSet} with the ids of the nodes
+	 */
+	public BitSet getAbove(Series series, int slot, float threshold,
+			boolean inclusive) {
+
+		float[] column = this.columns[series.ordinal()][slot];
+		BitSet above = new BitSet(this.maxId + 1);
+
+		for(int id=0; id<=this.maxId; id++) {
+			float value = column[id];
+			if(value > threshold || (inclusive && value == threshold)) {
+				above.set(id);
+			}
+		}
+		above.and(this.ids);
+		return above;
+	}
+
+	/**
+	 * Returns the ids of all the nodes in the store
+	 *
+	 * @return a {@code BitSet} with the ids of the nodes
+	 */
+	public BitSet getIds() {
+		return (BitSet) this.ids.clone();
+	}
+
+	/**
+	 * Returns the nodes whose ids are in a given {@code BitSet}
+	 *
+	 * @param ids the ids of the nodes
+	 * @return a {@code List} with the nodes, sorted by id
+	 */
+	public List<T> getNodes(BitSet ids) {
+		List<T> nodes = new ArrayList<T>();
+		for(int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id+1)) {
+			T node = this.getNode(id);
+			if(node != null) {
+				nodes.add(node);
+			}
+		}
+		return nodes;
+	}
+
+	//---------------------------------------------------------------------------
+	// Private methods
+	//---------------------------------------------------------------------------
+
+	/**
+	 * Marks a node as changed in the change sets of all the consumers
+	 *
+	 * @param id the id of the node
+	 */
+	private void markChanged(int id) {
+		for(int i=0; i<this.changeSets.size(); i++) {
+			this.changeSets.get(i).set(id);
+		}
+	}
+
+	/**
+	 * Grows the columns so that they are able to store
+	 * the node with a given id
+	 *
+	 * @param id the id of the node
+	 */
+	private void ensureCapacity(int id) {
+		int capacity = this.nodes.length;
+		if(id < capacity) {
+			return;
+		}
+		while(capacity <= id) {
+			capacity *= 2;
+		}
+		for(float[][] seriesColumns : this.columns) {
+			for(int slot=0; slot<this.numSlots; slot++) {
+				seriesColumns[slot] = Arrays.copyOf(seriesColumns[slot], capacity);
+			}
+		}
+		this.nodes = Arrays.copyOf(this.nodes, capacity);
+	}
+}
@@ -0,0 +1,149 @@
+package es.csic.iiia.nsm.norm.evaluation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import es.csic.iiia.nsm.config.Dimension;
+import es.csic.iiia.nsm.config.Goal;
+
+/**
+ * Maps the norm evaluation dimensions and the system goals to dense
+ * indices, so that the scores and the performance ranges of a
+ * {@code Utility} can be stored in flat arrays. The score of a
+ * dimension/goal is stored at slot <tt>dim * numGoals + goal</tt>,
+ * being <tt>dim</tt> and <tt>goal</tt> the indices of the dimension
+ * and the goal. The index is built once when the Norm Synthesis
+ * Machine is created, and is shared by all the utilities. Hot loops
+ * that evaluate many norms in terms of the same dimension/goal may
+ * compute the slot once and then employ the index-based accessors
+ * of {@code Utility}
+ *
+ * @author "Javier Morales (jmorales@iiia.csic.es)"
+ * @see Utility
+ */
+public class UtilityIndex {
+
+	//---------------------------------------------------------------------------
+	// Attributes
+	//---------------------------------------------------------------------------
+
+	private List<Dimension> dimensions;
+	private List<Goal> goals;
+
+	private int[] dimIndices;									// index of each dimension by ordinal
+	private Map<Goal, Integer> goalIndices;		// index of each goal
+
+	//---------------------------------------------------------------------------
+	// Methods
+	//---------------------------------------------------------------------------
+
+	/**
+	 * Constructor
+	 *
+	 * @param dimensions the norm evaluation dimensions
+	 * @param goals the system goals
+	 */
+	public UtilityIndex(List<Dimension> dimensions, List<Goal> goals) {
+		this.dimensions = Collections.unmodifiableList(
+				new ArrayList<Dimension>(dimensions));
+		this.goals = Collections.unmodifiableList(new ArrayList<Goal>(goals));
+
+		this.dimIndices = new int[Dimension.values().length];
+		for(int i=0; i<this.dimIndices.length; i++) {
+			this.dimIndices[i] = -1;
+		}
+		for(int i=0; i<this.dimensions.size(); i++) {
+			this.dimIndices[this.dimensions.get(i).ordinal()] = i;
+		}
+
+		this.goalIndices = new IdentityHashMap<Goal, Integer>();
+		for(int i=0; i<this.goals.size(); i++) {
+			this.goalIndices.put(this.goals.get(i), i);
+		}
+	}
+
+	/**
+	 * Returns the slot of a given dimension/goal
+	 *
+	 * @param dim the norm evaluation dimension
+	 * @param goal the system goal
+	 * @return the slot of the dimension/goal in the flat arrays
+	 * @throws IllegalArgumentException if the dimension or the goal
+	 * 					are not indexed
+	 */
+	public int getSlot(Dimension dim, Goal goal) {
+		return this.getSlot(this.getDimensionIndex(dim), this.getGoalIndex(goal));
+	}
+
+	/**
+	 * Returns the slot of a given dimension index and goal index
+	 *
+	 * @param dimIdx the index of the norm evaluation dimension
+	 * @param goalIdx the index of the system goal
+	 * @return the slot of the dimension/goal in the flat arrays
+	 */
+	public int getSlot(int dimIdx, int goalIdx) {
+		return dimIdx * this.goals.size() + goalIdx;
+	}
+
+	/**
+	 * Returns the index of a given dimension
+	 *
+	 * @param dim the norm evaluation dimension
+	 * @return the index of the dimension
+	 * @throws IllegalArgumentException if the dimension is not indexed
+	 */
+	public int getDimensionIndex(Dimension dim) {
+		int idx = this.dimIndices[dim.ordinal()];
+		if(idx < 0) {
+			throw new IllegalArgumentException("Dimension not indexed: " + dim);
+		}
+		return idx;
+	}
+
+	/**
+	 * Returns the index of a given goal
+	 *
+	 * @param goal the system goal
+	 * @return the index of the goal
+	 * @throws IllegalArgumentException if the goal is not indexed
+	 */
+	public int getGoalIndex(Goal goal) {
+		Integer idx = this.goalIndices.get(goal);
+		if(idx == null) {
+			throw new IllegalArgumentException("Goal not indexed: " + goal);
+		}
+		return idx;
+	}
+
+	/**
+	 * Returns the number of slots, that is, the number of
+	 * dimensions times the number of goals
+	 *
+	 * @return the number of slots
+	 */
+	public int getNumSlots() {
+		return this.dimensions.size() * this.goals.size();
+	}
+
+	/**
+	 * Returns the indexed dimensions
+	 *
+	 * @return the indexed dimensions
+	 */
+	public List<Dimension> getDimensions() {
+		return this.dimensions;
+	}
+
+	/**
+	 * Returns the indexed goals
+	 *
+	 * @return the indexed goals
+	 */
+	public List<Goal> getGoals() {
+		return this.goals;
+	}
+}
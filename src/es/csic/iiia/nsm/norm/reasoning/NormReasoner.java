@@ -2,12 +2,15 @@ package es.csic.iiia.nsm.norm.reasoning;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import es.csic.iiia.nsm.agent.AgentAction;
 import es.csic.iiia.nsm.agent.AgentContext;
 import es.csic.iiia.nsm.agent.language.PredicatesDomains;
 import es.csic.iiia.nsm.agent.language.SetOfPredicatesWithTerms;
 import es.csic.iiia.nsm.agent.language.SetOfStrings;
+import es.csic.iiia.nsm.config.BatchDomainFunctions;
+import es.csic.iiia.nsm.config.CachedDomainFunctions;
 import es.csic.iiia.nsm.config.DomainFunctions;
 import es.csic.iiia.nsm.config.Goal;
 import es.csic.iiia.nsm.norm.Norm;
@@ -38,6 +41,11 @@ public class NormReasoner extends NormEngine {
 
 	private PredicatesDomains predDomains;
 	private DomainFunctions dmFunctions;
+	private BatchDomainFunctions batchDmFunctions; // null if not available
+	
+	/* Norm compliance outcomes, reused each tick once they are released */
+	private List<NormComplianceOutcomes> outcomesPool;
+	private int numOutcomesInUse;
 	
 	//---------------------------------------------------------------------------
 	// Methods
@@ -55,6 +63,10 @@ public class NormReasoner extends NormEngine {
 		
 		this.predDomains = predDomains;
 		this.dmFunctions = dmFunctions;
+		
+		/* Use bulk domain functions if the domain really provides them */
+		this.batchDmFunctions = CachedDomainFunctions.getBatch(dmFunctions);
+		this.numOutcomesInUse = 0;
 	}
 
 	/**
@@ -83,12 +95,22 @@ public class NormReasoner extends NormEngine {
 			}
 		}
 
+		/* Retrieve all agent contexts at once if possible */
+		Map<Long, AgentContext> contexts = null;
+		if(this.batchDmFunctions != null) {
+			contexts = this.batchDmFunctions.agentContextFunction(pView);
+		}
+		
 		/* Add norm applicability for each agent 
 		 * (View Agent Applicable norms) */
 		for(Long agentId : agentIds) {
-			
-			AgentContext aContext = this.dmFunctions.
-					agentContextFunction(agentId, pView);
+			AgentContext aContext = null;
+			if(contexts != null) {
+				aContext = contexts.get(agentId);
+			}
+			if(aContext == null) {
+				aContext = this.dmFunctions.agentContextFunction(agentId, pView);
+			}
 			
 			NormsApplicableToAgentContext nAppToPred =
 					this.getNormsApplicable(
@@ -141,28 +163,53 @@ public class NormReasoner extends NormEngine {
 	public NormComplianceOutcomes checkNormComplianceAndOutcomes(
 			NormsApplicableInView normApplicability, Goal goal) {
 
-		NormComplianceOutcomes gNormCompliance = new NormComplianceOutcomes();
+		NormComplianceOutcomes gNormCompliance = this.getNormComplianceOutcomes();
 		ViewTransition vTrans = normApplicability.getViewTransition();
 		List<Long> agentIds = normApplicability.getAgentIds();
+		View view = vTrans.getView(0);
 
+		/* Retrieve all agent actions and conflicts at once if possible */
+		Map<Long, List<AgentAction>> actions = null;
+		boolean[][] conflicts = null;
+		if(this.batchDmFunctions != null) {
+			List<Goal> goals = new ArrayList<Goal>();
+			goals.add(goal);
+			
+			actions = this.batchDmFunctions.agentActionFunction(vTrans);
+			conflicts = this.batchDmFunctions.hasConflicts(view, agentIds, goals);
+		}
+		
 		/* Check norm compliance and conflict of each agent in the view */
-		for(Long agentId : agentIds) {
+		for(int i=0; i < agentIds.size(); i++) {
+			Long agentId = agentIds.get(i);
 			NormsApplicableToAgentContext agentApplicableNorms =
 					normApplicability.get(agentId); // norms that apply to the agent
 
+			/* Actions performed by the agent */
+			List<AgentAction> agActions = null;
+			if(actions != null) {
+				agActions = actions.get(agentId);
+			}
+			if(agActions == null) {
+				agActions = this.dmFunctions.agentActionFunction(agentId, vTrans);
+			}
+			
+			/* Check outcome (conflict/no conflict) of the norm 
+			 * compliance/infringement */
+			boolean hasConflict;
+			if(conflicts != null) {
+				hasConflict = conflicts[i][0];
+			}
+			else {
+				hasConflict = this.dmFunctions.hasConflict(view, agentId, goal);
+			}
+			
 			for(Norm norm : agentApplicableNorms.getApplicableNorms()) {
-				View view = vTrans.getView(0);
 				SetOfPredicatesWithTerms agContext =
 						agentApplicableNorms.getAgentContext();
 
 				/* Check norm compliance */
-				boolean isFulfillment = this.hasFulfilledNorm(
-						vTrans, agentId, norm);
-
-				/* Check outcome (conflict/no conflict) of the norm 
-				 * compliance/infringement */
-				boolean hasConflict = this.dmFunctions.hasConflict(
-						view, agentId, goal);
+				boolean isFulfillment = this.hasFulfilledNorm(agActions, norm);
 
 				/* Divide applicable norms between complied/infringed norms
 				 * with/without conflict*/				
@@ -187,6 +234,23 @@ public class NormReasoner extends NormEngine {
 		return gNormCompliance;
 	}
 
+	/**
+	 * Releases all the {@code NormComplianceOutcomes} that the norm reasoner
+	 * has returned since the last release, so that they are cleared and 
+	 * reused by the following calls to 
+	 * {@link #checkNormComplianceAndOutcomes(NormsApplicableInView, Goal)}.
+	 * Strategies call this method at the beginning of each tick, once the
+	 * norm compliance outcomes of the previous tick are no longer needed.
+	 * Until this method is called for the first time, the norm reasoner 
+	 * returns new norm compliance outcomes in each call
+	 */
+	public synchronized void releaseNormComplianceOutcomes() {
+		if(this.outcomesPool == null) {
+			this.outcomesPool = new ArrayList<NormComplianceOutcomes>();
+		}
+		this.numOutcomesInUse = 0;
+	}
+
 	/**
 	 * Returns <tt>true<tt> if the agent with id {@code agId} has fulfilled
 	 * the given {@code norm} in the transition of views {@code vTrans}.
@@ -202,14 +266,28 @@ public class NormReasoner extends NormEngine {
 	public boolean hasFulfilledNorm(ViewTransition vTrans,
 			long agId, Norm norm) {
 		
-		NormModality modality = norm.getModality();
-		AgentAction normAction = norm.getAction();
-
 		/* Retrieve the actions that the agent performed 
 		 * during the transition of states */
 		List<AgentAction> agActions = dmFunctions.
 				agentActionFunction(agId, vTrans);
 
+		return this.hasFulfilledNorm(agActions, norm);
+	}
+	
+	/**
+	 * Returns <tt>true<tt> if an agent that performed the actions
+	 * {@code agActions} has fulfilled the given {@code norm}.
+	 * Otherwise, it returns <tt>false<tt>
+	 * 
+	 * @param agActions the actions that the agent performed
+	 * @param norm the norm 
+	 * @return <tt>true<tt> if an agent that performed the actions
+	 * 					{@code agActions} has fulfilled the given {@code norm}
+	 */
+	public boolean hasFulfilledNorm(List<AgentAction> agActions, Norm norm) {
+		NormModality modality = norm.getModality();
+		AgentAction normAction = norm.getAction();
+
 		for(AgentAction agAction : agActions) {
 
 			/* If the norm prohibits to perform the action, and the agent did not
@@ -337,4 +415,33 @@ public class NormReasoner extends NormEngine {
 		}
 		return ret;
 	}
+
+	//---------------------------------------------------------------------------
+	// Private methods
+	//---------------------------------------------------------------------------
+
+	/**
+	 * Returns empty norm compliance outcomes, reusing released ones
+	 * whenever possible
+	 * 
+	 * @return empty norm compliance outcomes
+	 * @see #releaseNormComplianceOutcomes()
+	 */
+	private synchronized NormComplianceOutcomes getNormComplianceOutcomes() {
+		if(this.outcomesPool == null) {
+			return new NormComplianceOutcomes();
+		}
+		
+		NormComplianceOutcomes outcomes;
+		if(this.numOutcomesInUse < this.outcomesPool.size()) {
+			outcomes = this.outcomesPool.get(this.numOutcomesInUse);
+			outcomes.clear();
+		}
+		else {
+			outcomes = new NormComplianceOutcomes();
+			this.outcomesPool.add(outcomes);
+		}
+		this.numOutcomesInUse++;
+		return outcomes;
+	}
 }
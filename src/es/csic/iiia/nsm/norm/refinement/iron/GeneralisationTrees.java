@@ -11,6 +11,7 @@ import es.csic.iiia.nsm.agent.language.SetOfPredicatesWithTerms;
 import es.csic.iiia.nsm.config.DomainFunctions;
 import es.csic.iiia.nsm.net.norm.NormativeNetwork;
 import es.csic.iiia.nsm.norm.Norm;
+import es.csic.iiia.nsm.norm.NormKey;
 import es.csic.iiia.nsm.norm.NormModality;
 
 /**
@@ -26,6 +27,10 @@ import es.csic.iiia.nsm.norm.NormModality;
  * <li> it deactivates the child norms in the normative network; and
  * <li> it sets the potential generalisation as "performed".
  * </ol>
+ * Potential generalisations are indexed by the canonical identity of their
+ * parents, and hence the norms that share a potential parent share the
+ * same potential generalisation. The children of each potential
+ * generalisation are only generated the first time they are retrieved
  * 
  * @author "Javier Morales (jmorales@iiia.csic.es)"
  * @see PotentialGeneralisation
@@ -37,6 +42,7 @@ public class GeneralisationTrees {
 	//---------------------------------------------------------------------------
 	
 	private Map<Norm, List<PotentialGeneralisation>> potentialGens;
+	private Map<NormKey, PotentialGeneralisation> potentialGensByParent;
 	private GeneralisationReasoner genReasoner;
 	
 	//---------------------------------------------------------------------------
@@ -53,6 +59,7 @@ public class GeneralisationTrees {
 			DomainFunctions dmFunctions, NormativeNetwork nNetwork) {
 		
 		this.potentialGens = new HashMap<Norm, List<PotentialGeneralisation>>();
+		this.potentialGensByParent = new HashMap<NormKey, PotentialGeneralisation>();
 		this.genReasoner = new GeneralisationReasoner(predDomains, dmFunctions);
 	}
 
@@ -73,22 +80,15 @@ public class GeneralisationTrees {
 			NormModality mod = norm.getModality();
 			AgentAction action = norm.getAction();
 
-			Norm parent = new Norm(pPrecond, mod, action);
-			List<Norm> children = new ArrayList<Norm>();
-			List<SetOfPredicatesWithTerms> chPreconds = this.genReasoner.
-					getChildContexts(pPrecond);
-
-			for(SetOfPredicatesWithTerms chPrecond : chPreconds) {
-				Norm chNorm = new Norm(chPrecond, mod, action);
-				children.add(chNorm);
-			}
-
-			// Add new candidate generalisation
-			PotentialGeneralisation cGen = new PotentialGeneralisation(
-					parent, children);
-
-			if(this.contains(cGen)) {
-				cGen = this.get(cGen);
+			/* Share the candidate generalisation with the other norms with the
+			 * same parent, or create it (its children are generated lazily) */
+			NormKey key = new NormKey(pPrecond, mod, action);
+			PotentialGeneralisation cGen = this.potentialGensByParent.get(key);
+			
+			if(cGen == null) {
+				Norm parent = new Norm(pPrecond, mod, action);
+				cGen = new PotentialGeneralisation(parent, this.genReasoner);
+				this.potentialGensByParent.put(key, cGen);
 			}
 			candidateGens.add(cGen);				
 		}
@@ -109,50 +109,6 @@ public class GeneralisationTrees {
 		return this.potentialGens.get(norm);
 	}
 
-	/**
-	 * Returns <tt>true</tt> if this data structure contains the given 
-	 * potential generalisation {@code potGen}
-	 * 
-	 * @param potGen the potential generalisation
-	 * @return <tt>true</tt> if this data structure contains the given 
-	 *					potential generalisation {@code potGen}
-	 */
-	private boolean contains(PotentialGeneralisation potGen) {
-		for(Norm norm : this.potentialGens.keySet()) {
-			List<PotentialGeneralisation> candGens = this.potentialGens.get(norm);
-
-			for(PotentialGeneralisation candGen : candGens) {
-				if(potGen.equals(candGen)) {
-					return true;
-				}
-			}	
-		}
-		return false;
-	}
-
-	/**
-	 * Returns a {@code PotentialGeneralisation} that matches the other
-	 * potential generalisation {@code otherPotGen}, if it is contained
-	 * in this data structure
-	 * 
-	 * @param otherPotGen the potential generalisation to search for
-	 * @return a {@code PotentialGeneralisation} that matches the other
-	 * 					potential generalisation {@code otherPotGen}, if it is contained
-	 * 					in this data structure
-	 */
-	private PotentialGeneralisation get(PotentialGeneralisation otherPotGen){
-		for(Norm norm : this.potentialGens.keySet()) {
-			List<PotentialGeneralisation> potGens = this.potentialGens.get(norm);
-
-			for(PotentialGeneralisation potGen : potGens) {
-				if(potGen.equals(otherPotGen)) {
-					return potGen;
-				}
-			}	
-		}
-		return null;
-	}
-
 	/**
 	 * 
 	 */
@@ -1,5 +1,6 @@
 package es.csic.iiia.nsm.norm.refinement.iron;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import es.csic.iiia.nsm.agent.AgentAction;
@@ -17,6 +18,9 @@ import es.csic.iiia.nsm.norm.NormModality;
  * <li>	a {@code List} of <tt>children</tt>, namely a list of child norms that
  * 			must exist and perform well to be generalised to a parent norm.
  * </ol>
+ * The children of a potential generalisation may be generated lazily, 
+ * the first time they are retrieved, since they are only required once 
+ * the strategy checks whether the generalisation may be performed
  * 
  * @author "Javier Morales (jmorales@iiia.csic.es)"
  * @see GeneralisationReasoner
@@ -29,7 +33,8 @@ public class PotentialGeneralisation {
 	//---------------------------------------------------------------------------
 	
 	private Norm parent;
-	private List<Norm> children;
+	private List<Norm> children;								// null until generated
+	private GeneralisationReasoner genReasoner;	// to generate the children
 	private boolean performed;
 
 	//---------------------------------------------------------------------------
@@ -47,6 +52,22 @@ public class PotentialGeneralisation {
 		this.children = children;
 		this.performed = false;
 	}
+	
+	/**
+	 * Constructor. The children are generated from the precondition of
+	 * the parent the first time they are retrieved
+	 * 
+	 * @param parent the potential parent
+	 * @param genReasoner the reasoner to generate the children of the parent
+	 * @see GeneralisationReasoner#getChildContexts(SetOfPredicatesWithTerms)
+	 */
+	public PotentialGeneralisation(Norm parent, 
+			GeneralisationReasoner genReasoner) {
+		
+		this.parent = parent;
+		this.genReasoner = genReasoner;
+		this.performed = false;
+	}
 
 	/**
 	 * Returns the parent of this potential generalisation
@@ -63,9 +84,31 @@ public class PotentialGeneralisation {
 	 * @return a {@code List} of the children in this potential generalisation
 	 */
 	public List<Norm> getChildren() {
+		if(this.children == null) {
+			this.children = new ArrayList<Norm>();
+			
+			List<SetOfPredicatesWithTerms> chPreconds = this.genReasoner.
+					getChildContexts(this.parent.getPrecondition());
+			
+			for(SetOfPredicatesWithTerms chPrecond : chPreconds) {
+				this.children.add(new Norm(chPrecond, this.parent.getModality(),
+						this.parent.getAction()));
+			}
+			this.genReasoner = null;
+		}
 		return this.children;
 	}
 	
+	/**
+	 * Returns <tt>true</tt> if the children of this potential
+	 * generalisation have already been generated
+	 * 
+	 * @return <tt>true</tt> if the children have been generated
+	 */
+	public boolean hasGeneratedChildren() {
+		return this.children != null;
+	}
+	
 	/**
 	 * Returns <tt>true</tt> if this potential generalisation has been performed,
 	 * namely the parent has been added to the normative network and activated, 
@@ -128,7 +171,7 @@ public class PotentialGeneralisation {
 	 * 					a given {@code norm} in the list of {@code children}
 	 */
 	public boolean containsChild(Norm norm) {		
-		for(Norm child : this.children) {			
+		for(Norm child : this.getChildren()) {			
 			SetOfPredicatesWithTerms cPrecond = norm.getPrecondition();
 			NormModality cModality = norm.getModality();
 			AgentAction cAction = norm.getAction();
@@ -150,6 +193,7 @@ public class PotentialGeneralisation {
 		String s = parent + ":\t[[ ";
 		int c = 0;
 		
+		List<Norm> children = this.getChildren();
 		for(Norm child : children) {
 			c++;
 			s += child;
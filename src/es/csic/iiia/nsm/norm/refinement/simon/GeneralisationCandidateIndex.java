@@ -0,0 +1,289 @@
+package es.csic.iiia.nsm.norm.refinement.simon;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import es.csic.iiia.nsm.NormSynthesisMachine.NormGeneralisationMode;
+import es.csic.iiia.nsm.agent.language.SetOfPredicatesWithTerms;
+import es.csic.iiia.nsm.net.norm.NormEvent;
+import es.csic.iiia.nsm.net.norm.NormEventListener;
+import es.csic.iiia.nsm.net.norm.NormativeNetwork;
+import es.csic.iiia.nsm.norm.Norm;
+import es.csic.iiia.nsm.norm.NormKey;
+
+/**
+ * An index of the norms of the normative system that allows to retrieve
+ * the norms that may be generalised together with a given norm, without
+ * computing its intersection with every norm in the normative system.
+ * <p>
+ * Two norms may only be generalised if they have the same modality and
+ * action, and their preconditions differ in at most {@code genStep}
+ * predicates. Hence, each norm is indexed by a set of <i>blocking keys</i>,
+ * each one consisting of its modality, its action, and its precondition
+ * with {@code genStep} predicates masked. Two norms whose preconditions
+ * differ in at most {@code genStep} predicates share (at least) the key that
+ * masks those predicates. In <i>Deep</i> mode, predicates whose terms
+ * generalise one another intersect, and hence all the predicates are
+ * masked, and the candidates are those norms with the same modality and
+ * action.
+ * <p>
+ * The index is kept up to date by listening to the activations and
+ * deactivations of norms in the normative network. Candidates are
+ * returned in the same order as they were added to the normative system,
+ * so that generalisations are performed in the same order as when
+ * iterating the normative system
+ *
+ * @author "Javier Morales (jmorales@iiia.csic.es)"
+ * @see NormIntersection
+ * @see GeneralisableNorms
+ */
+public class GeneralisationCandidateIndex implements NormEventListener {
+
+	//---------------------------------------------------------------------------
+	// Static attributes
+	//---------------------------------------------------------------------------
+
+	private static final String MASK = "*";
+
+	//---------------------------------------------------------------------------
+	// Attributes
+	//---------------------------------------------------------------------------
+
+	private NormGeneralisationMode genMode;
+	private int genStep;
+
+	private Map<NormKey, Set<Norm>> buckets;	// norms, by blocking key
+	private Map<Norm, List<NormKey>> keys;		// blocking keys of each norm
+	private Map<Norm, Long> order;								// order of insertion in the NS
+	private long numInsertions;
+
+	//---------------------------------------------------------------------------
+	// Methods
+	//---------------------------------------------------------------------------
+
+	/**
+	 * Constructor. It indexes the norms that are currently in the normative
+	 * system, and registers to the normative network to keep track of the
+	 * norms that are added to/removed from the normative system
+	 *
+	 * @param normativeNetwork the normative network
+	 * @param genMode the generalisation mode (Shallow/Deep)
+	 * @param genStep the generalisation step
+	 */
+	public GeneralisationCandidateIndex(NormativeNetwork normativeNetwork,
+			NormGeneralisationMode genMode, int genStep) {
+
+		this.genMode = genMode;
+		this.genStep = genStep;
+		this.buckets = new HashMap<NormKey, Set<Norm>>();
+		this.keys = new IdentityHashMap<Norm, List<NormKey>>();
+		this.order = new IdentityHashMap<Norm, Long>();
+		this.numInsertions = 0;
+
+		for(Norm norm : normativeNetwork.getNormativeSystem()) {
+			this.add(norm);
+		}
+		normativeNetwork.addListener(this);
+	}
+
+	/**
+	 * Updates the index when a norm is added to or
+	 * removed from the normative system
+	 *
+	 * @param event the lifecycle event of a norm
+	 */
+	@Override
+	public void normEvent(NormEvent event) {
+		switch(event.getType()) {
+		case Activated:
+			this.add(event.getNorm());
+			break;
+
+		case Deactivated:
+			this.remove(event.getNorm());
+			break;
+
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * Adds a norm of the normative system to the index
+	 *
+	 * @param norm the norm
+	 */
+	public void add(Norm norm) {
+		if(this.keys.containsKey(norm)) {
+			return;
+		}
+		List<NormKey> normKeys = this.getBlockingKeys(norm);
+		this.keys.put(norm, normKeys);
+		this.order.put(norm, this.numInsertions++);
+
+		for(NormKey key : normKeys) {
+			Set<Norm> bucket = this.buckets.get(key);
+			if(bucket == null) {
+				bucket = new LinkedHashSet<Norm>();
+				this.buckets.put(key, bucket);
+			}
+			bucket.add(norm);
+		}
+	}
+
+	/**
+	 * Removes a norm from the index
+	 *
+	 * @param norm the norm
+	 */
+	public void remove(Norm norm) {
+		List<NormKey> normKeys = this.keys.remove(norm);
+		if(normKeys == null) {
+			return;
+		}
+		this.order.remove(norm);
+
+		for(NormKey key : normKeys) {
+			Set<Norm> bucket = this.buckets.get(key);
+			bucket.remove(norm);
+			if(bucket.isEmpty()) {
+				this.buckets.remove(key);
+			}
+		}
+	}
+
+	/**
+	 * Returns the norms of the normative system that may be generalised
+	 * together with a given norm, sorted by order of insertion in the
+	 * normative system. The returned list may contain the norm itself
+	 *
+	 * @param norm the norm
+	 * @return the candidates to be generalised together with the norm
+	 */
+	public List<Norm> getCandidates(Norm norm) {
+		Map<Norm, Boolean> candidates = new IdentityHashMap<Norm, Boolean>();
+
+		for(NormKey key : this.getBlockingKeys(norm)) {
+			Set<Norm> bucket = this.buckets.get(key);
+			if(bucket != null) {
+				for(Norm candidate : bucket) {
+					candidates.put(candidate, Boolean.TRUE);
+				}
+			}
+		}
+
+		List<Norm> sorted = new ArrayList<Norm>(candidates.keySet());
+		Collections.sort(sorted, new Comparator<Norm>() {
+			@Override
+			public int compare(Norm n1, Norm n2) {
+				return order.get(n1).compareTo(order.get(n2));
+			}
+		});
+		return sorted;
+	}
+
+	/**
+	 * Returns the number of norms in the index
+	 *
+	 * @return the number of norms in the index
+	 */
+	public int size() {
+		return this.keys.size();
+	}
+
+	//---------------------------------------------------------------------------
+	// Private methods
+	//---------------------------------------------------------------------------
+
+	/**
+	 * Returns the blocking keys of a norm, namely its modality, action and
+	 * precondition with each combination of {@code genStep} predicates
+	 * masked (all of them in <i>Deep</i> mode)
+	 *
+	 * @param norm the norm
+	 * @return the blocking keys of the norm
+	 */
+	private List<NormKey> getBlockingKeys(Norm norm) {
+		List<NormKey> normKeys = new ArrayList<NormKey>();
+
+		/* Norms are never generalised if there is no generalisation mode */
+		if(this.genMode != NormGeneralisationMode.Shallow &&
+				this.genMode != NormGeneralisationMode.Deep) {
+			return normKeys;
+		}
+
+		SetOfPredicatesWithTerms precondition = norm.getPrecondition();
+		List<String> predicates = new ArrayList<String>(precondition.getPredicates());
+		Collections.sort(predicates);
+
+		/* Only the first term of each predicate is compared */
+		String[] terms = new String[predicates.size()];
+		for(int i=0; i<predicates.size(); i++) {
+			terms[i] = precondition.getTerms(predicates.get(i)).get(0);
+		}
+
+		int numMasked = Math.min(this.genStep, predicates.size());
+		if(this.genMode == NormGeneralisationMode.Deep) {
+			numMasked = predicates.size();
+		}
+
+		/* Mask each combination of numMasked predicates */
+		int[] masked = new int[numMasked];
+		for(int i=0; i<numMasked; i++) {
+			masked[i] = i;
+		}
+		while(true) {
+			normKeys.add(new NormKey(this.describe(predicates, terms, masked),
+					norm.getModality(), norm.getAction()));
+
+			/* Next combination in lexicographic order */
+			int i = numMasked - 1;
+			while(i >= 0 && masked[i] == predicates.size() - numMasked + i) {
+				i--;
+			}
+			if(i < 0) {
+				break;
+			}
+			masked[i]++;
+			for(int j=i+1; j<numMasked; j++) {
+				masked[j] = masked[j-1] + 1;
+			}
+		}
+		return normKeys;
+	}
+
+	/**
+	 * Returns a description of a precondition with some predicates masked
+	 *
+	 * @param predicates the sorted predicates of the precondition
+	 * @param terms the first term of each predicate
+	 * @param masked the (sorted) positions of the masked predicates
+	 * @return a description of the masked precondition
+	 */
+	private String describe(List<String> predicates, String[] terms,
+			int[] masked) {
+
+		StringBuilder sb = new StringBuilder();
+		int m = 0;
+
+		for(int i=0; i<predicates.size(); i++) {
+			boolean isMasked = m < masked.length && masked[m] == i;
+			if(isMasked) {
+				m++;
+			}
+			if(i>0) {
+				sb.append("&");
+			}
+			sb.append(predicates.get(i)).append("(");
+			sb.append(isMasked ? MASK : terms[i]).append(")");
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,406 @@
+package es.csic.iiia.nsm.norm.refinement.simon;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import es.csic.iiia.nsm.metrics.ExtendedNormSynthesisMetrics;
+import es.csic.iiia.nsm.metrics.NormSynthesisMetrics;
+import es.csic.iiia.nsm.net.norm.NormEvent;
+import es.csic.iiia.nsm.net.norm.NormEventListener;
+import es.csic.iiia.nsm.net.norm.NormativeNetwork;
+import es.csic.iiia.nsm.norm.Norm;
+
+/**
+ * A bounded cache of the intersections of pairs of norms. Each pair of
+ * norms is keyed by a {@code long} that packs the ids of both norms (the
+ * lowest one in the upper half), so that the intersection of norms A and B
+ * is the same entry than the intersection of norms B and A. Entries are
+ * stored in fixed-size arrays and indexed by an open addressing hash
+ * table, and hence lookups do not allocate any object.
+ * <p>
+ * Once the cache is full, entries are evicted following the <i>clock</i>
+ * policy (an approximation of LRU): each entry has a reference bit that
+ * is set when it is inserted and each time it is retrieved, and a hand sweeps the entries clearing
+ * their reference bits until it finds an entry that has not been referenced
+ * since the last sweep, which is evicted.
+ * <p>
+ * The cache listens to the normative network, and invalidates the entries
+ * of those norms that are discarded or removed from the network. Since ids
+ * are never reused, invalidation is lazy: the ids of invalidated norms are
+ * recorded, and their entries are purged the next time the cache is accessed
+ *
+ * @author "Javier Morales (jmorales@iiia.csic.es)"
+ * @see NormIntersection
+ * @see es.csic.iiia.nsm.config.ExtendedNormSynthesisSettings#getNormIntersectionCacheSize()
+ */
+public class NormIntersectionCache implements NormEventListener {
+
+	//---------------------------------------------------------------------------
+	// Static attributes
+	//---------------------------------------------------------------------------
+
+	private static final int EMPTY = -1;
+
+	//---------------------------------------------------------------------------
+	// Attributes
+	//---------------------------------------------------------------------------
+
+	private int capacity;										// maximum number of entries
+	private int size;												// current number of entries
+	private long[] keys;										// packed ids of each entry
+	private NormIntersection[] values;			// intersection of each entry
+	private boolean[] referenced;						// reference bit of each entry
+	private int hand;												// position of the clock hand
+
+	private int[] table;										// entry of each hash slot
+	private int mask;												// number of hash slots - 1
+
+	private BitSet invalidated;							// ids pending to be purged
+
+	private long numHits;
+	private long numMisses;
+	private long numEvictions;
+	private long numInvalidations;
+
+	//---------------------------------------------------------------------------
+	// Methods
+	//---------------------------------------------------------------------------
+
+	/**
+	 * Constructor. It registers to the normative network to keep track
+	 * of the norms that are discarded or removed from the network
+	 *
+	 * @param normativeNetwork the normative network
+	 * @param capacity the maximum number of intersections in cache
+	 */
+	public NormIntersectionCache(NormativeNetwork normativeNetwork,
+			int capacity) {
+
+		this.capacity = Math.max(1, capacity);
+		this.keys = new long[this.capacity];
+		this.values = new NormIntersection[this.capacity];
+		this.referenced = new boolean[this.capacity];
+
+		/* Keep the load factor of the hash table at most 0.5 */
+		int numSlots = Integer.highestOneBit(this.capacity) << 2;
+		this.table = new int[numSlots];
+		this.mask = numSlots - 1;
+		Arrays.fill(this.table, EMPTY);
+
+		this.invalidated = new BitSet();
+		normativeNetwork.addListener(this);
+	}
+
+	/**
+	 * Invalidates the intersections of the norms that are
+	 * discarded or removed from the normative network
+	 *
+	 * @param event the lifecycle event of a norm
+	 */
+	@Override
+	public void normEvent(NormEvent event) {
+		switch(event.getType()) {
+		case Discarded:
+		case Removed:
+			this.invalidate(event.getNorm());
+			break;
+
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * Returns the intersection of two norms, if it is in cache
+	 *
+	 * @param normA the first norm
+	 * @param normB the second norm
+	 * @return the intersection of both norms, or <tt>null</tt>
+	 * 					if it is not in cache
+	 */
+	public NormIntersection get(Norm normA, Norm normB) {
+		this.purge();
+
+		int entry = this.find(this.getKey(normA, normB));
+		if(entry == EMPTY) {
+			this.numMisses++;
+			return null;
+		}
+		this.numHits++;
+		this.referenced[entry] = true;
+		return this.values[entry];
+	}
+
+	/**
+	 * Puts the intersection of two norms in cache. If the cache is full,
+	 * an entry that has not been referenced recently is evicted
+	 *
+	 * @param normA the first norm
+	 * @param normB the second norm
+	 * @param intersection the intersection of both norms
+	 */
+	public void put(Norm normA, Norm normB, NormIntersection intersection) {
+		this.purge();
+
+		long key = this.getKey(normA, normB);
+		int entry = this.find(key);
+		if(entry != EMPTY) {
+			this.values[entry] = intersection;
+			this.referenced[entry] = true;
+			return;
+		}
+
+		if(this.size == this.capacity) {
+			this.evict();
+		}
+		entry = this.size++;
+		this.keys[entry] = key;
+		this.values[entry] = intersection;
+		this.referenced[entry] = true;
+		this.table[this.getSlot(key)] = entry;
+	}
+
+	/**
+	 * Invalidates all the intersections of a norm
+	 *
+	 * @param norm the norm
+	 */
+	public void invalidate(Norm norm) {
+		if(norm.getId() >= 0) {
+			this.invalidated.set(norm.getId());
+		}
+	}
+
+	/**
+	 * Removes all the intersections from the cache
+	 */
+	public void clear() {
+		Arrays.fill(this.table, EMPTY);
+		Arrays.fill(this.values, 0, this.size, null);
+		this.invalidated.clear();
+		this.size = 0;
+		this.hand = 0;
+	}
+
+	/**
+	 * Returns the number of intersections in cache
+	 *
+	 * @return the number of intersections in cache
+	 */
+	public int size() {
+		this.purge();
+		return this.size;
+	}
+
+	/**
+	 * Returns the maximum number of intersections in cache
+	 *
+	 * @return the maximum number of intersections in cache
+	 */
+	public int getCapacity() {
+		return this.capacity;
+	}
+
+	/**
+	 * Returns the number of lookups that have been answered from cache
+	 *
+	 * @return the number of lookups that have been answered from cache
+	 */
+	public long getNumHits() {
+		return this.numHits;
+	}
+
+	/**
+	 * Returns the number of lookups that have not been answered from cache
+	 *
+	 * @return the number of lookups that have not been answered from cache
+	 */
+	public long getNumMisses() {
+		return this.numMisses;
+	}
+
+	/**
+	 * Returns the number of intersections that have been evicted
+	 * from the cache because it was full
+	 *
+	 * @return the number of evicted intersections
+	 */
+	public long getNumEvictions() {
+		return this.numEvictions;
+	}
+
+	/**
+	 * Returns the number of intersections that have been purged from
+	 * the cache because one of their norms was discarded or removed
+	 *
+	 * @return the number of invalidated intersections
+	 */
+	public long getNumInvalidations() {
+		return this.numInvalidations;
+	}
+
+	/**
+	 * Returns the ratio of lookups that have been answered from cache
+	 *
+	 * @return the ratio of lookups that have been answered from cache,
+	 * 					or 0 if no lookup has been performed yet
+	 */
+	public float getHitRate() {
+		long numLookups = this.numHits + this.numMisses;
+		if(numLookups == 0) {
+			return 0f;
+		}
+		return (float)this.numHits / numLookups;
+	}
+
+	/**
+	 * Records the number of hits and misses of the cache into the
+	 * norm synthesis {@code metrics}, if they are extended metrics
+	 *
+	 * @param metrics the norm synthesis metrics
+	 * @see ExtendedNormSynthesisMetrics
+	 */
+	public void updateMetrics(NormSynthesisMetrics metrics) {
+		if(metrics instanceof ExtendedNormSynthesisMetrics) {
+			((ExtendedNormSynthesisMetrics)metrics).
+			setNormIntersectionCacheLookups(this.numHits, this.numMisses);
+		}
+	}
+
+	//---------------------------------------------------------------------------
+	// Private methods
+	//---------------------------------------------------------------------------
+
+	/**
+	 * Returns the key of a pair of norms, namely the
+	 * lowest id in the upper half and the highest one
+	 * in the lower half
+	 *
+	 * @param normA the first norm
+	 * @param normB the second norm
+	 * @return the key of the pair of norms
+	 */
+	private long getKey(Norm normA, Norm normB) {
+		int idA = normA.getId();
+		int idB = normB.getId();
+		int low = Math.min(idA, idB);
+		int high = Math.max(idA, idB);
+		return ((long)low << 32) | (high & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Returns the hash slot in which a key must be searched
+	 * for (the home slot of the key)
+	 */
+	private int getHome(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int)(h ^ (h >>> 32)) & this.mask;
+	}
+
+	/**
+	 * Returns the hash slot that contains a key or, if the
+	 * table does not contain it, the empty slot where it must
+	 * be inserted (linear probing)
+	 */
+	private int getSlot(long key) {
+		int slot = this.getHome(key);
+		while(this.table[slot] != EMPTY && this.keys[this.table[slot]] != key) {
+			slot = (slot + 1) & this.mask;
+		}
+		return slot;
+	}
+
+	/**
+	 * Returns the entry of a key, or {@code EMPTY} if
+	 * the cache does not contain the key
+	 */
+	private int find(long key) {
+		return this.table[this.getSlot(key)];
+	}
+
+	/**
+	 * Evicts the first entry that has not been referenced since the last
+	 * sweep of the clock hand, clearing the reference bits on its way
+	 */
+	private void evict() {
+		while(this.referenced[this.hand]) {
+			this.referenced[this.hand] = false;
+			this.hand = (this.hand + 1) % this.size;
+		}
+		this.remove(this.hand);
+		this.numEvictions++;
+
+		if(this.hand >= this.size) {
+			this.hand = 0;
+		}
+	}
+
+	/**
+	 * Purges the entries of the norms that have been invalidated
+	 */
+	private void purge() {
+		if(this.invalidated.isEmpty()) {
+			return;
+		}
+
+		/* Entries are scanned backwards, since removing an entry moves
+		 * the last entry (which has already been scanned) to its place */
+		for(int entry=this.size-1; entry>=0; entry--) {
+			long key = this.keys[entry];
+			if(this.invalidated.get((int)(key >>> 32)) ||
+					this.invalidated.get((int)key)) {
+				this.remove(entry);
+				this.numInvalidations++;
+			}
+		}
+		this.invalidated.clear();
+
+		if(this.hand >= this.size) {
+			this.hand = 0;
+		}
+	}
+
+	/**
+	 * Removes an entry, moving the last entry to its place so that
+	 * entries are kept contiguous
+	 *
+	 * @param entry the entry to remove
+	 */
+	private void remove(int entry) {
+		this.removeFromTable(this.keys[entry]);
+
+		int last = --this.size;
+		if(entry != last) {
+			this.keys[entry] = this.keys[last];
+			this.values[entry] = this.values[last];
+			this.referenced[entry] = this.referenced[last];
+			this.table[this.getSlot(this.keys[entry])] = entry;
+		}
+		this.values[last] = null;
+	}
+
+	/**
+	 * Removes a key from the hash table, shifting back the keys
+	 * that follow it in its probing sequence (so that no tombstones
+	 * are required)
+	 *
+	 * @param key the key to remove
+	 */
+	private void removeFromTable(long key) {
+		int hole = this.getSlot(key);
+		this.table[hole] = EMPTY;
+
+		int slot = (hole + 1) & this.mask;
+		while(this.table[slot] != EMPTY) {
+			int home = this.getHome(this.keys[this.table[slot]]);
+
+			/* Shift the key back if its home is not in (hole, slot] */
+			if(((slot - home) & this.mask) >= ((slot - hole) & this.mask)) {
+				this.table[hole] = this.table[slot];
+				this.table[slot] = EMPTY;
+				hole = slot;
+			}
+			slot = (slot + 1) & this.mask;
+		}
+	}
+}
@@ -1,12 +1,20 @@
 package es.csic.iiia.nsm.perception;
 
 import java.util.ArrayList;
+import java.util.LinkedList;
 import java.util.List;
 
 /**
  * A monitor is employed by the Norm Synthesis Machine to perceive the scenario
  * of the system it synthesises norms for. The monitor incorporates a set
  * of sensors that perceive the scenario in a distributed manner.
+ * <p>
+ * Perceptions may be captured in advance (see {@link #capturePerceptions()}),
+ * so that the scenario can keep on running while the norm synthesis
+ * machine processes them. Captured perceptions are returned by
+ * {@link #getPerceptions(List)} in the order they were captured, before
+ * perceiving the scenario again. Hence, sensors must return a new
+ * perception each time, which must not be modified afterwards
  *  
  * @author "Javier Morales (jmorales@iiia.csic.es)"
  * @see Sensor
@@ -18,6 +26,7 @@ public class Monitor {
 	//---------------------------------------------------------------------------
 
 	private List<Sensor> sensors;	// The sensors of the monitor
+	private LinkedList<List<ViewTransition>> capturedPerceptions;
 
 	//---------------------------------------------------------------------------
 	// Methods
@@ -28,6 +37,7 @@ public class Monitor {
 	 */
 	public Monitor() {
 		this.sensors = new ArrayList<Sensor>();
+		this.capturedPerceptions = new LinkedList<List<ViewTransition>>();
 	}
 
 	/**
@@ -41,17 +51,52 @@ public class Monitor {
 
 	/**
 	 * Returns a {@code List} with the perceptions ({@code ViewTransition})
-	 * of each {@code Sensor} in the {@code Monitor}
+	 * of each {@code Sensor} in the {@code Monitor}. If some perceptions
+	 * have been captured in advance, it returns the oldest ones
 	 * 
 	 * @return a {@code List} with the perceptions ({@code ViewTransition})
 	 * of each {@code Sensor} in the {@code Monitor} 
+	 * @see #capturePerceptions()
 	 */
-	public void getPerceptions(List<ViewTransition> viewTransitions)	{
+	public synchronized void getPerceptions(
+			List<ViewTransition> viewTransitions)	{
+		
 		viewTransitions.clear();
 		
+		if(!this.capturedPerceptions.isEmpty()) {
+			viewTransitions.addAll(this.capturedPerceptions.poll());
+			return;
+		}
+		for(Sensor sensor : this.sensors) {
+			viewTransitions.add(sensor.getPerception());
+		}
+	}
+	
+	/**
+	 * Captures the current perceptions of each {@code Sensor} in the 
+	 * {@code Monitor}, and keeps them until they are retrieved by
+	 * means of {@link #getPerceptions(List)} 
+	 * 
+	 * @return a {@code List} with the captured perceptions
+	 */
+	public synchronized List<ViewTransition> capturePerceptions() {
+		List<ViewTransition> viewTransitions = new ArrayList<ViewTransition>();
+		
 		for(Sensor sensor : this.sensors) {
 			viewTransitions.add(sensor.getPerception());
 		}
+		this.capturedPerceptions.add(viewTransitions);
+		return viewTransitions;
+	}
+	
+	/**
+	 * Returns the number of captured perceptions that have not
+	 * been retrieved yet
+	 * 
+	 * @return the number of pending captured perceptions
+	 */
+	public synchronized int getNumCapturedPerceptions() {
+		return this.capturedPerceptions.size();
 	}
 
 	/**
@@ -0,0 +1,424 @@
+package es.csic.iiia.nsm.strategy;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import es.csic.iiia.nsm.NormSynthesisMachine;
+import es.csic.iiia.nsm.config.Dimension;
+import es.csic.iiia.nsm.config.Goal;
+import es.csic.iiia.nsm.config.ExtendedNormSynthesisSettings;
+import es.csic.iiia.nsm.metrics.ExtendedNormSynthesisMetrics;
+import es.csic.iiia.nsm.metrics.NormSynthesisMetrics;
+import es.csic.iiia.nsm.norm.Norm;
+import es.csic.iiia.nsm.norm.evaluation.UtilityColumns;
+import es.csic.iiia.nsm.norm.evaluation.UtilityColumns.Series;
+import es.csic.iiia.nsm.norm.evaluation.UtilityIndex;
+
+/**
+ * An anytime scheduler of the norm refinement operations (specialisations
+ * and generalisations) of a norm synthesis strategy. Strategies schedule
+ * the operations detected during each tick, and then the scheduler executes
+ * as many of them as fit in the refinement budget of a tick (either a time
+ * budget or a number of operations). The pending operations are carried
+ * over to the next tick. At least one operation is executed per tick, so
+ * that the backlog always makes progress.
+ * <p>
+ * Specialisations are executed before generalisations. If there is a
+ * budget, operations of the same type are executed by priority, namely the
+ * distance of the utility of the norm to the threshold that triggered the
+ * operation. Otherwise, they are executed in the order they were scheduled.
+ * Operations deferred from previous ticks are revalidated before being
+ * executed, and their priorities are computed again from the current
+ * utilities of their norms, since the normative network may have
+ * changed meanwhile
+ *
+ * @author "Javier Morales (jmorales@iiia.csic.es)"
+ * @see ExtendedNormSynthesisSettings#getNormRefinementTimeBudget()
+ * @see ExtendedNormSynthesisSettings#getNormRefinementOperationsBudget()
+ */
+public class RefinementScheduler {
+
+	/**
+	 * The type of a refinement operation
+	 *
+	 * @author "Javier Morales (jmorales@iiia.csic.es)"
+	 */
+	public enum Type {
+		Specialisation, Generalisation;
+	}
+
+	/**
+	 * Performs the refinement operations on behalf of the scheduler
+	 *
+	 * @author "Javier Morales (jmorales@iiia.csic.es)"
+	 */
+	public interface Refiner {
+
+		/**
+		 * Returns <tt>true</tt> if an operation that has been deferred from
+		 * a previous tick must still be performed
+		 *
+		 * @param norm the norm to refine
+		 * @param type the type of the operation
+		 * @return <tt>true</tt> if the operation must still be performed
+		 */
+		public boolean isStillApplicable(Norm norm, Type type);
+
+		/**
+		 * Performs a refinement operation
+		 *
+		 * @param norm the norm to refine
+		 * @param type the type of the operation
+		 */
+		public void refine(Norm norm, Type type);
+	}
+
+	//---------------------------------------------------------------------------
+	// Attributes
+	//---------------------------------------------------------------------------
+
+	private NormSynthesisMachine nsm;
+	private ExtendedNormSynthesisSettings nsmSettings;
+	private UtilityIndex utilityIndex;
+	private UtilityColumns<Norm> columns;
+
+	private long timeBudget;						// nanoseconds per tick, 0 if none
+	private int operationsBudget;				// operations per tick, 0 if none
+	private long numScheduled;					// to sort operations by arrival
+
+	private PriorityQueue<Operation> backlog;
+	private Map<Type, Map<Norm, Operation>> pending;
+
+	private int numExecutedLastTick;
+	private int numDeferredLastTick;
+
+	//---------------------------------------------------------------------------
+	// Methods
+	//---------------------------------------------------------------------------
+
+	/**
+	 * Constructor
+	 *
+	 * @param nsm the norm synthesis machine
+	 */
+	public RefinementScheduler(NormSynthesisMachine nsm) {
+		this.nsm = nsm;
+		this.nsmSettings = nsm.getNormSynthesisSettings();
+		this.utilityIndex = nsm.getUtilityIndex();
+		this.columns = nsm.getNormativeNetwork().getUtilityColumns();
+
+		this.timeBudget = Math.max(0, this.nsmSettings.getNormRefinementTimeBudget());
+		this.operationsBudget = Math.max(0,
+				this.nsmSettings.getNormRefinementOperationsBudget());
+		this.numScheduled = 0;
+
+		final boolean byPriority = this.isBudgeted();
+		this.backlog = new PriorityQueue<Operation>(64, new Comparator<Operation>() {
+			@Override
+			public int compare(Operation o1, Operation o2) {
+				int cmp = o1.type.compareTo(o2.type);
+				if(cmp == 0 && byPriority) {
+					cmp = Float.compare(o2.priority, o1.priority);
+				}
+				if(cmp == 0) {
+					cmp = o1.seq < o2.seq ? -1 : (o1.seq == o2.seq ? 0 : 1);
+				}
+				return cmp;
+			}
+		});
+
+		this.pending = new EnumMap<Type, Map<Norm, Operation>>(Type.class);
+		for(Type type : Type.values()) {
+			this.pending.put(type, new IdentityHashMap<Norm, Operation>());
+		}
+	}
+
+	/**
+	 * Schedules the specialisation of a norm, with a priority equal to
+	 * the distance of its utility below the specialisation boundaries
+	 *
+	 * @param norm the norm to specialise
+	 */
+	public void scheduleSpecialisation(Norm norm) {
+		this.schedule(norm, Type.Specialisation,
+				this.getSpecialisationPriority(norm), false);
+	}
+
+	/**
+	 * Schedules the generalisation of a norm, with a priority equal to
+	 * the distance of its utility over the generalisation boundaries
+	 *
+	 * @param norm the norm to generalise
+	 */
+	public void scheduleGeneralisation(Norm norm) {
+		this.schedule(norm, Type.Generalisation,
+				this.getGeneralisationPriority(norm), false);
+	}
+
+	/**
+	 * Schedules a refinement operation. If the same operation is already
+	 * pending, its priority is updated. The operation keeps the given
+	 * priority if it is deferred to the next ticks
+	 *
+	 * @param norm the norm to refine
+	 * @param type the type of the operation
+	 * @param priority the priority of the operation (the higher, the sooner)
+	 */
+	public void schedule(Norm norm, Type type, float priority) {
+		this.schedule(norm, type, priority, true);
+	}
+
+	/**
+	 * Executes the pending operations that fit in the refinement budget of
+	 * the current tick, and carries over the rest of them to the next tick
+	 *
+	 * @param refiner the refiner that performs the operations
+	 */
+	public void execute(Refiner refiner) {
+		if(this.isBudgeted() && this.numDeferredLastTick > 0) {
+			this.updateDeferredPriorities();
+		}
+		int backlogSize = this.backlog.size();
+		long start = System.nanoTime();
+		int numExecuted = 0;
+
+		while(!this.backlog.isEmpty()) {
+			if(numExecuted > 0 && this.isBudgetExhausted(start, numExecuted)) {
+				break;
+			}
+			Operation op = this.backlog.poll();
+			this.pending.get(op.type).remove(op.norm);
+
+			if(op.deferred && !refiner.isStillApplicable(op.norm, op.type)) {
+				continue;
+			}
+			refiner.refine(op.norm, op.type);
+			numExecuted++;
+		}
+
+		/* Carry over the remaining operations to the next tick */
+		for(Operation op : this.backlog) {
+			op.deferred = true;
+		}
+		this.numExecutedLastTick = numExecuted;
+		this.numDeferredLastTick = this.backlog.size();
+
+		NormSynthesisMetrics metrics = this.nsm.getNormSynthesisMetrics();
+		if(metrics instanceof ExtendedNormSynthesisMetrics) {
+			((ExtendedNormSynthesisMetrics)metrics).addRefinementSchedule(
+					backlogSize, numExecuted, this.numDeferredLastTick);
+		}
+	}
+
+	/**
+	 * Returns <tt>true</tt> if the scheduler has a refinement budget
+	 *
+	 * @return <tt>true</tt> if the scheduler has a refinement budget
+	 */
+	public boolean isBudgeted() {
+		return this.timeBudget > 0 || this.operationsBudget > 0;
+	}
+
+	/**
+	 * Returns <tt>true</tt> if a refinement operation is pending
+	 *
+	 * @param norm the norm to refine
+	 * @param type the type of the operation
+	 * @return <tt>true</tt> if the operation is pending
+	 */
+	public boolean isPending(Norm norm, Type type) {
+		return this.pending.get(type).containsKey(norm);
+	}
+
+	/**
+	 * Returns the number of pending refinement operations
+	 *
+	 * @return the number of pending refinement operations
+	 */
+	public int getBacklogSize() {
+		return this.backlog.size();
+	}
+
+	/**
+	 * Returns the number of refinement operations executed
+	 * during the last tick
+	 *
+	 * @return the number of operations executed during the last tick
+	 */
+	public int getNumExecutedLastTick() {
+		return this.numExecutedLastTick;
+	}
+
+	/**
+	 * Returns the number of refinement operations carried over
+	 * to the next tick during the last tick
+	 *
+	 * @return the number of operations deferred during the last tick
+	 */
+	public int getNumDeferredLastTick() {
+		return this.numDeferredLastTick;
+	}
+
+	/**
+	 * Removes all the pending refinement operations
+	 */
+	public void clear() {
+		this.backlog.clear();
+		for(Map<Norm, Operation> ops : this.pending.values()) {
+			ops.clear();
+		}
+	}
+
+	//---------------------------------------------------------------------------
+	// Private methods
+	//---------------------------------------------------------------------------
+
+	/**
+	 * Schedules a refinement operation. If the same operation is already
+	 * pending, its priority is updated
+	 *
+	 * @param norm the norm to refine
+	 * @param type the type of the operation
+	 * @param priority the priority of the operation (the higher, the sooner)
+	 * @param fixedPriority <tt>true</tt> if the priority must not be
+	 * 					computed again when the operation is deferred
+	 */
+	private void schedule(Norm norm, Type type, float priority,
+			boolean fixedPriority) {
+		Operation op = this.pending.get(type).get(norm);
+
+		if(op != null) {
+			op.fixedPriority = fixedPriority;
+			if(op.priority == priority) {
+				return;
+			}
+			this.backlog.remove(op);
+			op.priority = priority;
+		}
+		else {
+			op = new Operation(norm, type, priority, fixedPriority,
+					this.numScheduled++);
+			this.pending.get(type).put(norm, op);
+		}
+		this.backlog.add(op);
+	}
+
+	/**
+	 * Computes again the priorities of the operations deferred from
+	 * previous ticks, since the utilities of their norms may have changed
+	 */
+	private void updateDeferredPriorities() {
+		List<Operation> ops = new ArrayList<Operation>(this.backlog);
+		this.backlog.clear();
+
+		for(Operation op : ops) {
+			if(op.deferred && !op.fixedPriority) {
+				if(op.type == Type.Specialisation) {
+					op.priority = this.getSpecialisationPriority(op.norm);
+				}
+				else {
+					op.priority = this.getGeneralisationPriority(op.norm);
+				}
+			}
+		}
+		this.backlog.addAll(ops);
+	}
+
+	/**
+	 * Returns <tt>true</tt> if the refinement budget of the current
+	 * tick has been exhausted
+	 *
+	 * @param start the time at which the refinement started, in nanoseconds
+	 * @param numExecuted the number of operations executed so far
+	 * @return <tt>true</tt> if the budget has been exhausted
+	 */
+	private boolean isBudgetExhausted(long start, int numExecuted) {
+		if(this.operationsBudget > 0 && numExecuted >= this.operationsBudget) {
+			return true;
+		}
+		if(this.timeBudget > 0 && System.nanoTime() - start >= this.timeBudget) {
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the largest distance of the top boundaries of the
+	 * performance ranges of a norm below the specialisation boundaries
+	 *
+	 * @param norm the norm
+	 * @return the priority of the specialisation of the norm
+	 */
+	private float getSpecialisationPriority(Norm norm) {
+		if(!this.columns.contains(norm.getId())) {
+			return 0f;
+		}
+		float priority = -Float.MAX_VALUE;
+		int slot = 0;
+
+		for(Dimension dim : this.utilityIndex.getDimensions()) {
+			for(Goal goal : this.utilityIndex.getGoals()) {
+				float boundary = this.nsmSettings.getSpecialisationBoundary(dim, goal);
+				float value = this.columns.get(Series.TopBoundary, slot++, norm.getId());
+				priority = Math.max(priority, boundary - value);
+			}
+		}
+		return priority;
+	}
+
+	/**
+	 * Returns the smallest distance of the bottom boundaries of the
+	 * performance ranges of a norm over the generalisation boundaries
+	 *
+	 * @param norm the norm
+	 * @return the priority of the generalisation of the norm
+	 */
+	private float getGeneralisationPriority(Norm norm) {
+		if(!this.columns.contains(norm.getId())) {
+			return 0f;
+		}
+		float priority = Float.MAX_VALUE;
+		int slot = 0;
+
+		for(Dimension dim : this.utilityIndex.getDimensions()) {
+			for(Goal goal : this.utilityIndex.getGoals()) {
+				float boundary = this.nsmSettings.getGeneralisationBoundary(dim, goal);
+				float value = this.columns.get(Series.BottomBoundary, slot++, norm.getId());
+				priority = Math.min(priority, value - boundary);
+			}
+		}
+		return priority;
+	}
+
+	//---------------------------------------------------------------------------
+	// Private classes
+	//---------------------------------------------------------------------------
+
+	/**
+	 * A pending refinement operation
+	 */
+	private static class Operation {
+
+		private Norm norm;
+		private Type type;
+		private float priority;
+		private boolean fixedPriority;
+		private long seq;
+		private boolean deferred;
+
+		Operation(Norm norm, Type type, float priority, boolean fixedPriority,
+				long seq) {
+			this.norm = norm;
+			this.type = type;
+			this.priority = priority;
+			this.fixedPriority = fixedPriority;
+			this.seq = seq;
+			this.deferred = false;
+		}
+	}
+}
@@ -0,0 +1,279 @@
+package es.csic.iiia.nsm.strategy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import es.csic.iiia.nsm.config.BatchDomainFunctions;
+import es.csic.iiia.nsm.config.CachedDomainFunctions;
+import es.csic.iiia.nsm.config.DomainFunctions;
+import es.csic.iiia.nsm.config.Goal;
+import es.csic.iiia.nsm.norm.evaluation.NormComplianceOutcomes;
+import es.csic.iiia.nsm.norm.evaluation.NormsApplicableInView;
+import es.csic.iiia.nsm.norm.generation.Conflict;
+import es.csic.iiia.nsm.norm.reasoning.NormReasoner;
+import es.csic.iiia.nsm.perception.View;
+import es.csic.iiia.nsm.perception.ViewTransition;
+
+/**
+ * Processes the perceptions of the sensors (i.e., the view transitions
+ * perceived by each sensor) through the stages of the norm synthesis
+ * cycle that are independent for each sensor: conflict detection, the
+ * retrieval of agents' contexts, and norm compliance. If it has more
+ * than one thread, each sensor is processed concurrently, and then the
+ * results are merged in the order of the sensors, so that norm synthesis
+ * evolves exactly as in sequential mode. Otherwise, sensors are processed
+ * sequentially in the calling thread.
+ * <p>
+ * Norm applicability is computed by the rule engine of the norm reasoner,
+ * which is not thread-safe. Hence, only the agents' contexts, which are
+ * memoised by the domain functions, are retrieved in parallel, and
+ * applicability is then computed sequentially by the strategies
+ * 
+ * @author "Javier Morales (jmorales@iiia.csic.es)"
+ * @see es.csic.iiia.nsm.config.ExtendedNormSynthesisSettings#getNumSensorPipelineThreads()
+ */
+public class SensorPipeline {
+
+	//---------------------------------------------------------------------------
+	// Attributes
+	//---------------------------------------------------------------------------
+
+	private DomainFunctions dmFunctions;	// the (memoised) domain functions
+	private ExecutorService executor;			// null in sequential mode
+	private int numThreads;								// number of threads
+
+	//---------------------------------------------------------------------------
+	// Methods
+	//---------------------------------------------------------------------------
+
+	/**
+	 * Constructor
+	 * 
+	 * @param dmFunctions the domain functions
+	 * @param numThreads the number of threads. If it is lower than 2,
+	 * 					sensors are processed sequentially
+	 */
+	public SensorPipeline(DomainFunctions dmFunctions, int numThreads) {
+		this.dmFunctions = dmFunctions;
+		this.numThreads = Math.max(1, numThreads);
+		
+		if(this.numThreads > 1) {
+			this.executor = Executors.newFixedThreadPool(this.numThreads,
+					new ThreadFactory() {
+				private int count = 0;
+				
+				@Override
+				public synchronized Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "nsm-sensor-" + (++count));
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+	}
+	
+	/**
+	 * Detects the conflicts perceived by each sensor with respect to each
+	 * goal. The conflicts of each goal are sorted by sensor
+	 * 
+	 * @param viewTransitions the perceptions of the sensors
+	 * @param goals the system goals
+	 * @param conflicts the map in which to store the conflicts of each goal
+	 * @return the conflicts of each goal
+	 */
+	public Map<Goal, List<Conflict>> detectConflicts(
+			List<ViewTransition> viewTransitions, final List<Goal> goals,
+			Map<Goal, List<Conflict>> conflicts) {
+		
+		List<Callable<List<List<Conflict>>>> tasks = 
+				new ArrayList<Callable<List<List<Conflict>>>>();
+		
+		for(final ViewTransition vTrans : viewTransitions) {
+			tasks.add(new Callable<List<List<Conflict>>>() {
+				@Override
+				public List<List<Conflict>> call() {
+					List<List<Conflict>> sensorConflicts = 
+							new ArrayList<List<Conflict>>();
+					for(Goal goal : goals) {
+						sensorConflicts.add(dmFunctions.getConflicts(goal, vTrans));
+					}
+					return sensorConflicts;
+				}
+			});
+		}
+		List<List<List<Conflict>>> results = this.run(tasks);
+		
+		/* Merge the conflicts of each goal in the order of the sensors */
+		for(int g=0; g<goals.size(); g++) {
+			List<Conflict> goalConflicts = new ArrayList<Conflict>();
+			for(List<List<Conflict>> sensorConflicts : results) {
+				goalConflicts.addAll(sensorConflicts.get(g));
+			}
+			conflicts.put(goals.get(g), goalConflicts);
+		}
+		return conflicts;
+	}
+	
+	/**
+	 * Retrieves the contexts of the agents perceived by each sensor in the
+	 * previous view of its transition, so that they are memoised by the
+	 * domain functions before norm applicability is computed. It has no
+	 * effect in sequential mode
+	 * 
+	 * @param viewTransitions the perceptions of the sensors
+	 */
+	public void prefetchAgentContexts(List<ViewTransition> viewTransitions) {
+		if(this.executor == null) {
+			return;
+		}
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+		
+		for(final ViewTransition vTrans : viewTransitions) {
+			tasks.add(new Callable<Object>() {
+				@Override
+				public Object call() {
+					View pView = vTrans.getView(-1);
+					View view = vTrans.getView(0);
+					BatchDomainFunctions batchDmFunctions = 
+							CachedDomainFunctions.getBatch(dmFunctions);
+					
+					if(batchDmFunctions != null) {
+						batchDmFunctions.agentContextFunction(pView);
+					}
+					
+					/* Only those agents that exist in both views are reasoned about */
+					else {
+						for(Long agentId : pView.getAgentIds()) {
+							if(view.getAgentIds().contains(agentId)) {
+								dmFunctions.agentContextFunction(agentId, pView);
+							}
+						}
+					}
+					return null;
+				}
+			});
+		}
+		this.run(tasks);
+	}
+	
+	/**
+	 * Checks norm compliance in the norm applicability perceived by
+	 * each sensor, with respect to a given goal
+	 * 
+	 * @param normReasoner the norm reasoner
+	 * @param normApplicability the norm applicability perceived by each sensor
+	 * @param goal the goal
+	 * @return the norm compliance outcomes of each sensor, 
+	 * 					in the same order than {@code normApplicability}
+	 */
+	public List<NormComplianceOutcomes> checkNormCompliance(
+			final NormReasoner normReasoner,
+			List<NormsApplicableInView> normApplicability, final Goal goal) {
+		
+		List<Callable<NormComplianceOutcomes>> tasks = 
+				new ArrayList<Callable<NormComplianceOutcomes>>();
+		
+		for(final NormsApplicableInView vNormAppl : normApplicability) {
+			tasks.add(new Callable<NormComplianceOutcomes>() {
+				@Override
+				public NormComplianceOutcomes call() {
+					return normReasoner.checkNormComplianceAndOutcomes(vNormAppl, goal);
+				}
+			});
+		}
+		return this.run(tasks);
+	}
+	
+	/**
+	 * Returns <tt>true</tt> if sensors are processed in parallel
+	 * 
+	 * @return <tt>true</tt> if sensors are processed in parallel
+	 */
+	public boolean isParallel() {
+		return this.executor != null;
+	}
+	
+	/**
+	 * Returns the number of threads of the pipeline
+	 * 
+	 * @return the number of threads
+	 */
+	public int getNumThreads() {
+		return this.numThreads;
+	}
+	
+	/**
+	 * Stops the threads of the pipeline. Afterwards, 
+	 * sensors are processed sequentially
+	 */
+	public void shutdown() {
+		if(this.executor != null) {
+			this.executor.shutdown();
+			this.executor = null;
+			this.numThreads = 1;
+		}
+	}
+	
+	//---------------------------------------------------------------------------
+	// Private methods
+	//---------------------------------------------------------------------------
+	
+	/**
+	 * Runs a list of tasks and returns their results in the same order. 
+	 * In sequential mode, tasks are run in the calling thread
+	 * 
+	 * @param tasks the tasks
+	 * @return the results of the tasks
+	 */
+	private <V> List<V> run(List<Callable<V>> tasks) {
+		List<V> results = new ArrayList<V>(tasks.size());
+		
+		try {
+			if(this.executor == null || tasks.size() < 2) {
+				for(Callable<V> task : tasks) {
+					results.add(task.call());
+				}
+			}
+			else {
+				for(Future<V> future : this.executor.invokeAll(tasks)) {
+					results.add(future.get());
+				}
+			}
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Sensor pipeline interrupted", e);
+		}
+		catch(ExecutionException e) {
+			throw this.rethrow(e.getCause());
+		}
+		catch(Exception e) {
+			throw this.rethrow(e);
+		}
+		return results;
+	}
+	
+	/**
+	 * Rethrows an exception thrown by a task, wrapping it
+	 * if it is a checked exception
+	 * 
+	 * @param t the exception
+	 * @return never returns
+	 */
+	private RuntimeException rethrow(Throwable t) {
+		if(t instanceof RuntimeException) {
+			throw (RuntimeException)t;
+		}
+		if(t instanceof Error) {
+			throw (Error)t;
+		}
+		throw new IllegalStateException(t);
+	}
+}
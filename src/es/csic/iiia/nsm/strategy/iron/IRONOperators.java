@@ -140,7 +140,7 @@ public class IRONOperators {
 	 */
 	public void activate(Norm norm) {
 		normativeNetwork.setState(norm, NetworkNodeState.ACTIVE);
-		normativeNetwork.getUtility(norm).reset();
+		normativeNetwork.resetUtility(norm);
 
 		/* Add norm to the norm engine */
 		this.normReasoner.addNorm(norm);
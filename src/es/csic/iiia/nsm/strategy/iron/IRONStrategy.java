@@ -13,6 +13,8 @@ import es.csic.iiia.nsm.config.Dimension;
 import es.csic.iiia.nsm.config.DomainFunctions;
 import es.csic.iiia.nsm.config.Goal;
 import es.csic.iiia.nsm.config.NormSynthesisSettings;
+import es.csic.iiia.nsm.metrics.NormSynthesisPhase;
+import es.csic.iiia.nsm.metrics.PhaseTimer;
 import es.csic.iiia.nsm.net.norm.NetworkNodeState;
 import es.csic.iiia.nsm.net.norm.NormativeNetwork;
 import es.csic.iiia.nsm.norm.Norm;
@@ -21,6 +23,9 @@ import es.csic.iiia.nsm.norm.NormativeSystem;
 import es.csic.iiia.nsm.norm.evaluation.NormComplianceOutcomes;
 import es.csic.iiia.nsm.norm.evaluation.NormsApplicableInView;
 import es.csic.iiia.nsm.norm.evaluation.Utility;
+import es.csic.iiia.nsm.norm.evaluation.UtilityColumns;
+import es.csic.iiia.nsm.norm.evaluation.UtilityColumns.Series;
+import es.csic.iiia.nsm.norm.evaluation.UtilityIndex;
 import es.csic.iiia.nsm.norm.generation.Conflict;
 import es.csic.iiia.nsm.norm.reasoning.NormReasoner;
 import es.csic.iiia.nsm.norm.refinement.iron.GeneralisationTrees;
@@ -28,6 +33,7 @@ import es.csic.iiia.nsm.norm.refinement.iron.PotentialGeneralisation;
 import es.csic.iiia.nsm.perception.Monitor;
 import es.csic.iiia.nsm.perception.ViewTransition;
 import es.csic.iiia.nsm.strategy.NormSynthesisStrategy;
+import es.csic.iiia.nsm.strategy.SensorPipeline;
 
 /**
  * 
@@ -47,7 +53,9 @@ public class IRONStrategy implements NormSynthesisStrategy {
 
 	private PredicatesDomains predDomains;
 	private DomainFunctions dmFunctions;
+	private SensorPipeline sensorPipeline;
 	private Monitor monitor;
+	private PhaseTimer phaseTimer;
 
 	private IRONUtilityFunction utilityFunction;	
 	private IRONOperators operators;
@@ -79,8 +87,10 @@ public class IRONStrategy implements NormSynthesisStrategy {
 		this.nsmSettings = nsm.getNormSynthesisSettings();
 		this.predDomains = nsm.getPredicatesDomains();
 		this.dmFunctions = nsm.getDomainFunctions();
+		this.sensorPipeline = nsm.getSensorPipeline();
 		this.normativeNetwork = nsm.getNormativeNetwork();
 		this.monitor = nsm.getMonitor();
+		this.phaseTimer = nsm.getPhaseTimer();
 		
 		this.genTrees = new GeneralisationTrees(this.predDomains, 
 				this.dmFunctions, this.normativeNetwork);
@@ -117,17 +127,21 @@ public class IRONStrategy implements NormSynthesisStrategy {
 		 *-------------------*/
 
 		/* Obtain monitor perceptions */
+		this.phaseTimer.start();
 		List<ViewTransition> viewTransitions = new ArrayList<ViewTransition>();
 		obtainPerceptions(viewTransitions);
+		this.phaseTimer.stop(NormSynthesisPhase.Perception);
 
 		/* Conflict detection */
 		conflicts = conflictDetection(viewTransitions);
+		this.phaseTimer.stop(NormSynthesisPhase.ConflictDetection);
 
 		for(Goal goal : conflicts.keySet()) {
 			for(Conflict conflict : conflicts.get(goal)) {
 				operators.create(conflict, goal);
 			}	
 		}
+		this.phaseTimer.stop(NormSynthesisPhase.NormGeneration);
 
 		/*-------------------
 		 *  Norm evaluation
@@ -135,12 +149,15 @@ public class IRONStrategy implements NormSynthesisStrategy {
 
 		/* Compute norm applicability */
 		this.normApplicability = this.normApplicability(viewTransitions);
+		this.phaseTimer.stop(NormSynthesisPhase.NormApplicability);
 
 		/* Detect norm applicability and compliance */
 		this.normCompliance(this.normApplicability);
+		this.phaseTimer.stop(NormSynthesisPhase.NormCompliance);
 
 		/* Update utilities and performances */
 		this.updateUtilitiesAndPerformances(this.normCompliance);
+		this.phaseTimer.stop(NormSynthesisPhase.UtilityUpdate);
 
 		/*-------------------
 		 *  Norm refinement
@@ -173,6 +190,7 @@ public class IRONStrategy implements NormSynthesisStrategy {
 				}
 			}
 		}
+		this.phaseTimer.stop(NormSynthesisPhase.NormRefinement);
 		
 		/* Return the normative system */
 		return normativeNetwork.getNormativeSystem();
@@ -205,16 +223,11 @@ public class IRONStrategy implements NormSynthesisStrategy {
 		this.hasNonRegulatedConflictsThisTick = false;
 		this.conflicts.clear();
 		
-		/* Conflict detection is computed in terms of a goal */
-		for(Goal goal : this.nsmSettings.getSystemGoals())		{
-			List<Conflict> goalConflicts = new ArrayList<Conflict>();
-
-			for(ViewTransition vTrans : viewTransitions) {
-				goalConflicts.addAll(dmFunctions.getConflicts(goal, vTrans));
-			}  	
-			conflicts.put(goal, goalConflicts);
-		}
-		return conflicts;
+		/* Conflict detection is computed in terms of a goal. Sensors
+		 * may be processed in parallel, and their conflicts are merged
+		 * in the order of the sensors */
+		return this.sensorPipeline.detectConflicts(viewTransitions,
+				this.nsmSettings.getSystemGoals(), this.conflicts);
 	}
 
 	/**
@@ -234,6 +247,9 @@ public class IRONStrategy implements NormSynthesisStrategy {
 			vNormAppl.clear();
 		}
 
+		/* Retrieve agents' contexts of all sensors in parallel (if possible) */
+		this.sensorPipeline.prefetchAgentContexts(vTransitions);
+		
 		/* Get applicable norms of each viewTransition (of each sensor) */
 		for(ViewTransition vTrans : vTransitions) {
 			NormsApplicableInView normApplicability;
@@ -258,9 +274,13 @@ public class IRONStrategy implements NormSynthesisStrategy {
 		for(NormComplianceOutcomes nc : normCompliance.values()) {
 			nc.clear();
 		}
+		this.normReasoner.releaseNormComplianceOutcomes();
 
 		/* Evaluate norm compliance and conflicts in each 
 		 * view transition with respect to each system goal */
+		List<NormsApplicableInView> vNormAppls = 
+				new ArrayList<NormsApplicableInView>();
+		
 		for(ViewTransition vTrans : normApplicability.keySet()) {
 			NormsApplicableInView vNormAppl = normApplicability.get(vTrans);
 
@@ -268,12 +288,16 @@ public class IRONStrategy implements NormSynthesisStrategy {
 			if(vNormAppl.isEmpty()) {
 				continue;
 			}
-
-			/* Check norm compliance in the view in terms of each system goal */
-			for(Goal goal : this.nsmSettings.getSystemGoals()) {
-				NormComplianceOutcomes nCompliance = this.normReasoner.
-						checkNormComplianceAndOutcomes(vNormAppl, goal);
-
+			vNormAppls.add(vNormAppl);
+		}
+		
+		/* Check norm compliance in the views in terms of each system goal.
+		 * Outcomes are stored in the order of the views */
+		for(Goal goal : this.nsmSettings.getSystemGoals()) {
+			List<NormComplianceOutcomes> nCompliances = this.sensorPipeline.
+					checkNormCompliance(this.normReasoner, vNormAppls, goal);
+			
+			for(NormComplianceOutcomes nCompliance : nCompliances) {
 				this.normCompliance.put(goal, nCompliance);
 			}
 		}
@@ -319,42 +343,83 @@ public class IRONStrategy implements NormSynthesisStrategy {
 	}
 
 	/**
-	 * Recursively specialises a norm into its children, its children
-	 * into their children, and so on
+	 * Specialises a norm into its children, its children into their
+	 * children, and so on. Before specialising a norm, its parent norms
+	 * are specialised. The norms are traversed with an explicit stack,
+	 * in the same order as a recursive traversal would do
 	 * 
 	 * @param norm the norm to specialise
 	 * 
 	 */
 	private void specialiseDown(Norm norm) {
-		List<Norm> children = this.normativeNetwork.getChildren(norm);
-
-		/* Only specialise norms that are represented by
-		 * an active norm, whether itself or a parent norm */
-		if(this.normativeNetwork.isRepresented(norm)) {
-
+		List<SpecialisationFrame> stack = new ArrayList<SpecialisationFrame>();
+		List<Norm> parents = new ArrayList<Norm>();
+		this.pushSpecialisation(norm, stack, parents);
+		
+		while(!stack.isEmpty()) {
+			SpecialisationFrame frame = stack.get(stack.size() - 1);
+			
 			/* Specialise down all parent norms */
-			List<Norm> parents = this.normativeNetwork.getParents(norm);
-			for(Norm parent : parents) {
-				this.specialiseDown(parent);
-			}
-
-			/* If the norm has no children, we simply deactivate it */
-			if(this.normativeNetwork.isLeaf(norm)) {
-				operators.deactivate(normativeNetwork, norm);
+			if(frame.nextParent < frame.numParents) {
+				Norm parent = parents.get(frame.firstParent + frame.nextParent++);
+				this.pushSpecialisation(parent, stack, parents);
+				continue;
 			}
-			/* If the norm has children, specialise into all of them */
-			else {
-				operators.specialise(normativeNetwork, norm, children);
+			
+			if(!frame.specialised) {
+				while(parents.size() > frame.firstParent) {
+					parents.remove(parents.size() - 1);
+				}
+				frame.specialised = true;
+				
+				/* If the norm has no children, we simply deactivate it */
+				if(this.normativeNetwork.isLeaf(frame.norm)) {
+					operators.deactivate(normativeNetwork, frame.norm);
+				}
+				/* If the norm has children, specialise into all of them */
+				else {
+					operators.specialise(normativeNetwork, frame.norm, frame.children);
+				}
 			}
-
+			
 			/* Check children utility to specialise them or not */
-			for(Norm child : children) {
-				if(this.normativeNetwork.getState(child) == NetworkNodeState.ACTIVE &&
-						this.isUnderperforming(child))
+			Norm child = null;
+			while(child == null && frame.nextChild < frame.children.size()) {
+				Norm candidate = frame.children.get(frame.nextChild++);
+				if(this.normativeNetwork.getState(candidate) == NetworkNodeState.ACTIVE &&
+						this.isUnderperforming(candidate))
 				{
-					this.specialiseDown(child);
+					child = candidate;
 				}
 			}
+			if(child != null) {
+				this.pushSpecialisation(child, stack, parents);
+			}
+			else {
+				stack.remove(stack.size() - 1);
+			}
+		}
+	}
+	
+	/**
+	 * Pushes the specialisation of a norm onto the stack of 
+	 * {@code specialiseDown}, just in case the norm is represented
+	 * 
+	 * @param norm the norm to specialise
+	 * @param stack the norms being specialised
+	 * @param parents the parents pending to be specialised
+	 */
+	private void pushSpecialisation(Norm norm, List<SpecialisationFrame> stack,
+			List<Norm> parents) {
+		
+		List<Norm> children = this.normativeNetwork.getChildren(norm);
+
+		/* Only specialise norms that are represented by
+		 * an active norm, whether itself or a parent norm */
+		if(this.normativeNetwork.isRepresented(norm)) {
+			int firstParent = parents.size();
+			int numParents = this.normativeNetwork.addParents(norm, parents);
+			stack.add(new SpecialisationFrame(norm, children, firstParent, numParents));
 		}
 	}
 
@@ -365,11 +430,13 @@ public class IRONStrategy implements NormSynthesisStrategy {
 	 * @return <tt>true</tt> if the norm is under performing
 	 */
 	private boolean isUnderperforming(Norm norm) {
-		for(Dimension dim : this.nsm.getNormEvaluationDimensions()) 	{
-			for(Goal goal : this.nsmSettings.getSystemGoals()) {
-				
-				Utility utility = this.normativeNetwork.getUtility(norm);
-				float topBoundary = utility.getPerformanceRange(dim, goal).getCurrentTopBoundary();
+		UtilityColumns<Norm> columns = this.normativeNetwork.getUtilityColumns();
+		UtilityIndex index = this.nsm.getUtilityIndex();
+		int slot = 0;
+		
+		for(Dimension dim : index.getDimensions()) 	{
+			for(Goal goal : index.getGoals()) {
+				float topBoundary = columns.get(Series.TopBoundary, slot++, norm.getId());
 				float satDegree = this.nsmSettings.getSpecialisationBoundary(dim, goal);
 
 				if(topBoundary < satDegree) {
@@ -501,4 +568,34 @@ public class IRONStrategy implements NormSynthesisStrategy {
   public void newNonRegulatedConflictsSolvedThisTick() {
 	  this.hasNonRegulatedConflictsThisTick = true;
   }
+	
+	//---------------------------------------------------------------------------
+	// Private classes
+	//---------------------------------------------------------------------------
+	
+	/**
+	 * The specialisation of a norm in the stack of {@code specialiseDown}
+	 */
+	private static class SpecialisationFrame {
+		
+		private Norm norm;
+		private List<Norm> children;
+		private int firstParent;				// position of its parents in the buffer
+		private int numParents;
+		private int nextParent;
+		private int nextChild;
+		private boolean specialised;
+		
+		SpecialisationFrame(Norm norm, List<Norm> children, int firstParent,
+				int numParents) {
+			
+			this.norm = norm;
+			this.children = children;
+			this.firstParent = firstParent;
+			this.numParents = numParents;
+			this.nextParent = 0;
+			this.nextChild = 0;
+			this.specialised = false;
+		}
+	}
 }
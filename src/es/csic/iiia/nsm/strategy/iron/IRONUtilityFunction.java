@@ -40,6 +40,7 @@ public class IRONUtilityFunction  {
 			NormComplianceOutcomes nCompliance, NormativeNetwork nNetwork) {
 		
 		float oldScore, score, reward;
+		int slot = nNetwork.getUtilityIndex().getSlot(dim, goal);
 
 		switch(dim) {
 		
@@ -54,10 +55,10 @@ public class IRONUtilityFunction  {
 					break;
 				}
 
-				oldScore = nNetwork.getUtility(appNorm).getScore(dim, goal);
+				oldScore = nNetwork.getUtility(appNorm).getScore(slot);
 				reward = (float) nANoC / (nAC + nANoC); 
 				score = (float) (oldScore + 0.1 * (reward - oldScore));
-				nNetwork.setScore(appNorm, dim, goal, score);
+				nNetwork.setScore(appNorm, slot, score);
 			}
 			break;
 
@@ -68,11 +69,11 @@ public class IRONUtilityFunction  {
 				int nVC = nCompliance.getNumInfringementsWithConflict(violNorm);
 				int nVNoC = nCompliance.getNumInfrsWithNoConflict(violNorm);	
 
-				oldScore = nNetwork.getUtility(violNorm).getScore(dim, goal);
+				oldScore = nNetwork.getUtility(violNorm).getScore(slot);
 				reward = (float) nVC / (nVC + nVNoC); 
 				score = (float) (oldScore + 0.1 * (reward - oldScore));
 
-				nNetwork.setScore(violNorm, dim, goal, score);
+				nNetwork.setScore(violNorm, slot, score);
 			}
 			break;
 		}
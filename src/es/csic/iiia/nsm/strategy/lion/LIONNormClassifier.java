@@ -18,7 +18,9 @@ import es.csic.iiia.nsm.net.norm.NormativeNetwork;
 import es.csic.iiia.nsm.norm.Norm;
 import es.csic.iiia.nsm.norm.evaluation.NormCompliance;
 import es.csic.iiia.nsm.norm.evaluation.PerformanceRange;
-import es.csic.iiia.nsm.norm.evaluation.Utility;
+import es.csic.iiia.nsm.norm.evaluation.UtilityColumns;
+import es.csic.iiia.nsm.norm.evaluation.UtilityColumns.Series;
+import es.csic.iiia.nsm.norm.evaluation.UtilityIndex;
 import es.csic.iiia.nsm.norm.group.NormGroup;
 import es.csic.iiia.nsm.norm.group.NormGroupCombination;
 import es.csic.iiia.nsm.norm.group.net.NormGroupNetwork;
@@ -247,14 +249,16 @@ public class LIONNormClassifier {
 				normAttributes.contains(NormAttribute.GENERALISABLE);
 
 		if(!isGeneralisable) {
-			for(Dimension dim : this.normEvDimensions)	 {
-				for(Goal goal : this.nsmSettings.getSystemGoals()) {
-
-					Utility utility = this.normativeNetwork.getUtility(norm);
-					//					float bottomBoundary = utility.
-					//							getPerformanceRange(dim, goal).getCurrentBottomBoundary();
-					float topBoundary = utility.
-							getPerformanceRange(dim, goal).getCurrentTopBoundary();
+			UtilityColumns<Norm> columns = this.normativeNetwork.getUtilityColumns();
+			UtilityIndex index = this.normativeNetwork.getUtilityIndex();
+			int slot = 0;
+			
+			for(Dimension dim : index.getDimensions())	 {
+				for(Goal goal : index.getGoals()) {
+					//					float bottomBoundary = columns.
+					//							get(Series.BottomBoundary, slot, norm.getId());
+					float topBoundary = columns.
+							get(Series.TopBoundary, slot++, norm.getId());
 					float satDegree = this.nsmSettings.
 							getGeneralisationBoundary(dim, goal);
 
@@ -404,19 +408,12 @@ public class LIONNormClassifier {
 	 * 					or necessity), and in terms of all system goals
 	 */
 	private boolean underPerforms(NetworkNode node, Dimension dim, Goal goal) {
-		Utility utility = null;
-		if(node instanceof Norm) {
-			utility =  this.normativeNetwork.getUtility((Norm)node);
-		}
-		else if(node instanceof NormGroup) {
-			utility =  this.normGroupNetwork.getUtility((NormGroup)node);
-		}
+		float avg = this.getCurrentAverage(node, dim, goal);
 
 		float satDegree = this.nsmSettings.getSpecialisationBoundary(dim, goal);
 		float epsilon = this.nsmSettings.getSpecialisationBoundaryEpsilon(dim, goal);
 		//		float topBoundary = utility.getPerformanceRange(dim, goal).
 		//				getCurrentTopBoundary();
-		float avg = utility.getPerformanceRange(dim, goal).getCurrentAverage();
 
 		//		if(utility.getPerformanceRange(dim, goal).getNumSlidingValues() < 20)
 		//			return false;
@@ -441,20 +438,13 @@ public class LIONNormClassifier {
 	 * 					or necessity), and in terms of all system goals
 	 */
 	private boolean performsWell(NetworkNode node, Dimension dim, Goal goal) {
-		Utility utility = null;
-		if(node instanceof Norm) {
-			utility =  this.normativeNetwork.getUtility((Norm)node);
-		}
-		else if(node instanceof NormGroup) {
-			utility =  this.normGroupNetwork.getUtility((NormGroup)node);
-		}
+		float avg = this.getCurrentAverage(node, dim, goal);
 
 		float satDegree = this.nsmSettings.getSpecialisationBoundary(dim, goal);
 		float epsilon = this.nsmSettings.getSpecialisationBoundaryEpsilon(dim, goal);
 
 		//		float bottomBoundary = utility.getPerformanceRange(dim, goal).
 		//				getCurrentBottomBoundary();
-		float avg = utility.getPerformanceRange(dim, goal).getCurrentAverage();
 
 		//		if(utility.getPerformanceRange(dim, goal).getPunctualValues().size() < 20)
 		//			return false;
@@ -467,6 +457,28 @@ public class LIONNormClassifier {
 		return false;
 	}
 	
+	/**
+	 * Returns the current average of the performance range of a node 
+	 * (whether it is a norm or a norm group) for a dimension/goal. The 
+	 * averages of norms are read from the columnar store of the
+	 * normative network
+	 * 
+	 * @param node the node (norm or norm group)
+	 * @param dim the evaluation dimension
+	 * @param goal the system goal
+	 * @return the current average of the performance range of the node
+	 */
+	private float getCurrentAverage(NetworkNode node, Dimension dim, Goal goal) {
+		int slot = this.normativeNetwork.getUtilityIndex().getSlot(dim, goal);
+		
+		if(node instanceof Norm) {
+			return this.normativeNetwork.getUtilityColumns().
+					get(Series.Average, slot, node.getId());
+		}
+		return this.normGroupNetwork.getUtility((NormGroup)node).
+				getScoreAverage(slot);
+	}
+
 	/**
 	 * 
 	 * @param group1
@@ -16,6 +16,8 @@ import es.csic.iiia.nsm.config.Dimension;
 import es.csic.iiia.nsm.config.DomainFunctions;
 import es.csic.iiia.nsm.config.Goal;
 import es.csic.iiia.nsm.config.NormSynthesisSettings;
+import es.csic.iiia.nsm.metrics.NormSynthesisPhase;
+import es.csic.iiia.nsm.metrics.PhaseTimer;
 import es.csic.iiia.nsm.net.norm.NetworkNodeState;
 import es.csic.iiia.nsm.net.norm.NormativeNetwork;
 import es.csic.iiia.nsm.norm.Norm;
@@ -31,6 +33,7 @@ import es.csic.iiia.nsm.norm.group.net.NormGroupNetwork;
 import es.csic.iiia.nsm.norm.reasoning.NormReasoner;
 import es.csic.iiia.nsm.perception.View;
 import es.csic.iiia.nsm.perception.ViewTransition;
+import es.csic.iiia.nsm.strategy.SensorPipeline;
 
 /**
  * @author "Javier Morales (jmorales@iiia.csic.es)"
@@ -42,34 +45,45 @@ public class LIONNormEvaluator {
 	protected NormSynthesisSettings nsmSettings;
 	protected NormReasoner normReasoner;
 	protected DomainFunctions dmFunctions;
+	protected SensorPipeline sensorPipeline;
 	protected NormativeNetwork normativeNetwork;
 	protected NormGroupNetwork normGroupNetwork;
 	
 	protected LIONUtilityFunction utilityFunction;
 	protected LIONOperators operators;
+	protected PhaseTimer phaseTimer;
 	
 	protected Map<Norm, List<SetOfPredicatesWithTerms>> negRewardedNorms;
 	
+	/* Leaf norms applicable to each agent in each view transition. Computed
+	 * once per tick and shared by the evaluation of every goal */
+	protected Map<ViewTransition, Map<Long, List<Norm>>> leafNormsApplicable;
+	
 	/**
 	 * 
 	 */
 	public LIONNormEvaluator(List<Dimension> normEvDimensions, 
 			NormSynthesisSettings nsmSettings, DomainFunctions dmFunctions,
-			NormativeNetwork normativeNetwork, NormGroupNetwork nGroupNetwork,
+			SensorPipeline sensorPipeline, NormativeNetwork normativeNetwork,
+			NormGroupNetwork nGroupNetwork,
 			NormReasoner normReasoner, LIONUtilityFunction utilityFunction,
-			LIONOperators operators) {
+			LIONOperators operators, PhaseTimer phaseTimer) {
 		
 		this.normEvDimensions = normEvDimensions;
 		this.nsmSettings = nsmSettings;
 		this.dmFunctions = dmFunctions;
+		this.sensorPipeline = sensorPipeline;
 		this.normativeNetwork = normativeNetwork;
 		this.normGroupNetwork = nGroupNetwork;
 		this.utilityFunction = utilityFunction;
 		this.normReasoner = normReasoner;
 		this.operators = operators;
+		this.phaseTimer = phaseTimer;
 		
 		this.negRewardedNorms = new HashMap<Norm, 
 				List<SetOfPredicatesWithTerms>>();
+		this.leafNormsApplicable = new HashMap<ViewTransition,
+				Map<Long, List<Norm>>>();
 	}
 	
 	/**
@@ -83,14 +97,19 @@ public class LIONNormEvaluator {
 			Map<Goal, NormGroupOutcomes> normGroupCompliance) {
 		
 		/* Compute norm applicability */
+		this.phaseTimer.start();
 		this.normApplicability(viewTransitions, normApplicability);
+		this.phaseTimer.stop(NormSynthesisPhase.NormApplicability);
 
 		/* Detect norms and norm groups compliance */
 		this.normCompliance(normApplicability, normCompliance);
-		this.normGroupCompliance(normCompliance, normGroupCompliance);
+		this.normGroupCompliance(normApplicability, normCompliance, 
+				normGroupCompliance);
+		this.phaseTimer.stop(NormSynthesisPhase.NormCompliance);
 
 		/* Update utilities and performances of norms and norm groups */
 		this.updateUtilitiesAndPerformances(normCompliance, normGroupCompliance);
+		this.phaseTimer.stop(NormSynthesisPhase.UtilityUpdate);
 
 //		this.addNegRewardedNorms(negRewardedNorms);
 	}
@@ -109,6 +128,9 @@ public class LIONNormEvaluator {
 		/* Clear norm applicability from previous tick */
 		normApplicability.clear();
 
+		/* Retrieve agents' contexts of all sensors in parallel (if possible) */
+		this.sensorPipeline.prefetchAgentContexts(vTransitions);
+		
 		/* Get applicable norms of each viewTransition (of each sensor) */
 		for(ViewTransition vTrans : vTransitions) {
 			NormsApplicableInView normsAppInView;
@@ -129,6 +151,9 @@ public class LIONNormEvaluator {
 			NormsApplicableInView> normApplicability,
 			Map<Goal, Map<ViewTransition, NormComplianceOutcomes>> normCompliance) {
 
+		/* Reuse the norm compliance outcomes of the previous tick */
+		this.normReasoner.releaseNormComplianceOutcomes();
+		
 		/* Check norm compliance in the view in terms of each system goal */
 		for(Goal goal : this.nsmSettings.getSystemGoals()) {
 
@@ -137,6 +162,10 @@ public class LIONNormEvaluator {
 
 			/* Evaluate norm compliance and conflicts in each 
 			 * view transition with respect to each system goal */
+			List<ViewTransition> vTransitions = new ArrayList<ViewTransition>();
+			List<NormsApplicableInView> vNormAppls =
+					new ArrayList<NormsApplicableInView>();
+			
 			for(ViewTransition vTrans : normApplicability.keySet()) {
 				NormsApplicableInView vNormAppl = normApplicability.get(vTrans);
 
@@ -144,10 +173,15 @@ public class LIONNormEvaluator {
 				if(vNormAppl.isEmpty()) {
 					continue;
 				}
-				NormComplianceOutcomes nCompliance = this.normReasoner.
-						checkNormComplianceAndOutcomes(vNormAppl, goal);
+				vTransitions.add(vTrans);
+				vNormAppls.add(vNormAppl);
+			}
+			List<NormComplianceOutcomes> nCompliances = this.sensorPipeline.
+					checkNormCompliance(this.normReasoner, vNormAppls, goal);
 
-				normCompliance.get(goal).put(vTrans, nCompliance);
+			for(int i=0; i<vTransitions.size(); i++) {
+				normCompliance.get(goal).put(vTransitions.get(i),
+						nCompliances.get(i));
 			}
 		}
 	}
@@ -165,20 +199,28 @@ public class LIONNormEvaluator {
 	 * 			those agents that perceive each other;
 	 * <li> for each computed joint context, it retrieves the norms (in fact, 
 	 * 			it just retrieves the leaf norms) that apply to that joint context,
-	 * 			as well as which agent each norm applies to; and
+	 * 			as well as which agent each norm applies to. Norms applicable to
+	 * 			each agent are taken from the norm applicability computed earlier
+	 * 			in the same tick, hence no further reasoning is performed; and
 	 * <li> for each norm that applies to the joint context, it generates norm
 	 * 			groups taking into account the compliance of each norm and the
 	 * 			conflicts that the norm compliance lead to
 	 * </ol>
 	 * 
+	 * @param 	normApplicability the norms applicable to each agent in each
+	 * 					view transition in the current time step
 	 * @param 	normCompliance the compliance and outcomes of norms in
 	 * 					the current time step
 	 * @param normGroupCompliance 
 	 */
-	protected void normGroupCompliance(Map<Goal,Map<ViewTransition,
-			NormComplianceOutcomes>> normCompliance, 
+	protected void normGroupCompliance(Map<ViewTransition,
+			NormsApplicableInView> normApplicability,
+			Map<Goal,Map<ViewTransition, NormComplianceOutcomes>> normCompliance, 
 			Map<Goal, NormGroupOutcomes> normGroupCompliance) {
 
+		/* Clear leaf norms applicable in the previous tick */
+		this.leafNormsApplicable.clear();
+
 		/* Likewise the case of norms, norm groups are evaluated in terms 
 		 * of a goal. With this aim, we generate norm groups (and hence, norm
 		 * groups compliance) for each system goal */
@@ -196,15 +238,10 @@ public class LIONNormEvaluator {
 					Map<Norm, Long> normsApplicableToAgents = new HashMap<Norm, Long>();
 
 					for(long agentId : jointContext.getAgentIds()) {
-						AgentContext agContext = jointContext.getContext(agentId);
-
-						/* Retrieve norms that apply to the agent context, and compute
-						 * norm compliance outcomes */
-						NormsApplicableToAgentContext nAppToPred = this.normReasoner.
-								getNormsApplicable(agContext.getDescription());
 
-						List<Norm> leaves = this.extractLeafNorms(
-								nAppToPred.getApplicableNorms());
+						/* Retrieve leaf norms that apply to the agent context */
+						List<Norm> leaves = this.getLeafNormsApplicable(
+								normApplicability.get(vTrans), vTrans, agentId);
 
 						for(Norm leaf : leaves) {
 							normsApplicableToAgents.put(leaf, agentId);
@@ -411,6 +448,35 @@ public class LIONNormEvaluator {
 		return jointContexts;
 	}
 
+	/**
+	 * Returns the leaf norms that apply to the agent with id {@code agentId}
+	 * in the view transition {@code vTrans}. Applicable norms are retrieved
+	 * from the norm applicability of the view transition, and leaves are
+	 * extracted only the first time that they are requested during a tick
+	 * 
+	 * @param vNormAppl the norms applicable in the view transition
+	 * @param vTrans the view transition
+	 * @param agentId the id of the agent
+	 * @return the leaf norms that apply to the agent in the view transition
+	 */
+	protected List<Norm> getLeafNormsApplicable(NormsApplicableInView vNormAppl,
+			ViewTransition vTrans, long agentId) {
+		
+		Map<Long, List<Norm>> agLeaves = this.leafNormsApplicable.get(vTrans);
+		if(agLeaves == null) {
+			agLeaves = new HashMap<Long, List<Norm>>();
+			this.leafNormsApplicable.put(vTrans, agLeaves);
+		}
+		
+		List<Norm> leaves = agLeaves.get(agentId);
+		if(leaves == null) {
+			NormsApplicableToAgentContext nAppToAgent = vNormAppl.get(agentId);
+			leaves = this.extractLeafNorms(nAppToAgent.getApplicableNorms());
+			agLeaves.put(agentId, leaves);
+		}
+		return leaves;
+	}
+	
 	/**
 	 * Returns the norms in a list of {@code norms} that are leaves
 	 * in the normative network. That is, norms that do not generalise
@@ -443,6 +509,7 @@ public class LIONNormEvaluator {
 	protected void addNegRewardedNorms(Map<Norm,
 			List<SetOfPredicatesWithTerms>> negRewNorms) {
 
+		List<Norm> specNorms = new ArrayList<Norm>();
 		for(Norm norm : negRewardedNorms.keySet()) {
 			List<SetOfPredicatesWithTerms> agContexts = negRewNorms.get(norm);
 
@@ -455,11 +522,15 @@ public class LIONNormEvaluator {
 				
 				/* The norm does not exist -> add it to the normative network */
 				if(!exists) {
-					Norm specNorm = new Norm(precond, mod, action);
-					this.operators.add(specNorm);
-					this.operators.activate(specNorm);
+					specNorms.add(new Norm(precond, mod, action));
 				}
 			}
 		}
+		
+		/* Add all the new norms to the normative network in a single pass */
+		this.operators.addAll(specNorms);
+		for(Norm specNorm : specNorms) {
+			this.operators.activate(specNorm);
+		}
 	}
 }
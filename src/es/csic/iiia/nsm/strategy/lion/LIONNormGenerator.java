@@ -7,10 +7,13 @@ import java.util.Map;
 import es.csic.iiia.nsm.config.DomainFunctions;
 import es.csic.iiia.nsm.config.Goal;
 import es.csic.iiia.nsm.config.NormSynthesisSettings;
+import es.csic.iiia.nsm.metrics.NormSynthesisPhase;
+import es.csic.iiia.nsm.metrics.PhaseTimer;
 import es.csic.iiia.nsm.norm.Norm;
 import es.csic.iiia.nsm.norm.generation.Conflict;
 import es.csic.iiia.nsm.perception.Monitor;
 import es.csic.iiia.nsm.perception.ViewTransition;
+import es.csic.iiia.nsm.strategy.SensorPipeline;
 
 /**
  * @author "Javier Morales (jmorales@iiia.csic.es)"
@@ -22,17 +25,23 @@ public class LIONNormGenerator {
 	protected NormSynthesisSettings nsmSettings;
 	protected Monitor monitor;
 	protected DomainFunctions dmFunctions;
+	protected SensorPipeline sensorPipeline;
+	protected PhaseTimer phaseTimer;
 
 	/**
 	 * 
 	 */
 	public LIONNormGenerator(NormSynthesisSettings nsmSettings,
-			Monitor monitor, DomainFunctions dmFunctions, LIONOperators operators) {
+			Monitor monitor, DomainFunctions dmFunctions,
+			SensorPipeline sensorPipeline, LIONOperators operators,
+			PhaseTimer phaseTimer) {
 
 		this.nsmSettings = nsmSettings;
 		this.monitor = monitor;
 		this.dmFunctions = dmFunctions;
+		this.sensorPipeline = sensorPipeline;
 		this.operators = operators;
+		this.phaseTimer = phaseTimer;
 	}
 
 	/**
@@ -45,10 +54,13 @@ public class LIONNormGenerator {
 		List<Norm> normsActivated = new ArrayList<Norm>();
 		
 		/* Obtain monitor perceptions */
+		this.phaseTimer.start();
 		obtainPerceptions(viewTransitions);
+		this.phaseTimer.stop(NormSynthesisPhase.Perception);
 
 		/* Conflict detection */
 		conflictDetection(viewTransitions, conflicts);
+		this.phaseTimer.stop(NormSynthesisPhase.ConflictDetection);
 
 		/* Norm generation */
 		for(Goal goal : conflicts.keySet()) {
@@ -56,6 +68,7 @@ public class LIONNormGenerator {
 				normsActivated.addAll(operators.create(conflict, goal));
 			}	
 		}
+		this.phaseTimer.stop(NormSynthesisPhase.NormGeneration);
 		return normsActivated;
 	}
 
@@ -82,15 +95,10 @@ public class LIONNormGenerator {
 
 		conflicts.clear();
 
-		/* Conflict detection is computed in terms of a goal */
-		for(Goal goal : this.nsmSettings.getSystemGoals())		{
-			List<Conflict> goalConflicts = new ArrayList<Conflict>();
-
-			for(ViewTransition vTrans : viewTransitions) {
-				goalConflicts.addAll(dmFunctions.getConflicts(goal, vTrans));
-			}  	
-			conflicts.put(goal, goalConflicts);
-		}
-		return conflicts;
+		/* Conflict detection is computed in terms of a goal. Sensors
+		 * may be processed in parallel, and their conflicts are merged
+		 * in the order of the sensors */
+		return this.sensorPipeline.detectConflicts(viewTransitions,
+				this.nsmSettings.getSystemGoals(), conflicts);
 	}
 }
@@ -5,6 +5,7 @@
 package es.csic.iiia.nsm.strategy.lion;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -14,6 +15,7 @@ import es.csic.iiia.nsm.NormSynthesisMachine;
 import es.csic.iiia.nsm.NormSynthesisMachine.NormGeneralisationMode;
 import es.csic.iiia.nsm.agent.AgentAction;
 import es.csic.iiia.nsm.agent.language.PredicatesDomains;
+import es.csic.iiia.nsm.config.DefaultExtendedNormSynthesisSettings;
 import es.csic.iiia.nsm.config.Dimension;
 import es.csic.iiia.nsm.config.DomainFunctions;
 import es.csic.iiia.nsm.config.NormSynthesisSettings;
@@ -21,15 +23,17 @@ import es.csic.iiia.nsm.net.norm.NetworkNodeState;
 import es.csic.iiia.nsm.net.norm.NormativeNetwork;
 import es.csic.iiia.nsm.norm.Norm;
 import es.csic.iiia.nsm.norm.NormModality;
-import es.csic.iiia.nsm.norm.NormativeSystem;
 import es.csic.iiia.nsm.norm.evaluation.NormsApplicableInView;
 import es.csic.iiia.nsm.norm.group.NormGroupCombination;
 import es.csic.iiia.nsm.norm.group.net.NormGroupNetwork;
 import es.csic.iiia.nsm.norm.reasoning.NormReasoner;
 import es.csic.iiia.nsm.norm.refinement.lion.NormAttribute;
 import es.csic.iiia.nsm.norm.refinement.simon.GeneralisableNorms;
+import es.csic.iiia.nsm.norm.refinement.simon.GeneralisationCandidateIndex;
 import es.csic.iiia.nsm.norm.refinement.simon.NormIntersection;
+import es.csic.iiia.nsm.norm.refinement.simon.NormIntersectionCache;
 import es.csic.iiia.nsm.perception.ViewTransition;
+import es.csic.iiia.nsm.strategy.RefinementScheduler;
 
 /**
  * @author "Javier Morales (jmorales@iiia.csic.es)"
@@ -55,8 +59,12 @@ public class LIONNormRefiner {
 	protected LIONOperators operators;
 	protected NormGeneralisationMode genMode; 
 	protected int genStep;
+	
+	protected RefinementScheduler refinementScheduler;
+	protected RefinementScheduler.Refiner refiner;
 
-	protected Map<String, NormIntersection> normIntersections;
+	protected NormIntersectionCache normIntersections;
+	protected GeneralisationCandidateIndex genCandidates;
 	protected Map<NormGroupCombination, Integer> potentialComplementaryPairs;
 
 	/**
@@ -67,8 +75,8 @@ public class LIONNormRefiner {
 			NormSynthesisSettings nsmSettings, DomainFunctions dmFunctions,
 			PredicatesDomains predDomains, NormativeNetwork normativeNetwork,
 			NormGroupNetwork normGroupNetwork, NormReasoner normReasoner,
-			LIONOperators operators, NormGeneralisationMode genMode, int genStep,
-			Random random) {
+			LIONOperators operators, RefinementScheduler refinementScheduler,
+			NormGeneralisationMode genMode, int genStep, Random random) {
 
 		this.random = random;
 		this.normEvDimensions = normEvDimensions;
@@ -81,9 +89,29 @@ public class LIONNormRefiner {
 		this.operators = operators;
 		this.genMode = genMode;
 		this.genStep = genStep;
+		this.refinementScheduler = refinementScheduler;
+		this.refiner = new RefinementScheduler.Refiner() {
+			@Override
+			public boolean isStillApplicable(Norm norm,
+					RefinementScheduler.Type type) {
+				return normativeNetwork.contains(norm) &&
+						normativeNetwork.isRepresented(norm) &&
+						normativeNetwork.getAttributes(norm).
+						contains(NormAttribute.GENERALISABLE);
+			}
+			
+			@Override
+			public void refine(Norm norm, RefinementScheduler.Type type) {
+				generaliseUp(norm, genMode, genStep);
+			}
+		};
 
 		this.potentialComplementaryPairs = new HashMap<NormGroupCombination,Integer>();
-		this.normIntersections = new HashMap<String, NormIntersection>();
+		this.normIntersections = new NormIntersectionCache(
+				normativeNetwork, DefaultExtendedNormSynthesisSettings
+						.getExtended(nsmSettings).getNormIntersectionCacheSize());
+		this.genCandidates = new GeneralisationCandidateIndex(
+				normativeNetwork, genMode, genStep);
 		this.normClassifications = new HashMap<Norm, List<NormAttribute>>();
 		this.normClassifier = new LIONNormClassifier(normEvDimensions,
 				nsmSettings,normativeNetwork, normGroupNetwork, operators);
@@ -97,7 +125,7 @@ public class LIONNormRefiner {
 			List<Norm> normsActivatedDuringGeneration) {
 		
 		List<Norm> processed = new ArrayList<Norm>();
-		List<Norm> visited = new ArrayList<Norm>();
+		BitSet visited = new BitSet();
 
 		/* 1. First, deactivate all those norms that have a substitutability 
 		 * relationship with those norms that have been activated during 
@@ -166,11 +194,17 @@ public class LIONNormRefiner {
 				this.operators.activate(norm);
 			}
 
-			/* If the norm has enough utility to be generalised, 
-			 * then try to generalise it */
+			/* If the norm has enough utility to be generalised, then try to
+			 * generalise it. If there is a refinement budget, schedule its
+			 * generalisation (once the rest of norms have been refined) */
 			boolean isGeneralisable = attributes.contains(NormAttribute.GENERALISABLE);
 			if(isGeneralisable) {
-				generaliseUp(norm, genMode, genStep);
+				if(this.refinementScheduler.isBudgeted()) {
+					this.refinementScheduler.scheduleGeneralisation(norm);
+				}
+				else {
+					generaliseUp(norm, genMode, genStep);
+				}
 			}
 			
 			/* If the norm is substitutable, retrieve the norm it is 
@@ -202,38 +236,60 @@ public class LIONNormRefiner {
 				this.normativeNetwork.addAttribute(substituter, NormAttribute.SUBSTITUTER);
 			}
 		}
+		
+		/* Generalise norms as long as they fit in the refinement budget 
+		 * of the tick. The rest are carried over to the next tick */
+		if(this.refinementScheduler.isBudgeted()) {
+			this.refinementScheduler.execute(this.refiner);
+		}
 	}
 
 	/**
-	 * Recursively specialises a norm into its children, its children
-	 * into their children, and so on
+	 * Returns the cache of the intersections of norms
+	 * 
+	 * @return the cache of the intersections of norms
+	 */
+	public NormIntersectionCache getNormIntersectionCache() {
+		return this.normIntersections;
+	}
+	
+	/**
+	 * Specialises a norm into its children, after specialising its
+	 * ancestors into their children. Ancestors are specialised from the
+	 * top of the normative network downwards, and each norm is specialised
+	 * at most once (those norms whose ids are set in {@code visited} are
+	 * not specialised again)
 	 * 
 	 * @param norm the norm to specialise
+	 * @param specState the state of the specialised norms
+	 * @param visited the ids of the norms already specialised
 	 */
-	protected void specialiseDown(Norm norm, NetworkNodeState specState, List<Norm> visited) {
-		if(visited.contains(norm)) {
-			return;
-		}
-		visited.add(norm);
-
-		/* Specialise down all parent norms */
-		List<Norm> parents = this.normativeNetwork.getParents(norm);
-		for(Norm parent : parents) {
-			this.specialiseDown(parent, specState, visited);
-		}
-
-		/* Codigo nuevo: Cuando una norma hoja va mal, entonces se especializan todos
-		 * los padres que la generalizan. De esta manera, una norma general solo 
-		 * se desactiva si tiene alguna hija que va mal
-		 */
-		List<Norm> children = this.normativeNetwork.getChildren(norm);
+	protected void specialiseDown(Norm norm, final NetworkNodeState specState,
+			BitSet visited) {
+		
+		this.normativeNetwork.visitAncestors(norm, visited, 
+				new NormativeNetwork.AncestorVisitor() {
+			
+			@Override
+			public boolean enter(Norm norm, int distance) {
+				return true;
+			}
 
-		/* Only specialise norms that are represented by
-		 * an active norm, whether itself or a parent norm */
-		if(this.normativeNetwork.isRepresented(norm)) {
-			List<Norm> childrenToActivate = new ArrayList<Norm>(children);
-			operators.specialise(norm, specState, childrenToActivate);
-		}
+			/* Codigo nuevo: Cuando una norma hoja va mal, entonces se especializan
+			 * todos los padres que la generalizan. De esta manera, una norma general
+			 * solo se desactiva si tiene alguna hija que va mal
+			 */
+			@Override
+			public void leave(Norm norm) {
+				
+				/* Only specialise norms that are represented by
+				 * an active norm, whether itself or a parent norm */
+				if(normativeNetwork.isRepresented(norm)) {
+					List<Norm> childrenToActivate = normativeNetwork.getChildren(norm);
+					operators.specialise(norm, specState, childrenToActivate);
+				}
+			}
+		});
 	}
 
 	/**
@@ -272,12 +328,12 @@ public class LIONNormRefiner {
 			NormGeneralisationMode genMode, int genStep) {
 
 
-		/* Get all the active norms (the normative system) */
-		NormativeSystem NS = (NormativeSystem)
-				normativeNetwork.getNormativeSystem().clone();
+		/* Get the active norms (those of the normative system) 
+		 * that may be generalised together with the norm */
+		List<Norm> candidates = this.genCandidates.getCandidates(normA);
 
-		/* Compute matches with each norm */
-		for(Norm normB : NS) {
+		/* Compute matches with each candidate norm */
+		for(Norm normB : candidates) {
 			boolean generalise = true;
 
 			/* Never generalise the norm with itself */
@@ -305,12 +361,8 @@ public class LIONNormRefiner {
 			}
 
 			/* 3. Check that the parent norm does not contain an inactive norm */
-			for(Norm inactive: this.normativeNetwork.getNotRepresentedNorms()){
-				if(this.normReasoner.satisfies(inactive, parent) && 
-						!inactive.equals(parent))	{
-					generalise = false;
-					break;
-				}
+			if(this.normativeNetwork.subsumesNotRepresentedNorm(parent)) {
+				generalise = false;
 			}
 
 			/* 4. Do not generalise if any of the generalisable norms or the parent
@@ -370,7 +422,7 @@ public class LIONNormRefiner {
 //						this.normativeNetwork.getState(parent) != NetworkNodeState.REPRESENTED) {
 					
 					this.operators.activate(parent);
-					this.normativeNetwork.getUtility(parent).reset();
+					this.normativeNetwork.resetUtility(parent);
 				}
 
 				/* Perform the norm generalisation */
@@ -417,14 +469,13 @@ public class LIONNormRefiner {
 		}
 
 		/* Get the intersection between both norm preconditions */
-		String desc = NormIntersection.getDescription(normA, normB);
+		intersection = this.normIntersections.get(normA, normB);
 
-		if(!this.normIntersections.containsKey(desc)) {
+		if(intersection == null) {
 			intersection = new NormIntersection(normA, normB, 
 					this.predDomains, genMode);
-			this.normIntersections.put(desc, intersection);
+			this.normIntersections.put(normA, normB, intersection);
 		}
-		intersection = this.normIntersections.get(desc);
 
 		/* If both norms have all their predicates in common but K predicates,
 		 * then generalise both norms are generalisable */
@@ -512,7 +563,7 @@ public class LIONNormRefiner {
 	 * @return
 	 */
 	private double computeGeneralisationIndex(Norm norm) {
-		List<Norm> visited = new ArrayList<Norm>();
+		BitSet visited = new BitSet();
 		return this.computeGeneralisationDegree(norm, visited);
 	}
 
@@ -520,31 +571,23 @@ public class LIONNormRefiner {
 	 * 
 	 * @return
 	 */
-	private double computeGeneralisationDegree(Norm norm, List<Norm> visited) {
-
-		/* Check that the norm is represented and not visited before */
-		if(!this.normativeNetwork.isRepresented(norm) || visited.contains(norm)) {
-//		if((this.normativeNetwork.getState(norm) != NetworkNodeState.ACTIVE && 
-//				this.normativeNetwork.getState(norm) != NetworkNodeState.REPRESENTED) ||
-//				visited.contains(norm)) {
+	private double computeGeneralisationDegree(Norm norm, BitSet visited) {
+		final List<Norm> children = new ArrayList<Norm>();
+		DegreeVisitor visitor = new DegreeVisitor() {
 			
-			return 0; // TODO: Cambiar logica con estados active / represented
-		}
-		visited.add(norm);
-
-		List<Norm> parents = this.normativeNetwork.getParents(norm);
-		List<Norm> children = this.normativeNetwork.getChildren(norm);
-		int genLevel = this.normativeNetwork.getGeneralisationLevel(norm);
-		int numChildren = children.size();
-
-		double genDegree = numChildren * Math.pow(10, genLevel);
-
+			@Override
+			protected double computeDegree(Norm norm, int distance) {
+				int genLevel = normativeNetwork.getGeneralisationLevel(norm);
+				int numChildren = normativeNetwork.addChildren(norm, children);
+				children.clear();
+				
+				return numChildren * Math.pow(10, genLevel);
+			}
+		};
+		
 		/* Explore in height (parents) */
-		for(Norm parent : parents) {
-			double parentGenDegree = this.computeGeneralisationDegree(parent, visited);
-			genDegree += parentGenDegree;
-		}
-		return genDegree;
+		this.normativeNetwork.visitAncestors(norm, visited, visitor);
+		return visitor.getDegree();
 	}
 
 	/**
@@ -552,39 +595,32 @@ public class LIONNormRefiner {
 	 * @return
 	 */
 	private double computeSubstitutabilityIndex(Norm norm) {
-		List<Norm> visited = new ArrayList<Norm>();
-		return this.computeSubstitutabilityDegree(norm, visited, 0);
+		BitSet visited = new BitSet();
+		return this.computeSubstitutabilityDegree(norm, visited);
 	}
 
 	/**
 	 * 
 	 * @return
 	 */
-	private double computeSubstitutabilityDegree(Norm norm,
-			List<Norm> visited,	int distance) {
-
-		/* Check that the norm is represented and not visited before */
-		if(!this.normativeNetwork.isRepresented(norm) || visited.contains(norm)) {
-			return 0;
-		}
-		visited.add(norm);
-		List<Norm> parents = this.normativeNetwork.getParents(norm);
-		List<Norm> brothers = this.normativeNetwork.getBrothers(norm);
-		
-		double subsDegree = 0.0;
-		for(Norm brother : brothers) {
-			if(normativeNetwork.getState(brother) == NetworkNodeState.SUBSTITUTED) {
-				subsDegree += Math.pow(10, distance * -1);
+	private double computeSubstitutabilityDegree(Norm norm, BitSet visited) {
+		DegreeVisitor visitor = new DegreeVisitor() {
+			
+			@Override
+			protected double computeDegree(Norm norm, int distance) {
+				double subsDegree = 0.0;
+				for(Norm brother : normativeNetwork.getBrothers(norm)) {
+					if(normativeNetwork.getState(brother) == NetworkNodeState.SUBSTITUTED) {
+						subsDegree += Math.pow(10, distance * -1);
+					}
+				}
+				return subsDegree;
 			}
-		}
-
+		};
+		
 		/* Explore in height (parents) */
-		for(Norm parent : parents) {
-			double parentSubsDegree = this.computeSubstitutabilityDegree(parent,
-					visited, distance+1);
-			subsDegree += parentSubsDegree;
-		}
-		return subsDegree;
+		this.normativeNetwork.visitAncestors(norm, visited, visitor);
+		return visitor.getDegree();
 	}
 
 	/**
@@ -606,4 +642,66 @@ public class LIONNormRefiner {
 		}
 		return normsToRevise;
 	}
+	
+	//---------------------------------------------------------------------------
+	// Private classes
+	//---------------------------------------------------------------------------
+	
+	/**
+	 * Computes a degree of a norm by adding the degree of each represented
+	 * ancestor of the norm (including the norm itself). The degrees of the
+	 * parents of a norm are added to its degree in order, once they have
+	 * been computed, as a recursive computation would do
+	 */
+	private abstract class DegreeVisitor 
+		implements NormativeNetwork.AncestorVisitor {
+		
+		private List<Double> degrees = new ArrayList<Double>();
+		private double degree = 0;
+		
+		/**
+		 * Only represented norms are explored
+		 */
+		@Override
+		public boolean enter(Norm norm, int distance) {
+			if(!normativeNetwork.isRepresented(norm)) {
+				return false;
+			}
+			this.degrees.add(this.computeDegree(norm, distance));
+			return true;
+		}
+		
+		/**
+		 * Adds the degree of the norm (and its ancestors) to its child
+		 */
+		@Override
+		public void leave(Norm norm) {
+			double normDegree = this.degrees.remove(this.degrees.size() - 1);
+			if(this.degrees.isEmpty()) {
+				this.degree = normDegree;
+			}
+			else {
+				int last = this.degrees.size() - 1;
+				this.degrees.set(last, this.degrees.get(last) + normDegree);
+			}
+		}
+		
+		/**
+		 * Returns the degree of the norm the traversal started from
+		 * 
+		 * @return the degree of the norm
+		 */
+		public double getDegree() {
+			return this.degree;
+		}
+		
+		/**
+		 * Returns the degree of a single norm
+		 * 
+		 * @param norm the norm
+		 * @param distance the distance to the norm the traversal started from
+		 * @return the degree of the norm
+		 */
+		protected abstract double computeDegree(Norm norm, int distance);
+	}
 }
@@ -1,18 +1,21 @@
 package es.csic.iiia.nsm.strategy.lion;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 
 import es.csic.iiia.nsm.NormSynthesisMachine;
 import es.csic.iiia.nsm.agent.language.PredicatesDomains;
+import es.csic.iiia.nsm.agent.language.SetOfPredicatesWithTerms;
 import es.csic.iiia.nsm.config.DomainFunctions;
 import es.csic.iiia.nsm.config.Goal;
 import es.csic.iiia.nsm.metrics.NormSynthesisMetrics;
 import es.csic.iiia.nsm.net.norm.NetworkNodeState;
 import es.csic.iiia.nsm.net.norm.NormativeNetwork;
 import es.csic.iiia.nsm.norm.Norm;
-import es.csic.iiia.nsm.norm.evaluation.Utility;
 import es.csic.iiia.nsm.norm.generation.Conflict;
 import es.csic.iiia.nsm.norm.generation.NormGenerationMachine;
 import es.csic.iiia.nsm.norm.generation.cbr.CBRNormGenerationMachine;
@@ -118,15 +121,15 @@ public class LIONOperators {
 		}
 
 		/* Add norms to add */
+		this.addAll(normsToAdd);
 		for(Norm norm : normsToAdd)	{
-			this.add(norm);
 			this.activate(norm);
 		}
 
 		/* Activate norms */
 		for(Norm norm : normsToActivate)	{
 			this.activate(norm);
-			this.normativeNetwork.getUtility(norm).reset();
+			this.normativeNetwork.resetUtility(norm);
 		}
 		return normsToActivate;
 	}
@@ -159,6 +162,34 @@ public class LIONOperators {
 		}
 	}
 
+	/**
+	 * Adds a list of norms to the normative network in a single pass. The
+	 * norms are added from the most general to the most specific (and in
+	 * the order of the list for norms equally specific), so that each norm
+	 * is linked to those of its parents that are in the list at the time it
+	 * is added, and is never inserted between two norms of the list
+	 * 
+	 * @param norms the norms to add
+	 * @see #add(Norm)
+	 */
+	public void addAll(List<Norm> norms) {
+		final Map<Norm, Integer> specificity = new IdentityHashMap<Norm, Integer>();
+		for(Norm norm : norms) {
+			specificity.put(norm, this.getSpecificity(norm));
+		}
+		
+		List<Norm> sorted = new ArrayList<Norm>(norms);
+		Collections.sort(sorted, new Comparator<Norm>() {
+			@Override
+			public int compare(Norm n1, Norm n2) {
+				return specificity.get(n1).compareTo(specificity.get(n2));
+			}
+		});
+		for(Norm norm : sorted) {
+			this.add(norm);
+		}
+	}
+
 	/**
 	 * Activates a given {@code norm} in the normative network, resets
 	 * its utility and adds the norm to the norm reasoner. Thus, the
@@ -183,8 +214,7 @@ public class LIONOperators {
 
 					/* Reset all norm groups in which the norm is */
 					for(NormGroup nGroup : nGrCombs.get(n).getAllNormGroups()) {
-						Utility u = this.normGroupNetwork.getUtility(nGroup);
-						u.reset();
+						this.normGroupNetwork.resetUtility(nGroup);
 					}
 				}	
 			}
@@ -265,111 +295,104 @@ public class LIONOperators {
 	}
 
 	/**
+	 * Links a new norm to its direct parents and its direct children in the
+	 * normative network. Its direct parents are the most specific norms
+	 * satisfied by the norm, and its direct children are the most general
+	 * norms that satisfy the norm. Both are searched for by content in the
+	 * normative network, instead of traversing it from its top boundary.
+	 * Since the new norm stands between its direct children and its direct
+	 * parents, the generalisations from the former to the latter are removed
 	 * 
-	 * @param norm
+	 * @param norm the new norm
+	 * @see NormativeNetwork#getSatisfiedNorms(Norm)
+	 * @see NormativeNetwork#getSatisfyingNorms(Norm)
 	 */
 	private void link(Norm norm) {
-		List<Norm> topBoundary =
-				(List<Norm>)this.normativeNetwork.getTopBoundary();
-		List<Norm> visitedNorms = new ArrayList<Norm>();
+		List<Norm> parents = this.getMostSpecific(
+				this.normativeNetwork.getSatisfiedNorms(norm));
+		List<Norm> children = this.getMostGeneral(
+				this.normativeNetwork.getSatisfyingNorms(norm));
 
-		for(Norm normB : topBoundary) {
-			if(!norm.equals(normB)) {
-				this.searchRelationships(norm, normB, visitedNorms);
+		for(Norm parent : parents) {
+			this.generalise(norm, parent);
+		}
+		for(Norm child : children) {
+			for(Norm parent : parents) {
+				this.normativeNetwork.removeGeneralisation(child, parent);
 			}
+			this.generalise(child, norm);
 		}
 	}
 
 	/**
+	 * Returns the norms of a list that are not satisfied by any other
+	 * norm of the list (that is, the most specific ones)
 	 * 
-	 * @param normA
-	 * @param normB
-	 * @param visitedNorms
+	 * @param norms the norms
+	 * @return the most specific norms of the list
 	 */
-	private void searchRelationships(Norm normA, Norm normB, List<Norm> visitedNorms) {
-		List<Norm> normAChildren = this.normativeNetwork.getChildren(normA);
-		List<Norm> normBChildren = this.normativeNetwork.getChildren(normB);
-		boolean linked = false;
-
-		List<Norm> normBSatisfiedChildren = 
-				this.normReasoner.getSatisfiedNorms(normA, normBChildren);
-		List<Norm> normBChildrenSatisfyingA = 
-				this.normReasoner.getNormsSatisfying(normBChildren, normA);
-		List<Norm> normBChildrenNotSatisfyingA = 
-				this.normReasoner.getNormsNotSatisfying(normBChildren, normA);
-
-
-		/* Para evitar generalizaciones a una misma norma */
-		if(normA.equals(normB)) {
-			return;
-		}
-
-		/* Comprobacion de paternidad. Compruebo si A puede ser padre de B.
-		 * Compruebo si B satisface a A. Si lo hace, generalizo de 
-		 * B a A siempre que A no sea ya un ancestor */
-		if(normReasoner.satisfies(normB, normA))	{
-			if(!this.normativeNetwork.isAncestor(normA, normB)) {
-				this.generalise(normB, normA);
-				linked = true;
-			}
-
-			/* Nos aseguramos de que B no tenga ningun hijo que sea tambien hijo de A */
-			for(Norm normBChild : normBChildren) {
-				if(normAChildren.contains(normBChild)) {
-					this.normativeNetwork.removeGeneralisation(normBChild, normA);
+	private List<Norm> getMostSpecific(List<Norm> norms) {
+		List<Norm> mostSpecific = new ArrayList<Norm>();
+		for(Norm norm : norms) {
+			boolean isMostSpecific = true;
+			for(Norm other : norms) {
+				if(other != norm && this.normReasoner.satisfies(other, norm)) {
+					isMostSpecific = false;
+					break;
 				}
-
-				/* Update complexities metrics */
-				this.nsMetrics.incNumNodesVisited();
 			}
-		} 
-
-		/* Comprobacion de descendencia. Compruebo si A es hija de B.
-		 * Primero compruebo si A satisface a B */
-		else if(normReasoner.satisfies(normA, normB)) {
-
-			/* Si A satisface a B y no satisface a ninguno de sus hijos, 
-			 * entonces A es hija directa de B */
-			if(normBSatisfiedChildren.isEmpty()) {
-
-				/* A es hija de B. Generalizamos, siempre que no sea ancestor ya */ 
-				if(!this.normativeNetwork.isAncestor(normB, normA)) {
-					this.generalise(normA, normB);
-					linked = true;
-				}
-
-				/* Ahora comprobamos que A no esté en medio de B y alguna de sus hijas.
-				 * Para ello, comprobamos si hay alguna hija de B que satisfaga a A.
-				 * Para cada una de ellas que satisfaga A, quitamos la generalizacion
-				 * de la hija hacia B y generalizamos a A */
-				if(this.normativeNetwork.isAncestor(normB, normA)) {
-					for(Norm normBChild : normBChildrenSatisfyingA) {
-						this.normativeNetwork.removeGeneralisation(normBChild, normB);
-						this.generalise(normBChild, normA);
-					}
-				}
+			if(isMostSpecific) {
+				mostSpecific.add(norm);
 			}
+
+			/* Update complexities metrics */
+			this.nsMetrics.incNumNodesVisited();
 		}
+		return mostSpecific;
+	}
 
-		/* Si no se ha conseguido enlazar con nadie, seguimos buscando */
-		if(!linked) {
-			for(Norm normBChild : normBChildren) {
-				this.searchRelationships(normA, normBChild, visitedNorms);
+	/**
+	 * Returns the norms of a list that do not satisfy any other
+	 * norm of the list (that is, the most general ones)
+	 * 
+	 * @param norms the norms
+	 * @return the most general norms of the list
+	 */
+	private List<Norm> getMostGeneral(List<Norm> norms) {
+		List<Norm> mostGeneral = new ArrayList<Norm>();
+		for(Norm norm : norms) {
+			boolean isMostGeneral = true;
+			for(Norm other : norms) {
+				if(other != norm && this.normReasoner.satisfies(norm, other)) {
+					isMostGeneral = false;
+					break;
+				}
 			}
-		} 
-
-		/* Si se ha enlazado continuamos igual, por si se puede seguir enlazando
-		 * por abajo. La unica cuestion es que solo seguimos bajando por
-		 * aquellos hijos que no satisfacen A (para asegurarnos de que si A
-		 * ya se ha puesto como padre de B,  no se ponga tambien como padre 
-		 * de sus hijas */
-		else if(!normBChildrenNotSatisfyingA.isEmpty()) {		
-			for(Norm normBChild : normBChildrenNotSatisfyingA) {
-				this.searchRelationships(normA, normBChild, visitedNorms);
+			if(isMostGeneral) {
+				mostGeneral.add(norm);
 			}
+
+			/* Update complexities metrics */
+			this.nsMetrics.incNumNodesVisited();
 		}
+		return mostGeneral;
+	}
 
-		/* Update complexities metrics */
-		this.nsMetrics.incNumNodesVisited();
+	/**
+	 * Returns the specificity of a norm, namely the number of parent
+	 * terms of the terms in its precondition. A norm is always more
+	 * specific than the norms it satisfies
+	 * 
+	 * @param norm the norm
+	 * @return the specificity of the norm
+	 */
+	private int getSpecificity(Norm norm) {
+		SetOfPredicatesWithTerms precondition = norm.getPrecondition();
+		int specificity = 0;
+		for(String predicate : precondition.getPredicates()) {
+			String term = precondition.getTerms(predicate).get(0);
+			specificity += this.predDomains.getParentTerms(predicate, term).size();
+		}
+		return specificity;
 	}
 }
@@ -12,6 +12,9 @@ import es.csic.iiia.nsm.config.Dimension;
 import es.csic.iiia.nsm.config.DomainFunctions;
 import es.csic.iiia.nsm.config.Goal;
 import es.csic.iiia.nsm.config.NormSynthesisSettings;
+import es.csic.iiia.nsm.metrics.NormSynthesisPhase;
+import es.csic.iiia.nsm.metrics.PhaseTimer;
+import es.csic.iiia.nsm.net.norm.NormEventBuffer;
 import es.csic.iiia.nsm.net.norm.NormativeNetwork;
 import es.csic.iiia.nsm.norm.Norm;
 import es.csic.iiia.nsm.norm.NormativeSystem;
@@ -24,6 +27,7 @@ import es.csic.iiia.nsm.norm.reasoning.NormReasoner;
 import es.csic.iiia.nsm.perception.Monitor;
 import es.csic.iiia.nsm.perception.ViewTransition;
 import es.csic.iiia.nsm.strategy.NormSynthesisStrategy;
+import es.csic.iiia.nsm.strategy.RefinementScheduler;
 
 /**
  * The XSIMON norm synthesis strategy
@@ -51,6 +55,7 @@ public class LIONStrategy implements NormSynthesisStrategy {
 	protected DomainFunctions dmFunctions;
 	protected PredicatesDomains predicatesDomains;
 	protected Monitor monitor;
+	protected PhaseTimer phaseTimer;
 
 	protected LIONUtilityFunction utilityFunction;	
 	protected LIONOperators operators;
@@ -61,8 +66,7 @@ public class LIONStrategy implements NormSynthesisStrategy {
 	protected Map<Goal,Map<ViewTransition, NormComplianceOutcomes>> normCompliance;
 	protected Map<Goal,NormGroupOutcomes> normGroupCompliance;
 
-	protected List<Norm> normsInNormativeNetwork;
-	protected List<Norm> normsInNormativeSystem;
+	protected NormEventBuffer normEvents;
 	protected List<Norm> normsAddedToNNThisCycle;
 	protected List<Norm> normsAddedToNSThisCycle;
 	protected List<Norm> normsRemovedFromNSThisCycle;
@@ -96,6 +100,7 @@ public class LIONStrategy implements NormSynthesisStrategy {
 		this.normativeNetwork = nsm.getNormativeNetwork();
 		this.normGroupNetwork = this.nsm.getNormGroupNetwork();
 		this.monitor = nsm.getMonitor();
+		this.phaseTimer = nsm.getPhaseTimer();
 		this.normReasoner = nsm.getNormReasoner();
 		
 		this.operators = new LIONOperators(this, normReasoner, nsm);
@@ -119,19 +124,20 @@ public class LIONStrategy implements NormSynthesisStrategy {
 		this.conflicts = new HashMap<Goal, List<Conflict>>();
 
 		this.normGenerator = new LIONNormGenerator(nsmSettings, monitor,
-				dmFunctions, operators);
+				dmFunctions, nsm.getSensorPipeline(), operators, phaseTimer);
 
 		this.normEvaluator = new LIONNormEvaluator(normEvDimensions,
-				nsmSettings, dmFunctions, normativeNetwork, normGroupNetwork,
-				normReasoner, utilityFunction, operators);
+				nsmSettings, dmFunctions, nsm.getSensorPipeline(), normativeNetwork,
+				normGroupNetwork, normReasoner, utilityFunction, operators,
+				phaseTimer);
 
 		this.normRefiner = new LIONNormRefiner(normEvDimensions, 
 				nsmSettings, dmFunctions, predicatesDomains, normativeNetwork, 
 				normGroupNetwork, normReasoner, operators,
-				genMode, genStep, nsm.getRandom());
+				new RefinementScheduler(nsm), genMode, genStep, nsm.getRandom());
 
-		this.normsInNormativeNetwork = new ArrayList<Norm>();
-		this.normsInNormativeSystem  = new ArrayList<Norm>();
+		this.normEvents = new NormEventBuffer();
+		this.normativeNetwork.addListener(this.normEvents);
 		this.normsAddedToNNThisCycle = new ArrayList<Norm>();
 		this.normsAddedToNSThisCycle = new ArrayList<Norm>();
 		this.normsRemovedFromNSThisCycle = new ArrayList<Norm>();
@@ -168,11 +174,16 @@ public class LIONStrategy implements NormSynthesisStrategy {
 				normCompliance, normGroupCompliance);
 
 		/* Norm refinement */
+		this.phaseTimer.start();
 		this.normRefiner.step(normApplicability, normsActivated);
+		this.normRefiner.getNormIntersectionCache().updateMetrics(
+				this.nsm.getNormSynthesisMetrics());
+		this.phaseTimer.stop(NormSynthesisPhase.NormRefinement);
 
 		/* Manage lists that control new additions to the normative network,
 		 * normative system, as well as norms that have been removed */
 		this.manageNormControlLists();
+		this.phaseTimer.stop(NormSynthesisPhase.ControlListManagement);
 		
 		/* Return the current normative system */
 		return normativeNetwork.getNormativeSystem();
@@ -186,41 +197,22 @@ public class LIONStrategy implements NormSynthesisStrategy {
 		this.normsAddedToNSThisCycle.clear();
 		this.normsRemovedFromNSThisCycle.clear();
 		
-		/* Check norm additions to the normative network */
-		for(Norm norm : this.normativeNetwork.getNorms()) {
-			if(!this.normsInNormativeNetwork.contains(norm)) {
-				this.normsInNormativeNetwork.add(norm);
-				this.normsAddedToNNThisCycle.add(norm);
-			}
-		}
-		
-		/* Check norm additions to the normative system */
-		for(Norm norm : this.normativeNetwork.getNormativeSystem()) {
-			if(!this.normsInNormativeSystem.contains(norm)) {
-				this.normsInNormativeSystem.add(norm);
-				this.normsAddedToNSThisCycle.add(norm);
-			}
-		}
-		
-		/* Check norm removals from the normative system */
-		List<Norm> toRemove = new ArrayList<Norm>();
-		for(Norm norm : this.normsInNormativeSystem) {
-			if(!this.normativeNetwork.getNormativeSystem().contains(norm)) {
-				toRemove.add(norm);
-				this.normsRemovedFromNSThisCycle.add(norm);
-			}
-		}
-		for(Norm norm : toRemove) {
-			this.normsInNormativeSystem.remove(norm);
-		}
+		/* Collect the changes in the normative network
+		 * and the normative system during this tick */
+		this.normsAddedToNNThisCycle.addAll(
+				this.normEvents.getNormsAddedToNormativeNetwork());
+		this.normsAddedToNSThisCycle.addAll(
+				this.normEvents.getNormsAddedToNormativeSystem());
+		this.normsRemovedFromNSThisCycle.addAll(
+				this.normEvents.getNormsRemovedFromNormativeSystem());
 		
-		/* Add to the norm reasoner those new norms that are now represented */
-		List<Norm> normsRepresented = this.normativeNetwork.getRepresentedNorms();
-		for(Norm norm : normsRepresented) {
+		/* Add to the norm reasoner those norms that are now represented */
+		for(Norm norm : this.normEvents.getNormsNowRepresented()) {
 			if(!this.normReasoner.contains(norm)) {
 				this.normReasoner.addNorm(norm);
 			}
 		}
+		this.normEvents.clear();
 	}
 
 	public LIONOperators getOperators() {
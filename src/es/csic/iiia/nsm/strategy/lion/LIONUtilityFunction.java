@@ -62,6 +62,7 @@ public class LIONUtilityFunction  {
 			NormComplianceOutcomes nCompliance, NormativeNetwork nNetwork) {
 
 		float oldScore, score, reward;
+		int slot = nNetwork.getUtilityIndex().getSlot(dim, goal);
 		this.negRewardedNorms.clear();
 
 		switch(dim) {
@@ -77,11 +78,11 @@ public class LIONUtilityFunction  {
 					break;
 				}
 
-				oldScore = nNetwork.getUtility(appNorm).getScore(dim, goal);
+				oldScore = nNetwork.getUtility(appNorm).getScore(slot);
 				reward = (float) nANoC / (nAC + nANoC); 
 //				score = (float) (oldScore + 0.1 * (reward - oldScore));
 				score = (float) reward;
-				nNetwork.setScore(appNorm, dim, goal, score);
+				nNetwork.setScore(appNorm, slot, score);
 
 				/* If the norm has been negatively rewarded, add it to the
 				 * map of negatively rewarded norms */
@@ -101,11 +102,11 @@ public class LIONUtilityFunction  {
 				int nVC = nCompliance.getNumInfringementsWithConflict(violNorm);
 				int nVNoC = nCompliance.getNumInfrsWithNoConflict(violNorm);	
 
-				oldScore = nNetwork.getUtility(violNorm).getScore(dim, goal);
+				oldScore = nNetwork.getUtility(violNorm).getScore(slot);
 				reward = (float) nVC / (nVC + nVNoC); 
 //				score = (float) (oldScore + 0.1 * (reward - oldScore));
 				score = (float) reward;
-				nNetwork.setScore(violNorm, dim, goal, score);
+				nNetwork.setScore(violNorm, slot, score);
 
 				/* If the norm has been negatively rewarded, add it to the
 				 * map of negatively rewarded norms */
@@ -136,6 +137,8 @@ public class LIONUtilityFunction  {
 			NormGroupNetwork nGroupNetwork) {
 
 		float oldScore, score, reward;
+		int slot = nGroupNetwork.getUtilityIndex().
+				getSlot(Dimension.Effectiveness, goal);
 
 		for(NormGroup normGroup : nGroupCompliance.getNormGroups()) {
 			int nAC = nGroupCompliance.getNumComplsWithConflict(normGroup);
@@ -145,11 +148,11 @@ public class LIONUtilityFunction  {
 				break;
 			}
 
-			oldScore = nGroupNetwork.getUtility(normGroup).getScore(Dimension.Effectiveness, goal);
+			oldScore = nGroupNetwork.getUtility(normGroup).getScore(slot);
 			reward = (float) nANoC / (nAC + nANoC); 
 //			score = (float) (oldScore + 0.1 * (reward - oldScore));
 			score = (float) reward;
-			nGroupNetwork.setScore(normGroup, Dimension.Effectiveness, goal, score);
+			nGroupNetwork.setScore(normGroup, slot, score);
 		}
 	}
 }
@@ -104,7 +104,7 @@ public class SIMONOperators {
 		/* Activate norms */
 		for(Norm norm : normsToActivate)	{
 			this.activate(norm);
-			this.normativeNetwork.getUtility(norm).reset();
+			this.normativeNetwork.resetUtility(norm);
 			this.normativeNetwork.removeAttribute(norm, NormAttribute.GENERALISABLE);
 		}
 	}
@@ -1,7 +1,7 @@
 package es.csic.iiia.nsm.strategy.simon;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -11,24 +11,35 @@ import es.csic.iiia.nsm.NormSynthesisMachine.NormGeneralisationMode;
 import es.csic.iiia.nsm.agent.AgentAction;
 import es.csic.iiia.nsm.agent.language.PredicatesDomains;
 import es.csic.iiia.nsm.agent.language.SetOfPredicatesWithTerms;
+import es.csic.iiia.nsm.config.DefaultExtendedNormSynthesisSettings;
 import es.csic.iiia.nsm.config.Dimension;
 import es.csic.iiia.nsm.config.DomainFunctions;
 import es.csic.iiia.nsm.config.Goal;
 import es.csic.iiia.nsm.config.NormSynthesisSettings;
+import es.csic.iiia.nsm.metrics.NormSynthesisPhase;
+import es.csic.iiia.nsm.metrics.PhaseTimer;
+import es.csic.iiia.nsm.net.norm.NormEventBuffer;
 import es.csic.iiia.nsm.net.norm.NormativeNetwork;
 import es.csic.iiia.nsm.norm.Norm;
 import es.csic.iiia.nsm.norm.NormModality;
 import es.csic.iiia.nsm.norm.NormativeSystem;
 import es.csic.iiia.nsm.norm.evaluation.NormComplianceOutcomes;
 import es.csic.iiia.nsm.norm.evaluation.NormsApplicableInView;
-import es.csic.iiia.nsm.norm.evaluation.Utility;
+import es.csic.iiia.nsm.norm.evaluation.ThresholdCrossings;
+import es.csic.iiia.nsm.norm.evaluation.UtilityColumns;
+import es.csic.iiia.nsm.norm.evaluation.UtilityColumns.Series;
+import es.csic.iiia.nsm.norm.evaluation.UtilityIndex;
 import es.csic.iiia.nsm.norm.generation.Conflict;
 import es.csic.iiia.nsm.norm.reasoning.NormReasoner;
 import es.csic.iiia.nsm.norm.refinement.simon.GeneralisableNorms;
+import es.csic.iiia.nsm.norm.refinement.simon.GeneralisationCandidateIndex;
 import es.csic.iiia.nsm.norm.refinement.simon.NormIntersection;
+import es.csic.iiia.nsm.norm.refinement.simon.NormIntersectionCache;
 import es.csic.iiia.nsm.perception.Monitor;
 import es.csic.iiia.nsm.perception.ViewTransition;
 import es.csic.iiia.nsm.strategy.NormSynthesisStrategy;
+import es.csic.iiia.nsm.strategy.RefinementScheduler;
+import es.csic.iiia.nsm.strategy.SensorPipeline;
 
 /**
  * The SIMON norm synthesis strategy
@@ -58,8 +69,10 @@ public class SIMONStrategy implements NormSynthesisStrategy {
 	protected NormativeNetwork normativeNetwork;
 
 	protected DomainFunctions dmFunctions;
+	protected SensorPipeline sensorPipeline;
 	protected PredicatesDomains predicatesDomains;
 	protected Monitor monitor;
+	protected PhaseTimer phaseTimer;
 
 	protected SIMONUtilityFunction utilityFunction;	
 	protected SIMONOperators operators;
@@ -69,7 +82,8 @@ public class SIMONStrategy implements NormSynthesisStrategy {
 	protected Map<Goal,List<Conflict>> conflicts;
 	protected Map<Goal,Map<ViewTransition, NormComplianceOutcomes>> normCompliance;
 	protected Map<ViewTransition, NormsApplicableInView> normApplicability;
-	protected Map<String, NormIntersection> normIntersections;
+	protected NormIntersectionCache normIntersections;
+	protected GeneralisationCandidateIndex genCandidates;
 	protected Map<Norm, List<SetOfPredicatesWithTerms>> negRewardedNorms;
 
 	protected List<ViewTransition> viewTransitions; 
@@ -79,12 +93,19 @@ public class SIMONStrategy implements NormSynthesisStrategy {
 	protected List<Norm> specialisableNorms;
 	protected List<Norm> visitedNorms;
 	
-	protected List<Norm> normsInNormativeNetwork;
-	protected List<Norm> normsInNormativeSystem;
+	protected ThresholdCrossings thresholdCrossings;
+	protected BitSet specialisationCandidates;
+	protected BitSet generalisationCandidates;
+	
+	protected NormEventBuffer normEvents;
 	protected List<Norm> normsAddedToNNThisCycle;
 	protected List<Norm> normsAddedToNSThisCycle;
 	protected List<Norm> normsRemovedFromNSThisCycle;
 	
+	protected RefinementScheduler refinementScheduler;
+	protected RefinementScheduler.Refiner refiner;
+	protected BitSet visitedBySpecialisation;
+	
 	protected boolean hasNonRegulatedConflictsThisTick;
 
 	//---------------------------------------------------------------------------
@@ -106,9 +127,11 @@ public class SIMONStrategy implements NormSynthesisStrategy {
 
 		this.nsmSettings = nsm.getNormSynthesisSettings();
 		this.dmFunctions = nsm.getDomainFunctions();
+		this.sensorPipeline = nsm.getSensorPipeline();
 		this.predicatesDomains = this.nsm.getPredicatesDomains();
 		this.normativeNetwork = nsm.getNormativeNetwork();
 		this.monitor = nsm.getMonitor();
+		this.phaseTimer = nsm.getPhaseTimer();
 
 		this.normReasoner = new NormReasoner(this.nsmSettings.getSystemGoals(), 
 				this.predicatesDomains, this.dmFunctions);
@@ -130,21 +153,62 @@ public class SIMONStrategy implements NormSynthesisStrategy {
 		this.specialisableNorms = new ArrayList<Norm>();
 		this.visitedNorms = new ArrayList<Norm>();
 
-		this.normsInNormativeNetwork = new ArrayList<Norm>();
-		this.normsInNormativeSystem  = new ArrayList<Norm>();
+		this.normEvents = new NormEventBuffer();
+		this.normativeNetwork.addListener(this.normEvents);
 		this.normsAddedToNNThisCycle = new ArrayList<Norm>();
 		this.normsAddedToNSThisCycle = new ArrayList<Norm>();
 		this.normsRemovedFromNSThisCycle = new ArrayList<Norm>();
 
 		this.negRewardedNorms = new HashMap<Norm, 
 				List<SetOfPredicatesWithTerms>>();
-		this.normIntersections= new HashMap<String, NormIntersection>();
+		this.normIntersections = new NormIntersectionCache(
+				this.normativeNetwork, DefaultExtendedNormSynthesisSettings
+						.getExtended(nsmSettings).getNormIntersectionCacheSize());
+		this.genCandidates = new GeneralisationCandidateIndex(
+				this.normativeNetwork, genMode, genStep);
+		
+		/* Track the norms whose utilities cross the thresholds */
+		UtilityIndex index = this.nsm.getUtilityIndex();
+		float[] specBoundaries = new float[index.getNumSlots()];
+		float[] genBoundaries = new float[index.getNumSlots()];
+		int slot = 0;
+		
+		for(Dimension dim : index.getDimensions()) 	{
+			for(Goal goal : index.getGoals()) {
+				specBoundaries[slot] = nsmSettings.getSpecialisationBoundary(dim, goal);
+				genBoundaries[slot++] = nsmSettings.getGeneralisationBoundary(dim, goal);
+			}
+		}
+		this.thresholdCrossings = this.normativeNetwork.getUtilityColumns().
+				trackCrossings(specBoundaries, genBoundaries);
+		this.specialisationCandidates = new BitSet();
+		this.generalisationCandidates = new BitSet();
 
 		for(Goal goal : nsmSettings.getSystemGoals()) {
 			this.normCompliance.put(goal, new HashMap<ViewTransition,
 					NormComplianceOutcomes>());
 		}
 
+		this.refinementScheduler = new RefinementScheduler(nsm);
+		this.visitedBySpecialisation = new BitSet();
+		this.refiner = new RefinementScheduler.Refiner() {
+			@Override
+			public boolean isStillApplicable(Norm norm, 
+					RefinementScheduler.Type type) {
+				return isStillRefinable(norm, type);
+			}
+			
+			@Override
+			public void refine(Norm norm, RefinementScheduler.Type type) {
+				if(type == RefinementScheduler.Type.Specialisation) {
+					specialiseDown(norm, visitedBySpecialisation);
+				}
+				else {
+					generaliseUp(norm, genMode, genStep);
+				}
+			}
+		};
+		
 		this.hasNonRegulatedConflictsThisTick = false;
 	}
 
@@ -186,11 +250,14 @@ public class SIMONStrategy implements NormSynthesisStrategy {
 	private void normGeneration() {
 
 		/* Obtain monitor perceptions */
+		this.phaseTimer.start();
 		viewTransitions = new ArrayList<ViewTransition>();
 		obtainPerceptions(viewTransitions);
+		this.phaseTimer.stop(NormSynthesisPhase.Perception);
 
 		/* Conflict detection */
 		conflicts = conflictDetection(viewTransitions);
+		this.phaseTimer.stop(NormSynthesisPhase.ConflictDetection);
 
 		/* Norm generation */
 		for(Goal goal : conflicts.keySet()) {
@@ -198,6 +265,7 @@ public class SIMONStrategy implements NormSynthesisStrategy {
 				operators.create(conflict, goal);
 			}	
 		}
+		this.phaseTimer.stop(NormSynthesisPhase.NormGeneration);
 	}
 
 	/**
@@ -206,13 +274,17 @@ public class SIMONStrategy implements NormSynthesisStrategy {
 	private void normEvaluation() {
 
 		/* Compute norm applicability */
+		this.phaseTimer.start();
 		this.normApplicability = this.normApplicability(viewTransitions);
+		this.phaseTimer.stop(NormSynthesisPhase.NormApplicability);
 
 		/* Detect norm applicability and compliance */
 		this.normCompliance(this.normApplicability);
+		this.phaseTimer.stop(NormSynthesisPhase.NormCompliance);
 
 		/* Update utilities and performances */
 		this.updateUtilitiesAndPerformances(this.normCompliance);
+		this.phaseTimer.stop(NormSynthesisPhase.UtilityUpdate);
 	}
 
 	/**
@@ -221,23 +293,28 @@ public class SIMONStrategy implements NormSynthesisStrategy {
 	private void normRefinement() {
 
 		/* Add norms that have been rewarded with a negative value */
+		this.phaseTimer.start();
 		this.addNegRewardedNorms(negRewardedNorms);
 
 		/* Monitor norm utilities to detect utilities passing thresholds */
 		this.checkThresholds();
 
-		/* Specialise norms that under perform */
-		List<Norm> visited = new ArrayList<Norm>();
+		/* Specialise norms that under perform, and then generalise norms 
+		 * that may be generalised, as long as they fit in the refinement 
+		 * budget of the tick. The rest are carried over to the next tick */
 		for(Norm norm : this.specialisableNorms)	{
-			specialiseDown(norm, visited);
+			this.refinementScheduler.scheduleSpecialisation(norm);
 		}
-
-		/* Generalise norms that may be generalised */
 		for(Norm norm : this.generalisableNorms) {
-			generaliseUp(norm, genMode, genStep);
+			this.refinementScheduler.scheduleGeneralisation(norm);
 		}
+		this.visitedBySpecialisation.clear();
+		this.refinementScheduler.execute(this.refiner);
+		this.normIntersections.updateMetrics(this.nsm.getNormSynthesisMetrics());
+		this.phaseTimer.stop(NormSynthesisPhase.NormRefinement);
 		
 		this.manageNormControlLists();
+		this.phaseTimer.stop(NormSynthesisPhase.ControlListManagement);
 	}
 
 	/**
@@ -262,16 +339,11 @@ public class SIMONStrategy implements NormSynthesisStrategy {
 		this.hasNonRegulatedConflictsThisTick = false;
 		this.conflicts.clear();
 
-		/* Conflict detection is computed in terms of a goal */
-		for(Goal goal : this.nsmSettings.getSystemGoals())		{
-			List<Conflict> goalConflicts = new ArrayList<Conflict>();
-
-			for(ViewTransition vTrans : viewTransitions) {
-				goalConflicts.addAll(dmFunctions.getConflicts(goal, vTrans));
-			}  	
-			conflicts.put(goal, goalConflicts);
-		}
-		return conflicts;
+		/* Conflict detection is computed in terms of a goal. Sensors
+		 * may be processed in parallel, and their conflicts are merged
+		 * in the order of the sensors */
+		return this.sensorPipeline.detectConflicts(viewTransitions,
+				this.nsmSettings.getSystemGoals(), this.conflicts);
 	}
 
 	/**
@@ -288,6 +360,9 @@ public class SIMONStrategy implements NormSynthesisStrategy {
 		/* Clear norm applicability from previous tick */
 		this.normApplicability.clear();
 
+		/* Retrieve agents' contexts of all sensors in parallel (if possible) */
+		this.sensorPipeline.prefetchAgentContexts(vTransitions);
+		
 		/* Get applicable norms of each viewTransition (of each sensor) */
 		for(ViewTransition vTrans : vTransitions) {
 			NormsApplicableInView normApplicability;
@@ -308,6 +383,9 @@ public class SIMONStrategy implements NormSynthesisStrategy {
 	protected void normCompliance(Map<ViewTransition,
 			NormsApplicableInView> normApplicability) {
 
+		/* Reuse the norm compliance outcomes of the previous tick */
+		this.normReasoner.releaseNormComplianceOutcomes();
+		
 		/* Check norm compliance in the view in terms of each system goal */
 		for(Goal goal : this.nsmSettings.getSystemGoals()) {
 
@@ -316,6 +394,10 @@ public class SIMONStrategy implements NormSynthesisStrategy {
 
 			/* Evaluate norm compliance and conflicts in each 
 			 * view transition with respect to each system goal */
+			List<ViewTransition> vTransitions = new ArrayList<ViewTransition>();
+			List<NormsApplicableInView> vNormAppls =
+					new ArrayList<NormsApplicableInView>();
+			
 			for(ViewTransition vTrans : normApplicability.keySet()) {
 				NormsApplicableInView vNormAppl = normApplicability.get(vTrans);
 
@@ -323,10 +405,15 @@ public class SIMONStrategy implements NormSynthesisStrategy {
 				if(vNormAppl.isEmpty()) {
 					continue;
 				}
-				NormComplianceOutcomes nCompliance = this.normReasoner.
-						checkNormComplianceAndOutcomes(vNormAppl, goal);
+				vTransitions.add(vTrans);
+				vNormAppls.add(vNormAppl);
+			}
+			List<NormComplianceOutcomes> nCompliances = this.sensorPipeline.
+					checkNormCompliance(this.normReasoner, vNormAppls, goal);
 
-				this.normCompliance.get(goal).put(vTrans, nCompliance);
+			for(int i=0; i<vTransitions.size(); i++) {
+				this.normCompliance.get(goal).put(vTransitions.get(i),
+						nCompliances.get(i));
 			}
 		}
 	}
@@ -352,60 +439,106 @@ public class SIMONStrategy implements NormSynthesisStrategy {
 	}
 
 	/**
-	 * Checks the utilities of the norms that have been applicable during the 
-	 * current time step, in order to assess if any of the norms' utilities
-	 * have crossed the generalisation or specialisation thresholds.
-	 * For each norm that which utilities have crossed the generalisation
-	 * threshold (and they are over this threshold), this method adds it 
-	 * to a list of norms that can be generalised. By contrast, for each norm
-	 * which utilities have crossed the specialisation threshold (and they are
-	 * under this threshold), this method adds it to a list of norms that can
-	 * be specialised
+	 * Checks the norms that have been applicable during the current time
+	 * step and whose utilities have crossed the generalisation or
+	 * specialisation thresholds, in order to assess which norms may be
+	 * refined. For each norm which utilities have
+	 * crossed the generalisation threshold (and they are over this threshold),
+	 * this method adds it to a list of norms that can be generalised. By
+	 * contrast, for each norm which utilities have crossed the specialisation
+	 * threshold (and they are under this threshold), this method adds it to
+	 * a list of norms that can be specialised.
+	 * <p>
+	 * Crossings are pushed by the columnar store of norms' performances as
+	 * soon as utilities are updated. Norms that have crossed a threshold but
+	 * cannot be refined yet (e.g., a norm that under performs but is not a
+	 * leaf) or have not been applicable remain candidates until they are
+	 * refined or cross back, so that they are revised again in the following
+	 * time steps
 	 */
 	protected void checkThresholds() {
 		this.generalisableNorms.clear();
 		this.specialisableNorms.clear();
 
-		List<Norm> normsToRevise = new ArrayList<Norm>();
-
-		for(NormsApplicableInView vna : normApplicability.values()) {
-			for(long id : vna.getAgentIds()) {
-				for(Norm norm : vna.get(id).getApplicableNorms()) {
-					if(!normsToRevise.contains(norm)) {
-						normsToRevise.add(norm);
-					}
-				}
-			}
-		}
-
-		/* Remove random component of norm applicability */
-		Collections.sort(normsToRevise);
+		this.specialisationCandidates.or(
+				this.thresholdCrossings.pollSpecialisationCrossings());
+		this.generalisationCandidates.or(
+				this.thresholdCrossings.pollGeneralisationCrossings());
 
-		for(Norm norm : normsToRevise) {
+		/* Candidates are revised in order of id */
+		BitSet normsToRevise = (BitSet) this.specialisationCandidates.clone();
+		normsToRevise.or(this.generalisationCandidates);
+		
+		UtilityColumns<Norm> columns = this.normativeNetwork.getUtilityColumns();
+		BitSet applicable = this.getApplicableNorms();
 
+		for(int id = normsToRevise.nextSetBit(0); id >= 0;
+				id = normsToRevise.nextSetBit(id+1)) {
+			
+			Norm norm = columns.getNode(id);
+			boolean underperforming = this.thresholdCrossings.isUnderperforming(id);
+			boolean withGenUtility = this.thresholdCrossings.
+					hasGeneralisationUtility(id);
+
+			/* Discard the candidates that have crossed back, or
+			 * that have already been considered for refinement */
+			if(norm == null || !underperforming || 
+					this.normsWithSpecScore.contains(norm)) {
+				this.specialisationCandidates.clear(id);
+			}
+			if(norm == null || !withGenUtility || 
+					this.normsWithGenScore.contains(norm)) {
+				this.generalisationCandidates.clear(id);
+			}
+			/* Only the norms applicable in this time step are revised */
+			if(norm == null || !applicable.get(id)) {
+				continue;
+			}
+			
 			/* If the norm wasn't under performing and now it is,
 			 * then it is a candidate for specialisation
 			 */
 			if((!this.normsWithSpecScore.contains(norm)) && 
-					isUnderperforming(norm) && 
+					underperforming && 
 					this.normativeNetwork.isLeaf(norm))
 			{ 
 				this.normsWithSpecScore.add(norm);
 				this.specialisableNorms.add(norm);
+				this.specialisationCandidates.clear(id);
 			}
 			
 			/* If the norm wasn't generalisable and now it is,
 			 * then it is a candidate for generalisation */
 			else if(this.normativeNetwork.isRepresented(norm) &&
 					!this.normsWithGenScore.contains(norm) && 
-					hasGeneralisationUtility(norm)) 
+					withGenUtility) 
 			{			
 				this.normsWithGenScore.add(norm);
 				this.generalisableNorms.add(norm);
+				this.generalisationCandidates.clear(id);
 			}
 		}
 	}
 
+	/**
+	 * Returns the ids of the norms that have been applicable
+	 * during the current time step
+	 * 
+	 * @return the ids of the applicable norms
+	 */
+	private BitSet getApplicableNorms() {
+		BitSet applicable = new BitSet();
+		
+		for(NormsApplicableInView vna : this.normApplicability.values()) {
+			for(long id : vna.getAgentIds()) {
+				for(Norm norm : vna.get(id).getApplicableNorms()) {
+					applicable.set(norm.getId());
+				}
+			}
+		}
+		return applicable;
+	}
+
 	/**
 	 * 
 	 */
@@ -414,63 +547,40 @@ public class SIMONStrategy implements NormSynthesisStrategy {
 		this.normsAddedToNSThisCycle.clear();
 		this.normsRemovedFromNSThisCycle.clear();
 		
-		/* Check norm additions to the normative network */
-		for(Norm norm : this.normativeNetwork.getNorms()) {
-			if(!this.normsInNormativeNetwork.contains(norm)) {
-				this.normsInNormativeNetwork.add(norm);
-				this.normsAddedToNNThisCycle.add(norm);
-			}
-		}
-		
-		/* Check norm additions to the normative system */
-		for(Norm norm : this.normativeNetwork.getNormativeSystem()) {
-			if(!this.normsInNormativeSystem.contains(norm)) {
-				this.normsInNormativeSystem.add(norm);
-				this.normsAddedToNSThisCycle.add(norm);
-			}
-		}
-		
-		/* Check norm removals from the normative system */
-		List<Norm> toRemove = new ArrayList<Norm>();
-		for(Norm norm : this.normsInNormativeSystem) {
-			if(!this.normativeNetwork.getNormativeSystem().contains(norm)) {
-				toRemove.add(norm);
-				this.normsRemovedFromNSThisCycle.add(norm);
-			}
-		}
-		for(Norm norm : toRemove) {
-			this.normsInNormativeSystem.remove(norm);
-		}
+		/* Collect the changes in the normative network
+		 * and the normative system during this tick */
+		this.normsAddedToNNThisCycle.addAll(
+				this.normEvents.getNormsAddedToNormativeNetwork());
+		this.normsAddedToNSThisCycle.addAll(
+				this.normEvents.getNormsAddedToNormativeSystem());
+		this.normsRemovedFromNSThisCycle.addAll(
+				this.normEvents.getNormsRemovedFromNormativeSystem());
 		
-		/* Add to the norm reasoner those new norms that are represented */
-		List<Norm> normsRepresented = this.normativeNetwork.getRepresentedNorms();
-		for(Norm norm : normsRepresented) {
+		/* Add to the norm reasoner those norms that are now represented,
+		 * and remove those that are no longer represented */
+		for(Norm norm : this.normEvents.getNormsNowRepresented()) {
 			if(!this.normReasoner.contains(norm)) {
 				this.normReasoner.addNorm(norm);
 			}
 		}
-		
-		/* Remove from the norm reasoner those norms
-		 * that are no longer represented */
-		toRemove.clear();
-		for(Norm norm : this.normReasoner.getNorms()) {
-			if(!normsRepresented.contains(norm)) {
-				toRemove.add(norm);
+		for(Norm norm : this.normEvents.getNormsNoLongerRepresented()) {
+			if(this.normReasoner.contains(norm)) {
+				this.normReasoner.removeNorm(norm);
 			}
 		}
-		for(Norm norm : toRemove) {
-			this.normReasoner.removeNorm(norm);
-		}
+		this.normEvents.clear();
 		
 		/* New norms in the normative system are new candidates 
 		 * to be generalised or specialised at any time */
 		for(Norm norm : this.normsAddedToNNThisCycle) {
 			this.normsWithGenScore.remove(norm);
 			this.normsWithSpecScore.remove(norm);
+			this.reviseAgain(norm);
 		}
 		for(Norm norm : this.normsAddedToNSThisCycle) {
 			this.normsWithGenScore.remove(norm);
 			this.normsWithSpecScore.remove(norm);
+			this.reviseAgain(norm);
 		}
 	}
 	
@@ -502,42 +612,95 @@ public class SIMONStrategy implements NormSynthesisStrategy {
 	}
 
 	/**
-	 * Recursively specialises a norm into its children, its children
-	 * into their children, and so on
+	 * Specialises a norm into its children, after specialising its
+	 * ancestors into their children. Ancestors are specialised from the
+	 * top of the normative network downwards, and each norm is specialised
+	 * at most once (those norms whose ids are set in {@code visited} are
+	 * not specialised again)
 	 * 
 	 * @param norm the norm to specialise
+	 * @param visited the ids of the norms already specialised
 	 */
-	protected void specialiseDown(Norm norm, List<Norm> visited) {
-		if(visited.contains(norm)) {
-			return;
-		}
-		visited.add(norm);
-
-		/* Specialise down all parent norms */
-		List<Norm> parents = this.normativeNetwork.getParents(norm);
-		for(Norm parent : parents) {
-			this.specialiseDown(parent, visited);
-		}
-		
-		List<Norm> children = this.normativeNetwork.getChildren(norm);
-
-		/* Only specialise norms that are represented by
-		 * an active norm, whether itself or a parent norm */
-		if(this.normativeNetwork.isRepresented(norm)) {
+	protected void specialiseDown(Norm norm, final BitSet visited) {
+		this.normativeNetwork.visitAncestors(norm, visited, 
+				new NormativeNetwork.AncestorVisitor() {
+			
+			@Override
+			public boolean enter(Norm norm, int distance) {
+				return true;
+			}
+			
+			@Override
+			public void leave(Norm norm) {
+				
+				/* Only specialise norms that are represented by
+				 * an active norm, whether itself or a parent norm */
+				if(!normativeNetwork.isRepresented(norm)) {
+					return;
+				}
+				List<Norm> children = normativeNetwork.getChildren(norm);
 
-			/* Activate children */
-			List<Norm> childrenToActivate = new ArrayList<Norm>(children);
-			operators.specialise(norm, childrenToActivate);
+				/* Activate children */
+				List<Norm> childrenToActivate = new ArrayList<Norm>(children);
+				operators.specialise(norm, childrenToActivate);
 
-			/* Specialise under performing children */
-			for(Norm child : children) {
-				if(this.isUnderperforming(child) && !visited.contains(child)) {
-//					this.specialiseDown(child, visited);
-				}
-				else if(this.hasGeneralisationUtility(child)) {
-					this.generalisableNorms.add(child);
+				/* Specialise under performing children */
+				for(Norm child : children) {
+					if(isUnderperforming(child) && !visited.get(child.getId())) {
+//						specialiseDown(child, visited);
+					}
+					else if(hasGeneralisationUtility(child)) {
+						refinementScheduler.scheduleGeneralisation(child);
+					}
 				}
 			}
+		});
+	}
+
+	/**
+	 * Returns <tt>true</tt> if a refinement operation that has been deferred
+	 * from a previous tick must still be performed, namely if the norm is
+	 * still a leaf that under performs (for specialisations), or if it is
+	 * still represented and has enough utility (for generalisations).
+	 * Otherwise, the norm becomes a candidate for refinement again
+	 * 
+	 * @param norm the norm to refine
+	 * @param type the type of the refinement operation
+	 * @return <tt>true</tt> if the operation must still be performed
+	 */
+	protected boolean isStillRefinable(Norm norm, RefinementScheduler.Type type) {
+		if(type == RefinementScheduler.Type.Specialisation) {
+			if(this.normativeNetwork.isLeaf(norm) && this.isUnderperforming(norm)) {
+				return true;
+			}
+			this.normsWithSpecScore.remove(norm);
+			this.reviseAgain(norm);
+		}
+		else {
+			if(this.normativeNetwork.isRepresented(norm) && 
+					this.hasGeneralisationUtility(norm)) {
+				return true;
+			}
+			this.normsWithGenScore.remove(norm);
+			this.reviseAgain(norm);
+		}
+		return false;
+	}
+	
+	/**
+	 * Makes a norm a candidate for refinement again, in case it is 
+	 * under performing or has generalisation utility, since it will
+	 * not cross the thresholds again until its utility changes
+	 * 
+	 * @param norm the norm
+	 */
+	protected void reviseAgain(Norm norm) {
+		int id = norm.getId();
+		if(this.thresholdCrossings.isUnderperforming(id)) {
+			this.specialisationCandidates.set(id);
+		}
+		if(this.thresholdCrossings.hasGeneralisationUtility(id)) {
+			this.generalisationCandidates.set(id);
 		}
 	}
 
@@ -576,12 +739,12 @@ public class SIMONStrategy implements NormSynthesisStrategy {
 	protected void generaliseUp(Norm normA,
 			NormGeneralisationMode genMode, int genStep) {
 
-		/* Get all the active norms (the normative system) */
-		NormativeSystem NS = (NormativeSystem)
-				normativeNetwork.getNormativeSystem().clone();
+		/* Get the active norms (those of the normative system) 
+		 * that may be generalised together with the norm */
+		List<Norm> candidates = this.genCandidates.getCandidates(normA);
 
-		/* Compute matches with each norm */
-		for(Norm normB : NS) {
+		/* Compute matches with each candidate norm */
+		for(Norm normB : candidates) {
 			boolean generalise = true;
 
 			/* Never generalise the norm with itself */
@@ -609,12 +772,8 @@ public class SIMONStrategy implements NormSynthesisStrategy {
 			}
 
 			/* 3. Check that the parent norm does not contain an inactive norm */
-			for(Norm inactive: this.normativeNetwork.getNotRepresentedNorms()){
-				if(this.normReasoner.satisfies(inactive, parent) && 
-						!inactive.equals(parent))	{
-					generalise = false;
-					break;
-				}
+			if(this.normativeNetwork.subsumesNotRepresentedNorm(parent)) {
+				generalise = false;
 			}
 
 			/* 4. Do not generalise if any of the generalisable norms or the parent
@@ -660,7 +819,7 @@ public class SIMONStrategy implements NormSynthesisStrategy {
 				/* Activate parent norm */
 				if(!this.normativeNetwork.isRepresented(parent)) {
 					this.operators.activate(parent);
-					this.normativeNetwork.getUtility(parent).reset();
+					this.normativeNetwork.resetUtility(parent);
 				}
 				
 				/* Perform the norm generalisation */
@@ -706,14 +865,13 @@ public class SIMONStrategy implements NormSynthesisStrategy {
 		}
 
 		/* Get the intersection between both norm preconditions */
-		String desc = NormIntersection.getDescription(normA, normB);
+		intersection = this.normIntersections.get(normA, normB);
 
-		if(!this.normIntersections.containsKey(desc)) {
+		if(intersection == null) {
 			intersection = new NormIntersection(normA, normB, 
 					this.predicatesDomains, genMode);
-			this.normIntersections.put(desc, intersection);
+			this.normIntersections.put(normA, normB, intersection);
 		}
-		intersection = this.normIntersections.get(desc);
 
 		/* If both norms have all their predicates in common but K predicates,
 		 * then generalise both norms are generalisable */
@@ -737,11 +895,13 @@ public class SIMONStrategy implements NormSynthesisStrategy {
 	 * 					the specialisation threshold
 	 */
 	protected boolean isUnderperforming(Norm norm) {
-
-		for(Dimension dim : this.nsm.getNormEvaluationDimensions()) 	{
-			for(Goal goal : this.nsmSettings.getSystemGoals()) {
-				Utility utility = this.normativeNetwork.getUtility(norm);
-				float topBoundary = utility.getPerformanceRange(dim, goal).getCurrentTopBoundary();
+		UtilityColumns<Norm> columns = this.normativeNetwork.getUtilityColumns();
+		UtilityIndex index = this.nsm.getUtilityIndex();
+		int slot = 0;
+		
+		for(Dimension dim : index.getDimensions()) 	{
+			for(Goal goal : index.getGoals()) {
+				float topBoundary = columns.get(Series.TopBoundary, slot++, norm.getId());
 				float satDegree = this.nsmSettings.getSpecialisationBoundary(dim, goal);
 
 				if(topBoundary < satDegree) {
@@ -763,12 +923,13 @@ public class SIMONStrategy implements NormSynthesisStrategy {
 	 * 					the generalisation threshold
 	 */
 	protected boolean hasGeneralisationUtility(Norm norm) {
-
-		for(Dimension dim : this.nsm.getNormEvaluationDimensions())	 {
-			for(Goal goal : this.nsmSettings.getSystemGoals()) {
-
-				Utility utility = this.normativeNetwork.getUtility(norm);
-				float bottomBoundary = utility.getPerformanceRange(dim, goal).getCurrentBottomBoundary();
+		UtilityColumns<Norm> columns = this.normativeNetwork.getUtilityColumns();
+		UtilityIndex index = this.nsm.getUtilityIndex();
+		int slot = 0;
+		
+		for(Dimension dim : index.getDimensions())	 {
+			for(Goal goal : index.getGoals()) {
+				float bottomBoundary = columns.get(Series.BottomBoundary, slot++, norm.getId());
 				float satDegree = this.nsmSettings.getGeneralisationBoundary(dim, goal);
 
 				if(bottomBoundary < satDegree) {
@@ -779,6 +940,31 @@ public class SIMONStrategy implements NormSynthesisStrategy {
 		return true;
 	}
 
+	/**
+	 * Returns the ids of the norms that are under performing, namely
+	 * those for which any of the upper bound of its performance ranges
+	 * is under the specialisation threshold
+	 * 
+	 * @return a {@code BitSet} with the ids of the under performing norms
+	 * @see #isUnderperforming(Norm)
+	 */
+	protected BitSet getUnderperformingNorms() {
+		return this.thresholdCrossings.getUnderperforming();
+	}
+
+	/**
+	 * Returns the ids of the norms that have enough utility to be
+	 * generalised, namely those for which all the lower bounds of its
+	 * performance ranges are over the generalisation threshold
+	 * 
+	 * @return a {@code BitSet} with the ids of the norms that have 
+	 * 					enough utility to be generalised
+	 * @see #hasGeneralisationUtility(Norm)
+	 */
+	protected BitSet getNormsWithGeneralisationUtility() {
+		return this.thresholdCrossings.getWithGeneralisationUtility();
+	}
+
 	/**
 	 * 
 	 * @return
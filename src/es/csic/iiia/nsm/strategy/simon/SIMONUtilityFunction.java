@@ -59,6 +59,7 @@ public class SIMONUtilityFunction  {
 			NormComplianceOutcomes nCompliance, NormativeNetwork nNetwork) {
 		
 		float oldScore, score, reward;
+		int slot = nNetwork.getUtilityIndex().getSlot(dim, goal);
 		this.negRewardedNorms.clear();
 
 		switch(dim) {
@@ -74,10 +75,10 @@ public class SIMONUtilityFunction  {
 					break;
 				}
 
-				oldScore = nNetwork.getUtility(appNorm).getScore(dim, goal);
+				oldScore = nNetwork.getUtility(appNorm).getScore(slot);
 				reward = (float) nANoC / (nAC + nANoC); 
 				score = (float) (oldScore + 0.1 * (reward - oldScore));
-				nNetwork.setScore(appNorm, dim, goal, score);
+				nNetwork.setScore(appNorm, slot, score);
 
 				/* If the norm has been negatively rewarded, add it to the
 				 * map of negatively rewarded norms */
@@ -97,10 +98,10 @@ public class SIMONUtilityFunction  {
 				int nVC = nCompliance.getNumInfringementsWithConflict(violNorm);
 				int nVNoC = nCompliance.getNumInfrsWithNoConflict(violNorm);	
 
-				oldScore = nNetwork.getUtility(violNorm).getScore(dim, goal);
+				oldScore = nNetwork.getUtility(violNorm).getScore(slot);
 				reward = (float) nVC / (nVC + nVNoC); 
 				score = (float) (oldScore + 0.1 * (reward - oldScore));
-				nNetwork.setScore(violNorm, dim, goal, score);
+				nNetwork.setScore(violNorm, slot, score);
 
 				/* If the norm has been negatively rewarded, add it to the
 				 * map of negatively rewarded norms */
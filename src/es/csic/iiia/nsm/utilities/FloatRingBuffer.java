@@ -0,0 +1,201 @@
+package es.csic.iiia.nsm.utilities;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A fixed-capacity FIFO buffer of primitive floats. Once the buffer is
+ * full, adding a new value overwrites the oldest one. The underlying
+ * array grows on demand up to the capacity of the buffer, so that
+ * buffers that only receive a few values remain small
+ *
+ * @author "Javier Morales (jmorales@iiia.csic.es)"
+ */
+public class FloatRingBuffer {
+
+	//---------------------------------------------------------------------------
+	// Attributes
+	//---------------------------------------------------------------------------
+
+	private static final int INITIAL_CAPACITY = 8;
+
+	private float[] values;		// the values in the buffer
+	private int capacity;			// maximum number of values in the buffer
+	private int first;				// position of the oldest value
+	private int size;					// number of values in the buffer
+
+	//---------------------------------------------------------------------------
+	// Methods
+	//---------------------------------------------------------------------------
+
+	/**
+	 * Constructor
+	 *
+	 * @param capacity the maximum number of values in the buffer
+	 */
+	public FloatRingBuffer(int capacity) {
+		this.capacity = Math.max(1, capacity);
+		this.values = new float[Math.min(this.capacity, INITIAL_CAPACITY)];
+		this.first = 0;
+		this.size = 0;
+	}
+
+	/**
+	 * Adds a value to the buffer
+	 *
+	 * @param value the value to add
+	 * @return <tt>true</tt> if the oldest value has been overwritten
+	 */
+	public boolean add(float value) {
+		if(this.size == this.capacity) {
+			this.values[this.first] = value;
+			this.first = (this.first + 1) % this.values.length;
+			return true;
+		}
+
+		/* The buffer only grows before it is full, and hence before wrapping */
+		if(this.size == this.values.length) {
+			int length = (int)Math.min(this.capacity, 2l * this.values.length);
+			this.values = Arrays.copyOf(this.values, length);
+		}
+		this.values[(this.first + this.size) % this.values.length] = value;
+		this.size++;
+		return false;
+	}
+
+	/**
+	 * Returns the <tt>i</tt>-th value in the buffer, being 0 the oldest one
+	 *
+	 * @param i the index of the value
+	 * @return the <tt>i</tt>-th value in the buffer
+	 */
+	public float get(int i) {
+		if(i < 0 || i >= this.size) {
+			throw new IndexOutOfBoundsException("Index: " + i +
+					", Size: " + this.size);
+		}
+		return this.values[(this.first + i) % this.values.length];
+	}
+
+	/**
+	 * Returns the oldest value in the buffer
+	 *
+	 * @return the oldest value in the buffer
+	 */
+	public float getFirst() {
+		return this.get(0);
+	}
+
+	/**
+	 * Returns the newest value in the buffer
+	 *
+	 * @return the newest value in the buffer
+	 */
+	public float getLast() {
+		return this.get(this.size - 1);
+	}
+
+	/**
+	 * Returns the number of values in the buffer
+	 *
+	 * @return the number of values in the buffer
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the maximum number of values in the buffer
+	 *
+	 * @return the maximum number of values in the buffer
+	 */
+	public int getCapacity() {
+		return this.capacity;
+	}
+
+	/**
+	 * Returns <tt>true</tt> if the buffer contains as many
+	 * values as its capacity
+	 *
+	 * @return <tt>true</tt> if the buffer is full
+	 */
+	public boolean isFull() {
+		return this.size == this.capacity;
+	}
+
+	/**
+	 * Removes all the values from the buffer
+	 */
+	public void clear() {
+		this.first = 0;
+		this.size = 0;
+	}
+
+	/**
+	 * Returns a read-only {@code List} view of the last {@code n} values
+	 * in the buffer (or all of them, if there are less than {@code n}).
+	 * The view reflects later changes in the buffer
+	 *
+	 * @param n the maximum number of values in the view
+	 * @return a read-only {@code List} view of the last values
+	 */
+	public List<Float> asList(final int n) {
+		return new FloatRingBufferList(n);
+	}
+
+	/**
+	 * Returns a {@code LinkedList} that contains a copy of the last
+	 * {@code n} values in the buffer (or all of them, if there
+	 * are less than {@code n})
+	 *
+	 * @param n the maximum number of values to copy
+	 * @return a {@code LinkedList} with the last values
+	 */
+	public LinkedList<Float> toLinkedList(int n) {
+		return new LinkedList<Float>(this.asList(n));
+	}
+
+	/**
+	 * Returns a description of the buffer
+	 *
+	 * @return a description of the buffer
+	 */
+	public String toString() {
+		return this.asList(this.size).toString();
+	}
+
+	//---------------------------------------------------------------------------
+	// Private classes
+	//---------------------------------------------------------------------------
+
+	/**
+	 * Read-only view of the last values of the buffer
+	 */
+	private class FloatRingBufferList extends AbstractList<Float>
+	implements RandomAccess {
+
+		private int n;
+
+		FloatRingBufferList(int n) {
+			this.n = n;
+		}
+
+		@Override
+		public Float get(int i) {
+			int offset = Math.max(0, size - this.n);
+			if(i < 0 || i >= this.size()) {
+				throw new IndexOutOfBoundsException("Index: " + i +
+						", Size: " + this.size());
+			}
+			return FloatRingBuffer.this.get(offset + i);
+		}
+
+		@Override
+		public int size() {
+			return Math.min(this.n, size);
+		}
+	}
+}
@@ -0,0 +1,229 @@
+package es.csic.iiia.nsm.utilities;
+
+/**
+ * Histogram of latencies with log-linear buckets. Each power of two is
+ * split into a fixed number of linear sub-buckets, so that any recorded
+ * value is represented with a relative error lower than 1/16, while the
+ * whole range of <tt>long</tt> values fits into a few hundred counters.
+ * Adding a value and computing a quantile take constant time, and the
+ * memory of the histogram does not depend on the number of values
+ * 
+ * @author "Javier Morales (jmorales@iiia.csic.es)"
+ */
+public class LatencyHistogram {
+
+	//---------------------------------------------------------------------------
+	// Static attributes
+	//---------------------------------------------------------------------------
+
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int NUM_SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int NUM_BUCKETS = 
+			(64 - SUB_BUCKET_BITS) * NUM_SUB_BUCKETS;
+
+	//---------------------------------------------------------------------------
+	// Attributes
+	//---------------------------------------------------------------------------
+
+	private long[] counts;		// number of values in each bucket
+	private long numValues;		// overall number of values
+	private long min;					// minimum value
+	private long max;					// maximum value
+	private double sum;				// sum of all the values
+
+	//---------------------------------------------------------------------------
+	// Methods
+	//---------------------------------------------------------------------------
+
+	/**
+	 * Constructor
+	 */
+	public LatencyHistogram() {
+		this.counts = new long[NUM_BUCKETS];
+		this.reset();
+	}
+
+	/**
+	 * Adds a value to the histogram. Negative values are recorded as 0
+	 * 
+	 * @param value the value to add
+	 */
+	public void addValue(long value) {
+		if(value < 0) {
+			value = 0;
+		}
+		this.counts[this.getBucket(value)]++;
+		this.numValues++;
+		this.sum += value;
+
+		if(value < this.min) {
+			this.min = value;
+		}
+		if(value > this.max) {
+			this.max = value;
+		}
+	}
+
+	/**
+	 * Returns the value at a given {@code quantile} (between 0 and 1). 
+	 * The returned value is the upper bound of the bucket containing
+	 * the quantile, and is never greater than the maximum value
+	 * 
+	 * @param quantile the quantile
+	 * @return the value at the given quantile, or 0 if the
+	 * 					histogram is empty
+	 */
+	public long getValueAtQuantile(double quantile) {
+		if(this.numValues == 0) {
+			return 0;
+		}
+		if(quantile <= 0) {
+			return this.min;
+		}
+
+		/* Rank of the value at the quantile */
+		long rank = (long)Math.ceil(quantile * this.numValues);
+		if(rank < 1) {
+			rank = 1;
+		}
+
+		long count = 0;
+		for(int i=0; i < NUM_BUCKETS; i++) {
+			count += this.counts[i];
+
+			if(count >= rank) {
+				return Math.max(this.min, Math.min(this.max, this.getUpperBound(i)));
+			}
+		}
+		return this.max;
+	}
+
+	/**
+	 * Returns the value at a given {@code percentile} (between 0 and 100)
+	 * 
+	 * @param percentile the percentile
+	 * @return the value at the given percentile
+	 */
+	public long getValueAtPercentile(double percentile) {
+		return this.getValueAtQuantile(percentile / 100);
+	}
+
+	/**
+	 * Returns the median of the values
+	 * 
+	 * @return the median of the values
+	 */
+	public long getMedian() {
+		return this.getValueAtQuantile(0.5);
+	}
+
+	/**
+	 * Returns the average of the values
+	 * 
+	 * @return the average of the values, or 0 if the histogram is empty
+	 */
+	public double getMean() {
+		if(this.numValues == 0) {
+			return 0;
+		}
+		return this.sum / this.numValues;
+	}
+
+	/**
+	 * Returns the minimum value
+	 * 
+	 * @return the minimum value, or 0 if the histogram is empty
+	 */
+	public long getMin() {
+		if(this.numValues == 0) {
+			return 0;
+		}
+		return this.min;
+	}
+
+	/**
+	 * Returns the maximum value
+	 * 
+	 * @return the maximum value, or 0 if the histogram is empty
+	 */
+	public long getMax() {
+		if(this.numValues == 0) {
+			return 0;
+		}
+		return this.max;
+	}
+
+	/**
+	 * Returns the number of values in the histogram
+	 * 
+	 * @return the number of values in the histogram
+	 */
+	public long getNumValues() {
+		return this.numValues;
+	}
+
+	/**
+	 * Removes all the values from the histogram
+	 */
+	public void reset() {
+		for(int i=0; i < NUM_BUCKETS; i++) {
+			this.counts[i] = 0;
+		}
+		this.numValues = 0;
+		this.sum = 0;
+		this.min = Long.MAX_VALUE;
+		this.max = Long.MIN_VALUE;
+	}
+
+	/**
+	 * Returns a description of the histogram
+	 * 
+	 * @return a description of the histogram
+	 */
+	public String toString() {
+		return "p50=" + this.getValueAtPercentile(50) +
+				" p90=" + this.getValueAtPercentile(90) +
+				" p99=" + this.getValueAtPercentile(99) +
+				" max=" + this.getMax();
+	}
+
+	//---------------------------------------------------------------------------
+	// Private methods
+	//---------------------------------------------------------------------------
+
+	/**
+	 * Returns the index of the bucket that contains a {@code value}.
+	 * Values lower than the number of sub-buckets have a bucket each.
+	 * Greater values are first divided by their power of two, and
+	 * then by the corresponding linear sub-bucket
+	 * 
+	 * @param value the (non-negative) value
+	 * @return the index of the bucket that contains the value
+	 */
+	private int getBucket(long value) {
+		if(value < NUM_SUB_BUCKETS) {
+			return (int)value;
+		}
+		int exp = 63 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int)(value >>> (exp - SUB_BUCKET_BITS)) - NUM_SUB_BUCKETS;
+
+		return (exp - SUB_BUCKET_BITS + 1) * NUM_SUB_BUCKETS + subBucket;
+	}
+
+	/**
+	 * Returns the greatest value that belongs to a {@code bucket}
+	 * 
+	 * @param bucket the index of the bucket
+	 * @return the greatest value that belongs to the bucket
+	 */
+	private long getUpperBound(int bucket) {
+		if(bucket < NUM_SUB_BUCKETS) {
+			return bucket;
+		}
+		int group = bucket / NUM_SUB_BUCKETS;
+		int subBucket = bucket % NUM_SUB_BUCKETS;
+		long lowerBound = (long)(NUM_SUB_BUCKETS + subBucket) << (group - 1);
+
+		return lowerBound + (1l << (group - 1)) - 1;
+	}
+}
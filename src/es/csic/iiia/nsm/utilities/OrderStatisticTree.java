@@ -0,0 +1,312 @@
+package es.csic.iiia.nsm.utilities;
+
+import java.util.Arrays;
+
+/**
+ * An order statistics tree of float values, each one associated to an
+ * integer id (e.g., the id of a norm). The tree is a treap whose nodes are
+ * the ids themselves, so that the value of an id can be inserted, removed
+ * or changed in logarithmic time, and the <tt>k</tt>-th smallest value
+ * (and hence the median) can be retrieved in logarithmic time as well.
+ * Ties between equal values are broken by id
+ *
+ * @author "Javier Morales (jmorales@iiia.csic.es)"
+ * @see SlidingWindowMetric
+ */
+public class OrderStatisticTree {
+
+	//---------------------------------------------------------------------------
+	// Attributes
+	//---------------------------------------------------------------------------
+
+	private static final int INITIAL_CAPACITY = 64;
+	private static final int NIL = -1;
+
+	private float[] values;			// value of each id
+	private boolean[] contained;	// is each id in the tree?
+	private int[] left;
+	private int[] right;
+	private int[] treeSize;
+	private int[] priority;
+	private int root;
+	private int seed;
+
+	//---------------------------------------------------------------------------
+	// Methods
+	//---------------------------------------------------------------------------
+
+	/**
+	 * Constructor
+	 */
+	public OrderStatisticTree() {
+		this.values = new float[INITIAL_CAPACITY];
+		this.contained = new boolean[INITIAL_CAPACITY];
+		this.left = new int[INITIAL_CAPACITY];
+		this.right = new int[INITIAL_CAPACITY];
+		this.treeSize = new int[INITIAL_CAPACITY];
+		this.priority = new int[INITIAL_CAPACITY];
+		this.root = NIL;
+		this.seed = 0x2545F491;
+	}
+
+	/**
+	 * Sets the value of a given id. If the id is already in the tree,
+	 * its value is replaced
+	 *
+	 * @param id the id, non negative
+	 * @param value the value of the id
+	 */
+	public void put(int id, float value) {
+		if(this.contains(id)) {
+			if(this.values[id] == value) {
+				return;
+			}
+			this.root = this.delete(this.root, id);
+		}
+		else {
+			this.ensureCapacity(id);
+			this.contained[id] = true;
+		}
+		this.values[id] = value;
+		this.root = this.insert(this.root, id);
+	}
+
+	/**
+	 * Removes a given id (and its value) from the tree
+	 *
+	 * @param id the id
+	 */
+	public void remove(int id) {
+		if(this.contains(id)) {
+			this.root = this.delete(this.root, id);
+			this.contained[id] = false;
+		}
+	}
+
+	/**
+	 * Returns <tt>true</tt> if the tree contains a given id
+	 *
+	 * @param id the id
+	 * @return <tt>true</tt> if the tree contains the id
+	 */
+	public boolean contains(int id) {
+		return id >= 0 && id < this.contained.length && this.contained[id];
+	}
+
+	/**
+	 * Returns the value of a given id
+	 *
+	 * @param id the id
+	 * @return the value of the id, or <tt>NaN</tt> if the
+	 * 					tree does not contain it
+	 */
+	public float get(int id) {
+		if(!this.contains(id)) {
+			return Float.NaN;
+		}
+		return this.values[id];
+	}
+
+	/**
+	 * Returns the <tt>k</tt>-th smallest value in the tree
+	 * (being 0 the smallest one)
+	 *
+	 * @param k the rank of the value
+	 * @return the <tt>k</tt>-th smallest value in the tree
+	 * @throws IndexOutOfBoundsException if <tt>k</tt> is not a valid rank
+	 */
+	public float getKthSmallest(int k) {
+		if(k < 0 || k >= this.size()) {
+			throw new IndexOutOfBoundsException("Rank: " + k +
+					", Size: " + this.size());
+		}
+		int node = this.root;
+
+		while(true) {
+			int leftSize = this.getTreeSize(this.left[node]);
+
+			if(k < leftSize) {
+				node = this.left[node];
+			}
+			else if(k == leftSize) {
+				return this.values[node];
+			}
+			else {
+				k -= leftSize + 1;
+				node = this.right[node];
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of ids in the tree
+	 *
+	 * @return the number of ids in the tree
+	 */
+	public int size() {
+		return this.getTreeSize(this.root);
+	}
+
+	/**
+	 * Removes all the ids from the tree
+	 */
+	public void clear() {
+		Arrays.fill(this.contained, false);
+		this.root = NIL;
+	}
+
+	//---------------------------------------------------------------------------
+	// Private methods
+	//---------------------------------------------------------------------------
+
+	/**
+	 * Grows the arrays so that they are able to store a given id
+	 *
+	 * @param id the id
+	 */
+	private void ensureCapacity(int id) {
+		int capacity = this.values.length;
+		if(id < capacity) {
+			return;
+		}
+		while(capacity <= id) {
+			capacity *= 2;
+		}
+		this.values = Arrays.copyOf(this.values, capacity);
+		this.contained = Arrays.copyOf(this.contained, capacity);
+		this.left = Arrays.copyOf(this.left, capacity);
+		this.right = Arrays.copyOf(this.right, capacity);
+		this.treeSize = Arrays.copyOf(this.treeSize, capacity);
+		this.priority = Arrays.copyOf(this.priority, capacity);
+	}
+
+	/**
+	 * Compares the values of two nodes. Ties are broken by id
+	 *
+	 * @return a negative integer, zero, or a positive integer as node
+	 * 					{@code a} is lower than, equal to, or greater than node {@code b}
+	 */
+	private int compare(int a, int b) {
+		int cmp = Float.compare(this.values[a], this.values[b]);
+		if(cmp != 0) {
+			return cmp;
+		}
+		return a < b ? -1 : (a == b ? 0 : 1);
+	}
+
+	/**
+	 * Inserts a node into the subtree rooted at {@code node}
+	 *
+	 * @return the new root of the subtree
+	 */
+	private int insert(int node, int id) {
+		if(node == NIL) {
+			this.left[id] = NIL;
+			this.right[id] = NIL;
+			this.treeSize[id] = 1;
+			this.priority[id] = this.nextPriority();
+			return id;
+		}
+
+		if(this.compare(id, node) < 0) {
+			this.left[node] = this.insert(this.left[node], id);
+			if(this.priority[this.left[node]] > this.priority[node]) {
+				node = this.rotateRight(node);
+			}
+		}
+		else {
+			this.right[node] = this.insert(this.right[node], id);
+			if(this.priority[this.right[node]] > this.priority[node]) {
+				node = this.rotateLeft(node);
+			}
+		}
+		this.update(node);
+		return node;
+	}
+
+	/**
+	 * Deletes a node from the subtree rooted at {@code node}
+	 *
+	 * @return the new root of the subtree
+	 */
+	private int delete(int node, int id) {
+		if(node == NIL) {
+			return NIL;
+		}
+
+		int cmp = this.compare(id, node);
+		if(cmp < 0) {
+			this.left[node] = this.delete(this.left[node], id);
+		}
+		else if(cmp > 0) {
+			this.right[node] = this.delete(this.right[node], id);
+		}
+		else {
+			return this.merge(this.left[node], this.right[node]);
+		}
+		this.update(node);
+		return node;
+	}
+
+	/**
+	 * Merges two subtrees, being all the nodes in {@code a}
+	 * lower than all the nodes in {@code b}
+	 *
+	 * @return the root of the merged tree
+	 */
+	private int merge(int a, int b) {
+		if(a == NIL) {
+			return b;
+		}
+		if(b == NIL) {
+			return a;
+		}
+		if(this.priority[a] > this.priority[b]) {
+			this.right[a] = this.merge(this.right[a], b);
+			this.update(a);
+			return a;
+		}
+		else {
+			this.left[b] = this.merge(a, this.left[b]);
+			this.update(b);
+			return b;
+		}
+	}
+
+	private int rotateRight(int node) {
+		int l = this.left[node];
+		this.left[node] = this.right[l];
+		this.right[l] = node;
+		this.update(node);
+		this.update(l);
+		return l;
+	}
+
+	private int rotateLeft(int node) {
+		int r = this.right[node];
+		this.right[node] = this.left[r];
+		this.left[r] = node;
+		this.update(node);
+		this.update(r);
+		return r;
+	}
+
+	private void update(int node) {
+		this.treeSize[node] = 1 + this.getTreeSize(this.left[node]) +
+				this.getTreeSize(this.right[node]);
+	}
+
+	private int getTreeSize(int node) {
+		return node == NIL ? 0 : this.treeSize[node];
+	}
+
+	/**
+	 * Returns a pseudo-random priority (xorshift)
+	 */
+	private int nextPriority() {
+		this.seed ^= this.seed << 13;
+		this.seed ^= this.seed >>> 17;
+		this.seed ^= this.seed << 5;
+		return this.seed;
+	}
+}
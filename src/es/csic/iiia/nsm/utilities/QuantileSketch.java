@@ -0,0 +1,350 @@
+package es.csic.iiia.nsm.utilities;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A streaming sketch to estimate the quantiles of a stream of values with
+ * bounded memory, in the style of the KLL sketch (Karnin, Lang and Liberty,
+ * 2016). Values are kept in a hierarchy of compactors. Each value in the
+ * compactor of level <tt>h</tt> stands for <tt>2^h</tt> values of the
+ * stream. Whenever a compactor gets full, it is sorted and every other value
+ * is promoted to the next level, while the rest of values are discarded.
+ * The capacity of the compactors decreases geometrically from the top
+ * level down, so that the sketch keeps <tt>O(k)</tt> values for a stream of
+ * any length, and the rank error of a quantile is <tt>O(1/k)</tt>.
+ * <p>
+ * Sketches are mergeable: merging two sketches gives a sketch of the
+ * union of both streams, with the same accuracy guarantees. Compactions
+ * alternate between promoting the odd and the even values of each level,
+ * so that the sketch is deterministic
+ *
+ * @author "Javier Morales (jmorales@iiia.csic.es)"
+ */
+public class QuantileSketch {
+
+	//---------------------------------------------------------------------------
+	// Attributes
+	//---------------------------------------------------------------------------
+
+	public static final int DEFAULT_K = 64;
+	private static final double CAPACITY_DECAY = 2.0 / 3.0;
+	private static final int MIN_CAPACITY = 2;
+
+	private int k;													// accuracy parameter
+	private long numValues;									// number of values in the stream
+	private float min;											// minimum value in the stream
+	private float max;											// maximum value in the stream
+
+	private List<float[]> levels;						// values of each compactor
+	private List<Integer> levelSizes;				// number of values in each compactor
+	private List<Boolean> levelOffsets;			// next offset of each compactor
+
+	/* Scratch arrays to compute quantiles */
+	private float[] sortedValues;
+	private long[] sortedWeights;
+	private int numSortedValues;
+	private boolean isSorted;
+
+	//---------------------------------------------------------------------------
+	// Methods
+	//---------------------------------------------------------------------------
+
+	/**
+	 * Constructor with the default accuracy
+	 */
+	public QuantileSketch() {
+		this(DEFAULT_K);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param k the accuracy parameter, that is, the capacity of the top
+	 * 					compactor. The higher, the more accurate and the larger
+	 */
+	public QuantileSketch(int k) {
+		this.k = Math.max(MIN_CAPACITY, k);
+		this.levels = new ArrayList<float[]>();
+		this.levelSizes = new ArrayList<Integer>();
+		this.levelOffsets = new ArrayList<Boolean>();
+		this.reset();
+	}
+
+	/**
+	 * Adds a value to the sketch
+	 *
+	 * @param value the value
+	 */
+	public void addValue(float value) {
+		if(this.numValues == 0) {
+			this.min = value;
+			this.max = value;
+		}
+		else {
+			this.min = Math.min(this.min, value);
+			this.max = Math.max(this.max, value);
+		}
+		this.numValues++;
+		this.append(0, value);
+		this.compress();
+		this.isSorted = false;
+	}
+
+	/**
+	 * Merges another sketch into this sketch. Afterwards, this sketch
+	 * summarises the values of both streams
+	 *
+	 * @param other the sketch to merge
+	 */
+	public void merge(QuantileSketch other) {
+		if(other.numValues == 0) {
+			return;
+		}
+		if(this.numValues == 0) {
+			this.min = other.min;
+			this.max = other.max;
+		}
+		else {
+			this.min = Math.min(this.min, other.min);
+			this.max = Math.max(this.max, other.max);
+		}
+		this.numValues += other.numValues;
+
+		for(int h=0; h<other.levels.size(); h++) {
+			float[] otherValues = other.levels.get(h);
+			int otherSize = other.levelSizes.get(h);
+			for(int i=0; i<otherSize; i++) {
+				this.append(h, otherValues[i]);
+			}
+		}
+		this.compress();
+		this.isSorted = false;
+	}
+
+	/**
+	 * Returns an estimation of the value at a given quantile
+	 *
+	 * @param quantile the quantile, between 0 and 1
+	 * @return an estimation of the value at the quantile, or 0 if
+	 * 					the sketch is empty
+	 */
+	public float getQuantile(double quantile) {
+		if(this.numValues == 0) {
+			return 0f;
+		}
+		if(quantile <= 0) {
+			return this.min;
+		}
+		if(quantile >= 1) {
+			return this.max;
+		}
+		this.sort();
+
+		long totalWeight = 0;
+		for(int i=0; i<this.numSortedValues; i++) {
+			totalWeight += this.sortedWeights[i];
+		}
+
+		double rank = quantile * totalWeight;
+		long cumWeight = 0;
+		for(int i=0; i<this.numSortedValues; i++) {
+			cumWeight += this.sortedWeights[i];
+			if(cumWeight >= rank) {
+				return this.sortedValues[i];
+			}
+		}
+		return this.max;
+	}
+
+	/**
+	 * Returns the number of values in the stream
+	 *
+	 * @return the number of values in the stream
+	 */
+	public long getNumValues() {
+		return this.numValues;
+	}
+
+	/**
+	 * Returns the number of values that the sketch keeps in memory
+	 *
+	 * @return the number of values that the sketch keeps in memory
+	 */
+	public int getNumRetainedValues() {
+		int numRetained = 0;
+		for(int size : this.levelSizes) {
+			numRetained += size;
+		}
+		return numRetained;
+	}
+
+	/**
+	 * Returns the minimum value in the stream
+	 *
+	 * @return the minimum value in the stream
+	 */
+	public float getMin() {
+		return this.min;
+	}
+
+	/**
+	 * Returns the maximum value in the stream
+	 *
+	 * @return the maximum value in the stream
+	 */
+	public float getMax() {
+		return this.max;
+	}
+
+	/**
+	 * Removes all the values from the sketch
+	 */
+	public void reset() {
+		this.numValues = 0;
+		this.min = 0f;
+		this.max = 0f;
+		this.levels.clear();
+		this.levelSizes.clear();
+		this.levelOffsets.clear();
+		this.numSortedValues = 0;
+		this.isSorted = false;
+		this.addLevel();
+	}
+
+	//---------------------------------------------------------------------------
+	// Private methods
+	//---------------------------------------------------------------------------
+
+	/**
+	 * Adds a new compactor on top of the existing ones
+	 */
+	private void addLevel() {
+		this.levels.add(new float[MIN_CAPACITY]);
+		this.levelSizes.add(0);
+		this.levelOffsets.add(false);
+	}
+
+	/**
+	 * Returns the capacity of the compactor of a given level
+	 *
+	 * @param h the level
+	 * @return the capacity of the compactor
+	 */
+	private int getCapacity(int h) {
+		int depth = this.levels.size() - 1 - h;
+		int capacity = (int)Math.ceil(this.k * Math.pow(CAPACITY_DECAY, depth));
+		return Math.max(MIN_CAPACITY, capacity);
+	}
+
+	/**
+	 * Appends a value to the compactor of a given level
+	 *
+	 * @param h the level
+	 * @param value the value
+	 */
+	private void append(int h, float value) {
+		while(this.levels.size() <= h) {
+			this.addLevel();
+		}
+		float[] values = this.levels.get(h);
+		int size = this.levelSizes.get(h);
+
+		if(size == values.length) {
+			values = Arrays.copyOf(values, 2 * values.length);
+			this.levels.set(h, values);
+		}
+		values[size] = value;
+		this.levelSizes.set(h, size + 1);
+	}
+
+	/**
+	 * Compacts the compactors that exceed their capacity, from the
+	 * bottom level up
+	 */
+	private void compress() {
+		for(int h=0; h<this.levels.size(); h++) {
+			int size = this.levelSizes.get(h);
+			if(size < this.getCapacity(h)) {
+				continue;
+			}
+			if(h + 1 == this.levels.size()) {
+				this.addLevel();
+			}
+
+			/* Promote every other value to the next level */
+			float[] values = this.levels.get(h);
+			Arrays.sort(values, 0, size);
+
+			boolean offset = this.levelOffsets.get(h);
+			this.levelOffsets.set(h, !offset);
+
+			int numCompacted = size - (size % 2);
+			for(int i = (offset ? 1 : 0); i < numCompacted; i += 2) {
+				this.append(h + 1, values[i]);
+			}
+
+			/* An odd value remains in the compactor */
+			if(numCompacted < size) {
+				values[0] = values[size - 1];
+			}
+			this.levelSizes.set(h, size - numCompacted);
+		}
+	}
+
+	/**
+	 * Sorts the retained values of all compactors, together
+	 * with their weights
+	 */
+	private void sort() {
+		if(this.isSorted) {
+			return;
+		}
+		int numRetained = this.getNumRetainedValues();
+		if(this.sortedValues == null || this.sortedValues.length < numRetained) {
+			this.sortedValues = new float[numRetained];
+			this.sortedWeights = new long[numRetained];
+		}
+
+		/* Sort the values of each compactor and merge them one by one */
+		this.numSortedValues = 0;
+		for(int h=0; h<this.levels.size(); h++) {
+			float[] values = this.levels.get(h);
+			int size = this.levelSizes.get(h);
+			Arrays.sort(values, 0, size);
+			this.mergeSorted(values, size, 1l << h);
+		}
+		this.isSorted = true;
+	}
+
+	/**
+	 * Merges the sorted values of a compactor into the
+	 * sorted values of the sketch
+	 *
+	 * @param values the sorted values of the compactor
+	 * @param size the number of values of the compactor
+	 * @param weight the weight of each value of the compactor
+	 */
+	private void mergeSorted(float[] values, int size, long weight) {
+		int i = this.numSortedValues - 1;
+		int j = size - 1;
+		int dst = this.numSortedValues + size - 1;
+
+		/* Merge from the end, so that no extra array is needed */
+		while(j >= 0) {
+			if(i >= 0 && this.sortedValues[i] > values[j]) {
+				this.sortedValues[dst] = this.sortedValues[i];
+				this.sortedWeights[dst] = this.sortedWeights[i];
+				i--;
+			}
+			else {
+				this.sortedValues[dst] = values[j];
+				this.sortedWeights[dst] = weight;
+				j--;
+			}
+			dst--;
+		}
+		this.numSortedValues += size;
+	}
+}
@@ -1,313 +1,618 @@
-package es.csic.iiia.nsm.utilities;
-
-import java.util.Iterator;
-import java.util.LinkedList;
-
-/**
- * SlidingWinowMetric - Used to trace aggregated indicator changes over time.
- *
- * @author Jan Koeppen (jankoeppen@gmx.net)
- *
- */
-public class SlidingWindowMetric {
-
-	private boolean newValue;
-	private long size = 0;
-	private LinkedList<Double> queue = null;
-
-	/**
-	 * Constructor
-	 * 
-	 * @param size
-	 */
-	public SlidingWindowMetric(long size){
-		queue = new LinkedList<Double>();
-		this.size = size;
-		this.newValue = false;
-	}
-
-	/**
-	 * Adds a value to the window
-	 * 
-	 * @param value
-	 */
-	public void  addValue(double value){
-		queue.offer(value);
-		if(queue.size()>this.size)
-			queue.remove();
-		
-		this.newValue = true;
-	}
-
-	/**
-	 * 
-	 * @return
-	 */
-	public boolean hasNewValue() {
-		return this.newValue;
-	}
-	
-	/**
-	 * 
-	 * @param newValue
-	 */
-	public void setNewValue(boolean newValue) {
-		this.newValue = newValue;
-	}
-	
-	/**
-	 * 
-	 * @return
-	 */
-	public double getLastValue() {
-		return this.queue.getLast();
-	}
-
-	/**
-	 * Returns the total sum of the values in the window
-	 * 
-	 * @return
-	 */
-	public double getSum(){
-		double sum = 0;
-
-		if(this.getNumvalues() == 0)
-			return 0f;
-
-		Iterator<Double> it = queue.listIterator();
-		while(it.hasNext()){
-			sum+=it.next();
-		}
-		return sum;
-	}
-
-	/**
-	 * Returns the total sum of the values in the window
-	 * 
-	 * @return
-	 */
-	public double getSumUntil(int idx){
-		double sum = 0;
-		int i = 0;
-		
-		if(this.getNumvalues() == 0)
-			return 0f;
-
-		Iterator<Double> it = queue.listIterator();
-		while(it.hasNext() && i<=idx){
-			sum+=it.next();
-			i++;
-		}
-		return sum;
-	}
-	
-	/**
-	 * 
-	 * @return
-	 */
-	public double getStdDev() {
-		double stdDev = Math.sqrt(this.getVar());
-		return (double) stdDev;
-	}
-	
-	/**
-	 * 
-	 * @return
-	 */
-	public double getStdDevUntil(int idx) {
-		double stdDev = Math.sqrt(this.getVarUntil(idx));
-		return (double) stdDev;
-	}
-	
-	/**
-	 * 
-	 * @return
-	 */
-	public double getVar() {
-		int numValues = this.getNumvalues();
-		double avg = this.getAvg();
-		double var = 0f;
-
-		for(Double num : queue) {
-			var += Math.pow((num - avg), 2);
-		}
-		var /= numValues;
-		return var;
-	}
-
-	/**
-	 * 
-	 * @return
-	 */
-	public double getVarUntil(int idx) {
-		int numValues = idx+1;
-		int i =0 ;
-		double avg = this.getAvgUntil(idx);
-		double var = 0f;
-
-		for(Double num : queue) {
-			if(i>idx)
-				break;
-			
-			var += Math.pow((num - avg), 2);
-			i++;
-		}
-		var /= numValues;
-		return var;
-	}
-	
-	/**
-	 * 
-	 * @return
-	 */
-	public double getAvg(){
-		double sum = this.getSum();
-		int numValues = this.getNumvalues();
-
-		if(numValues == 0)
-			return 0f;
-
-		double ret = sum / (double) numValues;
-		return ret;
-	}
-	
-	/**
-	 * 
-	 * @return
-	 */
-	public double getMedian() {
-		long size = this.queue.size();
-		int middle = this.queue.size() / 2;
-    if (size % 2 == 1) {
-        return queue.get(middle);
-    } else {
-        return (queue.get(middle-1) + queue.get(middle)) / 2.0;
-    }
-	}
-	
-	/**
-	 * 
-	 * @return
-	 */
-	public double getAvgUntil(int idx){
-		double sum = this.getSumUntil(idx);
-		int numValues = idx+1;
-
-		if(numValues == 0)
-			return 0f;
-
-		double ret = sum / (double) numValues;
-		return ret;
-	}
-
-	/**
-	 * 
-	 * @return
-	 */
-	public long getSize() {
-		return size;
-	}
-
-	/**
-	 * Returns the sum of the positive values in the list
-	 *   
-	 * @return the sum
-	 */
-	public double getPosNumSum() {
-		double ret = 0;
-
-		for(double value : queue) {
-			if(value >= 0) {
-				ret += value;
-			}
-		}
-		return ret;
-	}
-
-	/**
-	 * Returns the sum of the positive values in the list
-	 *   
-	 * @return the sum
-	 */
-	public double getNegNumSum() {
-		double ret = 0;
-
-		for(double value : queue) {
-			if(value < 0) {
-				ret += value;
-			}
-		}
-		return ret;
-	}
-
-	/**
-	 * Returns the number of values in the window
-	 * 
-	 * @return
-	 */
-	public int getNumvalues() {
-		int c = 0;
-		for(Double f : queue) {
-			c++;
-		}
-		return c;
-	}
-	
-	/**
-	 * 
-	 * @param i
-	 * @return
-	 */
-	public double getValue(int i) {
-		return this.queue.get(i);
-	}
-
-	/**
-	 * Returns the number of values under a certain value
-	 *   
-	 * @return the sum
-	 */
-	public double getNumValuesUnder(double value) {
-		double ret = 0;
-
-		for(double val : queue) {
-			if(val < value) {
-				ret += val;
-			}
-		}
-		return ret;
-	}
-
-	/**
-	 * Returns the number of values over a certain value
-	 *   
-	 * @return the sum
-	 */
-	public double getNumValuesOver(double value) {
-		double ret = 0;
-
-		for(double val : queue) {
-			if(val >= value) {
-				ret += val;
-			}
-		}
-		return ret;
-	}
-
-	/**
-	 * Returns the number of values in the window
-	 * 
-	 * @return
-	 */
-	public String toString() {
-		return queue.toString();
-	}
-	
-	/**
-	 * 
-	 * @return
-	 */
-	public long size() {
-		return this.size;
-	}
-}
+
+package es.csic.iiia.nsm.utilities;
+
+import java.util.Arrays;
+
+/**
+ * SlidingWinowMetric - Used to trace aggregated indicator changes over time.
+ * <p>
+ * Values are kept in a ring buffer of primitive doubles. The sum, the
+ * average and the variance (Welford's method) of the window are updated
+ * incrementally each time a value enters or leaves the window. Besides,
+ * values are indexed in an order statistics tree (a treap whose nodes are
+ * the slots of the ring buffer), which allows to retrieve the median and
+ * any quantile of the window in logarithmic time
+ *
+ * @author Jan Koeppen (jankoeppen@gmx.net)
+ *
+ */
+public class SlidingWindowMetric {
+
+	private static final int INITIAL_CAPACITY = 16;
+	private static final int NIL = -1;
+
+	private boolean newValue;
+	private long size = 0;
+
+	/* Ring buffer */
+	private double[] values = null;
+	private int first = 0;
+	private int numValues = 0;
+
+	/* Running statistics */
+	private double sum = 0;
+	private double posSum = 0;
+	private double negSum = 0;
+	private double mean = 0;
+	private double m2 = 0;
+	private int numRemovals = 0;
+
+	/* Order statistics tree. Node i stands for the value in slot i */
+	private int[] left = null;
+	private int[] right = null;
+	private int[] treeSize = null;
+	private int[] priority = null;
+	private int root = NIL;
+	private int seed = 0x2545F491;
+
+	/**
+	 * Constructor
+	 *
+	 * @param size
+	 */
+	public SlidingWindowMetric(long size){
+		this.size = size;
+		this.newValue = false;
+
+		int capacity = (int)Math.max(1, Math.min(size, INITIAL_CAPACITY));
+		this.values = new double[capacity];
+		this.left = new int[capacity];
+		this.right = new int[capacity];
+		this.treeSize = new int[capacity];
+		this.priority = new int[capacity];
+	}
+
+	/**
+	 * Adds a value to the window
+	 *
+	 * @param value
+	 */
+	public void  addValue(double value){
+		int slot;
+
+		this.newValue = true;
+		if(this.size <= 0) {
+			return;
+		}
+
+		/* The window is full -> the oldest value leaves the window */
+		if(this.numValues >= this.size) {
+			slot = this.first;
+			this.removeOldest();
+		}
+		else {
+			if(this.numValues == this.values.length) {
+				this.grow();
+			}
+			slot = (this.first + this.numValues) % this.values.length;
+		}
+
+		this.values[slot] = value;
+		this.numValues++;
+		this.insertStatistics(value);
+		this.root = this.insert(this.root, slot);
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public boolean hasNewValue() {
+		return this.newValue;
+	}
+
+	/**
+	 *
+	 * @param newValue
+	 */
+	public void setNewValue(boolean newValue) {
+		this.newValue = newValue;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public double getLastValue() {
+		return this.getValue(this.numValues - 1);
+	}
+
+	/**
+	 * Returns the total sum of the values in the window
+	 *
+	 * @return
+	 */
+	public double getSum(){
+		if(this.numValues == 0)
+			return 0f;
+
+		return this.sum;
+	}
+
+	/**
+	 * Returns the total sum of the values in the window
+	 *
+	 * @return
+	 */
+	public double getSumUntil(int idx){
+		double sum = 0;
+
+		if(this.numValues == 0)
+			return 0f;
+
+		for(int i=0; i <= idx && i < this.numValues; i++) {
+			sum += this.getValue(i);
+		}
+		return sum;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public double getStdDev() {
+		double stdDev = Math.sqrt(this.getVar());
+		return (double) stdDev;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public double getStdDevUntil(int idx) {
+		double stdDev = Math.sqrt(this.getVarUntil(idx));
+		return (double) stdDev;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public double getVar() {
+		if(this.numValues == 0)
+			return Double.NaN;
+
+		return Math.max(0, this.m2 / this.numValues);
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public double getVarUntil(int idx) {
+		int numValues = idx+1;
+		double avg = this.getAvgUntil(idx);
+		double var = 0f;
+
+		for(int i=0; i <= idx && i < this.numValues; i++) {
+			double num = this.getValue(i);
+			var += (num - avg) * (num - avg);
+		}
+		var /= numValues;
+		return var;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public double getAvg(){
+		if(this.numValues == 0)
+			return 0f;
+
+		return this.mean;
+	}
+
+	/**
+	 * Returns the median of the values in the window
+	 *
+	 * @return the median of the values in the window
+	 */
+	public double getMedian() {
+		if(this.numValues == 0)
+			return 0f;
+
+		int middle = this.numValues / 2;
+		if (this.numValues % 2 == 1) {
+			return this.getKthSmallest(middle);
+		} else {
+			return (this.getKthSmallest(middle-1) + this.getKthSmallest(middle)) / 2.0;
+		}
+	}
+
+	/**
+	 * Returns the value at a given {@code quantile} (between 0 and 1)
+	 * of the values in the window, following the nearest-rank method
+	 *
+	 * @param quantile the quantile
+	 * @return the value at the given quantile
+	 */
+	public double getQuantile(double quantile) {
+		if(this.numValues == 0)
+			return 0f;
+
+		int k = (int)Math.ceil(quantile * this.numValues) - 1;
+		k = Math.max(0, Math.min(this.numValues - 1, k));
+		return this.getKthSmallest(k);
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public double getAvgUntil(int idx){
+		double sum = this.getSumUntil(idx);
+		int numValues = idx+1;
+
+		if(numValues == 0)
+			return 0f;
+
+		double ret = sum / (double) numValues;
+		return ret;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * Returns the sum of the positive values in the list
+	 *
+	 * @return the sum
+	 */
+	public double getPosNumSum() {
+		return this.posSum;
+	}
+
+	/**
+	 * Returns the sum of the positive values in the list
+	 *
+	 * @return the sum
+	 */
+	public double getNegNumSum() {
+		return this.negSum;
+	}
+
+	/**
+	 * Returns the number of values in the window
+	 *
+	 * @return
+	 */
+	public int getNumvalues() {
+		return this.numValues;
+	}
+
+	/**
+	 * Returns the <tt>i</tt>-th value in the window, being
+	 * 0 the oldest value in the window
+	 *
+	 * @param i
+	 * @return
+	 */
+	public double getValue(int i) {
+		if(i < 0 || i >= this.numValues) {
+			throw new IndexOutOfBoundsException("Index: " + i +
+					", Size: " + this.numValues);
+		}
+		return this.values[(this.first + i) % this.values.length];
+	}
+
+	/**
+	 * Returns the number of values under a certain value
+	 *
+	 * @return the sum
+	 */
+	public double getNumValuesUnder(double value) {
+		double ret = 0;
+
+		for(int i=0; i < this.numValues; i++) {
+			double val = this.getValue(i);
+			if(val < value) {
+				ret += val;
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Returns the number of values over a certain value
+	 *
+	 * @return the sum
+	 */
+	public double getNumValuesOver(double value) {
+		double ret = 0;
+
+		for(int i=0; i < this.numValues; i++) {
+			double val = this.getValue(i);
+			if(val >= value) {
+				ret += val;
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Returns the number of values in the window
+	 *
+	 * @return
+	 */
+	public String toString() {
+		StringBuilder sb = new StringBuilder("[");
+		for(int i=0; i < this.numValues; i++) {
+			if(i > 0) {
+				sb.append(", ");
+			}
+			sb.append(this.getValue(i));
+		}
+		return sb.append("]").toString();
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public long size() {
+		return this.size;
+	}
+
+	//---------------------------------------------------------------------------
+	// Private methods
+	//---------------------------------------------------------------------------
+
+	/**
+	 * Removes the oldest value from the window
+	 */
+	private void removeOldest() {
+		int slot = this.first;
+		double value = this.values[slot];
+
+		this.root = this.delete(this.root, slot);
+		this.first = (this.first + 1) % this.values.length;
+		this.numValues--;
+		this.removeStatistics(value);
+
+		/* Recompute running statistics once per window to avoid
+		 * accumulating rounding errors */
+		if(++this.numRemovals >= this.values.length) {
+			this.numRemovals = 0;
+			this.recomputeStatistics();
+		}
+	}
+
+	/**
+	 * Updates the running statistics with a value that enters the window
+	 *
+	 * @param value the value
+	 */
+	private void insertStatistics(double value) {
+		this.sum += value;
+		if(value >= 0) {
+			this.posSum += value;
+		}
+		else {
+			this.negSum += value;
+		}
+
+		double delta = value - this.mean;
+		this.mean += delta / this.numValues;
+		this.m2 += delta * (value - this.mean);
+	}
+
+	/**
+	 * Updates the running statistics with a value that leaves the window
+	 *
+	 * @param value the value
+	 */
+	private void removeStatistics(double value) {
+		this.sum -= value;
+		if(value >= 0) {
+			this.posSum -= value;
+		}
+		else {
+			this.negSum -= value;
+		}
+
+		if(this.numValues == 0) {
+			this.mean = 0;
+			this.m2 = 0;
+			return;
+		}
+		double delta = value - this.mean;
+		this.mean -= delta / this.numValues;
+		this.m2 -= delta * (value - this.mean);
+	}
+
+	/**
+	 * Recomputes the running statistics from the values in the window
+	 */
+	private void recomputeStatistics() {
+		this.sum = 0;
+		this.posSum = 0;
+		this.negSum = 0;
+		this.mean = 0;
+		this.m2 = 0;
+
+		int n = this.numValues;
+		this.numValues = 0;
+		for(int i=0; i < n; i++) {
+			this.numValues++;
+			this.insertStatistics(this.getValue(i));
+		}
+	}
+
+	/**
+	 * Doubles the capacity of the ring buffer (up to the size of the
+	 * window). The buffer only grows before the window gets full,
+	 * and hence before it wraps around
+	 */
+	private void grow() {
+		int capacity = (int)Math.min(this.size, 2l * this.values.length);
+
+		this.values = Arrays.copyOf(this.values, capacity);
+		this.left = Arrays.copyOf(this.left, capacity);
+		this.right = Arrays.copyOf(this.right, capacity);
+		this.treeSize = Arrays.copyOf(this.treeSize, capacity);
+		this.priority = Arrays.copyOf(this.priority, capacity);
+	}
+
+	/**
+	 * Returns the <tt>k</tt>-th smallest value in the window
+	 * (being 0 the smallest one)
+	 *
+	 * @param k the rank of the value
+	 * @return the <tt>k</tt>-th smallest value in the window
+	 */
+	private double getKthSmallest(int k) {
+		int node = this.root;
+
+		while(node != NIL) {
+			int leftSize = this.getTreeSize(this.left[node]);
+
+			if(k < leftSize) {
+				node = this.left[node];
+			}
+			else if(k == leftSize) {
+				return this.values[node];
+			}
+			else {
+				k -= leftSize + 1;
+				node = this.right[node];
+			}
+		}
+		return Double.NaN;
+	}
+
+	/**
+	 * Compares the values of two nodes. Ties are broken by slot
+	 *
+	 * @return a negative integer, zero, or a positive integer as node
+	 * 					{@code a} is lower than, equal to, or greater than node {@code b}
+	 */
+	private int compare(int a, int b) {
+		int cmp = Double.compare(this.values[a], this.values[b]);
+		if(cmp != 0) {
+			return cmp;
+		}
+		return a < b ? -1 : (a == b ? 0 : 1);
+	}
+
+	/**
+	 * Inserts a node into the subtree rooted at {@code node}
+	 *
+	 * @return the new root of the subtree
+	 */
+	private int insert(int node, int slot) {
+		if(node == NIL) {
+			this.left[slot] = NIL;
+			this.right[slot] = NIL;
+			this.treeSize[slot] = 1;
+			this.priority[slot] = this.nextPriority();
+			return slot;
+		}
+
+		if(this.compare(slot, node) < 0) {
+			this.left[node] = this.insert(this.left[node], slot);
+			if(this.priority[this.left[node]] > this.priority[node]) {
+				node = this.rotateRight(node);
+			}
+		}
+		else {
+			this.right[node] = this.insert(this.right[node], slot);
+			if(this.priority[this.right[node]] > this.priority[node]) {
+				node = this.rotateLeft(node);
+			}
+		}
+		this.update(node);
+		return node;
+	}
+
+	/**
+	 * Deletes a node from the subtree rooted at {@code node}
+	 *
+	 * @return the new root of the subtree
+	 */
+	private int delete(int node, int slot) {
+		if(node == NIL) {
+			return NIL;
+		}
+
+		int cmp = this.compare(slot, node);
+		if(cmp < 0) {
+			this.left[node] = this.delete(this.left[node], slot);
+		}
+		else if(cmp > 0) {
+			this.right[node] = this.delete(this.right[node], slot);
+		}
+		else {
+			return this.merge(this.left[node], this.right[node]);
+		}
+		this.update(node);
+		return node;
+	}
+
+	/**
+	 * Merges two subtrees, being all the nodes in {@code a}
+	 * lower than all the nodes in {@code b}
+	 *
+	 * @return the root of the merged tree
+	 */
+	private int merge(int a, int b) {
+		if(a == NIL) {
+			return b;
+		}
+		if(b == NIL) {
+			return a;
+		}
+		if(this.priority[a] > this.priority[b]) {
+			this.right[a] = this.merge(this.right[a], b);
+			this.update(a);
+			return a;
+		}
+		else {
+			this.left[b] = this.merge(a, this.left[b]);
+			this.update(b);
+			return b;
+		}
+	}
+
+	private int rotateRight(int node) {
+		int l = this.left[node];
+		this.left[node] = this.right[l];
+		this.right[l] = node;
+		this.update(node);
+		this.update(l);
+		return l;
+	}
+
+	private int rotateLeft(int node) {
+		int r = this.right[node];
+		this.right[node] = this.left[r];
+		this.left[r] = node;
+		this.update(node);
+		this.update(r);
+		return r;
+	}
+
+	private void update(int node) {
+		this.treeSize[node] = 1 + this.getTreeSize(this.left[node]) +
+				this.getTreeSize(this.right[node]);
+	}
+
+	private int getTreeSize(int node) {
+		return node == NIL ? 0 : this.treeSize[node];
+	}
+
+	/**
+	 * Returns a pseudo-random priority (xorshift)
+	 */
+	private int nextPriority() {
+		this.seed ^= this.seed << 13;
+		this.seed ^= this.seed >>> 17;
+		this.seed ^= this.seed << 5;
+		return this.seed;
+	}
+}
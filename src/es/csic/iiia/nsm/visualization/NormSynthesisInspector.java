@@ -5,6 +5,7 @@ import java.util.List;
 
 import es.csic.iiia.nsm.NormSynthesisMachine;
 import es.csic.iiia.nsm.norm.Norm;
+import es.csic.iiia.nsm.norm.NormativeSystem;
 import es.csic.iiia.nsm.norm.group.NormGroup;
 import es.csic.iiia.nsm.visualization.norms.NormsInspectorThread;
 import es.csic.iiia.nsm.visualization.norms.chart.PerformanceRangeChartThread;
@@ -26,6 +27,7 @@ public class NormSynthesisInspector {
 	private NormsInspectorThread tracerThread;		// thread of norms tracer
 	private boolean converged;		// the norm synthesis process has converged?
 	private List<PerformanceRangeChartThread> normScoreCharts;
+	private volatile NormativeSystem normativeSystem;	// last NS snapshot
 	
 	//---------------------------------------------------------------------------
 	// Methods
@@ -78,6 +80,46 @@ public class NormSynthesisInspector {
 			}
 		}
 	}
+	
+	/**
+	 * Refreshes the GUI with a snapshot of the normative system taken
+	 * at the end of a norm synthesis cycle. To be called from the event
+	 * dispatch thread, once the snapshot of the charts has been captured
+	 * 
+	 * @param normativeSystem a copy of the normative system
+	 * @see #capture()
+	 */
+	public void refresh(NormativeSystem normativeSystem) {
+		this.normativeSystem = normativeSystem;
+		this.refresh();
+	}
+	
+	/**
+	 * Captures the last values of the charted performance ranges, so that
+	 * the charts show them when refreshed. To be called from the thread
+	 * that executes the norm synthesis cycle, once the cycle is finished
+	 */
+	public synchronized void capture() {
+		if(nsm.isGUI()) {
+			for(PerformanceRangeChartThread nScChart : normScoreCharts) {
+				nScChart.capture();
+			}
+		}
+	}
+	
+	/**
+	 * Returns the last snapshot of the normative system, or the normative
+	 * system of the normative network if no snapshot has been taken yet
+	 * 
+	 * @return the last snapshot of the normative system
+	 */
+	public NormativeSystem getNormativeSystem() {
+		NormativeSystem normativeSystem = this.normativeSystem;
+		if(normativeSystem == null) {
+			return this.nsm.getNormativeNetwork().getNormativeSystem();
+		}
+		return normativeSystem;
+	}
 
 	/**
 	 * Adds and shows a new utility chart for a norm
@@ -46,6 +46,7 @@ public class NormsInspectorPanel extends javax.swing.JPanel {
 	private static final long serialVersionUID = 4850532986703932668L;
 
 	private NormSynthesisMachine nsm;
+	private NormSynthesisInspector nsInspector;
 	private NormativeNetwork normativeNetwork;
 	private NormGroupNetwork normGroupNetwork;
 	private NormSynthesisSettings nsmSettings;
@@ -68,6 +69,7 @@ public class NormsInspectorPanel extends javax.swing.JPanel {
 		initComponents();
 
 		this.nsm = nsInspector.getNormSynthesisMachine();
+		this.nsInspector = nsInspector;
 		this.normativeNetwork = this.nsm.getNormativeNetwork();
 		this.normGroupNetwork = this.nsm.getNormGroupNetwork();
 		this.nsmSettings = this.nsm.getNormSynthesisSettings();
@@ -178,7 +180,7 @@ public class NormsInspectorPanel extends javax.swing.JPanel {
 	 * @param cSolution
 	 */
 	private void updateTreeNormsInUse() {
-		List<Norm> nsNorms = normativeNetwork.getNormativeSystem();
+		List<Norm> nsNorms = this.nsInspector.getNormativeSystem();
 		TreePath focus = null;
 
 		this.treeNormsInUse.removeAll();
@@ -161,6 +161,17 @@ public class PerformanceRangeChart {
 		this.dataset.addSeries(nwSeries);
 	}
 
+	/**
+	 * Captures the last values of each series in the chart
+	 * 
+	 * @see PerformanceRangeChartSeries#capture()
+	 */
+	public void capture() {
+		for(PerformanceRangeChartSeries s : series) {
+			s.capture();
+		}
+	}
+	
 	/**
 	 * Refreshes the chart, updating the last values of each series in it,
 	 * and showing these values in the GUI
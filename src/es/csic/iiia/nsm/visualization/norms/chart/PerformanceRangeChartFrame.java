@@ -85,6 +85,15 @@ public class PerformanceRangeChartFrame extends ApplicationFrame {
 		setContentPane(content);
 	}
 
+	/**
+	 * Captures the last values of the chart's components
+	 */
+	public void capture() {
+		for(PerformanceRangeChart chart : this.charts) {
+			chart.capture();
+		}
+	}
+	
 	/**
 	 * Refreshes the chart's components
 	 */
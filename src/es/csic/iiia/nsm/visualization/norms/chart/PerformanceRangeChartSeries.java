@@ -1,5 +1,8 @@
 package es.csic.iiia.nsm.visualization.norms.chart;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.jfree.data.xy.XYSeries;
 
 import es.csic.iiia.nsm.NormSynthesisMachine;
@@ -49,6 +52,7 @@ public class PerformanceRangeChartSeries extends XYSeries {
 	private float alphaSpec;
 	private float alphaGen;
 	private int x;
+	private List<Float> capturedValues;	// captured, but not shown yet
 
 	//---------------------------------------------------------------------------
 	// Methods
@@ -74,6 +78,7 @@ public class PerformanceRangeChartSeries extends XYSeries {
 		this.goal = nsm.getNormSynthesisSettings().getSystemGoals().get(0);
 		this.type = UtilityChartSeriesType.PunctualValue;
 		this.x = 0;
+		this.capturedValues = new ArrayList<Float>();
 
 		NormSynthesisSettings nsmSettings = nsm.getNormSynthesisSettings();
 		this.alphaSpec = nsmSettings.getSpecialisationBoundary(dim, goal);
@@ -102,6 +107,7 @@ public class PerformanceRangeChartSeries extends XYSeries {
 		this.dim = dim;
 		this.type = type;
 		this.x = 0;
+		this.capturedValues = new ArrayList<Float>();
 		
 		NormSynthesisSettings nsmSettings = nsm.getNormSynthesisSettings();
 		this.alphaSpec = nsmSettings.getSpecialisationBoundary(dim, goal);
@@ -112,16 +118,33 @@ public class PerformanceRangeChartSeries extends XYSeries {
 	}
 
 	/**
-	 * Updates the series
+	 * Captures the last value of the performance range of the node, if
+	 * it has a new value. The value is shown in the series once it is
+	 * updated, and hence the series can be updated from the event dispatch
+	 * thread while the norm synthesis machine changes the performance range
+	 * 
+	 * @see #update()
 	 */
-	public void update() {
+	public synchronized void capture() {
 		Utility utility = network.getUtility(node);
 		PerformanceRange perfRange = utility.getPerformanceRange(dim, goal);
 
 		if(perfRange.hasNewValue()) {
 			int numSlidingValues = perfRange.getNumSlidingValues();
-			this.addValue((numSlidingValues-1));
+			this.capturedValues.add(this.getValue(numSlidingValues-1));
+		}
+	}
+	
+	/**
+	 * Updates the series with the captured values
+	 * 
+	 * @see #capture()
+	 */
+	public synchronized void update() {
+		for(Float num : this.capturedValues) {
+			this.addValue(num);
 		}
+		this.capturedValues.clear();
 	}
 
 	/**
@@ -132,33 +155,33 @@ public class PerformanceRangeChartSeries extends XYSeries {
 		PerformanceRange perfRange = utility.getPerformanceRange(dim, goal);
 
 		for(int i=0; i<perfRange.getNumSlidingValues(); i++) {
-			this.addValue(i);
+			this.addValue(this.getValue(i));
 		}
 	}
 
 	/**
-	 * Adds to the series the value which is in the index
+	 * Returns the value of the series which is in the index
 	 * {@code valueIndex} in the performance range of the node
 	 * 
 	 * @param valueIndex the value index
+	 * @return the value of the series
 	 */
-	private void addValue(int valueIndex) {
+	private float getValue(int valueIndex) {
 		Utility utility = network.getUtility(node);
 		PerformanceRange perfRange = utility.getPerformanceRange(dim, goal);
 		float num = 0f;
-		x++;
 
 		if(this.type == UtilityChartSeriesType.PunctualValue) {
-			num = perfRange.getSlidingPunctualValues().get(valueIndex);
+			num = perfRange.getSlidingPunctualValue(valueIndex);
 		}
 		else if(this.type == UtilityChartSeriesType.Average) {
-			num = perfRange.getSlidingAverage().get(valueIndex);	
+			num = perfRange.getSlidingAverage(valueIndex);	
 		}
 		else if(this.type == UtilityChartSeriesType.TopBoundary)	{
-			num = perfRange.getSlidingTopBoundary().get(valueIndex);
+			num = perfRange.getSlidingTopBoundary(valueIndex);
 		}
 		else if(this.type == UtilityChartSeriesType.BottomBoundary) {
-			num = perfRange.getSlidingBottomBoundary().get(valueIndex);
+			num = perfRange.getSlidingBottomBoundary(valueIndex);
 		}
 		else if(this.type == UtilityChartSeriesType.AlphaSpec)	{
 			num = alphaSpec;
@@ -167,8 +190,16 @@ public class PerformanceRangeChartSeries extends XYSeries {
 			num = alphaGen; 
 			perfRange.setNewValue(false);
 		}
-
-		// Add value to the series
+		return num;
+	}
+	
+	/**
+	 * Adds a value to the series
+	 * 
+	 * @param num the value
+	 */
+	private void addValue(float num) {
+		x++;
 		this.add(x, num);
 	}
 
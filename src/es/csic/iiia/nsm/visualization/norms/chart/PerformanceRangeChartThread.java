@@ -60,6 +60,15 @@ extends Thread implements WindowListener {
 		}
 	}
 	
+	/**
+	 * Captures the last values of the chart
+	 * 
+	 * @see PerformanceRangeChartFrame#capture()
+	 */
+	public void capture() {
+		this.chart.capture();
+	}
+	
 	/**
 	 * Run method. Refreshes the frame until the infinite
 	 */